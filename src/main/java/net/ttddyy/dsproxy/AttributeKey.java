@@ -0,0 +1,84 @@
+package net.ttddyy.dsproxy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Typed key to store a value on {@link ExecutionInfo}, {@link QueryCountScope} or {@link ConnectionInfo}.
+ *
+ * <p>Each key is assigned a unique index when it is created, and the value is stored in an array slot on
+ * {@link ExecutionInfo}. Compared to {@link ExecutionInfo#addCustomValue(String, Object)}, this does not require string
+ * hashing or map entry allocation. Keys are expected to be created once(e.g.: as a constant or at listener
+ * construction time) and shared.
+ *
+ * <pre>
+ * {@code
+ * private static final AttributeKey<Span> SPAN = AttributeKey.create("span", Span.class);
+ *
+ * public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+ *     execInfo.setAttribute(SPAN, tracer.startSpan());
+ * }
+ *
+ * public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+ *     execInfo.getAttribute(SPAN).end();
+ * }
+ * }
+ * </pre>
+ *
+ * @param <T> value type
+ * @author Tadaya Tsuyukubo
+ * @see LongAttributeKey
+ * @see ExecutionInfo#setAttribute(AttributeKey, Object)
+ * @since 1.11
+ */
+public final class AttributeKey<T> {
+
+    private static final AtomicInteger INDEX_COUNTER = new AtomicInteger();
+
+    /**
+     * Create a new key.
+     *
+     * @param name key name used for display
+     * @param type value type
+     * @param <T>  value type
+     * @return a new key
+     */
+    public static <T> AttributeKey<T> create(String name, Class<T> type) {
+        return new AttributeKey<T>(INDEX_COUNTER.getAndIncrement(), name, type);
+    }
+
+    /**
+     * Number of keys created so far. Used to size attribute arrays.
+     *
+     * @return num of keys
+     */
+    static int size() {
+        return INDEX_COUNTER.get();
+    }
+
+    private final int index;
+    private final String name;
+    private final Class<T> type;
+
+    private AttributeKey(int index, String name, Class<T> type) {
+        this.index = index;
+        this.name = name;
+        this.type = type;
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public Class<T> getType() {
+        return this.type;
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeKey[" + this.name + "]";
+    }
+}
@@ -15,6 +15,17 @@ public class ConnectionInfo {
     private int commitCount;
     private int rollbackCount;
 
+    // connection lifecycle timestamps(System#nanoTime) maintained when connection metrics is enabled
+    private long acquireTime;
+    private long lastStatementEndTime;
+    private long transactionStartTime;
+    private boolean autoCommit = true;
+    private boolean autoCommitKnown;
+    private int statementCount;
+
+    // per connection state of proxy features, e.g. deferred executions and cached statements
+    private Object[] attributes;  // lazily created, indexed by AttributeKey#getIndex()
+
     public String getDataSourceName() {
         return dataSourceName;
     }
@@ -107,4 +118,146 @@ public class ConnectionInfo {
         isClosed = closed;
     }
 
+    /**
+     * Returns the time(in {@link System#nanoTime()}) when the connection was acquired.
+     * Only available when connection metrics is enabled.
+     *
+     * @return acquired time or {@code 0}
+     * @since 1.11
+     */
+    public long getAcquireTime() {
+        return acquireTime;
+    }
+
+    /**
+     * @since 1.11
+     */
+    public void setAcquireTime(long acquireTime) {
+        this.acquireTime = acquireTime;
+    }
+
+    /**
+     * Returns the time(in {@link System#nanoTime()}) when the last statement execution has finished.
+     * Only available when connection metrics is enabled.
+     *
+     * @return time or {@code 0} when no statement has executed yet
+     * @since 1.11
+     */
+    public long getLastStatementEndTime() {
+        return lastStatementEndTime;
+    }
+
+    /**
+     * @since 1.11
+     */
+    public void setLastStatementEndTime(long lastStatementEndTime) {
+        this.lastStatementEndTime = lastStatementEndTime;
+    }
+
+    /**
+     * Returns the time(in {@link System#nanoTime()}) when the current transaction has started.
+     * Only available when connection metrics is enabled.
+     *
+     * @return time or {@code 0} when no transaction is in progress
+     * @since 1.11
+     */
+    public long getTransactionStartTime() {
+        return transactionStartTime;
+    }
+
+    /**
+     * @since 1.11
+     */
+    public void setTransactionStartTime(long transactionStartTime) {
+        this.transactionStartTime = transactionStartTime;
+    }
+
+    /**
+     * Auto-commit mode of the connection tracked by the proxy.
+     * Recorded when {@link Connection#setAutoCommit(boolean)} or {@link Connection#getAutoCommit()} is called
+     * on the proxy, or retrieved from the connection once when a statement proxy needs it. {@code true} until it is
+     * known.
+     *
+     * @return auto-commit mode
+     * @see #isAutoCommitKnown()
+     * @since 1.11
+     */
+    public boolean isAutoCommit() {
+        return autoCommit;
+    }
+
+    /**
+     * @since 1.11
+     */
+    public void setAutoCommit(boolean autoCommit) {
+        this.autoCommit = autoCommit;
+        this.autoCommitKnown = true;
+    }
+
+    /**
+     * Returns whether the auto-commit mode of the connection has been recorded.
+     *
+     * @return {@code true} if {@link #isAutoCommit()} reflects the connection
+     * @since 1.11
+     */
+    public boolean isAutoCommitKnown() {
+        return autoCommitKnown;
+    }
+
+    /**
+     * Returns how many statements have been executed on this connection.
+     * Only maintained when connection metrics is enabled.
+     *
+     * @return num of statement executions
+     * @since 1.11
+     */
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    /**
+     * @since 1.11
+     */
+    public void incrementStatementCount() {
+        this.statementCount++;
+    }
+
+    /**
+     * Store a value on this connection info. Used to keep per connection state.
+     *
+     * @param key   attribute key
+     * @param value value
+     * @param <T>   value type
+     * @since 1.11
+     */
+    public <T> void setAttribute(AttributeKey<T> key, T value) {
+        int index = key.getIndex();
+        if (this.attributes == null || this.attributes.length <= index) {
+            if (value == null) {
+                return;
+            }
+            Object[] newAttributes = new Object[Math.max(index + 1, AttributeKey.size())];
+            if (this.attributes != null) {
+                System.arraycopy(this.attributes, 0, newAttributes, 0, this.attributes.length);
+            }
+            this.attributes = newAttributes;
+        }
+        this.attributes[index] = value;
+    }
+
+    /**
+     * @param key attribute key
+     * @param <T> value type
+     * @return stored value or {@code null}
+     * @since 1.11
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(AttributeKey<T> key) {
+        int index = key.getIndex();
+        if (this.attributes == null || this.attributes.length <= index) {
+            return null;
+        }
+        return (T) this.attributes[index];
+    }
+
 }
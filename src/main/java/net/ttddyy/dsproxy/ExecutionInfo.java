@@ -5,12 +5,19 @@ import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
 import java.lang.reflect.Method;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Contains query execution information.
  *
+ * <p>When {@link ProxyDataSourceBuilder#reuseExecutionInfo()} is enabled, the same instance is reused by the statement
+ * proxy for subsequent executions. In that case, an instance is only valid until
+ * {@link net.ttddyy.dsproxy.listener.QueryExecutionListener#afterQuery(ExecutionInfo, java.util.List)} returns.
+ * Listeners that need to keep it beyond the callback must call {@link #retain()} and keep the returned snapshot.
+ *
  * @author Tadaya Tsuyukubo
  */
 public class ExecutionInfo {
@@ -28,12 +35,83 @@ public class ExecutionInfo {
     private int batchSize;
     private Statement statement;
     private ResultSet generatedKeys;
-    private Map<String, Object> customValues = new HashMap<String, Object>();
+    private Map<String, Object> customValues;  // lazily created
+    private Object[] attributes;  // lazily created, indexed by AttributeKey#getIndex()
+    private long[] longAttributes;  // lazily created, indexed by LongAttributeKey#getIndex()
 
     public ExecutionInfo() {
     }
 
     public ExecutionInfo(ConnectionInfo connectionInfo, Statement statement, boolean isBatch, int batchSize, Method method, Object[] methodArgs) {
+        initialize(connectionInfo, statement, isBatch, batchSize, method, methodArgs);
+    }
+
+    /**
+     * Copy constructor used by {@link #retain()}.
+     *
+     * @param source execution info to copy from
+     * @since 1.11
+     */
+    protected ExecutionInfo(ExecutionInfo source) {
+        this.dataSourceName = source.dataSourceName;
+        this.connectionId = source.connectionId;
+        this.isolationLevel = source.isolationLevel;
+        this.method = source.method;
+        this.methodArgs = source.methodArgs == null ? null : source.methodArgs.clone();
+        this.result = source.result;
+        this.elapsedTime = source.elapsedTime;
+        this.throwable = source.throwable;
+        this.statementType = source.statementType;
+        this.isSuccess = source.isSuccess;
+        this.isBatch = source.isBatch;
+        this.batchSize = source.batchSize;
+        this.statement = source.statement;
+        this.generatedKeys = source.generatedKeys;
+        if (source.customValues != null) {
+            this.customValues = Collections.unmodifiableMap(new HashMap<String, Object>(source.customValues));
+        }
+        if (source.attributes != null) {
+            this.attributes = source.attributes.clone();
+        }
+        if (source.longAttributes != null) {
+            this.longAttributes = source.longAttributes.clone();
+        }
+    }
+
+    /**
+     * Re-initialize this instance for a new execution.
+     *
+     * <p>All execution results(result, elapsed time, throwable, generated keys, custom values and attributes) are
+     * cleared.
+     *
+     * @param connectionInfo connection info
+     * @param statement      statement used by the execution
+     * @param isBatch        whether it is a batch execution
+     * @param batchSize      batch size
+     * @param method         invoked method
+     * @param methodArgs     method arguments
+     * @since 1.11
+     */
+    public void reset(ConnectionInfo connectionInfo, Statement statement, boolean isBatch, int batchSize, Method method, Object[] methodArgs) {
+        initialize(connectionInfo, statement, isBatch, batchSize, method, methodArgs);
+
+        this.result = null;
+        this.elapsedTime = 0;
+        this.throwable = null;
+        this.isSuccess = false;
+        this.generatedKeys = null;
+        if (this.customValues != null) {
+            this.customValues.clear();
+        }
+        if (this.attributes != null) {
+            Arrays.fill(this.attributes, null);
+        }
+        if (this.longAttributes != null) {
+            Arrays.fill(this.longAttributes, 0L);
+        }
+    }
+
+    private void initialize(ConnectionInfo connectionInfo, Statement statement, boolean isBatch, int batchSize, Method method, Object[] methodArgs) {
         this.dataSourceName = connectionInfo.getDataSourceName();
         this.connectionId = connectionInfo.getConnectionId();
         this.isolationLevel = connectionInfo.getIsolationLevel();
@@ -46,6 +124,22 @@ public class ExecutionInfo {
         this.statementType = StatementType.valueOf(statement);
     }
 
+    /**
+     * Returns an immutable snapshot of this execution info.
+     *
+     * <p>Listeners that keep {@link ExecutionInfo} beyond
+     * {@link net.ttddyy.dsproxy.listener.QueryExecutionListener#afterQuery(ExecutionInfo, java.util.List)}(e.g.: for
+     * asynchronous processing) must use the returned snapshot when {@link ProxyDataSourceBuilder#reuseExecutionInfo()}
+     * is enabled, since the original instance is reset on the next execution.
+     * Setter methods on the snapshot throw {@link UnsupportedOperationException}.
+     *
+     * @return immutable copy of this execution info
+     * @since 1.11
+     */
+    public ExecutionInfo retain() {
+        return new RetainedExecutionInfo(this);
+    }
+
     public Method getMethod() {
         return method;
     }
@@ -223,6 +317,9 @@ public class ExecutionInfo {
      * @since 1.5.1
      */
     public void addCustomValue(String key, Object value) {
+        if (this.customValues == null) {
+            this.customValues = new HashMap<String, Object>();
+        }
         this.customValues.put(key, value);
     }
 
@@ -230,7 +327,200 @@ public class ExecutionInfo {
      * @since 1.5.1
      */
     public <T> T getCustomValue(String key, Class<T> type) {
+        if (this.customValues == null) {
+            return null;
+        }
         return type.cast(this.customValues.get(key));
     }
 
+    /**
+     * Store a value for the given typed key.
+     *
+     * <p>Compared to {@link #addCustomValue(String, Object)}, the value is stored in an array slot assigned to the key.
+     *
+     * @param key   attribute key
+     * @param value value
+     * @param <T>   value type
+     * @since 1.11
+     */
+    public <T> void setAttribute(AttributeKey<T> key, T value) {
+        int index = key.getIndex();
+        if (this.attributes == null || this.attributes.length <= index) {
+            this.attributes = grow(this.attributes, Math.max(index + 1, AttributeKey.size()));
+        }
+        this.attributes[index] = value;
+    }
+
+    /**
+     * Retrieve a value for the given typed key.
+     *
+     * @param key attribute key
+     * @param <T> value type
+     * @return value or {@code null} if not set
+     * @since 1.11
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(AttributeKey<T> key) {
+        int index = key.getIndex();
+        if (this.attributes == null || this.attributes.length <= index) {
+            return null;
+        }
+        return (T) this.attributes[index];
+    }
+
+    /**
+     * Store a primitive {@code long} value for the given key without boxing.
+     *
+     * @param key   attribute key
+     * @param value value
+     * @since 1.11
+     */
+    public void setLongAttribute(LongAttributeKey key, long value) {
+        int index = key.getIndex();
+        if (this.longAttributes == null || this.longAttributes.length <= index) {
+            this.longAttributes = grow(this.longAttributes, Math.max(index + 1, LongAttributeKey.size()));
+        }
+        this.longAttributes[index] = value;
+    }
+
+    /**
+     * Retrieve a primitive {@code long} value for the given key.
+     *
+     * @param key attribute key
+     * @return value or {@code 0} if not set
+     * @since 1.11
+     */
+    public long getLongAttribute(LongAttributeKey key) {
+        int index = key.getIndex();
+        if (this.longAttributes == null || this.longAttributes.length <= index) {
+            return 0L;
+        }
+        return this.longAttributes[index];
+    }
+
+    private static Object[] grow(Object[] array, int size) {
+        Object[] newArray = new Object[size];
+        if (array != null) {
+            System.arraycopy(array, 0, newArray, 0, array.length);
+        }
+        return newArray;
+    }
+
+    private static long[] grow(long[] array, int size) {
+        long[] newArray = new long[size];
+        if (array != null) {
+            System.arraycopy(array, 0, newArray, 0, array.length);
+        }
+        return newArray;
+    }
+
+    /**
+     * Immutable snapshot returned by {@link ExecutionInfo#retain()}.
+     */
+    private static class RetainedExecutionInfo extends ExecutionInfo {
+
+        private RetainedExecutionInfo(ExecutionInfo source) {
+            super(source);
+        }
+
+        @Override
+        public void reset(ConnectionInfo connectionInfo, Statement statement, boolean isBatch, int batchSize, Method method, Object[] methodArgs) {
+            throw immutable();
+        }
+
+        @Override
+        public ExecutionInfo retain() {
+            return this;
+        }
+
+        @Override
+        public void setMethod(Method method) {
+            throw immutable();
+        }
+
+        @Override
+        public void setMethodArgs(Object[] methodArgs) {
+            throw immutable();
+        }
+
+        @Override
+        public void setDataSourceName(String dataSourceName) {
+            throw immutable();
+        }
+
+        @Override
+        public void setConnectionId(String connectionId) {
+            throw immutable();
+        }
+
+        @Override
+        public void setIsolationLevel(int isolationLevel) {
+            throw immutable();
+        }
+
+        @Override
+        public void setResult(Object result) {
+            throw immutable();
+        }
+
+        @Override
+        public void setElapsedTime(long elapsedTime) {
+            throw immutable();
+        }
+
+        @Override
+        public void setThrowable(Throwable throwable) {
+            throw immutable();
+        }
+
+        @Override
+        public void setStatementType(StatementType statementType) {
+            throw immutable();
+        }
+
+        @Override
+        public void setSuccess(boolean isSuccess) {
+            throw immutable();
+        }
+
+        @Override
+        public void setBatch(boolean isBatch) {
+            throw immutable();
+        }
+
+        @Override
+        public void setBatchSize(int batchSize) {
+            throw immutable();
+        }
+
+        @Override
+        public void setStatement(Statement statement) {
+            throw immutable();
+        }
+
+        @Override
+        public void setGeneratedKeys(ResultSet generatedKeys) {
+            throw immutable();
+        }
+
+        @Override
+        public void addCustomValue(String key, Object value) {
+            throw immutable();
+        }
+
+        @Override
+        public <T> void setAttribute(AttributeKey<T> key, T value) {
+            throw immutable();
+        }
+
+        @Override
+        public void setLongAttribute(LongAttributeKey key, long value) {
+            throw immutable();
+        }
+
+        private UnsupportedOperationException immutable() {
+            return new UnsupportedOperationException("Retained ExecutionInfo is immutable");
+        }
+    }
+
 }
@@ -0,0 +1,60 @@
+package net.ttddyy.dsproxy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Key to store a primitive {@code long} value on {@link ExecutionInfo} without boxing.
+ *
+ * <p>Typical use is to pass a timestamp or a counter from
+ * {@link net.ttddyy.dsproxy.listener.QueryExecutionListener#beforeQuery(ExecutionInfo, java.util.List)} to
+ * {@link net.ttddyy.dsproxy.listener.QueryExecutionListener#afterQuery(ExecutionInfo, java.util.List)}.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see AttributeKey
+ * @see ExecutionInfo#setLongAttribute(LongAttributeKey, long)
+ * @since 1.11
+ */
+public final class LongAttributeKey {
+
+    private static final AtomicInteger INDEX_COUNTER = new AtomicInteger();
+
+    /**
+     * Create a new key.
+     *
+     * @param name key name used for display
+     * @return a new key
+     */
+    public static LongAttributeKey create(String name) {
+        return new LongAttributeKey(INDEX_COUNTER.getAndIncrement(), name);
+    }
+
+    /**
+     * Number of keys created so far. Used to size attribute arrays.
+     *
+     * @return num of keys
+     */
+    static int size() {
+        return INDEX_COUNTER.get();
+    }
+
+    private final int index;
+    private final String name;
+
+    private LongAttributeKey(int index, String name) {
+        this.index = index;
+        this.name = name;
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public String toString() {
+        return "LongAttributeKey[" + this.name + "]";
+    }
+}
@@ -28,6 +28,9 @@ public class QueryCount {
 
     private AtomicLong time = new AtomicLong();
 
+    // num of results served from the result cache without database call
+    private AtomicLong cacheHit = new AtomicLong();
+
     public void increment(QueryType queryType) {
         switch (queryType) {
             case SELECT:
@@ -109,6 +112,35 @@ public class QueryCount {
         time.addAndGet(delta);
     }
 
+    /**
+     * @since 1.11
+     */
+    public void incrementCacheHit() {
+        cacheHit.incrementAndGet();
+    }
+
+    /**
+     * Add values of the given {@link QueryCount} to this instance.
+     *
+     * @param queryCount query count to add
+     * @since 1.11
+     */
+    public void add(QueryCount queryCount) {
+        this.select.addAndGet(queryCount.getSelect());
+        this.insert.addAndGet(queryCount.getInsert());
+        this.update.addAndGet(queryCount.getUpdate());
+        this.delete.addAndGet(queryCount.getDelete());
+        this.other.addAndGet(queryCount.getOther());
+        this.statement.addAndGet(queryCount.getStatement());
+        this.prepared.addAndGet(queryCount.getPrepared());
+        this.callable.addAndGet(queryCount.getCallable());
+        this.total.addAndGet(queryCount.getTotal());
+        this.success.addAndGet(queryCount.getSuccess());
+        this.failure.addAndGet(queryCount.getFailure());
+        this.time.addAndGet(queryCount.getTime());
+        this.cacheHit.addAndGet(queryCount.getCacheHit());
+    }
+
     public long getSelect() {
         return select.longValue();
     }
@@ -204,4 +236,22 @@ public class QueryCount {
     public void setTime(long time) {
         this.time.set(time);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns num of query results served from {@link net.ttddyy.dsproxy.proxy.ResultCache} without database call.
+     *
+     * @return num of cache hits
+     * @since 1.11
+     */
+    public long getCacheHit() {
+        return cacheHit.longValue();
+    }
+
+    /**
+     * @param cacheHit num of cache hits
+     * @since 1.11
+     */
+    public void setCacheHit(long cacheHit) {
+        this.cacheHit.set(cacheHit);
+    }
+}
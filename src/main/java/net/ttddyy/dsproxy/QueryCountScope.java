@@ -0,0 +1,413 @@
+package net.ttddyy.dsproxy;
+
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+import java.io.Closeable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Scope to hold {@link QueryCount} by datasource name.
+ *
+ * <p>Unlike {@link QueryCountHolder}, which keeps a map per thread, a map is kept per scope and only a reference to
+ * the current scope is bound to the executing thread while the scope is active. This works well with virtual threads.
+ * Used with {@link net.ttddyy.dsproxy.listener.ScopedQueryCountStrategy}.
+ *
+ * <pre>
+ * {@code
+ * // explicit open/close
+ * QueryCountScope scope = QueryCountScope.open();
+ * try {
+ *     ...
+ * } finally {
+ *     scope.close();
+ * }
+ *
+ * // run a task in a scope
+ * QueryCountScope scope = new QueryCountScope();
+ * scope.run(task);
+ * scope.getQueryCount("myDS");
+ *
+ * // propagate the current scope to a child task
+ * executor.submit(QueryCountScope.wrap(task));
+ * }
+ * </pre>
+ *
+ * <p>{@link #run(Runnable)} and {@link #call(Callable)} bind the scope with {@code java.lang.ScopedValue} when it is
+ * available in the running JVM, so the scope is inherited by {@code StructuredTaskScope} forks. Otherwise, and for
+ * {@link #open()}, a thread local that only holds the current scope is used as the carrier; {@link #wrap(Runnable)}
+ * propagates the scope to tasks executed on other threads.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class QueryCountScope implements Closeable {
+
+    private static final ThreadLocal<Binding> CURRENT = new ThreadLocal<Binding>();
+
+    private final ConcurrentMap<String, QueryCount> queryCountMap = new ConcurrentHashMap<String, QueryCount>();
+
+    private Object[] attributes;  // lazily created, indexed by AttributeKey#getIndex(). guarded by "this"
+
+    // binding created by "open()". null when not opened
+    private volatile Binding binding;
+
+    /**
+     * Open a new scope and bind it to the current thread until {@link #close()} is called.
+     *
+     * @return opened scope
+     */
+    public static QueryCountScope open() {
+        return open(new QueryCountScope());
+    }
+
+    /**
+     * Bind the given scope to the current thread until {@link #close()} is called.
+     * Used to resume a scope on another thread, such as an async dispatch of a request.
+     *
+     * @param scope scope to open
+     * @return opened scope
+     * @throws IllegalStateException if the scope is already opened and not yet closed
+     */
+    public static QueryCountScope open(QueryCountScope scope) {
+        if (scope.binding != null) {
+            throw new IllegalStateException("QueryCountScope is already opened");
+        }
+        Binding binding = new Binding(scope, currentBinding(), ScopedValueSupport.current());
+        scope.binding = binding;
+        CURRENT.set(binding);
+        return scope;
+    }
+
+    /**
+     * Returns the scope bound to the current execution. When scopes are bound by both {@link #open()} and
+     * {@link #run(Runnable)}, the most recently bound one is returned.
+     *
+     * @return current scope or {@code null} if not in a scope
+     */
+    public static QueryCountScope current() {
+        Binding binding = currentBinding();
+        QueryCountScope scoped = ScopedValueSupport.current();
+        if (binding != null && binding.scopedValueScope == scoped) {
+            // opened inside of the current ScopedValue binding, or ScopedValue is not used
+            return binding.scope;
+        }
+        if (scoped != null) {
+            return scoped;
+        }
+        return binding != null ? binding.scope : null;
+    }
+
+    /**
+     * Returns the top binding of the current thread, discarding the ones closed on other threads or out of order.
+     */
+    private static Binding currentBinding() {
+        Binding binding = CURRENT.get();
+        if (binding != null && binding.closed) {
+            do {
+                binding = binding.previous;
+            } while (binding != null && binding.closed);
+            restore(binding);
+        }
+        return binding;
+    }
+
+    /**
+     * Wrap the task to execute in the current scope. Used to propagate the scope to child tasks.
+     *
+     * @param task task to wrap
+     * @return wrapped task. The given task itself if not in a scope.
+     */
+    public static Runnable wrap(final Runnable task) {
+        final QueryCountScope scope = current();
+        if (scope == null) {
+            return task;
+        }
+        return new Runnable() {
+            @Override
+            public void run() {
+                scope.run(task);
+            }
+        };
+    }
+
+    /**
+     * Wrap the task to execute in the current scope. Used to propagate the scope to child tasks.
+     *
+     * @param task task to wrap
+     * @param <T>  result type
+     * @return wrapped task. The given task itself if not in a scope.
+     */
+    public static <T> Callable<T> wrap(final Callable<T> task) {
+        final QueryCountScope scope = current();
+        if (scope == null) {
+            return task;
+        }
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return scope.call(task);
+            }
+        };
+    }
+
+    /**
+     * Run the task with this scope bound.
+     *
+     * @param task task to run
+     */
+    public void run(Runnable task) {
+        if (ScopedValueSupport.run(this, task)) {
+            return;
+        }
+        Binding previous = CURRENT.get();
+        CURRENT.set(new Binding(this, previous, null));
+        try {
+            task.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Call the task with this scope bound.
+     *
+     * @param task task to call
+     * @param <T>  result type
+     * @return result of the task
+     * @throws Exception thrown by the task
+     */
+    public <T> T call(final Callable<T> task) throws Exception {
+        final List<T> result = new ArrayList<T>(1);
+        final Exception[] thrown = new Exception[1];
+        run(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result.add(task.call());
+                } catch (RuntimeException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    thrown[0] = ex;
+                }
+            }
+        });
+        if (thrown[0] != null) {
+            throw thrown[0];
+        }
+        return result.get(0);
+    }
+
+    /**
+     * Unbind this scope opened by {@link #open()} and restore the previous scope.
+     *
+     * <p>When called on a thread other than the one that opened this scope, or while a scope opened later is still
+     * open, the binding is marked as closed and discarded by the opening thread on its next lookup.
+     */
+    @Override
+    public void close() {
+        Binding binding = this.binding;
+        if (binding == null) {
+            return;
+        }
+        this.binding = null;
+        binding.closed = true;
+        if (CURRENT.get() == binding) {
+            currentBinding();
+        }
+    }
+
+    private static void restore(Binding previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public QueryCount getOrCreateQueryCount(String dataSourceName) {
+        QueryCount queryCount = this.queryCountMap.get(dataSourceName);
+        if (queryCount == null) {
+            QueryCount newQueryCount = new QueryCount();
+            queryCount = this.queryCountMap.putIfAbsent(dataSourceName, newQueryCount);
+            if (queryCount == null) {
+                queryCount = newQueryCount;
+            }
+        }
+        return queryCount;
+    }
+
+    /**
+     * @param dataSourceName datasource name
+     * @return query count or {@code null} when no query is executed for the datasource in this scope
+     */
+    public QueryCount getQueryCount(String dataSourceName) {
+        return this.queryCountMap.get(dataSourceName);
+    }
+
+    public Set<String> getDataSourceNames() {
+        return this.queryCountMap.keySet();
+    }
+
+    public QueryCount getGrandTotal() {
+        QueryCount total = new QueryCount();
+        for (QueryCount queryCount : this.queryCountMap.values()) {
+            total.add(queryCount);
+        }
+        return total;
+    }
+
+    public void clear() {
+        this.queryCountMap.clear();
+    }
+
+    /**
+     * Store a value on this scope. Used by listeners to keep per-scope state.
+     *
+     * @param key   attribute key
+     * @param value value
+     * @param <T>   value type
+     */
+    public synchronized <T> void setAttribute(AttributeKey<T> key, T value) {
+        int index = key.getIndex();
+        if (this.attributes == null || this.attributes.length <= index) {
+            Object[] newAttributes = new Object[Math.max(index + 1, AttributeKey.size())];
+            if (this.attributes != null) {
+                System.arraycopy(this.attributes, 0, newAttributes, 0, this.attributes.length);
+            }
+            this.attributes = newAttributes;
+        }
+        this.attributes[index] = value;
+    }
+
+    /**
+     * @param key attribute key
+     * @param <T> value type
+     * @return stored value or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getAttribute(AttributeKey<T> key) {
+        int index = key.getIndex();
+        if (this.attributes == null || this.attributes.length <= index) {
+            return null;
+        }
+        return (T) this.attributes[index];
+    }
+
+    /**
+     * Binding of a scope to a thread by {@link #open()} or {@link #run(Runnable)}.
+     */
+    private static class Binding {
+
+        private final QueryCountScope scope;
+        private final Binding previous;
+        // scope bound by ScopedValue when this binding is created
+        private final QueryCountScope scopedValueScope;
+        private volatile boolean closed;
+
+        private Binding(QueryCountScope scope, Binding previous, QueryCountScope scopedValueScope) {
+            this.scope = scope;
+            this.previous = previous;
+            this.scopedValueScope = scopedValueScope;
+        }
+
+    }
+
+    /**
+     * Access {@code java.lang.ScopedValue} with method handles resolved once when it is available.
+     */
+    @IgnoreJRERequirement
+    static class ScopedValueSupport {
+
+        // returned by "orElse" when not bound
+        private static final Object UNBOUND = new Object();
+
+        // (Object)Object: ScopedValue.where(KEY, value)
+        private static final MethodHandle WHERE;
+        // (Object,Runnable)void: Carrier#run(Runnable)
+        private static final MethodHandle RUN;
+        // (Object)Object: KEY.orElse(other)
+        private static final MethodHandle OR_ELSE;
+
+        // the scoped value is looked up only after it is used, to keep "current()" cheap otherwise
+        private static volatile boolean used;
+
+        static {
+            MethodHandle where = null;
+            MethodHandle run = null;
+            MethodHandle orElse = null;
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                Class<?> scopedValueClass = Class.forName("java.lang.ScopedValue");
+                Class<?> carrierClass = Class.forName("java.lang.ScopedValue$Carrier");
+                Object key = scopedValueClass.getMethod("newInstance").invoke(null);
+                where = lookup.findStatic(scopedValueClass, "where", MethodType.methodType(carrierClass, scopedValueClass, Object.class))
+                        .bindTo(key).asType(MethodType.methodType(Object.class, Object.class));
+                run = lookup.findVirtual(carrierClass, "run", MethodType.methodType(void.class, Runnable.class))
+                        .asType(MethodType.methodType(void.class, Object.class, Runnable.class));
+                orElse = lookup.findVirtual(scopedValueClass, "orElse", MethodType.methodType(Object.class, Object.class))
+                        .bindTo(key);
+
+                // probe. fails when it is a preview API and preview is not enabled
+                Object carrier = where.invokeExact((Object) new QueryCountScope());
+                run.invokeExact(carrier, (Runnable) new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                });
+            } catch (Throwable ex) {
+                where = null;
+            }
+            WHERE = where;
+            RUN = run;
+            OR_ELSE = orElse;
+        }
+
+        static boolean isAvailable() {
+            return WHERE != null;
+        }
+
+        static boolean run(QueryCountScope scope, Runnable task) {
+            if (WHERE == null) {
+                return false;
+            }
+            used = true;
+            try {
+                Object carrier = WHERE.invokeExact((Object) scope);
+                RUN.invokeExact(carrier, task);
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new DataSourceProxyException(ex);
+            }
+            return true;
+        }
+
+        static QueryCountScope current() {
+            if (!used) {
+                return null;
+            }
+            Object scope;
+            try {
+                scope = OR_ELSE.invokeExact(UNBOUND);
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new DataSourceProxyException(ex);
+            }
+            return scope == UNBOUND ? null : (QueryCountScope) scope;
+        }
+    }
+
+}
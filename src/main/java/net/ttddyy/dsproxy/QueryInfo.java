@@ -3,6 +3,7 @@ package net.ttddyy.dsproxy;
 import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,12 +15,19 @@ import java.util.Map;
  * For Prepared/Callable batch execution, there will be one QueryInfo with multiple elements in parameters.
  * For batch execution, single instance of this class represents each batch entry.
  *
+ * When {@link net.ttddyy.dsproxy.support.ProxyDataSourceBuilder#reuseExecutionInfo()} is enabled, instances and the
+ * list passed to listeners are reused by the statement proxy. Use {@link #retain()} or {@link #retainAll(List)} to keep
+ * them beyond {@link net.ttddyy.dsproxy.listener.QueryExecutionListener#afterQuery(ExecutionInfo, List)}.
+ *
  * @author Tadaya Tsuyukubo
  */
 public class QueryInfo {
     private String query;
 
-    private List<List<ParameterSetOperation>> parametersList = new ArrayList<List<ParameterSetOperation>>();
+    // list created by this instance. restored by "reset()" when the list is replaced by "setParametersList()"
+    private final List<List<ParameterSetOperation>> ownParametersList = new ArrayList<List<ParameterSetOperation>>();
+
+    private List<List<ParameterSetOperation>> parametersList = this.ownParametersList;
 
     public QueryInfo() {
     }
@@ -28,6 +36,51 @@ public class QueryInfo {
         this.query = query;
     }
 
+    /**
+     * Returns immutable snapshots of given {@link QueryInfo} list.
+     *
+     * @param queryInfoList list of query info
+     * @return unmodifiable list of retained query info
+     * @see #retain()
+     * @since 1.11
+     */
+    public static List<QueryInfo> retainAll(List<QueryInfo> queryInfoList) {
+        List<QueryInfo> retained = new ArrayList<QueryInfo>(queryInfoList.size());
+        for (QueryInfo queryInfo : queryInfoList) {
+            retained.add(queryInfo.retain());
+        }
+        return Collections.unmodifiableList(retained);
+    }
+
+    /**
+     * Re-initialize this instance for a new execution.
+     *
+     * <p>A list set by {@link #setParametersList(List)}, which may be unmodifiable, is not cleared but replaced by the
+     * list of this instance.
+     *
+     * @param query query string
+     * @since 1.11
+     */
+    public void reset(String query) {
+        this.query = query;
+        this.ownParametersList.clear();
+        this.parametersList = this.ownParametersList;
+    }
+
+    /**
+     * Returns an immutable snapshot of this query info.
+     *
+     * @return immutable copy of this query info
+     * @since 1.11
+     */
+    public QueryInfo retain() {
+        List<List<ParameterSetOperation>> params = new ArrayList<List<ParameterSetOperation>>(this.parametersList.size());
+        for (List<ParameterSetOperation> operations : this.parametersList) {
+            params.add(Collections.unmodifiableList(new ArrayList<ParameterSetOperation>(operations)));
+        }
+        return new RetainedQueryInfo(this.query, Collections.unmodifiableList(params));
+    }
+
     public String getQuery() {
         return query;
     }
@@ -77,4 +130,39 @@ public class QueryInfo {
     public void setParametersList(List<List<ParameterSetOperation>> parametersList) {
         this.parametersList = parametersList;
     }
+
+    /**
+     * Immutable snapshot returned by {@link QueryInfo#retain()}.
+     */
+    private static class RetainedQueryInfo extends QueryInfo {
+
+        private RetainedQueryInfo(String query, List<List<ParameterSetOperation>> parametersList) {
+            super(query);
+            super.setParametersList(parametersList);
+        }
+
+        @Override
+        public QueryInfo retain() {
+            return this;
+        }
+
+        @Override
+        public void reset(String query) {
+            throw immutable();
+        }
+
+        @Override
+        public void setQuery(String query) {
+            throw immutable();
+        }
+
+        @Override
+        public void setParametersList(List<List<ParameterSetOperation>> parametersList) {
+            throw immutable();
+        }
+
+        private UnsupportedOperationException immutable() {
+            return new UnsupportedOperationException("Retained QueryInfo is immutable");
+        }
+    }
 }
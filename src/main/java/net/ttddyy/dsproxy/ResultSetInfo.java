@@ -0,0 +1,86 @@
+package net.ttddyy.dsproxy;
+
+/**
+ * Iteration metrics of a {@link java.sql.ResultSet}, reported when it is closed.
+ *
+ * All times are in nanoseconds.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see net.ttddyy.dsproxy.listener.ResultSetCompletionListener
+ * @since 1.11
+ */
+public class ResultSetInfo {
+
+    private final ConnectionInfo connectionInfo;
+    private final String query;
+    private final String fingerprint;
+    private final long rowCount;
+    private final long nextTime;
+    private final long timeToFirstRow;
+    private final long openDuration;
+
+    public ResultSetInfo(ConnectionInfo connectionInfo, String query, String fingerprint, long rowCount,
+                         long nextTime, long timeToFirstRow, long openDuration) {
+        this.connectionInfo = connectionInfo;
+        this.query = query;
+        this.fingerprint = fingerprint;
+        this.rowCount = rowCount;
+        this.nextTime = nextTime;
+        this.timeToFirstRow = timeToFirstRow;
+        this.openDuration = openDuration;
+    }
+
+    public ConnectionInfo getConnectionInfo() {
+        return this.connectionInfo;
+    }
+
+    /**
+     * @return originating query, or {@code null} when unknown
+     */
+    public String getQuery() {
+        return this.query;
+    }
+
+    /**
+     * @return fingerprint of the originating query(see {@link net.ttddyy.dsproxy.listener.QueryUtils#fingerprint(String)}),
+     * or {@code null} when unknown
+     */
+    public String getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * @return num of rows returned by {@code next()}
+     */
+    public long getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * @return accumulated time spent in {@code next()}
+     */
+    public long getNextTime() {
+        return this.nextTime;
+    }
+
+    /**
+     * @return time from opening the result set until the first row is fetched, or {@code -1} when no row is fetched
+     */
+    public long getTimeToFirstRow() {
+        return this.timeToFirstRow;
+    }
+
+    /**
+     * @return time from opening until closing the result set
+     */
+    public long getOpenDuration() {
+        return this.openDuration;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultSetInfo[fingerprint=" + this.fingerprint + ", rows=" + this.rowCount + ", nextTime=" + this.nextTime
+                + ", timeToFirstRow=" + this.timeToFirstRow + ", openDuration=" + this.openDuration + "]";
+    }
+
+}
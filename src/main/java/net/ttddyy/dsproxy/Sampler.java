@@ -0,0 +1,47 @@
+package net.ttddyy.dsproxy;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deterministic sampler to select a fraction of events.
+ *
+ * Each call to {@link #sample()} counts an event, and the event is selected when the count scaled by the rate crosses
+ * an integer boundary. With rate {@code 0.1}, every 10th event is selected.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class Sampler {
+
+    private final double rate;
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * @param rate fraction of events to select, from {@code 0.0} to {@code 1.0}
+     * @throws IllegalArgumentException if the rate is out of range
+     */
+    public Sampler(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("rate must be between 0.0 and 1.0: " + rate);
+        }
+        this.rate = rate;
+    }
+
+    /**
+     * Count an event and decide whether to select it.
+     *
+     * @return {@code true} if the event is selected
+     */
+    public boolean sample() {
+        if (this.rate >= 1.0) {
+            return true;
+        }
+        long count = this.counter.incrementAndGet();
+        return (long) (count * this.rate) != (long) ((count - 1) * this.rate);
+    }
+
+    public double getRate() {
+        return this.rate;
+    }
+
+}
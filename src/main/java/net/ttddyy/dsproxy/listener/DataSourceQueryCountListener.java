@@ -4,6 +4,7 @@ import net.ttddyy.dsproxy.ExecutionInfo;
 import net.ttddyy.dsproxy.QueryCount;
 import net.ttddyy.dsproxy.QueryInfo;
 import net.ttddyy.dsproxy.QueryType;
+import net.ttddyy.dsproxy.proxy.ResultCache;
 
 import java.util.List;
 
@@ -53,6 +54,12 @@ public class DataSourceQueryCountListener implements QueryExecutionListener {
 
         QueryCount count = this.queryCountStrategy.getOrCreateQueryCount(dataSourceName);
 
+        // result served from the cache is not a database call
+        if (execInfo.getAttribute(ResultCache.CACHE_HIT) != null) {
+            count.incrementCacheHit();
+            return;
+        }
+
         // increment db call
         count.incrementTotal();
         if (execInfo.isSuccess()) {
@@ -102,7 +102,7 @@ public class MethodExecutionContext {
     private ConnectionInfo connectionInfo;
     private ProxyConfig proxyConfig;
     private Object proxy;
-    private Map<String, Object> customValues = new HashMap<String, Object>();
+    private Map<String, Object> customValues;  // lazily created
 
     public Object getTarget() {
         return target;
@@ -223,6 +223,9 @@ public class MethodExecutionContext {
      * @since 1.5.1
      */
     public void addCustomValue(String key, Object value) {
+        if (this.customValues == null) {
+            this.customValues = new HashMap<String, Object>();
+        }
         this.customValues.put(key, value);
     }
 
@@ -230,6 +233,9 @@ public class MethodExecutionContext {
      * @since 1.5.1
      */
     public <T> T getCustomValue(String key, Class<T> type) {
+        if (this.customValues == null) {
+            return null;
+        }
         return type.cast(this.customValues.get(key));
     }
 
@@ -0,0 +1,216 @@
+package net.ttddyy.dsproxy.listener;
+
+import net.ttddyy.dsproxy.AttributeKey;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryCountScope;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.Sampler;
+import net.ttddyy.dsproxy.proxy.StackTraceUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Listener to detect N+1 query patterns.
+ *
+ * Within a scope, this listener counts executions by query fingerprint(see {@link QueryUtils#fingerprint(String)}).
+ * When the same fingerprint, i.e. the same query only with different parameters or literals, is executed more than
+ * the threshold times, {@link #onRepeatedQuery(RepeatedQuery)} is called once for the fingerprint in the scope.
+ * Batch executions are not counted.
+ *
+ * <p>The scope is the current {@link QueryCountScope}, such as the request scope opened by query count logging
+ * servlet filters with <em>useQueryCountScope</em> or an explicitly opened scope. Queries executed outside of a scope
+ * are not tracked, unless {@link #setThreadScope(boolean) thread scope} is enabled. Then the current thread is the
+ * scope until {@link #resetThreadScope()} is called, which must be called at request boundaries on pooled threads.
+ *
+ * <p>Per scope state is bounded by {@link #setMaxFingerprints(int)}; least recently executed fingerprints are
+ * evicted. With {@link #setSampleRate(double)}, only the given ratio of scopes are tracked; the decision is made
+ * when a scope executes its first query, and for the thread scope, again after each {@link #resetThreadScope()}.
+ * The state is stored on the scope with an {@link AttributeKey} of each listener instance; listener instances count
+ * queries separately.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see RepeatedQuery
+ * @since 1.11
+ */
+public class NPlusOneQueryListener extends NoOpQueryExecutionListener {
+
+    private static final Logger LOGGER = Logger.getLogger(NPlusOneQueryListener.class.getName());
+
+    private static final ScopeState NOT_SAMPLED = new ScopeState(false, 0);
+
+    // per instance, so that listeners with different settings or data sources do not share counters in a scope
+    private final AttributeKey<ScopeState> stateKey = AttributeKey.create("nPlusOneQueryState", ScopeState.class);
+
+    private final ThreadLocal<ScopeState> threadState = new ThreadLocal<ScopeState>();
+
+    private int threshold = 10;
+    private int maxFingerprints = 256;
+    private volatile Sampler sampler = new Sampler(1.0);
+    private boolean threadScope;
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (execInfo.isBatch()) {
+            return;
+        }
+        ScopeState state = getScopeState();
+        if (state == null || !state.sampled) {
+            return;
+        }
+
+        for (QueryInfo queryInfo : queryInfoList) {
+            String fingerprint = QueryUtils.fingerprint(queryInfo.getQuery());
+            RepeatedQuery repeatedQuery = null;
+            synchronized (state) {
+                Counter counter = state.counters.get(fingerprint);
+                if (counter == null) {
+                    counter = new Counter();
+                    state.counters.put(fingerprint, counter);
+                }
+                counter.count++;
+                counter.totalElapsedTime += execInfo.getElapsedTime();
+                if (!counter.reported && counter.count > this.threshold) {
+                    counter.reported = true;
+                    repeatedQuery = new RepeatedQuery(execInfo.getDataSourceName(), fingerprint, counter.count,
+                            counter.totalElapsedTime, findCallSite());
+                }
+            }
+            if (repeatedQuery != null) {
+                onRepeatedQuery(repeatedQuery);
+            }
+        }
+    }
+
+    private ScopeState getScopeState() {
+        QueryCountScope scope = QueryCountScope.current();
+        if (scope != null) {
+            synchronized (scope) {
+                ScopeState state = scope.getAttribute(this.stateKey);
+                if (state == null) {
+                    state = createScopeState();
+                    scope.setAttribute(this.stateKey, state);
+                }
+                return state;
+            }
+        }
+        if (!this.threadScope) {
+            return null;
+        }
+        ScopeState state = this.threadState.get();
+        if (state == null) {
+            state = createScopeState();
+            this.threadState.set(state);
+        }
+        return state;
+    }
+
+    private ScopeState createScopeState() {
+        if (!this.sampler.sample()) {
+            return NOT_SAMPLED;
+        }
+        return new ScopeState(true, this.maxFingerprints);
+    }
+
+    private static StackTraceElement findCallSite() {
+        return StackTraceUtils.findCallSite(new Throwable().getStackTrace());
+    }
+
+    /**
+     * Callback when a query fingerprint exceeds the threshold in a scope.
+     *
+     * Default implementation writes a warning to {@code java.util.logging}.
+     *
+     * @param repeatedQuery repeated query
+     */
+    protected void onRepeatedQuery(RepeatedQuery repeatedQuery) {
+        LOGGER.warning("Possible N+1 query: " + repeatedQuery);
+    }
+
+    /**
+     * Discard the state of the thread scope for the current thread. The next query starts a new thread scope.
+     */
+    public void resetThreadScope() {
+        this.threadState.remove();
+    }
+
+    public int getThreshold() {
+        return this.threshold;
+    }
+
+    /**
+     * Set max num of executions of the same fingerprint allowed in a scope. Default is {@code 10}.
+     *
+     * @param threshold threshold
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getMaxFingerprints() {
+        return this.maxFingerprints;
+    }
+
+    /**
+     * Set max num of fingerprints tracked per scope. Default is {@code 256}.
+     *
+     * @param maxFingerprints max num of fingerprints
+     */
+    public void setMaxFingerprints(int maxFingerprints) {
+        this.maxFingerprints = maxFingerprints;
+    }
+
+    public double getSampleRate() {
+        return this.sampler.getRate();
+    }
+
+    /**
+     * Set ratio of scopes to track, from {@code 0.0} to {@code 1.0}. Default is {@code 1.0}.
+     *
+     * @param sampleRate sample rate
+     * @throws IllegalArgumentException if the rate is out of range
+     */
+    public void setSampleRate(double sampleRate) {
+        this.sampler = new Sampler(sampleRate);
+    }
+
+    public boolean isThreadScope() {
+        return this.threadScope;
+    }
+
+    /**
+     * Whether to use the current thread as scope when no {@link QueryCountScope} is active. Default is {@code false}.
+     * When enabled, call {@link #resetThreadScope()} at request boundaries; otherwise the state is kept on pooled
+     * threads and each fingerprint is reported only once per thread.
+     *
+     * @param threadScope {@code true} to track queries outside of {@link QueryCountScope}
+     */
+    public void setThreadScope(boolean threadScope) {
+        this.threadScope = threadScope;
+    }
+
+    private static class ScopeState {
+
+        private final boolean sampled;
+        private final Map<String, Counter> counters;
+
+        private ScopeState(boolean sampled, final int maxFingerprints) {
+            this.sampled = sampled;
+            this.counters = new LinkedHashMap<String, Counter>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Counter> eldest) {
+                    return size() > maxFingerprints;
+                }
+            };
+        }
+    }
+
+    private static class Counter {
+        private int count;
+        private long totalElapsedTime;
+        private boolean reported;
+    }
+
+}
@@ -52,4 +52,94 @@ public class QueryUtils {
         return type;
     }
 
+    /**
+     * Returns fingerprint of the given query.
+     *
+     * The fingerprint is computed in a single pass: comments are removed, consecutive whitespaces are collapsed into a
+     * single space, and string and numeric literals are replaced with {@code ?}. Queries that only differ by literal
+     * values or formatting have the same fingerprint.
+     *
+     * @param query a query string
+     * @return fingerprint. {@code null} when query is {@code null}.
+     * @since 1.11
+     */
+    public static String fingerprint(String query) {
+        if (query == null) {
+            return null;
+        }
+        final int length = query.length();
+        final StringBuilder sb = new StringBuilder(length);
+        boolean pendingSpace = false;
+        int i = 0;
+        while (i < length) {
+            char c = query.charAt(i);
+
+            // comments and whitespaces
+            if (c == '-' && i + 1 < length && query.charAt(i + 1) == '-') {
+                while (i < length && query.charAt(i) != '\n') {
+                    i++;
+                }
+                pendingSpace = true;
+                continue;
+            }
+            if (c == '/' && i + 1 < length && query.charAt(i + 1) == '*') {
+                int end = query.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                pendingSpace = true;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                i++;
+                continue;
+            }
+
+            if (pendingSpace && sb.length() > 0) {
+                sb.append(' ');
+            }
+            pendingSpace = false;
+
+            if (c == '\'') {
+                // string literal. '' is an escaped quote
+                i++;
+                while (i < length) {
+                    if (query.charAt(i) == '\'') {
+                        if (i + 1 < length && query.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                sb.append('?');
+            } else if (c == '"' || c == '`') {
+                // quoted identifier
+                int end = query.indexOf(c, i + 1);
+                end = end < 0 ? length : end + 1;
+                sb.append(query, i, end);
+                i = end;
+            } else if (Character.isDigit(c) && !isIdentifierPart(sb)) {
+                // numeric literal
+                while (i < length && (Character.isLetterOrDigit(query.charAt(i)) || query.charAt(i) == '.')) {
+                    i++;
+                }
+                sb.append('?');
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isIdentifierPart(StringBuilder sb) {
+        if (sb.length() == 0) {
+            return false;
+        }
+        char last = sb.charAt(sb.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+    }
+
 }
@@ -0,0 +1,61 @@
+package net.ttddyy.dsproxy.listener;
+
+/**
+ * Query fingerprint that is repeatedly executed in a scope. Reported by {@link NPlusOneQueryListener}.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see NPlusOneQueryListener
+ * @since 1.11
+ */
+public class RepeatedQuery {
+
+    private final String dataSourceName;
+    private final String fingerprint;
+    private final int count;
+    private final long totalElapsedTime;
+    private final StackTraceElement callSite;
+
+    public RepeatedQuery(String dataSourceName, String fingerprint, int count, long totalElapsedTime, StackTraceElement callSite) {
+        this.dataSourceName = dataSourceName;
+        this.fingerprint = fingerprint;
+        this.count = count;
+        this.totalElapsedTime = totalElapsedTime;
+        this.callSite = callSite;
+    }
+
+    public String getDataSourceName() {
+        return this.dataSourceName;
+    }
+
+    public String getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * @return num of executions in the scope at the time of the report
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * @return sum of {@link net.ttddyy.dsproxy.ExecutionInfo#getElapsedTime()} of the executions
+     */
+    public long getTotalElapsedTime() {
+        return this.totalElapsedTime;
+    }
+
+    /**
+     * @return first application frame that executed the query which exceeded the threshold, or {@code null}
+     */
+    public StackTraceElement getCallSite() {
+        return this.callSite;
+    }
+
+    @Override
+    public String toString() {
+        return "RepeatedQuery[dataSource=" + this.dataSourceName + ", count=" + this.count
+                + ", totalElapsedTime=" + this.totalElapsedTime + ", callSite=" + this.callSite
+                + ", fingerprint=" + this.fingerprint + "]";
+    }
+}
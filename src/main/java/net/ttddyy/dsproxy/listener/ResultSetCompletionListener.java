@@ -0,0 +1,21 @@
+package net.ttddyy.dsproxy.listener;
+
+import net.ttddyy.dsproxy.ResultSetInfo;
+
+/**
+ * Callback for closed {@link java.sql.ResultSet} with its iteration metrics.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see net.ttddyy.dsproxy.proxy.MetricsResultSetProxyLogicFactory
+ * @since 1.11
+ */
+public interface ResultSetCompletionListener {
+
+    /**
+     * Called when a result set is closed.
+     *
+     * @param resultSetInfo iteration metrics of the result set
+     */
+    void onComplete(ResultSetInfo resultSetInfo);
+
+}
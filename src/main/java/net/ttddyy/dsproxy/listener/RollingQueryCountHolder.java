@@ -0,0 +1,217 @@
+package net.ttddyy.dsproxy.listener;
+
+import net.ttddyy.dsproxy.QueryCount;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link QueryCountStrategy} that keeps {@link QueryCount} in a ring of fixed-time buckets per data source.
+ *
+ * <p>Time is split into buckets of the given duration(e.g. 60 buckets of 1 second), and
+ * {@link #getOrCreateQueryCount(String)} returns the {@link QueryCount} of the current bucket. Buckets are rotated
+ * lazily when they are accessed; no background thread is used.
+ * Each bucket is striped into multiple {@link QueryCount}s selected by the calling thread to reduce contention.
+ *
+ * <p>{@link #getWindowTotal(String)} and {@link #getRate(String)} aggregate the buckets within the window.
+ *
+ * <pre>
+ * {@code
+ * RollingQueryCountHolder holder = new RollingQueryCountHolder(60, 1, TimeUnit.SECONDS);
+ * DataSource ds = ProxyDataSourceBuilder.create(actual).countQuery(holder).build();
+ * ...
+ * double queriesPerSecond = holder.getRate("myDS");
+ * }
+ * </pre>
+ *
+ * @author Tadaya Tsuyukubo
+ * @see DataSourceQueryCountListener
+ * @since 1.11
+ */
+public class RollingQueryCountHolder implements QueryCountStrategy {
+
+    private final int bucketCount;
+    private final long bucketDurationNanos;
+    private final int stripeMask;
+
+    private final ConcurrentMap<String, AtomicReferenceArray<Bucket>> windows = new ConcurrentHashMap<String, AtomicReferenceArray<Bucket>>();
+
+    /**
+     * Create a holder with 60 buckets of 1 second.
+     */
+    public RollingQueryCountHolder() {
+        this(60, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param bucketCount    num of buckets in the window
+     * @param bucketDuration duration of a bucket
+     * @param timeUnit       time unit of bucket duration
+     */
+    public RollingQueryCountHolder(int bucketCount, long bucketDuration, TimeUnit timeUnit) {
+        if (bucketCount < 1 || bucketDuration < 1) {
+            throw new IllegalArgumentException("bucketCount and bucketDuration must be positive");
+        }
+        this.bucketCount = bucketCount;
+        this.bucketDurationNanos = timeUnit.toNanos(bucketDuration);
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        int stripes = Integer.highestOneBit(Math.max(1, Math.min(processors, 16)) * 2 - 1);  // next power of two
+        this.stripeMask = stripes - 1;
+    }
+
+    @Override
+    public QueryCount getOrCreateQueryCount(String dataSourceName) {
+        Bucket bucket = getCurrentBucket(getOrCreateWindow(dataSourceName));
+        // identity hash is stable per thread and cheap once computed; spread the high bits to the mask
+        int hash = System.identityHashCode(Thread.currentThread());
+        int stripe = (hash ^ (hash >>> 16)) & this.stripeMask;
+        return bucket.stripes[stripe];
+    }
+
+    private AtomicReferenceArray<Bucket> getOrCreateWindow(String dataSourceName) {
+        AtomicReferenceArray<Bucket> window = this.windows.get(dataSourceName);
+        if (window == null) {
+            AtomicReferenceArray<Bucket> newWindow = new AtomicReferenceArray<Bucket>(this.bucketCount);
+            window = this.windows.putIfAbsent(dataSourceName, newWindow);
+            if (window == null) {
+                window = newWindow;
+            }
+        }
+        return window;
+    }
+
+    private Bucket getCurrentBucket(AtomicReferenceArray<Bucket> window) {
+        long epoch = currentEpoch();
+        int index = (int) (((epoch % this.bucketCount) + this.bucketCount) % this.bucketCount);
+        while (true) {
+            Bucket bucket = window.get(index);
+            if (bucket != null && bucket.epoch >= epoch) {
+                return bucket;  // current bucket, or already rotated by a thread that read a newer time
+            }
+            // rotate the stale bucket
+            Bucket newBucket = new Bucket(epoch, this.stripeMask + 1);
+            if (window.compareAndSet(index, bucket, newBucket)) {
+                return newBucket;
+            }
+        }
+    }
+
+    /**
+     * Returns accumulated {@link QueryCount} of the buckets within the window.
+     *
+     * @param dataSourceName data source name
+     * @return a new {@link QueryCount} with accumulated values
+     */
+    public QueryCount getWindowTotal(String dataSourceName) {
+        return getTotal(dataSourceName, this.bucketCount);
+    }
+
+    /**
+     * Returns accumulated {@link QueryCount} of the recent buckets.
+     *
+     * @param dataSourceName data source name
+     * @param buckets        num of recent buckets including the current one
+     * @return a new {@link QueryCount} with accumulated values
+     */
+    public QueryCount getTotal(String dataSourceName, int buckets) {
+        QueryCount total = new QueryCount();
+        AtomicReferenceArray<Bucket> window = this.windows.get(dataSourceName);
+        if (window == null) {
+            return total;
+        }
+        long currentEpoch = currentEpoch();
+        long oldestEpoch = currentEpoch - Math.min(buckets, this.bucketCount) + 1;
+        for (int i = 0; i < this.bucketCount; i++) {
+            Bucket bucket = window.get(i);
+            if (bucket != null && bucket.epoch >= oldestEpoch && bucket.epoch <= currentEpoch) {
+                for (QueryCount stripe : bucket.stripes) {
+                    total.add(stripe);
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns num of queries per second over the window.
+     *
+     * <p>The current bucket is counted as a full bucket, so the rate is slightly underestimated right after a bucket
+     * is rotated.
+     *
+     * @param dataSourceName data source name
+     * @return queries per second
+     */
+    public double getRate(String dataSourceName) {
+        return getRate(dataSourceName, this.bucketCount);
+    }
+
+    /**
+     * Returns num of queries per second over the recent buckets.
+     *
+     * @param dataSourceName data source name
+     * @param buckets        num of recent buckets including the current one
+     * @return queries per second
+     */
+    public double getRate(String dataSourceName, int buckets) {
+        int actualBuckets = Math.min(buckets, this.bucketCount);
+        long total = getTotal(dataSourceName, actualBuckets).getTotal();
+        double seconds = (double) this.bucketDurationNanos * actualBuckets / TimeUnit.SECONDS.toNanos(1);
+        return total / seconds;
+    }
+
+    /**
+     * @return data source names that have recorded queries
+     */
+    public Set<String> getDataSourceNames() {
+        return new HashSet<String>(this.windows.keySet());
+    }
+
+    /**
+     * Window duration.
+     *
+     * @param timeUnit time unit
+     * @return duration of the window
+     */
+    public long getWindowDuration(TimeUnit timeUnit) {
+        return timeUnit.convert(this.bucketDurationNanos * this.bucketCount, TimeUnit.NANOSECONDS);
+    }
+
+    public void clear() {
+        this.windows.clear();
+    }
+
+    private long currentEpoch() {
+        long now = currentTimeNanos();
+        // floor division since nanoTime can be negative
+        return now >= 0 ? now / this.bucketDurationNanos : -((-now + this.bucketDurationNanos - 1) / this.bucketDurationNanos);
+    }
+
+    /**
+     * Current time in nanoseconds. Only the difference between values is meaningful.
+     *
+     * @return current time
+     */
+    protected long currentTimeNanos() {
+        return System.nanoTime();
+    }
+
+    private static class Bucket {
+
+        private final long epoch;
+        private final QueryCount[] stripes;
+
+        private Bucket(long epoch, int stripeCount) {
+            this.epoch = epoch;
+            this.stripes = new QueryCount[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                this.stripes[i] = new QueryCount();
+            }
+        }
+    }
+
+}
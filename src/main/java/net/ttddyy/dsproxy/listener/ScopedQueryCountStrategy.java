@@ -0,0 +1,52 @@
+package net.ttddyy.dsproxy.listener;
+
+import net.ttddyy.dsproxy.QueryCount;
+import net.ttddyy.dsproxy.QueryCountScope;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Uses {@link QueryCountScope} to hold {@link QueryCount}.
+ *
+ * <p>Queries executed within a scope are counted in the scope. Queries executed outside of any scope are counted in
+ * a shared {@link QueryCount} retrievable by {@link #getUnscopedQueryCount(String)}.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see QueryCountScope
+ * @since 1.11
+ */
+public class ScopedQueryCountStrategy implements QueryCountStrategy {
+
+    private final ConcurrentMap<String, QueryCount> unscoped = new ConcurrentHashMap<String, QueryCount>();
+
+    @Override
+    public QueryCount getOrCreateQueryCount(String dataSourceName) {
+        QueryCountScope scope = QueryCountScope.current();
+        if (scope != null) {
+            return scope.getOrCreateQueryCount(dataSourceName);
+        }
+        QueryCount queryCount = this.unscoped.get(dataSourceName);
+        if (queryCount == null) {
+            QueryCount newQueryCount = new QueryCount();
+            queryCount = this.unscoped.putIfAbsent(dataSourceName, newQueryCount);
+            if (queryCount == null) {
+                queryCount = newQueryCount;
+            }
+        }
+        return queryCount;
+    }
+
+    /**
+     * @param dataSourceName datasource name
+     * @return query count of queries executed outside of any scope, or {@code null}
+     */
+    public QueryCount getUnscopedQueryCount(String dataSourceName) {
+        return this.unscoped.get(dataSourceName);
+    }
+
+    public void clearUnscoped() {
+        this.unscoped.clear();
+    }
+
+}
@@ -0,0 +1,32 @@
+package net.ttddyy.dsproxy.listener.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+/**
+ * JFR event for {@code DataSource#getConnection()}.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see JfrMethodExecutionListener
+ * @since 1.11
+ */
+@Name("net.ttddyy.dsproxy.ConnectionAcquire")
+@Label("Connection Acquire")
+@Category("datasource-proxy")
+@Description("Connection acquisition from the data source")
+@IgnoreJRERequirement
+public class ConnectionAcquireEvent extends jdk.jfr.Event {
+
+    @Label("Data Source")
+    String dataSourceName;
+
+    @Label("Connection ID")
+    String connectionId;
+
+    @Label("Success")
+    boolean success;
+
+}
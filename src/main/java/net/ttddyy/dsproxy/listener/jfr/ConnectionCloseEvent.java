@@ -0,0 +1,35 @@
+package net.ttddyy.dsproxy.listener.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+/**
+ * JFR event for {@code Connection#close()}.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see JfrMethodExecutionListener
+ * @since 1.11
+ */
+@Name("net.ttddyy.dsproxy.ConnectionClose")
+@Label("Connection Close")
+@Category("datasource-proxy")
+@Description("Connection close")
+@IgnoreJRERequirement
+public class ConnectionCloseEvent extends jdk.jfr.Event {
+
+    @Label("Data Source")
+    String dataSourceName;
+
+    @Label("Connection ID")
+    String connectionId;
+
+    @Label("Commit Count")
+    int commitCount;
+
+    @Label("Rollback Count")
+    int rollbackCount;
+
+}
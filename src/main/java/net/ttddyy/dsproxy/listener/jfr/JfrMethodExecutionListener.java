@@ -0,0 +1,154 @@
+package net.ttddyy.dsproxy.listener.jfr;
+
+import jdk.jfr.EventType;
+import net.ttddyy.dsproxy.ConnectionInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * {@link MethodExecutionListener} that emits JDK Flight Recorder events for connection and result set lifecycle.
+ *
+ * <ul>
+ * <li>{@link ConnectionAcquireEvent}: {@code DataSource#getConnection()}
+ * <li>{@link ConnectionCloseEvent}: {@code Connection#close()}
+ * <li>{@link ResultSetIterationEvent}: from the first {@code ResultSet#next()} until it returns {@code false} or the
+ * result set is closed. Requires result set proxy to be enabled.
+ * </ul>
+ *
+ * When an event is disabled in the recording settings, no event object is created and no string values are computed
+ * for it. In-progress result set iterations are tracked per thread without locking; a result set closed on another
+ * thread than the one iterating it does not report the iteration.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see JfrQueryExecutionListener
+ * @since 1.11
+ */
+@IgnoreJRERequirement
+public class JfrMethodExecutionListener implements MethodExecutionListener {
+
+    private static final String ACQUIRE_EVENT_KEY = JfrMethodExecutionListener.class.getName() + ".acquire";
+
+    private static final EventType ACQUIRE_EVENT_TYPE = EventType.getEventType(ConnectionAcquireEvent.class);
+    private static final EventType CLOSE_EVENT_TYPE = EventType.getEventType(ConnectionCloseEvent.class);
+    private static final EventType ITERATION_EVENT_TYPE = EventType.getEventType(ResultSetIterationEvent.class);
+
+    // in-progress iterations of the current thread keyed by the actual ResultSet. created when an iteration starts.
+    private final ThreadLocal<Map<ResultSet, ResultSetIterationEvent>> iterations =
+            new ThreadLocal<Map<ResultSet, ResultSetIterationEvent>>();
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+        Object target = executionContext.getTarget();
+        if (target instanceof DataSource && ACQUIRE_EVENT_TYPE.isEnabled()
+                && "getConnection".equals(executionContext.getMethod().getName())) {
+            ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+            event.begin();
+            executionContext.addCustomValue(ACQUIRE_EVENT_KEY, event);
+        }
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        Object target = executionContext.getTarget();
+        String methodName = executionContext.getMethod().getName();
+        if (target instanceof ResultSet) {
+            if ("next".equals(methodName)) {
+                onNext((ResultSet) target, executionContext);
+            } else if ("close".equals(methodName)) {
+                Map<ResultSet, ResultSetIterationEvent> iterations = this.iterations.get();
+                ResultSetIterationEvent event = iterations != null ? iterations.remove(target) : null;
+                if (event != null) {
+                    commit(event, executionContext.getConnectionInfo());
+                }
+            }
+        } else if (target instanceof Connection) {
+            if ("close".equals(methodName)) {
+                onConnectionClose(executionContext);
+            }
+        } else if (target instanceof DataSource) {
+            ConnectionAcquireEvent event = executionContext.getCustomValue(ACQUIRE_EVENT_KEY, ConnectionAcquireEvent.class);
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    ConnectionInfo connectionInfo = executionContext.getConnectionInfo();
+                    if (connectionInfo != null) {
+                        event.dataSourceName = connectionInfo.getDataSourceName();
+                        event.connectionId = connectionInfo.getConnectionId();
+                    }
+                    event.success = executionContext.getThrown() == null;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    private void onNext(ResultSet resultSet, MethodExecutionContext executionContext) {
+        if (!ITERATION_EVENT_TYPE.isEnabled()) {
+            return;
+        }
+        Map<ResultSet, ResultSetIterationEvent> iterations = this.iterations.get();
+        if (iterations == null) {
+            iterations = new WeakHashMap<ResultSet, ResultSetIterationEvent>();
+            this.iterations.set(iterations);
+        }
+        ResultSetIterationEvent event = iterations.get(resultSet);
+        if (event == null) {
+            event = new ResultSetIterationEvent();
+            event.begin();
+            iterations.put(resultSet, event);
+        }
+
+        if (Boolean.TRUE.equals(executionContext.getResult())) {
+            event.rows++;
+        } else {
+            iterations.remove(resultSet);
+            commit(event, executionContext.getConnectionInfo());
+        }
+    }
+
+    /**
+     * @return num of in-progress result set iterations of the current thread
+     */
+    int getIterationCount() {
+        Map<ResultSet, ResultSetIterationEvent> iterations = this.iterations.get();
+        return iterations != null ? iterations.size() : 0;
+    }
+
+    private void commit(ResultSetIterationEvent event, ConnectionInfo connectionInfo) {
+        event.end();
+        if (event.shouldCommit()) {
+            if (connectionInfo != null) {
+                event.dataSourceName = connectionInfo.getDataSourceName();
+                event.connectionId = connectionInfo.getConnectionId();
+            }
+            event.commit();
+        }
+    }
+
+    private void onConnectionClose(MethodExecutionContext executionContext) {
+        if (!CLOSE_EVENT_TYPE.isEnabled()) {
+            return;
+        }
+        ConnectionCloseEvent event = new ConnectionCloseEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        // the event represents the point of close
+        ConnectionInfo connectionInfo = executionContext.getConnectionInfo();
+        if (connectionInfo != null) {
+            event.dataSourceName = connectionInfo.getDataSourceName();
+            event.connectionId = connectionInfo.getConnectionId();
+            event.commitCount = connectionInfo.getCommitCount();
+            event.rollbackCount = connectionInfo.getRollbackCount();
+        }
+        event.commit();
+    }
+
+}
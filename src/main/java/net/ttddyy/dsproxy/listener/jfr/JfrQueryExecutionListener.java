@@ -0,0 +1,99 @@
+package net.ttddyy.dsproxy.listener.jfr;
+
+import jdk.jfr.EventType;
+import net.ttddyy.dsproxy.AttributeKey;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+import java.util.List;
+
+/**
+ * {@link QueryExecutionListener} that emits {@link QueryExecutionEvent} to JDK Flight Recorder.
+ *
+ * When the event is disabled in the recording settings, this listener does not create the event object nor compute the
+ * query fingerprint or any other string values.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see JfrMethodExecutionListener
+ * @since 1.11
+ */
+@IgnoreJRERequirement
+public class JfrQueryExecutionListener implements QueryExecutionListener {
+
+    private static final AttributeKey<QueryExecutionEvent> EVENT_KEY =
+            AttributeKey.create("jfrQueryExecutionEvent", QueryExecutionEvent.class);
+
+    private static final EventType EVENT_TYPE = EventType.getEventType(QueryExecutionEvent.class);
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (!EVENT_TYPE.isEnabled()) {
+            return;
+        }
+        QueryExecutionEvent event = new QueryExecutionEvent();
+        event.begin();
+        execInfo.setAttribute(EVENT_KEY, event);
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        QueryExecutionEvent event = execInfo.getAttribute(EVENT_KEY);
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.dataSourceName = execInfo.getDataSourceName();
+        event.connectionId = execInfo.getConnectionId();
+        event.query = getQuery(queryInfoList);
+        event.statementType = execInfo.getStatementType() != null ? execInfo.getStatementType().name() : null;
+        event.batch = execInfo.isBatch();
+        event.batchSize = execInfo.getBatchSize();
+        event.rows = getRows(execInfo.getResult());
+        event.success = execInfo.isSuccess();
+        event.commit();
+    }
+
+    private static String getQuery(List<QueryInfo> queryInfoList) {
+        if (queryInfoList.size() == 1) {
+            return QueryUtils.fingerprint(queryInfoList.get(0).getQuery());
+        }
+        StringBuilder sb = new StringBuilder();
+        for (QueryInfo queryInfo : queryInfoList) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(QueryUtils.fingerprint(queryInfo.getQuery()));
+        }
+        return sb.toString();
+    }
+
+    private static long getRows(Object result) {
+        if (result instanceof Integer || result instanceof Long) {
+            return ((Number) result).longValue();
+        } else if (result instanceof int[]) {
+            long rows = 0;
+            for (int count : (int[]) result) {
+                if (count > 0) {
+                    rows += count;
+                }
+            }
+            return rows;
+        } else if (result instanceof long[]) {
+            long rows = 0;
+            for (long count : (long[]) result) {
+                if (count > 0) {
+                    rows += count;
+                }
+            }
+            return rows;
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,49 @@
+package net.ttddyy.dsproxy.listener.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+/**
+ * JFR event for a query execution.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see JfrQueryExecutionListener
+ * @since 1.11
+ */
+@Name("net.ttddyy.dsproxy.QueryExecution")
+@Label("Query Execution")
+@Category("datasource-proxy")
+@Description("Query execution through datasource-proxy")
+@IgnoreJRERequirement
+public class QueryExecutionEvent extends jdk.jfr.Event {
+
+    @Label("Data Source")
+    String dataSourceName;
+
+    @Label("Connection ID")
+    String connectionId;
+
+    @Label("Query")
+    @Description("Query fingerprint. Literals are replaced with '?'")
+    String query;
+
+    @Label("Statement Type")
+    String statementType;
+
+    @Label("Batch")
+    boolean batch;
+
+    @Label("Batch Size")
+    int batchSize;
+
+    @Label("Rows")
+    @Description("Num of updated rows. -1 when it is not an update")
+    long rows;
+
+    @Label("Success")
+    boolean success;
+
+}
@@ -0,0 +1,35 @@
+package net.ttddyy.dsproxy.listener.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+/**
+ * JFR event for {@code ResultSet} iteration.
+ *
+ * The event spans from the first {@code ResultSet#next()} call to the call that returns {@code false}, or to
+ * {@code ResultSet#close()}.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see JfrMethodExecutionListener
+ * @since 1.11
+ */
+@Name("net.ttddyy.dsproxy.ResultSetIteration")
+@Label("ResultSet Iteration")
+@Category("datasource-proxy")
+@Description("Iteration of a ResultSet")
+@IgnoreJRERequirement
+public class ResultSetIterationEvent extends jdk.jfr.Event {
+
+    @Label("Data Source")
+    String dataSourceName;
+
+    @Label("Connection ID")
+    String connectionId;
+
+    @Label("Rows")
+    long rows;
+
+}
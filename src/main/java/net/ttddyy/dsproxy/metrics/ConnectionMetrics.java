@@ -0,0 +1,190 @@
+package net.ttddyy.dsproxy.metrics;
+
+import net.ttddyy.dsproxy.ConnectionInfo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection lifecycle metrics for a data source.
+ *
+ * <p>When set to {@link net.ttddyy.dsproxy.proxy.ProxyConfig}, the proxy records following values into
+ * {@link Histogram}s. All durations are in nanoseconds.
+ * <ul>
+ * <li>acquire time: time spent in {@code DataSource#getConnection()}
+ * <li>hold time: time from acquisition to {@code Connection#close()}
+ * <li>transaction time: time from the first statement in a transaction(auto-commit disabled) to
+ * {@code commit()}, {@code rollback()}, enabling auto-commit, or {@code close()}
+ * <li>idle time: time between the end of a statement execution and the start of the next one on the same connection
+ * <li>statements per connection: num of statement executions recorded when the connection is closed
+ * </ul>
+ *
+ * <p>Since a {@link net.ttddyy.dsproxy.proxy.ProxyConfig} represents a data source, one instance is used per data
+ * source.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see net.ttddyy.dsproxy.support.ProxyDataSourceBuilder#connectionMetrics()
+ * @since 1.11
+ */
+public class ConnectionMetrics {
+
+    private final Histogram acquireTime = new Histogram();
+    private final Histogram holdTime = new Histogram();
+    private final Histogram transactionTime = new Histogram();
+    private final Histogram idleTime = new Histogram();
+    private final Histogram statementsPerConnection = new Histogram();
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong open = new AtomicLong();
+
+    /**
+     * Callback when a connection is acquired from the data source.
+     *
+     * @param connectionInfo   connection info
+     * @param acquireStartTime {@link System#nanoTime()} before calling {@code getConnection()}
+     */
+    public void onAcquire(ConnectionInfo connectionInfo, long acquireStartTime) {
+        long now = System.nanoTime();
+        this.acquireTime.record(now - acquireStartTime);
+        this.acquired.incrementAndGet();
+        this.open.incrementAndGet();
+
+        connectionInfo.setAcquireTime(now);
+    }
+
+    /**
+     * Callback before a statement execution.
+     *
+     * <p>Auto-commit mode is taken from {@link ConnectionInfo#isAutoCommit()}. The statement proxy retrieves it from
+     * the connection once when it is not known yet.
+     *
+     * @param connectionInfo connection info
+     */
+    public void beforeStatement(ConnectionInfo connectionInfo) {
+        long now = System.nanoTime();
+        long lastStatementEndTime = connectionInfo.getLastStatementEndTime();
+        if (lastStatementEndTime != 0) {
+            this.idleTime.record(now - lastStatementEndTime);
+        }
+        if (!connectionInfo.isAutoCommit() && connectionInfo.getTransactionStartTime() == 0) {
+            connectionInfo.setTransactionStartTime(now);
+        }
+    }
+
+    /**
+     * Callback after a statement execution.
+     *
+     * @param connectionInfo connection info
+     */
+    public void afterStatement(ConnectionInfo connectionInfo) {
+        connectionInfo.setLastStatementEndTime(System.nanoTime());
+        connectionInfo.incrementStatementCount();
+    }
+
+    /**
+     * Callback when auto-commit mode is changed.
+     *
+     * <p>The mode itself is recorded on {@link ConnectionInfo} by the connection proxy; this callback only ends the
+     * transaction time.
+     *
+     * @param connectionInfo connection info
+     * @param autoCommit     new auto-commit mode
+     */
+    public void onAutoCommitChange(ConnectionInfo connectionInfo, boolean autoCommit) {
+        if (autoCommit) {
+            // enabling auto-commit commits the current transaction
+            endTransaction(connectionInfo);
+        }
+    }
+
+    /**
+     * Callback when {@code commit()} or {@code rollback()} is called.
+     *
+     * @param connectionInfo connection info
+     */
+    public void onTransactionEnd(ConnectionInfo connectionInfo) {
+        endTransaction(connectionInfo);
+    }
+
+    /**
+     * Callback when the connection is closed.
+     *
+     * @param connectionInfo connection info
+     */
+    public void onClose(ConnectionInfo connectionInfo) {
+        endTransaction(connectionInfo);
+
+        long acquireTime = connectionInfo.getAcquireTime();
+        if (acquireTime != 0) {
+            this.holdTime.record(System.nanoTime() - acquireTime);
+        }
+        this.statementsPerConnection.record(connectionInfo.getStatementCount());
+        this.closed.incrementAndGet();
+        this.open.decrementAndGet();
+    }
+
+    private void endTransaction(ConnectionInfo connectionInfo) {
+        long transactionStartTime = connectionInfo.getTransactionStartTime();
+        if (transactionStartTime != 0) {
+            this.transactionTime.record(System.nanoTime() - transactionStartTime);
+            connectionInfo.setTransactionStartTime(0);
+        }
+    }
+
+    public Histogram getAcquireTime() {
+        return this.acquireTime;
+    }
+
+    public Histogram getHoldTime() {
+        return this.holdTime;
+    }
+
+    public Histogram getTransactionTime() {
+        return this.transactionTime;
+    }
+
+    public Histogram getIdleTime() {
+        return this.idleTime;
+    }
+
+    public Histogram getStatementsPerConnection() {
+        return this.statementsPerConnection;
+    }
+
+    /**
+     * @return num of acquired connections
+     */
+    public long getAcquiredCount() {
+        return this.acquired.get();
+    }
+
+    /**
+     * @return num of closed connections
+     */
+    public long getClosedCount() {
+        return this.closed.get();
+    }
+
+    /**
+     * Returns num of currently open connections. Unlike other values, this is not cleared by {@link #reset()}.
+     *
+     * @return num of open connections
+     */
+    public long getOpenCount() {
+        return this.open.get();
+    }
+
+    /**
+     * Reset all metrics except {@link #getOpenCount() open count}.
+     */
+    public void reset() {
+        this.acquireTime.reset();
+        this.holdTime.reset();
+        this.transactionTime.reset();
+        this.idleTime.reset();
+        this.statementsPerConnection.reset();
+        this.acquired.set(0);
+        this.closed.set(0);
+    }
+
+}
@@ -0,0 +1,265 @@
+package net.ttddyy.dsproxy.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram for non-negative {@code long} values.
+ *
+ * <p>Values are recorded into log-linear buckets: each power of two range is split into {@value #SUB_BUCKET_COUNT}
+ * linear sub buckets, which bounds the relative error of reported percentiles to 12.5%. Values from {@code 0} to
+ * {@code 7} are recorded exactly.
+ *
+ * <p>Recording is a few atomic increments and never blocks. Reads are not atomic across buckets; they reflect
+ * recordings that are concurrently in progress on a best effort basis, which is fine for monitoring purposes.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;  // 8
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+
+    /**
+     * Number of buckets. Covers the entire positive {@code long} range.
+     */
+    public static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private static final long[] BUCKET_UPPER_BOUNDS = new long[BUCKET_COUNT];
+
+    static {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            BUCKET_UPPER_BOUNDS[i] = computeUpperBound(i);
+        }
+    }
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Bucket index for the given value.
+     *
+     * @param value value
+     * @return bucket index
+     */
+    public static int getBucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);  // >= SUB_BUCKET_BITS
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & SUB_BUCKET_MASK;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Inclusive upper bound of values recorded in the given bucket.
+     *
+     * @param index bucket index
+     * @return largest value that falls into the bucket
+     */
+    public static long getBucketUpperBound(int index) {
+        return BUCKET_UPPER_BOUNDS[index];
+    }
+
+    private static long computeUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index & SUB_BUCKET_MASK;
+        long lowerBound = (SUB_BUCKET_COUNT + subBucket) << shift;
+        long width = 1L << shift;
+        long upperBound = lowerBound + width - 1;
+        return upperBound < 0 ? Long.MAX_VALUE : upperBound;  // last bucket overflows
+    }
+
+    /**
+     * Record a value. Negative values are recorded as {@code 0}.
+     *
+     * @param value value to record
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        this.buckets.incrementAndGet(getBucketIndex(value));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(value);
+
+        long currentMax = this.max.get();
+        while (value > currentMax) {
+            if (this.max.compareAndSet(currentMax, value)) {
+                break;
+            }
+            currentMax = this.max.get();
+        }
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getSum() {
+        return this.sum.get();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    public double getMean() {
+        long count = this.count.get();
+        return count == 0 ? 0 : (double) this.sum.get() / count;
+    }
+
+    /**
+     * Number of values recorded in the given bucket.
+     *
+     * @param index bucket index
+     * @return count in the bucket
+     */
+    public long getBucketCount(int index) {
+        return this.buckets.get(index);
+    }
+
+    /**
+     * Copy bucket counts to the given array to read a consistent view without allocation.
+     *
+     * @param target array of at least {@link #BUCKET_COUNT} length
+     * @return total count of copied buckets
+     */
+    public long copyBucketCounts(long[] target) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long bucketCount = this.buckets.get(i);
+            target[i] = bucketCount;
+            total += bucketCount;
+        }
+        return total;
+    }
+
+    /**
+     * Returns an estimated value at the given percentile.
+     *
+     * <p>The returned value is the upper bound of the bucket that contains the percentile, capped by the max value.
+     *
+     * @param percentile percentile between {@code 0} and {@code 100}
+     * @return value at the percentile. {@code 0} when nothing is recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += this.buckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * total);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(BUCKET_UPPER_BOUNDS[i], this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Take a snapshot of this histogram.
+     *
+     * <p>Percentiles computed from the snapshot are consistent with each other.
+     *
+     * @return snapshot
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = copyBucketCounts(counts);
+        return new Snapshot(counts, total, this.sum.get(), this.max.get());
+    }
+
+    /**
+     * Reset all recorded values.
+     *
+     * <p>Recordings concurrently in progress may partially survive the reset.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.set(0);
+        this.sum.set(0);
+        this.max.set(0);
+    }
+
+    /**
+     * Immutable point-in-time view of {@link Histogram}.
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getSum() {
+            return this.sum;
+        }
+
+        public long getMax() {
+            return this.max;
+        }
+
+        public double getMean() {
+            return this.count == 0 ? 0 : (double) this.sum / this.count;
+        }
+
+        public long getBucketCount(int index) {
+            return this.counts[index];
+        }
+
+        /**
+         * @param percentile percentile between {@code 0} and {@code 100}
+         * @return value at the percentile. {@code 0} when nothing is recorded.
+         * @see Histogram#getValueAtPercentile(double)
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (this.count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * this.count);
+            if (rank < 1) {
+                rank = 1;
+            }
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) {
+                    return Math.min(BUCKET_UPPER_BOUNDS[i], this.max);
+                }
+            }
+            return this.max;
+        }
+
+    }
+
+}
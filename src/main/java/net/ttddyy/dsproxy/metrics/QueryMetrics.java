@@ -0,0 +1,195 @@
+package net.ttddyy.dsproxy.metrics;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryCount;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import net.ttddyy.dsproxy.proxy.ResultCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link QueryExecutionListener} that accumulates query metrics of a data source.
+ *
+ * <p>Unlike {@link net.ttddyy.dsproxy.listener.DataSourceQueryCountListener}, this listener keeps a single
+ * accumulating {@link QueryCount} per instance, records query latency into a {@link Histogram} and keeps
+ * {@link StatementStatistics} per query fingerprint(see {@link QueryUtils#fingerprint(String)}).
+ * To bound the memory, statistics are kept for up to {@link #setMaxStatements(int) max statements} distinct
+ * fingerprints; executions of other fingerprints are only counted by {@link #getDroppedStatementCount()}.
+ *
+ * <p>Results served by {@link ResultCache} are not database calls; they are only counted by
+ * {@link QueryCount#getCacheHit()} and excluded from the other counts, latency and statement statistics.
+ *
+ * <p>Latency is recorded as {@link ExecutionInfo#getElapsedTime()}, whose unit depends on the
+ * {@link net.ttddyy.dsproxy.proxy.StopwatchFactory}(milliseconds by default).
+ *
+ * <p>All updates are lock-free, and all reads are non-blocking.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class QueryMetrics implements QueryExecutionListener {
+
+    /**
+     * Default max num of distinct fingerprints to keep statistics.
+     */
+    public static final int DEFAULT_MAX_STATEMENTS = 1000;
+
+    private volatile QueryCount queryCount = new QueryCount();
+
+    private final Histogram latency = new Histogram();
+
+    private final ConcurrentMap<String, StatementStatistics> statements = new ConcurrentHashMap<String, StatementStatistics>();
+
+    private final AtomicLong droppedStatements = new AtomicLong();
+
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private volatile int maxStatements = DEFAULT_MAX_STATEMENTS;
+
+    private volatile boolean trackStatements = true;
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        this.inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        this.inFlight.decrementAndGet();
+
+        final QueryCount count = this.queryCount;
+
+        // result served from the cache is not a database call
+        if (execInfo.getAttribute(ResultCache.CACHE_HIT) != null) {
+            count.incrementCacheHit();
+            return;
+        }
+
+        final long elapsedTime = execInfo.getElapsedTime();
+        final boolean success = execInfo.isSuccess();
+
+        count.incrementTotal();
+        if (success) {
+            count.incrementSuccess();
+        } else {
+            count.incrementFailure();
+        }
+        count.incrementTime(elapsedTime);
+        count.increment(execInfo.getStatementType());
+
+        this.latency.record(elapsedTime);
+
+        for (QueryInfo queryInfo : queryInfoList) {
+            String query = queryInfo.getQuery();
+            count.increment(QueryUtils.getQueryType(query));
+            if (this.trackStatements) {
+                recordStatement(query, elapsedTime, success);
+            }
+        }
+    }
+
+    private void recordStatement(String query, long elapsedTime, boolean success) {
+        String fingerprint = QueryUtils.fingerprint(query);
+        StatementStatistics statistics = this.statements.get(fingerprint);
+        if (statistics == null) {
+            if (this.statements.size() >= this.maxStatements) {
+                this.droppedStatements.incrementAndGet();
+                return;
+            }
+            StatementStatistics newStatistics = new StatementStatistics(fingerprint);
+            statistics = this.statements.putIfAbsent(fingerprint, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+        statistics.record(elapsedTime, success);
+    }
+
+    /**
+     * Returns statistics of the top statements ordered by total execution time.
+     *
+     * @param limit max num of statements to return
+     * @return top statements
+     */
+    public List<StatementStatistics> getTopStatements(int limit) {
+        List<StatementStatistics> list = new ArrayList<StatementStatistics>(this.statements.values());
+        Collections.sort(list, new Comparator<StatementStatistics>() {
+            @Override
+            public int compare(StatementStatistics left, StatementStatistics right) {
+                long leftTime = left.getTotalTime();
+                long rightTime = right.getTotalTime();
+                return leftTime < rightTime ? 1 : (leftTime == rightTime ? 0 : -1);
+            }
+        });
+        return list.size() > limit ? new ArrayList<StatementStatistics>(list.subList(0, limit)) : list;
+    }
+
+    /**
+     * Reset all metrics except {@link #getInFlightQueryCount() in-flight query count}.
+     */
+    public void reset() {
+        this.queryCount = new QueryCount();
+        this.latency.reset();
+        this.statements.clear();
+        this.droppedStatements.set(0);
+    }
+
+    public QueryCount getQueryCount() {
+        return this.queryCount;
+    }
+
+    public Histogram getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * @return num of queries currently executing
+     */
+    public long getInFlightQueryCount() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * @return num of distinct fingerprints currently tracked
+     */
+    public int getStatementCount() {
+        return this.statements.size();
+    }
+
+    /**
+     * @return num of query executions not tracked because max statements was reached
+     */
+    public long getDroppedStatementCount() {
+        return this.droppedStatements.get();
+    }
+
+    public int getMaxStatements() {
+        return this.maxStatements;
+    }
+
+    public void setMaxStatements(int maxStatements) {
+        this.maxStatements = maxStatements;
+    }
+
+    public boolean isTrackStatements() {
+        return this.trackStatements;
+    }
+
+    /**
+     * Enable or disable per fingerprint statistics. Default is {@code true}.
+     *
+     * @param trackStatements {@code false} to disable
+     */
+    public void setTrackStatements(boolean trackStatements) {
+        this.trackStatements = trackStatements;
+    }
+
+}
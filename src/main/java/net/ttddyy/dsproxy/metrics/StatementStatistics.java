@@ -0,0 +1,65 @@
+package net.ttddyy.dsproxy.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Execution statistics of a query fingerprint.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see QueryMetrics
+ * @since 1.11
+ */
+public class StatementStatistics {
+
+    private final String fingerprint;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong failure = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong maxTime = new AtomicLong();
+
+    public StatementStatistics(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    void record(long elapsedTime, boolean success) {
+        this.count.incrementAndGet();
+        if (!success) {
+            this.failure.incrementAndGet();
+        }
+        this.totalTime.addAndGet(elapsedTime);
+        long currentMax = this.maxTime.get();
+        while (elapsedTime > currentMax) {
+            if (this.maxTime.compareAndSet(currentMax, elapsedTime)) {
+                break;
+            }
+            currentMax = this.maxTime.get();
+        }
+    }
+
+    public String getFingerprint() {
+        return this.fingerprint;
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getFailure() {
+        return this.failure.get();
+    }
+
+    public long getTotalTime() {
+        return this.totalTime.get();
+    }
+
+    public long getMaxTime() {
+        return this.maxTime.get();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", failure=" + getFailure() + ", totalTime=" + getTotalTime()
+                + ", maxTime=" + getMaxTime() + ", query=" + this.fingerprint;
+    }
+
+}
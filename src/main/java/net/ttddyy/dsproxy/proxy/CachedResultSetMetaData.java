@@ -0,0 +1,237 @@
+package net.ttddyy.dsproxy.proxy;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Snapshot of {@link ResultSetMetaData} that is usable after the originating {@link java.sql.ResultSet} is closed.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class CachedResultSetMetaData implements ResultSetMetaData {
+
+    private final int columnCount;
+
+    // indexed by column index(1 based), index 0 is not used
+    private final boolean[] autoIncrement;
+    private final boolean[] caseSensitive;
+    private final boolean[] searchable;
+    private final boolean[] currency;
+    private final int[] nullable;
+    private final boolean[] signed;
+    private final int[] columnDisplaySize;
+    private final String[] columnLabel;
+    private final String[] columnName;
+    private final String[] schemaName;
+    private final int[] precision;
+    private final int[] scale;
+    private final String[] tableName;
+    private final String[] catalogName;
+    private final int[] columnType;
+    private final String[] columnTypeName;
+    private final boolean[] readOnly;
+    private final boolean[] writable;
+    private final boolean[] definitelyWritable;
+    private final String[] columnClassName;
+
+    /**
+     * Copy the given metadata.
+     *
+     * @param metaData metadata to copy
+     * @throws SQLException when failed to read the metadata
+     */
+    public CachedResultSetMetaData(ResultSetMetaData metaData) throws SQLException {
+        int count = metaData.getColumnCount();
+        this.columnCount = count;
+        this.autoIncrement = new boolean[count + 1];
+        this.caseSensitive = new boolean[count + 1];
+        this.searchable = new boolean[count + 1];
+        this.currency = new boolean[count + 1];
+        this.nullable = new int[count + 1];
+        this.signed = new boolean[count + 1];
+        this.columnDisplaySize = new int[count + 1];
+        this.columnLabel = new String[count + 1];
+        this.columnName = new String[count + 1];
+        this.schemaName = new String[count + 1];
+        this.precision = new int[count + 1];
+        this.scale = new int[count + 1];
+        this.tableName = new String[count + 1];
+        this.catalogName = new String[count + 1];
+        this.columnType = new int[count + 1];
+        this.columnTypeName = new String[count + 1];
+        this.readOnly = new boolean[count + 1];
+        this.writable = new boolean[count + 1];
+        this.definitelyWritable = new boolean[count + 1];
+        this.columnClassName = new String[count + 1];
+
+        for (int i = 1; i <= count; i++) {
+            this.autoIncrement[i] = metaData.isAutoIncrement(i);
+            this.caseSensitive[i] = metaData.isCaseSensitive(i);
+            this.searchable[i] = metaData.isSearchable(i);
+            this.currency[i] = metaData.isCurrency(i);
+            this.nullable[i] = metaData.isNullable(i);
+            this.signed[i] = metaData.isSigned(i);
+            this.columnDisplaySize[i] = metaData.getColumnDisplaySize(i);
+            this.columnLabel[i] = metaData.getColumnLabel(i);
+            this.columnName[i] = metaData.getColumnName(i);
+            this.schemaName[i] = metaData.getSchemaName(i);
+            this.precision[i] = metaData.getPrecision(i);
+            this.scale[i] = metaData.getScale(i);
+            this.tableName[i] = metaData.getTableName(i);
+            this.catalogName[i] = metaData.getCatalogName(i);
+            this.columnType[i] = metaData.getColumnType(i);
+            this.columnTypeName[i] = metaData.getColumnTypeName(i);
+            this.readOnly[i] = metaData.isReadOnly(i);
+            this.writable[i] = metaData.isWritable(i);
+            this.definitelyWritable[i] = metaData.isDefinitelyWritable(i);
+            this.columnClassName[i] = metaData.getColumnClassName(i);
+        }
+    }
+
+    private void checkColumn(int column) throws SQLException {
+        if (column < 1 || column > this.columnCount) {
+            throw new SQLException("Invalid column index: " + column);
+        }
+    }
+
+    @Override
+    public int getColumnCount() {
+        return this.columnCount;
+    }
+
+    @Override
+    public boolean isAutoIncrement(int column) throws SQLException {
+        checkColumn(column);
+        return this.autoIncrement[column];
+    }
+
+    @Override
+    public boolean isCaseSensitive(int column) throws SQLException {
+        checkColumn(column);
+        return this.caseSensitive[column];
+    }
+
+    @Override
+    public boolean isSearchable(int column) throws SQLException {
+        checkColumn(column);
+        return this.searchable[column];
+    }
+
+    @Override
+    public boolean isCurrency(int column) throws SQLException {
+        checkColumn(column);
+        return this.currency[column];
+    }
+
+    @Override
+    public int isNullable(int column) throws SQLException {
+        checkColumn(column);
+        return this.nullable[column];
+    }
+
+    @Override
+    public boolean isSigned(int column) throws SQLException {
+        checkColumn(column);
+        return this.signed[column];
+    }
+
+    @Override
+    public int getColumnDisplaySize(int column) throws SQLException {
+        checkColumn(column);
+        return this.columnDisplaySize[column];
+    }
+
+    @Override
+    public String getColumnLabel(int column) throws SQLException {
+        checkColumn(column);
+        return this.columnLabel[column];
+    }
+
+    @Override
+    public String getColumnName(int column) throws SQLException {
+        checkColumn(column);
+        return this.columnName[column];
+    }
+
+    @Override
+    public String getSchemaName(int column) throws SQLException {
+        checkColumn(column);
+        return this.schemaName[column];
+    }
+
+    @Override
+    public int getPrecision(int column) throws SQLException {
+        checkColumn(column);
+        return this.precision[column];
+    }
+
+    @Override
+    public int getScale(int column) throws SQLException {
+        checkColumn(column);
+        return this.scale[column];
+    }
+
+    @Override
+    public String getTableName(int column) throws SQLException {
+        checkColumn(column);
+        return this.tableName[column];
+    }
+
+    @Override
+    public String getCatalogName(int column) throws SQLException {
+        checkColumn(column);
+        return this.catalogName[column];
+    }
+
+    @Override
+    public int getColumnType(int column) throws SQLException {
+        checkColumn(column);
+        return this.columnType[column];
+    }
+
+    @Override
+    public String getColumnTypeName(int column) throws SQLException {
+        checkColumn(column);
+        return this.columnTypeName[column];
+    }
+
+    @Override
+    public boolean isReadOnly(int column) throws SQLException {
+        checkColumn(column);
+        return this.readOnly[column];
+    }
+
+    @Override
+    public boolean isWritable(int column) throws SQLException {
+        checkColumn(column);
+        return this.writable[column];
+    }
+
+    @Override
+    public boolean isDefinitelyWritable(int column) throws SQLException {
+        checkColumn(column);
+        return this.definitelyWritable[column];
+    }
+
+    @Override
+    public String getColumnClassName(int column) throws SQLException {
+        checkColumn(column);
+        return this.columnClassName[column];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+}
@@ -0,0 +1,119 @@
+package net.ttddyy.dsproxy.proxy;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Case-insensitive lookup from column label to column index.
+ *
+ * <p>Labels are hashed into an open addressing table when the index is built. Lookup hashes the given label ignoring
+ * case and compares candidates with {@link String#regionMatches(boolean, int, String, int, int)}, thus it does not
+ * allocate a converted string per call. When labels are duplicated, the last column wins, as the label to index map
+ * used by the proxy result sets before this index did.
+ *
+ * <p>Instances are immutable and can be shared by result sets with the same labels.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class ColumnLabelIndex {
+
+    private final String[] labels;  // indexed by column index(1 based), index 0 is not used
+    private final int[] table;  // column index, 0 for empty slot
+    private final int mask;
+
+    /**
+     * Create an index from labels of the given metadata.
+     *
+     * @param metaData result set metadata
+     * @return index
+     * @throws SQLException when failed to read the metadata
+     */
+    public static ColumnLabelIndex of(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+        }
+        return new ColumnLabelIndex(labels);
+    }
+
+    /**
+     * @param labels column labels in column order
+     */
+    public ColumnLabelIndex(String... labels) {
+        int columnCount = labels.length;
+        this.labels = new String[columnCount + 1];
+        System.arraycopy(labels, 0, this.labels, 1, columnCount);
+
+        // keep load factor at most 0.5 to keep probe sequences short
+        int size = 2;
+        while (size < columnCount * 2) {
+            size <<= 1;
+        }
+        this.table = new int[size];
+        this.mask = size - 1;
+        for (int i = 1; i <= columnCount; i++) {
+            String label = this.labels[i];
+            if (label == null) {
+                continue;
+            }
+            int slot = hash(label) & this.mask;
+            int columnIndex;
+            while ((columnIndex = this.table[slot]) != 0 && !matches(this.labels[columnIndex], label)) {
+                slot = (slot + 1) & this.mask;
+            }
+            // a duplicated label overwrites the slot of the earlier column
+            this.table[slot] = i;
+        }
+    }
+
+    /**
+     * @param label column label
+     * @return column index(1 based), or {@code -1} if not found
+     */
+    public int indexOf(String label) {
+        int slot = hash(label) & this.mask;
+        int columnIndex;
+        while ((columnIndex = this.table[slot]) != 0) {
+            if (matches(this.labels[columnIndex], label)) {
+                return columnIndex;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    public int getColumnCount() {
+        return this.labels.length - 1;
+    }
+
+    /**
+     * @param columnIndex column index(1 based)
+     * @return column label
+     */
+    public String getLabel(int columnIndex) {
+        return this.labels[columnIndex];
+    }
+
+    private static boolean matches(String candidate, String label) {
+        int length = label.length();
+        return candidate.length() == length && candidate.regionMatches(true, 0, label, 0, length);
+    }
+
+    private static int hash(String label) {
+        int hash = 0;
+        for (int i = 0, length = label.length(); i < length; i++) {
+            // same folding as regionMatches(ignoreCase=true)
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(label.charAt(i)));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnLabelIndex" + Arrays.asList(this.labels).subList(1, this.labels.length);
+    }
+
+}
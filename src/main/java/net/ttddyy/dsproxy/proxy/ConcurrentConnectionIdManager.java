@@ -0,0 +1,219 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ConnectionIdManager;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free {@link ConnectionIdManager} implementation with numeric connection ids.
+ *
+ * Same as {@link DefaultConnectionIdManager}, this implementation returns sequentially increasing unique number as
+ * connection id. Open ids are kept in a bitmap split into pages of 4096 ids. Bits are set and cleared
+ * with CAS operations, and a page is discarded once all of its ids have been issued and closed, so the memory stays
+ * proportional to the range of currently open ids.
+ *
+ * <p>In addition to {@link ConnectionIdManager} methods which use {@code String} ids, {@link #nextId()},
+ * {@link #addClosedId(long)}, {@link #isOpen(long)} and {@link #getOpenIds()} provide numeric access.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class ConcurrentConnectionIdManager implements ConnectionIdManager {
+
+    private static final int PAGE_SHIFT = 12;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int WORDS_PER_PAGE = PAGE_SIZE >>> 6;
+
+    private final AtomicLong idCounter = new AtomicLong(0);
+
+    private final AtomicLong openCount = new AtomicLong(0);
+
+    private final ConcurrentMap<Long, Page> pages = new ConcurrentHashMap<Long, Page>();
+
+    @Override
+    public String getId(Connection connection) {
+        return String.valueOf(nextId());
+    }
+
+    @Override
+    public void addClosedId(String closedId) {
+        long id;
+        try {
+            id = Long.parseLong(closedId);
+        } catch (NumberFormatException ex) {
+            return;  // not issued by this manager
+        }
+        addClosedId(id);
+    }
+
+    @Override
+    public Set<String> getOpenConnectionIds() {
+        Set<String> ids = new HashSet<String>();
+        for (long id : getOpenIds()) {
+            ids.add(String.valueOf(id));
+        }
+        return ids;
+    }
+
+    /**
+     * Issue a new connection id and mark it as open.
+     *
+     * @return new connection id. Starts from {@code 1}.
+     */
+    public long nextId() {
+        long id = this.idCounter.incrementAndGet();
+        long slot = id - 1;  // id starts from 1
+        Page page = getOrCreatePage(slot >>> PAGE_SHIFT);
+
+        // increment open count before counting as issued, so that the page is not discarded by addClosedId while
+        // this id is being opened
+        page.open.incrementAndGet();
+        setBit(page.bits, (int) (slot & PAGE_MASK));
+        page.issued.incrementAndGet();
+
+        this.openCount.incrementAndGet();
+        return id;
+    }
+
+    /**
+     * Mark the connection id as closed. Closing an already closed id is no-op.
+     *
+     * @param closedId closed connection id
+     */
+    public void addClosedId(long closedId) {
+        long slot = closedId - 1;
+        if (slot < 0) {
+            return;
+        }
+        long pageIndex = slot >>> PAGE_SHIFT;
+        Page page = this.pages.get(pageIndex);
+        if (page == null || !clearBit(page.bits, (int) (slot & PAGE_MASK))) {
+            return;  // unknown or already closed
+        }
+        this.openCount.decrementAndGet();
+
+        // discard the page when all ids in the page are issued and closed
+        if (page.open.decrementAndGet() == 0 && page.issued.get() == PAGE_SIZE) {
+            this.pages.remove(pageIndex, page);
+        }
+    }
+
+    /**
+     * @param id connection id
+     * @return {@code true} if the connection id is issued and not yet closed
+     */
+    public boolean isOpen(long id) {
+        long slot = id - 1;
+        if (slot < 0) {
+            return false;
+        }
+        Page page = this.pages.get(slot >>> PAGE_SHIFT);
+        if (page == null) {
+            return false;
+        }
+        int index = (int) (slot & PAGE_MASK);
+        return (page.bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns snapshot of open connection ids in ascending order.
+     *
+     * @return open connection ids
+     */
+    public long[] getOpenIds() {
+        long[] ids = new long[16];
+        int size = 0;
+        for (Map.Entry<Long, Page> entry : this.pages.entrySet()) {
+            long base = (entry.getKey() << PAGE_SHIFT) + 1;
+            AtomicLongArray bits = entry.getValue().bits;
+            for (int word = 0; word < WORDS_PER_PAGE; word++) {
+                long value = bits.get(word);
+                while (value != 0) {
+                    int bit = Long.numberOfTrailingZeros(value);
+                    value &= value - 1;
+                    if (size == ids.length) {
+                        ids = Arrays.copyOf(ids, size << 1);
+                    }
+                    ids[size++] = base + (word << 6) + bit;
+                }
+            }
+        }
+        ids = Arrays.copyOf(ids, size);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * @return num of open connections
+     */
+    public long getOpenConnectionCount() {
+        return this.openCount.get();
+    }
+
+    /**
+     * @return num of bitmap pages currently allocated
+     */
+    int getPageCount() {
+        return this.pages.size();
+    }
+
+    private Page getOrCreatePage(long pageIndex) {
+        Page page = this.pages.get(pageIndex);
+        if (page == null) {
+            Page newPage = new Page();
+            page = this.pages.putIfAbsent(pageIndex, newPage);
+            if (page == null) {
+                page = newPage;
+            }
+        }
+        return page;
+    }
+
+    private static void setBit(AtomicLongArray bits, int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+
+    /**
+     * @return {@code true} if the bit was set and this call cleared it
+     */
+    private static boolean clearBit(AtomicLongArray bits, int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) == 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(word, current, current & ~mask));
+        return true;
+    }
+
+    private static class Page {
+
+        private final AtomicLongArray bits = new AtomicLongArray(WORDS_PER_PAGE);
+
+        // num of open ids in this page
+        private final AtomicInteger open = new AtomicInteger();
+
+        // num of ids issued in this page
+        private final AtomicInteger issued = new AtomicInteger();
+
+    }
+
+}
@@ -0,0 +1,27 @@
+package net.ttddyy.dsproxy.proxy;
+
+/**
+ * Callback for {@link LeakDetectionConnectionIdManager}.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public interface ConnectionLeakListener {
+
+    /**
+     * Called when a connection is held longer than the leak threshold.
+     *
+     * This is called at most once per connection.
+     *
+     * @param openConnectionInfo connection that is suspected to be leaked
+     */
+    void onLeakSuspected(OpenConnectionInfo openConnectionInfo);
+
+    /**
+     * Called when a proxy connection is garbage collected without calling {@code close()}.
+     *
+     * @param openConnectionInfo connection that is leaked
+     */
+    void onUnclosedConnectionCollected(OpenConnectionInfo openConnectionInfo);
+
+}
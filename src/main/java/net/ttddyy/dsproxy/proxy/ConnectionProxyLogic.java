@@ -2,6 +2,7 @@ package net.ttddyy.dsproxy.proxy;
 
 import net.ttddyy.dsproxy.ConnectionInfo;
 import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.metrics.ConnectionMetrics;
 import net.ttddyy.dsproxy.transform.QueryTransformer;
 import net.ttddyy.dsproxy.transform.TransformInfo;
 
@@ -9,7 +10,12 @@ import java.lang.reflect.Method;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Proxy Logic implementation for {@link Connection} methods.
@@ -19,6 +25,11 @@ import java.sql.Statement;
  */
 public class ConnectionProxyLogic extends ProxyLogicSupport {
 
+    // methods that flush deferred executions of statement coalescing
+    private static final Set<String> COALESCING_FLUSH_METHODS = Collections.unmodifiableSet(
+            new HashSet<String>(Arrays.asList("commit", "rollback", "setAutoCommit", "setSavepoint", "releaseSavepoint"))
+    );
+
     private final Connection connection;
     private final ConnectionInfo connectionInfo;
     private final ProxyConfig proxyConfig;
@@ -65,18 +76,91 @@ public class ConnectionProxyLogic extends ProxyLogicSupport {
         boolean isCommitMethod = "commit".equals(method.getName());
         boolean isRollbackMethod = "rollback".equals(method.getName());
 
+        // flush deferred executions of statement coalescing
+        SQLException flushFailure = null;
+        StatementCoalescing.DeferredBatch deferredBatch = this.connectionInfo.getAttribute(StatementCoalescing.DEFERRED_BATCH);
+        if (deferredBatch != null) {
+            if (COALESCING_FLUSH_METHODS.contains(methodName)) {
+                deferredBatch.flush();
+            } else if (isCloseMethod) {
+                try {
+                    deferredBatch.flush();
+                } catch (SQLException ex) {
+                    flushFailure = ex;  // close the connection anyway
+                }
+            }
+        }
+
+        // prepared statement cache
+        PreparedStatementCache.ConnectionStatements cachedStatements = this.connectionInfo.getAttribute(PreparedStatementCache.CONNECTION_STATEMENTS);
+        Object statementCacheKey = null;
+        if (this.proxyConfig.getPreparedStatementCache() != null && "prepareStatement".equals(methodName)
+                && ObjectArrayUtils.isFirstArgString(args)) {
+            if (cachedStatements == null) {
+                cachedStatements = this.proxyConfig.getPreparedStatementCache().createConnectionStatements();
+                this.connectionInfo.setAttribute(PreparedStatementCache.CONNECTION_STATEMENTS, cachedStatements);
+            }
+            statementCacheKey = PreparedStatementCache.createKey(args);
+        } else if (cachedStatements != null && isCloseMethod) {
+            try {
+                cachedStatements.close();
+            } catch (SQLException ex) {
+                if (flushFailure == null) {
+                    flushFailure = ex;  // close the connection anyway
+                }
+            }
+        }
+
         // Invoke method on original Connection.
-        final Object retVal = proceedExecution(method, this.connection, args);
+        final Object retVal;
+        if (statementCacheKey != null) {
+            PreparedStatement cachedStatement = cachedStatements.checkout(statementCacheKey);
+            if (cachedStatement != null) {
+                retVal = cachedStatement;
+            } else {
+                retVal = proceedExecution(method, this.connection, args);
+                cachedStatements.register((PreparedStatement) retVal, statementCacheKey);
+            }
+        } else {
+            retVal = proceedExecution(method, this.connection, args);
+        }
 
         ConnectionInfo connectionInfo = ConnectionProxyLogic.this.connectionInfo;
+        ConnectionMetrics connectionMetrics = this.proxyConfig.getConnectionMetrics();
+        ResultCache resultCache = this.proxyConfig.getResultCache();
+        if (resultCache != null && (isCommitMethod || isCloseMethod || "setAutoCommit".equals(methodName)
+                || (isRollbackMethod && (args == null || args.length == 0)))) {
+            resultCache.onTransactionEnd(connectionInfo);
+        }
         if (isCommitMethod) {
             connectionInfo.incrementCommitCount();
+            if (connectionMetrics != null) {
+                connectionMetrics.onTransactionEnd(connectionInfo);
+            }
         } else if (isRollbackMethod) {
             connectionInfo.incrementRollbackCount();
+            // rollback(Savepoint) does not end the transaction
+            if (connectionMetrics != null && (args == null || args.length == 0)) {
+                connectionMetrics.onTransactionEnd(connectionInfo);
+            }
         } else if (isCloseMethod) {
+            if (connectionMetrics != null && !connectionInfo.isClosed()) {
+                connectionMetrics.onClose(connectionInfo);
+            }
             connectionInfo.setClosed(true);
             String connId = connectionInfo.getConnectionId();
             ConnectionProxyLogic.this.proxyConfig.getConnectionIdManager().addClosedId(connId);
+            if (flushFailure != null) {
+                throw flushFailure;
+            }
+        } else if ("setAutoCommit".equals(methodName)) {
+            boolean autoCommit = (Boolean) args[0];
+            connectionInfo.setAutoCommit(autoCommit);
+            if (connectionMetrics != null) {
+                connectionMetrics.onAutoCommitChange(connectionInfo, autoCommit);
+            }
+        } else if ("getAutoCommit".equals(methodName)) {
+            connectionInfo.setAutoCommit((Boolean) retVal);
         }
 
         // when it is a call to createStatement, prepareStatement or prepareCall, returns a proxy.
@@ -3,6 +3,7 @@ package net.ttddyy.dsproxy.proxy;
 import net.ttddyy.dsproxy.ConnectionIdManager;
 import net.ttddyy.dsproxy.ConnectionInfo;
 import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.metrics.ConnectionMetrics;
 
 import javax.sql.DataSource;
 import java.lang.reflect.Method;
@@ -38,6 +39,9 @@ public class DataSourceProxyLogic extends ProxyLogicSupport {
             return handleCommonMethod(methodName, this.dataSource, this.proxyConfig, args);
         }
 
+        final ConnectionMetrics connectionMetrics = this.proxyConfig.getConnectionMetrics();
+        final long acquireStartTime = connectionMetrics != null ? System.nanoTime() : 0;
+
         final Object retVal = proceedExecution(method, this.dataSource, args);
 
         if ("getConnection".equals(methodName)) {
@@ -49,6 +53,9 @@ public class DataSourceProxyLogic extends ProxyLogicSupport {
             if (this.proxyConfig.isRetrieveIsolationLevel()) {
                 connectionInfo.setIsolationLevel(conn.getTransactionIsolation());
             }
+            if (connectionMetrics != null) {
+                connectionMetrics.onAcquire(connectionInfo, acquireStartTime);
+            }
 
             // make ConnectionInfo available in afterMethod() callback
             methodContext.setConnectionInfo(connectionInfo);
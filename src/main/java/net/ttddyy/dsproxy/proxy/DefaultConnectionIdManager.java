@@ -39,7 +39,9 @@ public class DefaultConnectionIdManager implements ConnectionIdManager {
 
     @Override
     public Set<String> getOpenConnectionIds() {
-        return new HashSet<String>(this.openIds);
+        synchronized (this) {
+            return new HashSet<String>(this.openIds);
+        }
     }
 
 }
@@ -0,0 +1,238 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ResultSetInfo;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import net.ttddyy.dsproxy.listener.ResultSetCompletionListener;
+import net.ttddyy.dsproxy.metrics.Histogram;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * Recommend {@link Statement#setFetchSize(int)} per query based on observed result set sizes.
+ *
+ * Row counts of closed result sets are recorded per query fingerprint(see {@link QueryUtils#fingerprint(String)}).
+ * Once {@link #getMinSamples()} result sets are observed, the recommended fetch size is the row count at
+ * {@link #getPercentile()}, capped by {@link #getMaxFetchSize()}. No fetch size is recommended when the row count is
+ * not greater than {@link #getMinFetchSize()}, leaving the driver default as is.
+ *
+ * <p>In {@link Mode#APPLY} mode, the recommended fetch size is set on the statement right before a query is executed,
+ * unless the application has called {@code setFetchSize()} on the statement. In {@link Mode#REPORT} mode, changes of
+ * recommendations are logged and statements are left untouched.
+ *
+ * <p>Row counts are received as {@link ResultSetCompletionListener}, which requires result set proxy that reports
+ * metrics. {@link net.ttddyy.dsproxy.support.ProxyDataSourceBuilder#fetchSizeAdvisor(FetchSizeAdvisor)} enables it,
+ * together with the listener of {@code proxyResultSetWithMetrics()} if configured. When a statement is returned to
+ * {@link PreparedStatementCache}, its fetch size is reset to the value before the recommendation was applied.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see MetricsResultSetProxyLogicFactory
+ * @since 1.11
+ */
+public class FetchSizeAdvisor implements ResultSetCompletionListener {
+
+    private static final Logger LOGGER = Logger.getLogger(FetchSizeAdvisor.class.getName());
+
+    public enum Mode {
+        /**
+         * Set recommended fetch size on statements.
+         */
+        APPLY,
+        /**
+         * Only log recommendations.
+         */
+        REPORT
+    }
+
+    public static final int DEFAULT_MIN_SAMPLES = 5;
+    public static final int DEFAULT_MIN_FETCH_SIZE = 10;
+    public static final int DEFAULT_MAX_FETCH_SIZE = 1000;
+    public static final double DEFAULT_PERCENTILE = 90;
+    public static final int DEFAULT_MAX_QUERIES = 500;
+
+    private static class Stats {
+        private final Histogram rowCounts = new Histogram();
+        private volatile int recommendation;
+    }
+
+    private final Mode mode;
+    private int minSamples = DEFAULT_MIN_SAMPLES;
+    private int minFetchSize = DEFAULT_MIN_FETCH_SIZE;
+    private int maxFetchSize = DEFAULT_MAX_FETCH_SIZE;
+    private double percentile = DEFAULT_PERCENTILE;
+    private int maxQueries = DEFAULT_MAX_QUERIES;
+
+    private final ConcurrentMap<String, Stats> statsPerFingerprint = new ConcurrentHashMap<String, Stats>();
+    private final ConcurrentMap<String, String> fingerprints = new ConcurrentHashMap<String, String>();
+
+    public FetchSizeAdvisor() {
+        this(Mode.APPLY);
+    }
+
+    public FetchSizeAdvisor(Mode mode) {
+        this.mode = mode;
+    }
+
+    @Override
+    public void onComplete(ResultSetInfo resultSetInfo) {
+        String fingerprint = resultSetInfo.getFingerprint();
+        if (fingerprint == null) {
+            return;
+        }
+        Stats stats = this.statsPerFingerprint.get(fingerprint);
+        if (stats == null) {
+            if (this.statsPerFingerprint.size() >= this.maxQueries) {
+                return;
+            }
+            Stats created = new Stats();
+            stats = this.statsPerFingerprint.putIfAbsent(fingerprint, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        stats.rowCounts.record(resultSetInfo.getRowCount());
+
+        int recommendation = computeRecommendation(stats.rowCounts);
+        if (recommendation != stats.recommendation) {
+            stats.recommendation = recommendation;
+            if (this.mode == Mode.REPORT && recommendation > 0) {
+                LOGGER.info(String.format("Recommended fetch size %d for query [%s] (p%s rows=%d, samples=%d)",
+                        recommendation, fingerprint, this.percentile,
+                        stats.rowCounts.getValueAtPercentile(this.percentile), stats.rowCounts.getCount()));
+            }
+        }
+    }
+
+    private int computeRecommendation(Histogram rowCounts) {
+        if (rowCounts.getCount() < this.minSamples) {
+            return 0;
+        }
+        long rows = rowCounts.getValueAtPercentile(this.percentile);
+        if (rows <= this.minFetchSize) {
+            return 0;
+        }
+        return (int) Math.min(rows, this.maxFetchSize);
+    }
+
+    /**
+     * @param query query
+     * @return recommended fetch size, or {@code 0} when there is no recommendation
+     */
+    public int getRecommendedFetchSize(String query) {
+        if (query == null) {
+            return 0;
+        }
+        String fingerprint = this.fingerprints.get(query);
+        if (fingerprint == null) {
+            fingerprint = QueryUtils.fingerprint(query);
+            if (this.fingerprints.size() < this.maxQueries * 2) {
+                this.fingerprints.put(query, fingerprint);
+            }
+        }
+        Stats stats = this.statsPerFingerprint.get(fingerprint);
+        return stats != null ? stats.recommendation : 0;
+    }
+
+    /**
+     * Set the recommended fetch size on the statement in {@link Mode#APPLY} mode.
+     *
+     * @param statement statement to execute the query
+     * @param query     query to execute
+     * @throws SQLException when failed to set the fetch size
+     */
+    public void apply(Statement statement, String query) throws SQLException {
+        if (this.mode != Mode.APPLY) {
+            return;
+        }
+        int fetchSize = getRecommendedFetchSize(query);
+        if (fetchSize > 0) {
+            statement.setFetchSize(fetchSize);
+        }
+    }
+
+    /**
+     * @return recommended fetch sizes keyed by query fingerprint
+     */
+    public Map<String, Integer> getRecommendations() {
+        Map<String, Integer> recommendations = new HashMap<String, Integer>();
+        for (Map.Entry<String, Stats> entry : this.statsPerFingerprint.entrySet()) {
+            int recommendation = entry.getValue().recommendation;
+            if (recommendation > 0) {
+                recommendations.put(entry.getKey(), recommendation);
+            }
+        }
+        return recommendations;
+    }
+
+    /**
+     * Remove all observations.
+     */
+    public void reset() {
+        this.statsPerFingerprint.clear();
+    }
+
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    public int getMinSamples() {
+        return this.minSamples;
+    }
+
+    /**
+     * @param minSamples num of result sets to observe before recommending
+     */
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public int getMinFetchSize() {
+        return this.minFetchSize;
+    }
+
+    /**
+     * @param minFetchSize row count not exceeding this value does not get a recommendation
+     */
+    public void setMinFetchSize(int minFetchSize) {
+        this.minFetchSize = minFetchSize;
+    }
+
+    public int getMaxFetchSize() {
+        return this.maxFetchSize;
+    }
+
+    /**
+     * @param maxFetchSize upper bound of recommended fetch size
+     */
+    public void setMaxFetchSize(int maxFetchSize) {
+        this.maxFetchSize = maxFetchSize;
+    }
+
+    public double getPercentile() {
+        return this.percentile;
+    }
+
+    /**
+     * @param percentile percentile of observed row counts to recommend(e.g. {@code 90})
+     */
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    public int getMaxQueries() {
+        return this.maxQueries;
+    }
+
+    /**
+     * @param maxQueries max num of query fingerprints to learn
+     */
+    public void setMaxQueries(int maxQueries) {
+        this.maxQueries = maxQueries;
+    }
+
+}
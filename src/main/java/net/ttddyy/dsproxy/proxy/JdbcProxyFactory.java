@@ -45,6 +45,14 @@ public interface JdbcProxyFactory {
      */
     ResultSet createResultSet(ResultSet resultSet, ConnectionInfo connectionInfo, ProxyConfig proxyConfig);
 
+    /**
+     * Create a proxy for {@link ResultSet} returned by the query.
+     *
+     * @since 1.11
+     * @see QueryAwareResultSetProxyLogicFactory
+     */
+    ResultSet createResultSet(ResultSet resultSet, String query, ConnectionInfo connectionInfo, ProxyConfig proxyConfig);
+
     /**
      * Create a proxy for {@link ResultSet} generated keys.
      *
@@ -0,0 +1,315 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ConnectionIdManager;
+import net.ttddyy.dsproxy.ConnectionInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link ConnectionIdManager} implementation that detects connection leaks.
+ *
+ * For each open connection, this implementation records the time it was acquired, the acquiring thread and
+ * optionally the caller stack trace(see {@link #setStackDepth(int)}).
+ * {@link #checkLeaks()}, or the background task started by {@link #start(long, TimeUnit)}, reports connections held
+ * longer than the leak threshold to {@link ConnectionLeakListener}.
+ *
+ * <p>To detect proxy connections that are garbage collected without calling {@code close()}, this class also needs
+ * to be registered as a {@link MethodExecutionListener}; it then tracks the proxy connection returned from
+ * {@code DataSource#getConnection()} with a {@link PhantomReference}.
+ * {@link net.ttddyy.dsproxy.support.ProxyDataSourceBuilder#leakDetection(LeakDetectionConnectionIdManager)} registers
+ * both.
+ *
+ * <p>Stack capturing uses {@code StackWalker} when it is available(Java 9+), otherwise it falls back to
+ * {@link Throwable#getStackTrace()}.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class LeakDetectionConnectionIdManager implements ConnectionIdManager, MethodExecutionListener, Closeable {
+
+    /**
+     * Default leak threshold. 30 seconds.
+     */
+    public static final long DEFAULT_LEAK_THRESHOLD_MILLIS = 30000;
+
+    private static final boolean STACK_WALKER_AVAILABLE = isStackWalkerAvailable();
+
+    private final AtomicLong idCounter = new AtomicLong(0);
+
+    private final ConcurrentMap<String, OpenConnectionInfo> openConnections = new ConcurrentHashMap<String, OpenConnectionInfo>();
+
+    private final ReferenceQueue<Connection> referenceQueue = new ReferenceQueue<Connection>();
+
+    private volatile long leakThresholdMillis = DEFAULT_LEAK_THRESHOLD_MILLIS;
+
+    private volatile int stackDepth;
+
+    private volatile ConnectionLeakListener leakListener = new LoggingConnectionLeakListener();
+
+    private ScheduledExecutorService scheduler;
+
+    @Override
+    public String getId(Connection connection) {
+        // cheap non-blocking check for collected proxies
+        expungeCollectedProxies();
+
+        String id = String.valueOf(this.idCounter.incrementAndGet());
+        StackTraceElement[] stackTrace = this.stackDepth > 0 ? captureStackTrace(this.stackDepth) : null;
+        this.openConnections.put(id, new OpenConnectionInfo(id, Thread.currentThread(), stackTrace));
+        return id;
+    }
+
+    @Override
+    public void addClosedId(String closedId) {
+        OpenConnectionInfo info = this.openConnections.remove(closedId);
+        if (info != null && info.proxyReference != null) {
+            info.proxyReference.clear();
+        }
+    }
+
+    @Override
+    public Set<String> getOpenConnectionIds() {
+        return new HashSet<String>(this.openConnections.keySet());
+    }
+
+    /**
+     * Returns snapshot of currently open connections.
+     *
+     * @return open connections
+     */
+    public List<OpenConnectionInfo> getOpenConnections() {
+        return new ArrayList<OpenConnectionInfo>(this.openConnections.values());
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        // track proxy connection returned from "DataSource#getConnection"
+        if (!(executionContext.getTarget() instanceof DataSource) || !(executionContext.getResult() instanceof Connection)) {
+            return;
+        }
+        ConnectionInfo connectionInfo = executionContext.getConnectionInfo();
+        if (connectionInfo == null) {
+            return;
+        }
+        String connectionId = connectionInfo.getConnectionId();
+        OpenConnectionInfo info = this.openConnections.get(connectionId);
+        if (info != null) {
+            Connection proxyConnection = (Connection) executionContext.getResult();
+            info.proxyReference = new ProxyReference(proxyConnection, this.referenceQueue, connectionId);
+        }
+    }
+
+    /**
+     * Report connections that are held longer than the leak threshold or garbage collected without calling
+     * {@code close()}.
+     *
+     * Each connection is reported as leak suspect at most once.
+     */
+    public void checkLeaks() {
+        expungeCollectedProxies();
+
+        long threshold = this.leakThresholdMillis;
+        for (OpenConnectionInfo info : this.openConnections.values()) {
+            if (!info.leakReported && info.getElapsedMillis() >= threshold) {
+                info.leakReported = true;
+                this.leakListener.onLeakSuspected(info);
+            }
+        }
+    }
+
+    private void expungeCollectedProxies() {
+        Reference<? extends Connection> reference;
+        while ((reference = this.referenceQueue.poll()) != null) {
+            String connectionId = ((ProxyReference) reference).connectionId;
+            OpenConnectionInfo info = this.openConnections.remove(connectionId);
+            if (info != null) {
+                this.leakListener.onUnclosedConnectionCollected(info);
+            }
+        }
+    }
+
+    /**
+     * Start a background daemon thread that calls {@link #checkLeaks()} periodically.
+     *
+     * @param period   interval between checks
+     * @param timeUnit time unit of period
+     */
+    public synchronized void start(long period, TimeUnit timeUnit) {
+        if (this.scheduler != null) {
+            throw new IllegalStateException("Leak detection is already started");
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "datasource-proxy-leak-detection");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    checkLeaks();
+                } catch (RuntimeException ex) {
+                    // do not let the exception cancel the periodic task
+                    Logger.getLogger(LeakDetectionConnectionIdManager.class.getName())
+                            .log(Level.WARNING, "Failed to check connection leaks", ex);
+                }
+            }
+        }, period, period, timeUnit);
+    }
+
+    /**
+     * Stop the background thread started by {@link #start(long, TimeUnit)}.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+            this.scheduler = null;
+        }
+    }
+
+    private static StackTraceElement[] captureStackTrace(int depth) {
+        if (STACK_WALKER_AVAILABLE) {
+            return StackWalkerCapture.capture(depth);
+        }
+        StackTraceElement[] elements = new Throwable().getStackTrace();
+        int start = 0;
+        while (start < elements.length && StackTraceUtils.isInternalFrame(elements[start].getClassName())) {
+            start++;
+        }
+        return Arrays.copyOfRange(elements, start, Math.min(elements.length, start + depth));
+    }
+
+    private static boolean isStackWalkerAvailable() {
+        try {
+            Class.forName("java.lang.StackWalker");
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+    }
+
+    public long getLeakThresholdMillis() {
+        return this.leakThresholdMillis;
+    }
+
+    /**
+     * Set threshold to consider a connection as a leak suspect.
+     *
+     * @param leakThresholdMillis threshold in milliseconds
+     */
+    public void setLeakThresholdMillis(long leakThresholdMillis) {
+        this.leakThresholdMillis = leakThresholdMillis;
+    }
+
+    public int getStackDepth() {
+        return this.stackDepth;
+    }
+
+    /**
+     * Set max num of stack frames to capture when a connection is acquired.
+     *
+     * Default is {@code 0} which disables stack capturing.
+     *
+     * @param stackDepth max num of stack frames
+     */
+    public void setStackDepth(int stackDepth) {
+        this.stackDepth = stackDepth;
+    }
+
+    public ConnectionLeakListener getLeakListener() {
+        return this.leakListener;
+    }
+
+    /**
+     * Set listener to receive leak reports.
+     *
+     * Default implementation writes a warning to {@code java.util.logging}.
+     *
+     * @param leakListener listener
+     */
+    public void setLeakListener(ConnectionLeakListener leakListener) {
+        this.leakListener = leakListener;
+    }
+
+    static class ProxyReference extends PhantomReference<Connection> {
+
+        private final String connectionId;
+
+        ProxyReference(Connection referent, ReferenceQueue<? super Connection> queue, String connectionId) {
+            super(referent, queue);
+            this.connectionId = connectionId;
+        }
+    }
+
+    @IgnoreJRERequirement
+    private static class StackWalkerCapture {
+
+        private static final StackWalker WALKER = StackWalker.getInstance();
+
+        static StackTraceElement[] capture(final int depth) {
+            return WALKER.walk(new java.util.function.Function<java.util.stream.Stream<StackWalker.StackFrame>, StackTraceElement[]>() {
+                @Override
+                public StackTraceElement[] apply(java.util.stream.Stream<StackWalker.StackFrame> frames) {
+                    List<StackTraceElement> elements = new ArrayList<StackTraceElement>(depth);
+                    java.util.Iterator<StackWalker.StackFrame> iterator = frames.iterator();
+                    boolean skipping = true;
+                    while (iterator.hasNext() && elements.size() < depth) {
+                        StackWalker.StackFrame frame = iterator.next();
+                        if (skipping && StackTraceUtils.isInternalFrame(frame.getClassName())) {
+                            continue;
+                        }
+                        skipping = false;
+                        elements.add(frame.toStackTraceElement());
+                    }
+                    return elements.toArray(new StackTraceElement[elements.size()]);
+                }
+            });
+        }
+    }
+
+    private static class LoggingConnectionLeakListener implements ConnectionLeakListener {
+
+        private final Logger logger = Logger.getLogger(LeakDetectionConnectionIdManager.class.getName());
+
+        @Override
+        public void onLeakSuspected(OpenConnectionInfo openConnectionInfo) {
+            this.logger.warning("Connection leak suspected: " + openConnectionInfo);
+        }
+
+        @Override
+        public void onUnclosedConnectionCollected(OpenConnectionInfo openConnectionInfo) {
+            this.logger.warning("Connection was garbage collected without close: " + openConnectionInfo);
+        }
+    }
+
+}
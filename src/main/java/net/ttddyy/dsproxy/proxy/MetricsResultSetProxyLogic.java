@@ -0,0 +1,103 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ConnectionInfo;
+import net.ttddyy.dsproxy.ResultSetInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import net.ttddyy.dsproxy.listener.ResultSetCompletionListener;
+
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+
+/**
+ * Delegate method calls to the actual {@link ResultSet} while measuring its iteration.
+ *
+ * Counts rows, accumulates time spent in {@code next()}, and records time to the first row and the open duration.
+ * Metrics are reported to {@link ResultSetCompletionListener} once, when the result set is closed. A result set that
+ * the application leaves open is reported when its statement is closed, re-executed, or moves to the next result;
+ * closing only the connection does not report it.
+ *
+ * <p>When no {@link net.ttddyy.dsproxy.listener.MethodExecutionListener} is registered, method calls are delegated
+ * without creating {@link MethodExecutionContext}.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see MetricsResultSetProxyLogicFactory
+ * @since 1.11
+ */
+public class MetricsResultSetProxyLogic extends ProxyLogicSupport implements ResultSetProxyLogic {
+
+    private final ResultSet resultSet;
+    private final ConnectionInfo connectionInfo;
+    private final ProxyConfig proxyConfig;
+    private final ResultSetCompletionListener listener;
+    private final String query;
+
+    private final long openTime = System.nanoTime();
+    private long rowCount;
+    private long nextTime;
+    private long timeToFirstRow = -1;
+    private boolean completed;
+
+    /**
+     * @param resultSet      result set
+     * @param query          query that created the result set. {@code null} when unknown
+     * @param connectionInfo connection info
+     * @param proxyConfig    proxy config
+     * @param listener       callback for the closed result set
+     */
+    public MetricsResultSetProxyLogic(ResultSet resultSet, String query, ConnectionInfo connectionInfo,
+                                      ProxyConfig proxyConfig, ResultSetCompletionListener listener) {
+        this.resultSet = resultSet;
+        this.query = query;
+        this.connectionInfo = connectionInfo;
+        this.proxyConfig = proxyConfig;
+        this.listener = listener;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (this.proxyConfig.getMethodListener().getListeners().isEmpty()) {
+            return performProxyLogic(proxy, method, args, null);
+        }
+        return proceedMethodExecution(this.proxyConfig, this.resultSet, this.connectionInfo, proxy, method, args);
+    }
+
+    @Override
+    protected Object performProxyLogic(Object proxy, Method method, Object[] args, MethodExecutionContext methodContext) throws Throwable {
+        final String methodName = method.getName();
+        if ("next".equals(methodName)) {
+            long start = System.nanoTime();
+            boolean hasNext = this.resultSet.next();
+            long end = System.nanoTime();
+            this.nextTime += end - start;
+            if (hasNext) {
+                if (this.rowCount++ == 0) {
+                    this.timeToFirstRow = end - this.openTime;
+                }
+            }
+            return hasNext;
+        } else if ("close".equals(methodName)) {
+            try {
+                this.resultSet.close();
+            } finally {
+                complete();
+            }
+            return null;
+        } else if (isCommonMethod(methodName)) {
+            return handleCommonMethod(methodName, this.resultSet, this.proxyConfig, args);
+        }
+        return proceedExecution(method, this.resultSet, args);
+    }
+
+    private void complete() {
+        if (this.completed) {
+            return;
+        }
+        this.completed = true;
+        long openDuration = System.nanoTime() - this.openTime;
+        String fingerprint = this.query != null ? QueryUtils.fingerprint(this.query) : null;
+        this.listener.onComplete(new ResultSetInfo(this.connectionInfo, this.query, fingerprint, this.rowCount,
+                this.nextTime, this.timeToFirstRow, openDuration));
+    }
+
+}
@@ -0,0 +1,40 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ConnectionInfo;
+import net.ttddyy.dsproxy.listener.ResultSetCompletionListener;
+
+import java.sql.ResultSet;
+
+/**
+ * Factory to create {@link MetricsResultSetProxyLogic}.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class MetricsResultSetProxyLogicFactory implements QueryAwareResultSetProxyLogicFactory,
+        StatementBoundResultSetProxyLogicFactory {
+
+    private final ResultSetCompletionListener listener;
+
+    /**
+     * @param listener callback for closed result sets
+     */
+    public MetricsResultSetProxyLogicFactory(ResultSetCompletionListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public ResultSetProxyLogic create(ResultSet resultSet, ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
+        return create(resultSet, null, connectionInfo, proxyConfig);
+    }
+
+    @Override
+    public ResultSetProxyLogic create(ResultSet resultSet, String query, ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
+        return new MetricsResultSetProxyLogic(resultSet, query, connectionInfo, proxyConfig, this.listener);
+    }
+
+    public ResultSetCompletionListener getListener() {
+        return this.listener;
+    }
+
+}
@@ -0,0 +1,113 @@
+package net.ttddyy.dsproxy.proxy;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Information about an open connection tracked by {@link LeakDetectionConnectionIdManager}.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class OpenConnectionInfo {
+
+    private static final StackTraceElement[] EMPTY_STACK = new StackTraceElement[0];
+
+    // "Thread#threadId()", available on Java 19+. null on earlier versions.
+    private static final Method THREAD_ID = findThreadId();
+
+    private final String connectionId;
+    private final long openTimestamp;  // wall clock for reporting
+    private final long openNanoTime;   // monotonic for elapsed time
+    private final String threadName;
+    private final long threadId;
+    private final StackTraceElement[] stackTrace;
+
+    volatile boolean leakReported;
+    volatile LeakDetectionConnectionIdManager.ProxyReference proxyReference;
+
+    public OpenConnectionInfo(String connectionId, Thread thread, StackTraceElement[] stackTrace) {
+        this.connectionId = connectionId;
+        this.openTimestamp = System.currentTimeMillis();
+        this.openNanoTime = System.nanoTime();
+        this.threadName = thread.getName();
+        this.threadId = getThreadId(thread);
+        this.stackTrace = stackTrace != null ? stackTrace : EMPTY_STACK;
+    }
+
+    private static Method findThreadId() {
+        try {
+            return Thread.class.getMethod("threadId");
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    // "Thread#getId()" is deprecated since Java 19 but it is the only accessor on earlier versions
+    @SuppressWarnings("deprecation")
+    private static long getThreadId(Thread thread) {
+        if (THREAD_ID != null) {
+            try {
+                return (Long) THREAD_ID.invoke(thread);
+            } catch (Exception ex) {
+                // fall back to "getId()" which returns the same value
+            }
+        }
+        return thread.getId();
+    }
+
+    public String getConnectionId() {
+        return this.connectionId;
+    }
+
+    /**
+     * @return time in milliseconds since epoch when the connection is acquired
+     */
+    public long getOpenTimestamp() {
+        return this.openTimestamp;
+    }
+
+    /**
+     * @return elapsed time in milliseconds since the connection is acquired
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.openNanoTime);
+    }
+
+    public String getThreadName() {
+        return this.threadName;
+    }
+
+    public long getThreadId() {
+        return this.threadId;
+    }
+
+    /**
+     * Stack trace of the caller that acquired the connection.
+     *
+     * @return stack trace. Empty array when stack capturing is disabled.
+     */
+    public StackTraceElement[] getStackTrace() {
+        return this.stackTrace;
+    }
+
+    /**
+     * @return {@code true} when this connection has already been reported as a leak suspect
+     */
+    public boolean isLeakReported() {
+        return this.leakReported;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("connectionId=").append(this.connectionId);
+        sb.append(", thread=").append(this.threadName);
+        sb.append(", elapsed=").append(getElapsedMillis()).append("ms");
+        for (StackTraceElement element : this.stackTrace) {
+            sb.append("\n\tat ").append(element);
+        }
+        return sb.toString();
+    }
+
+}
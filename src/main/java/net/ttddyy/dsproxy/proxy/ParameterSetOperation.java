@@ -1,6 +1,16 @@
 package net.ttddyy.dsproxy.proxy;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Keeps a method and its arguments when parameter-set-method is called.
@@ -11,6 +21,11 @@ import java.lang.reflect.Method;
  */
 public class ParameterSetOperation {
 
+    private static final Set<String> STREAM_OR_LOB_METHOD_NAMES = Collections.unmodifiableSet(
+            new HashSet<String>(Arrays.asList("setAsciiStream", "setBinaryStream", "setCharacterStream",
+                    "setNCharacterStream", "setUnicodeStream", "setBlob", "setClob", "setNClob"))
+    );
+
     /**
      * Check the given operation is {@link java.sql.CallableStatement#registerOutParameter} method by method name.
      *
@@ -35,6 +50,28 @@ public class ParameterSetOperation {
         return StatementMethodNames.PARAMETER_METHOD_SET_NULL.equals(methodName);
     }
 
+    /**
+     * Check the given operation sets a stream or a LOB, which may be consumed when the statement is executed.
+     *
+     * @param operation a parameter set operation
+     * @return true if it sets {@link InputStream}, {@link Reader}, {@link Blob} or {@link Clob}
+     * @since 1.11
+     */
+    public static boolean isStreamOrLobParameterOperation(ParameterSetOperation operation) {
+        if (operation instanceof PrimitiveParameterSetOperation) {
+            return false;
+        }
+        if (STREAM_OR_LOB_METHOD_NAMES.contains(operation.getMethod().getName())) {
+            return true;
+        }
+        Object[] args = operation.getArgs();
+        if (args != null && args.length > 1) {
+            Object value = args[1];
+            return value instanceof InputStream || value instanceof Reader || value instanceof Blob || value instanceof Clob;
+        }
+        return false;
+    }
+
     private Method method;
     private Object[] args;
 
@@ -62,4 +99,28 @@ public class ParameterSetOperation {
     public void setArgs(Object[] args) {
         this.args = args;
     }
+
+    /**
+     * Perform this set operation on the statement.
+     *
+     * @param statement statement to set the parameter
+     * @throws SQLException when the set method failed
+     * @since 1.11
+     */
+    public void invoke(Object statement) throws SQLException {
+        try {
+            this.method.invoke(statement, getArgs());
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getTargetException();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
 }
@@ -0,0 +1,322 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.AttributeKey;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Configuration and metrics of per connection {@link PreparedStatement} caching.
+ *
+ * When configured, each connection keeps up to {@link #getMaxSize()} prepared statements in LRU order. Statements are
+ * keyed by the query(after query transformation), result set type, concurrency, holdability and auto-generated keys
+ * arguments of {@code Connection#prepareStatement}. Calling {@code close()} on a proxied prepared statement clears its
+ * parameters, batch and warnings, closes its current result set, and returns the physical statement to the cache.
+ * The proxy itself becomes closed. Cached statements are closed when evicted or when the connection is closed.
+ *
+ * <p>Fetch size is reset to the value before the application or {@link FetchSizeAdvisor} changed it when a statement
+ * is returned to the cache. Other statement settings, such as max rows and query timeout, are not reset. Callable
+ * statements are not cached.
+ *
+ * <p>Metrics are aggregated across all connections.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see net.ttddyy.dsproxy.support.ProxyDataSourceBuilder#preparedStatementCache(PreparedStatementCache)
+ * @since 1.11
+ */
+public class PreparedStatementCache {
+
+    /**
+     * Default max num of cached statements per connection.
+     */
+    public static final int DEFAULT_MAX_SIZE = 50;
+
+    static final AttributeKey<ConnectionStatements> CONNECTION_STATEMENTS =
+            AttributeKey.create("connectionStatements", ConnectionStatements.class);
+
+    private final int maxSize;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public PreparedStatementCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize max num of cached statements per connection
+     */
+    public PreparedStatementCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Create a cache for a connection.
+     *
+     * @return statements cache of a connection
+     */
+    public ConnectionStatements createConnectionStatements() {
+        return new ConnectionStatements();
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    /**
+     * Create a cache key from arguments of {@code Connection#prepareStatement}.
+     *
+     * @param args arguments. first one is the query.
+     * @return cache key
+     */
+    static Object createKey(Object[] args) {
+        String query = (String) args[0];
+        int resultSetType = ResultSet.TYPE_FORWARD_ONLY;
+        int resultSetConcurrency = ResultSet.CONCUR_READ_ONLY;
+        int resultSetHoldability = 0;  // driver default
+        int autoGeneratedKeys = Statement.NO_GENERATED_KEYS;
+        int[] columnIndexes = null;
+        String[] columnNames = null;
+
+        if (args.length == 2) {
+            if (args[1] instanceof Integer) {
+                autoGeneratedKeys = (Integer) args[1];
+            } else if (args[1] instanceof int[]) {
+                columnIndexes = (int[]) args[1];
+            } else {
+                columnNames = (String[]) args[1];
+            }
+        } else if (args.length >= 3) {
+            resultSetType = (Integer) args[1];
+            resultSetConcurrency = (Integer) args[2];
+            if (args.length == 4) {
+                resultSetHoldability = (Integer) args[3];
+            }
+        }
+        return new Key(query, resultSetType, resultSetConcurrency, resultSetHoldability, autoGeneratedKeys,
+                columnIndexes, columnNames);
+    }
+
+    /**
+     * Prepared statements cached for a connection.
+     *
+     * <p>Statements handed out by {@link #checkout(Object)} or registered by {@link #register(PreparedStatement, Object)}
+     * are tracked until they are returned by {@link #checkin(PreparedStatement)}.
+     */
+    public class ConnectionStatements {
+
+        // guarded by "this". insertion order is the order of returning to the cache.
+        private final LinkedHashMap<Object, PreparedStatement> cached = new LinkedHashMap<Object, PreparedStatement>();
+        private final Map<PreparedStatement, Object> checkedOut = new IdentityHashMap<PreparedStatement, Object>();
+
+        /**
+         * Take a cached statement.
+         *
+         * @param key cache key
+         * @return cached statement or {@code null}
+         */
+        synchronized PreparedStatement checkout(Object key) {
+            PreparedStatement statement = this.cached.remove(key);
+            if (statement == null) {
+                PreparedStatementCache.this.missCount.incrementAndGet();
+                return null;
+            }
+            PreparedStatementCache.this.hitCount.incrementAndGet();
+            this.checkedOut.put(statement, key);
+            return statement;
+        }
+
+        /**
+         * Track a newly prepared statement, so that it is returned to the cache on close.
+         *
+         * @param statement prepared statement
+         * @param key       cache key
+         */
+        synchronized void register(PreparedStatement statement, Object key) {
+            this.checkedOut.put(statement, key);
+        }
+
+        /**
+         * Return a statement to the cache.
+         *
+         * @param statement physical statement to return
+         * @return {@code true} if the statement was tracked by this cache and has been returned or closed
+         * @throws SQLException when failed to close the statement
+         */
+        boolean checkin(PreparedStatement statement) throws SQLException {
+            return checkin(statement, -1);
+        }
+
+        /**
+         * Return a statement to the cache.
+         *
+         * @param statement physical statement to return
+         * @param fetchSize fetch size to reset on the statement. {@code -1} when the fetch size has not been changed
+         * @return {@code true} if the statement was tracked by this cache and has been returned or closed
+         * @throws SQLException when failed to close the statement
+         */
+        boolean checkin(PreparedStatement statement, int fetchSize) throws SQLException {
+            Object key;
+            synchronized (this) {
+                key = this.checkedOut.remove(statement);
+            }
+            if (key == null) {
+                return false;
+            }
+
+            try {
+                ResultSet resultSet = statement.getResultSet();
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.clearWarnings();
+                if (fetchSize >= 0) {
+                    statement.setFetchSize(fetchSize);
+                }
+            } catch (SQLException ex) {
+                statement.close();  // not reusable
+                return true;
+            }
+
+            List<PreparedStatement> toClose = new ArrayList<PreparedStatement>();
+            synchronized (this) {
+                if (this.cached.containsKey(key)) {
+                    toClose.add(statement);  // another statement with the same key has been returned
+                } else {
+                    this.cached.put(key, statement);
+                    Iterator<PreparedStatement> iterator = this.cached.values().iterator();
+                    while (this.cached.size() > PreparedStatementCache.this.maxSize) {
+                        toClose.add(iterator.next());
+                        iterator.remove();
+                        PreparedStatementCache.this.evictionCount.incrementAndGet();
+                    }
+                }
+            }
+            closeAll(toClose);
+            return true;
+        }
+
+        /**
+         * Close all cached statements.
+         *
+         * @throws SQLException when failed to close statements
+         */
+        void close() throws SQLException {
+            List<PreparedStatement> toClose;
+            synchronized (this) {
+                toClose = new ArrayList<PreparedStatement>(this.cached.values());
+                this.cached.clear();
+                this.checkedOut.clear();
+            }
+            closeAll(toClose);
+        }
+
+        /**
+         * @return num of statements in the cache
+         */
+        public synchronized int size() {
+            return this.cached.size();
+        }
+
+        private void closeAll(List<PreparedStatement> statements) throws SQLException {
+            SQLException failure = null;
+            for (PreparedStatement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+    }
+
+    private static final class Key {
+
+        private final String query;
+        private final int resultSetType;
+        private final int resultSetConcurrency;
+        private final int resultSetHoldability;
+        private final int autoGeneratedKeys;
+        private final int[] columnIndexes;
+        private final String[] columnNames;
+        private final int hash;
+
+        private Key(String query, int resultSetType, int resultSetConcurrency, int resultSetHoldability,
+                    int autoGeneratedKeys, int[] columnIndexes, String[] columnNames) {
+            this.query = query;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+            this.resultSetHoldability = resultSetHoldability;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+            this.columnIndexes = columnIndexes;
+            this.columnNames = columnNames;
+
+            int result = query.hashCode();
+            result = 31 * result + resultSetType;
+            result = 31 * result + resultSetConcurrency;
+            result = 31 * result + resultSetHoldability;
+            result = 31 * result + autoGeneratedKeys;
+            result = 31 * result + Arrays.hashCode(columnIndexes);
+            result = 31 * result + Arrays.hashCode(columnNames);
+            this.hash = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.hash == other.hash && this.query.equals(other.query)
+                    && this.resultSetType == other.resultSetType
+                    && this.resultSetConcurrency == other.resultSetConcurrency
+                    && this.resultSetHoldability == other.resultSetHoldability
+                    && this.autoGeneratedKeys == other.autoGeneratedKeys
+                    && Arrays.equals(this.columnIndexes, other.columnIndexes)
+                    && Arrays.equals(this.columnNames, other.columnNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+}
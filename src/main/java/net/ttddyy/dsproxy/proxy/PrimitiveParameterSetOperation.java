@@ -0,0 +1,198 @@
+package net.ttddyy.dsproxy.proxy;
+
+import java.lang.reflect.Method;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * {@link ParameterSetOperation} of a primitive value, such as {@code setInt} or {@code setLong}.
+ *
+ * <p>The value is kept as a primitive and set by calling the setter directly, without boxing nor reflection.
+ * {@link #getArgs()} boxes the arguments on first access.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see net.ttddyy.dsproxy.transform.ParameterReplacer
+ * @since 1.11
+ */
+public final class PrimitiveParameterSetOperation extends ParameterSetOperation {
+
+    private static final int TYPE_BOOLEAN = 0;
+    private static final int TYPE_BYTE = 1;
+    private static final int TYPE_SHORT = 2;
+    private static final int TYPE_INT = 3;
+    private static final int TYPE_LONG = 4;
+    private static final int TYPE_FLOAT = 5;
+    private static final int TYPE_DOUBLE = 6;
+
+    public static PrimitiveParameterSetOperation ofBoolean(Method method, ParameterKey key, boolean value) {
+        return new PrimitiveParameterSetOperation(method, key, TYPE_BOOLEAN, value ? 1 : 0, 0);
+    }
+
+    public static PrimitiveParameterSetOperation ofByte(Method method, ParameterKey key, byte value) {
+        return new PrimitiveParameterSetOperation(method, key, TYPE_BYTE, value, 0);
+    }
+
+    public static PrimitiveParameterSetOperation ofShort(Method method, ParameterKey key, short value) {
+        return new PrimitiveParameterSetOperation(method, key, TYPE_SHORT, value, 0);
+    }
+
+    public static PrimitiveParameterSetOperation ofInt(Method method, ParameterKey key, int value) {
+        return new PrimitiveParameterSetOperation(method, key, TYPE_INT, value, 0);
+    }
+
+    public static PrimitiveParameterSetOperation ofLong(Method method, ParameterKey key, long value) {
+        return new PrimitiveParameterSetOperation(method, key, TYPE_LONG, value, 0);
+    }
+
+    public static PrimitiveParameterSetOperation ofFloat(Method method, ParameterKey key, float value) {
+        return new PrimitiveParameterSetOperation(method, key, TYPE_FLOAT, 0, value);
+    }
+
+    public static PrimitiveParameterSetOperation ofDouble(Method method, ParameterKey key, double value) {
+        return new PrimitiveParameterSetOperation(method, key, TYPE_DOUBLE, 0, value);
+    }
+
+    private final ParameterKey key;
+    private final int type;
+    private final long longValue;  // boolean, byte, short, int and long
+    private final double doubleValue;  // float and double
+    private Object[] boxedArgs;  // created on first access
+
+    // true when the method or arguments are replaced by the setters
+    private boolean overridden;
+
+    private PrimitiveParameterSetOperation(Method method, ParameterKey key, int type, long longValue, double doubleValue) {
+        super(method, null);
+        this.key = key;
+        this.type = type;
+        this.longValue = longValue;
+        this.doubleValue = doubleValue;
+    }
+
+    @Override
+    public Object[] getArgs() {
+        if (this.overridden) {
+            return super.getArgs();
+        }
+        Object[] args = this.boxedArgs;
+        if (args == null) {
+            Object key = this.key.isByIndex() ? (Object) this.key.getIndex() : this.key.getName();
+            args = new Object[]{key, getValue()};
+            this.boxedArgs = args;
+        }
+        return args;
+    }
+
+    @Override
+    public void setMethod(Method method) {
+        super.setArgs(getArgs());
+        this.overridden = true;
+        super.setMethod(method);
+    }
+
+    @Override
+    public void setArgs(Object[] args) {
+        this.overridden = true;
+        super.setArgs(args);
+    }
+
+    @Override
+    public void invoke(Object statement) throws SQLException {
+        if (this.overridden) {
+            super.invoke(statement);
+        } else if (this.key.isByIndex()) {
+            invoke((PreparedStatement) statement, this.key.getIndex());
+        } else {
+            invoke((CallableStatement) statement, this.key.getName());
+        }
+    }
+
+    private void invoke(PreparedStatement ps, int index) throws SQLException {
+        switch (this.type) {
+            case TYPE_BOOLEAN:
+                ps.setBoolean(index, this.longValue != 0);
+                break;
+            case TYPE_BYTE:
+                ps.setByte(index, (byte) this.longValue);
+                break;
+            case TYPE_SHORT:
+                ps.setShort(index, (short) this.longValue);
+                break;
+            case TYPE_INT:
+                ps.setInt(index, (int) this.longValue);
+                break;
+            case TYPE_LONG:
+                ps.setLong(index, this.longValue);
+                break;
+            case TYPE_FLOAT:
+                ps.setFloat(index, (float) this.doubleValue);
+                break;
+            default:
+                ps.setDouble(index, this.doubleValue);
+                break;
+        }
+    }
+
+    private void invoke(CallableStatement cs, String name) throws SQLException {
+        switch (this.type) {
+            case TYPE_BOOLEAN:
+                cs.setBoolean(name, this.longValue != 0);
+                break;
+            case TYPE_BYTE:
+                cs.setByte(name, (byte) this.longValue);
+                break;
+            case TYPE_SHORT:
+                cs.setShort(name, (short) this.longValue);
+                break;
+            case TYPE_INT:
+                cs.setInt(name, (int) this.longValue);
+                break;
+            case TYPE_LONG:
+                cs.setLong(name, this.longValue);
+                break;
+            case TYPE_FLOAT:
+                cs.setFloat(name, (float) this.doubleValue);
+                break;
+            default:
+                cs.setDouble(name, this.doubleValue);
+                break;
+        }
+    }
+
+    /**
+     * @return boxed value
+     */
+    public Object getValue() {
+        switch (this.type) {
+            case TYPE_BOOLEAN:
+                return this.longValue != 0;
+            case TYPE_BYTE:
+                return (byte) this.longValue;
+            case TYPE_SHORT:
+                return (short) this.longValue;
+            case TYPE_INT:
+                return (int) this.longValue;
+            case TYPE_LONG:
+                return this.longValue;
+            case TYPE_FLOAT:
+                return (float) this.doubleValue;
+            default:
+                return this.doubleValue;
+        }
+    }
+
+    /**
+     * Compare the set operation without boxing.
+     *
+     * @param other operation to compare
+     * @return {@code true} if both set the same value to the same parameter with the same method
+     */
+    public boolean isSameOperation(PrimitiveParameterSetOperation other) {
+        return !this.overridden && !other.overridden && this.type == other.type
+                && this.longValue == other.longValue
+                && Double.doubleToLongBits(this.doubleValue) == Double.doubleToLongBits(other.doubleValue)
+                && this.key.equals(other.key) && getMethod().equals(other.getMethod());
+    }
+
+}
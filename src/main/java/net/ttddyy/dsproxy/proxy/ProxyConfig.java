@@ -6,6 +6,7 @@ import net.ttddyy.dsproxy.listener.ChainListener;
 import net.ttddyy.dsproxy.listener.CompositeMethodListener;
 import net.ttddyy.dsproxy.listener.MethodExecutionListener;
 import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.metrics.ConnectionMetrics;
 import net.ttddyy.dsproxy.transform.ParameterTransformer;
 import net.ttddyy.dsproxy.transform.QueryTransformer;
 
@@ -41,6 +42,14 @@ public class ProxyConfig {
         private GeneratedKeysConfig generatedKeysConfig = new GeneratedKeysConfig();
         private StopwatchFactory stopwatchFactory = new SystemStopwatchFactory();
         private boolean retrieveIsolationLevel;
+        private boolean reuseExecutionInfo;
+        private ConnectionMetrics connectionMetrics;  // can be null if connection metrics is disabled
+        private StatementCoalescing statementCoalescing;  // can be null if statement coalescing is disabled
+        private ResultCache resultCache;  // can be null if result cache is disabled
+        private PreparedStatementCache preparedStatementCache;  // can be null if prepared statement cache is disabled
+        private ResultSetShapeCache resultSetShapeCache;  // can be null if result set shape cache is disabled
+        private ResultSetProxyPolicy resultSetProxyPolicy;  // can be null to proxy all result sets
+        private FetchSizeAdvisor fetchSizeAdvisor;  // can be null if fetch size advisor is disabled
 
         public static Builder create() {
             return new Builder();
@@ -63,6 +72,14 @@ public class ProxyConfig {
                     .retrieveGeneratedKeysForBatchPreparedOrCallable(proxyConfig.generatedKeysConfig.retrieveForBatchPreparedOrCallable)
                     .autoCloseGeneratedKeys(proxyConfig.generatedKeysConfig.autoClose)
                     .retrieveIsolationLevel(proxyConfig.retrieveIsolationLevel)
+                    .reuseExecutionInfo(proxyConfig.reuseExecutionInfo)
+                    .connectionMetrics(proxyConfig.connectionMetrics)
+                    .statementCoalescing(proxyConfig.statementCoalescing)
+                    .resultCache(proxyConfig.resultCache)
+                    .preparedStatementCache(proxyConfig.preparedStatementCache)
+                    .resultSetShapeCache(proxyConfig.resultSetShapeCache)
+                    .resultSetProxyPolicy(proxyConfig.resultSetProxyPolicy)
+                    .fetchSizeAdvisor(proxyConfig.fetchSizeAdvisor)
                     ;
         }
 
@@ -78,6 +95,14 @@ public class ProxyConfig {
             proxyConfig.methodListener = this.methodListener;
             proxyConfig.stopwatchFactory = this.stopwatchFactory;
             proxyConfig.retrieveIsolationLevel = this.retrieveIsolationLevel;
+            proxyConfig.reuseExecutionInfo = this.reuseExecutionInfo;
+            proxyConfig.connectionMetrics = this.connectionMetrics;
+            proxyConfig.statementCoalescing = this.statementCoalescing;
+            proxyConfig.resultCache = this.resultCache;
+            proxyConfig.preparedStatementCache = this.preparedStatementCache;
+            proxyConfig.resultSetShapeCache = this.resultSetShapeCache;
+            proxyConfig.resultSetProxyPolicy = this.resultSetProxyPolicy;
+            proxyConfig.fetchSizeAdvisor = this.fetchSizeAdvisor;
 
             // generated keys
             proxyConfig.generatedKeysConfig.proxyLogicFactory = this.generatedKeysConfig.proxyLogicFactory;
@@ -183,6 +208,104 @@ public class ProxyConfig {
             return this;
         }
 
+        /**
+         * When set to {@code true}, statement proxies reuse {@link ExecutionInfo} and {@link net.ttddyy.dsproxy.QueryInfo}
+         * objects across executions.
+         *
+         * @param reuseExecutionInfo whether to reuse execution info objects
+         * @return builder
+         * @see ExecutionInfo#retain()
+         * @since 1.11
+         */
+        public Builder reuseExecutionInfo(boolean reuseExecutionInfo) {
+            this.reuseExecutionInfo = reuseExecutionInfo;
+            return this;
+        }
+
+        /**
+         * Set {@link ConnectionMetrics} to record connection lifecycle metrics.
+         *
+         * @param connectionMetrics connection metrics. {@code null} to disable.
+         * @return builder
+         * @since 1.11
+         */
+        public Builder connectionMetrics(ConnectionMetrics connectionMetrics) {
+            this.connectionMetrics = connectionMetrics;
+            return this;
+        }
+
+        /**
+         * Set {@link StatementCoalescing} to defer repeated single-row updates into JDBC batches.
+         *
+         * @param statementCoalescing statement coalescing configuration. {@code null} to disable.
+         * @return builder
+         * @since 1.11
+         */
+        public Builder statementCoalescing(StatementCoalescing statementCoalescing) {
+            this.statementCoalescing = statementCoalescing;
+            return this;
+        }
+
+        /**
+         * Set {@link ResultCache} to cache results of registered queries.
+         *
+         * @param resultCache result cache. {@code null} to disable.
+         * @return builder
+         * @since 1.11
+         */
+        public Builder resultCache(ResultCache resultCache) {
+            this.resultCache = resultCache;
+            return this;
+        }
+
+        /**
+         * Set {@link PreparedStatementCache} to cache prepared statements per connection.
+         *
+         * @param preparedStatementCache prepared statement cache. {@code null} to disable.
+         * @return builder
+         * @since 1.11
+         */
+        public Builder preparedStatementCache(PreparedStatementCache preparedStatementCache) {
+            this.preparedStatementCache = preparedStatementCache;
+            return this;
+        }
+
+        /**
+         * Set {@link ResultSetShapeCache} to reuse result set metadata among result sets of the same query.
+         *
+         * @param resultSetShapeCache result set shape cache. {@code null} to disable.
+         * @return builder
+         * @since 1.11
+         */
+        public Builder resultSetShapeCache(ResultSetShapeCache resultSetShapeCache) {
+            this.resultSetShapeCache = resultSetShapeCache;
+            return this;
+        }
+
+        /**
+         * Set {@link ResultSetProxyPolicy} to decide which result sets to proxy.
+         *
+         * @param resultSetProxyPolicy result set proxy policy. {@code null} to proxy all result sets.
+         * @return builder
+         * @since 1.11
+         */
+        public Builder resultSetProxyPolicy(ResultSetProxyPolicy resultSetProxyPolicy) {
+            this.resultSetProxyPolicy = resultSetProxyPolicy;
+            return this;
+        }
+
+        /**
+         * Set {@link FetchSizeAdvisor} to recommend fetch size of statements.
+         *
+         * @param fetchSizeAdvisor fetch size advisor. {@code null} to disable.
+         * @return builder
+         * @since 1.11
+         */
+        public Builder fetchSizeAdvisor(FetchSizeAdvisor fetchSizeAdvisor) {
+            this.fetchSizeAdvisor = fetchSizeAdvisor;
+            return this;
+        }
+
     }
 
     private String dataSourceName;
@@ -196,6 +319,14 @@ public class ProxyConfig {
     private GeneratedKeysConfig generatedKeysConfig = new GeneratedKeysConfig();
     private StopwatchFactory stopwatchFactory;
     private boolean retrieveIsolationLevel;
+    private boolean reuseExecutionInfo;
+    private ConnectionMetrics connectionMetrics;
+    private StatementCoalescing statementCoalescing;
+    private ResultCache resultCache;
+    private PreparedStatementCache preparedStatementCache;
+    private ResultSetShapeCache resultSetShapeCache;
+    private ResultSetProxyPolicy resultSetProxyPolicy;
+    private FetchSizeAdvisor fetchSizeAdvisor;
 
     public String getDataSourceName() {
         return dataSourceName;
@@ -340,4 +471,96 @@ public class ProxyConfig {
     public void setRetrieveIsolationLevel(boolean retrieveIsolationLevel) {
         this.retrieveIsolationLevel = retrieveIsolationLevel;
     }
+
+    /**
+     * Whether statement proxies reuse {@link ExecutionInfo} and {@link net.ttddyy.dsproxy.QueryInfo} objects.
+     *
+     * <p>When enabled, objects passed to {@link QueryExecutionListener} are only valid during the callbacks.
+     * Listeners that keep them must use {@link ExecutionInfo#retain()} and
+     * {@link net.ttddyy.dsproxy.QueryInfo#retainAll(List)}.
+     *
+     * @return {@code true} to reuse execution info objects
+     * @since 1.11
+     */
+    public boolean isReuseExecutionInfo() {
+        return this.reuseExecutionInfo;
+    }
+
+    /**
+     * Returns {@link ConnectionMetrics} that records connection lifecycle metrics.
+     *
+     * @return connection metrics or {@code null} when connection metrics is disabled
+     * @since 1.11
+     */
+    public ConnectionMetrics getConnectionMetrics() {
+        return this.connectionMetrics;
+    }
+
+    /**
+     * @return {@code true} when {@link ConnectionMetrics} is specified
+     * @since 1.11
+     */
+    public boolean isConnectionMetricsEnabled() {
+        return this.connectionMetrics != null;
+    }
+
+    /**
+     * Returns {@link StatementCoalescing} configuration.
+     *
+     * @return statement coalescing configuration or {@code null} when statement coalescing is disabled
+     * @since 1.11
+     */
+    public StatementCoalescing getStatementCoalescing() {
+        return this.statementCoalescing;
+    }
+
+    /**
+     * Returns {@link ResultCache}.
+     *
+     * @return result cache or {@code null} when result cache is disabled
+     * @since 1.11
+     */
+    public ResultCache getResultCache() {
+        return this.resultCache;
+    }
+
+    /**
+     * Returns {@link PreparedStatementCache}.
+     *
+     * @return prepared statement cache or {@code null} when prepared statement cache is disabled
+     * @since 1.11
+     */
+    public PreparedStatementCache getPreparedStatementCache() {
+        return this.preparedStatementCache;
+    }
+
+    /**
+     * Returns {@link ResultSetShapeCache}.
+     *
+     * @return result set shape cache or {@code null} when result set shape cache is disabled
+     * @since 1.11
+     */
+    public ResultSetShapeCache getResultSetShapeCache() {
+        return this.resultSetShapeCache;
+    }
+
+    /**
+     * Returns {@link ResultSetProxyPolicy}.
+     *
+     * @return result set proxy policy or {@code null} when all result sets are proxied
+     * @since 1.11
+     */
+    public ResultSetProxyPolicy getResultSetProxyPolicy() {
+        return this.resultSetProxyPolicy;
+    }
+
+    /**
+     * Returns {@link FetchSizeAdvisor}.
+     *
+     * @return fetch size advisor or {@code null} when fetch size advisor is disabled
+     * @since 1.11
+     */
+    public FetchSizeAdvisor getFetchSizeAdvisor() {
+        return this.fetchSizeAdvisor;
+    }
 }
@@ -0,0 +1,27 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ConnectionInfo;
+
+import java.sql.ResultSet;
+
+/**
+ * {@link ResultSetProxyLogicFactory} that receives the query which created the result set.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see JdbcProxyFactory#createResultSet(ResultSet, String, ConnectionInfo, ProxyConfig)
+ * @since 1.11
+ */
+public interface QueryAwareResultSetProxyLogicFactory extends ResultSetProxyLogicFactory {
+
+    /**
+     * Create a proxy logic for the result set.
+     *
+     * @param resultSet      result set
+     * @param query          query executed by the statement. {@code null} when unknown
+     * @param connectionInfo connection info
+     * @param proxyConfig    proxy config
+     * @return proxy logic
+     */
+    ResultSetProxyLogic create(ResultSet resultSet, String query, ConnectionInfo connectionInfo, ProxyConfig proxyConfig);
+
+}
@@ -0,0 +1,67 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ConnectionInfo;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link ResultSetProxyPolicy} to proxy result sets only for registered queries.
+ *
+ * Queries are compared by fingerprint(see {@link QueryUtils#fingerprint(String)}), so that a query executed with
+ * different literals matches the registered one. Decisions are memoized per query string up to
+ * {@link #MAX_MEMOIZED_QUERIES} queries.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class QueryResultSetProxyPolicy implements ResultSetProxyPolicy {
+
+    /**
+     * Max num of query strings to memoize the decision.
+     */
+    public static final int MAX_MEMOIZED_QUERIES = 1000;
+
+    private final Set<String> fingerprints = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ConcurrentMap<String, Boolean> decisions = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * @param queries queries to proxy result sets
+     */
+    public QueryResultSetProxyPolicy(String... queries) {
+        for (String query : queries) {
+            register(query);
+        }
+    }
+
+    /**
+     * Register a query to proxy its result sets.
+     *
+     * @param query query
+     * @return this
+     */
+    public QueryResultSetProxyPolicy register(String query) {
+        this.fingerprints.add(QueryUtils.fingerprint(query));
+        this.decisions.clear();
+        return this;
+    }
+
+    @Override
+    public boolean shouldProxy(String query, ConnectionInfo connectionInfo) {
+        if (query == null) {
+            return false;
+        }
+        Boolean decision = this.decisions.get(query);
+        if (decision == null) {
+            decision = this.fingerprints.contains(QueryUtils.fingerprint(query));
+            if (this.decisions.size() < MAX_MEMOIZED_QUERIES) {
+                this.decisions.put(query, decision);
+            }
+        }
+        return decision;
+    }
+
+}
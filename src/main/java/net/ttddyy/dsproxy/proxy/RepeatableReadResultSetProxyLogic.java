@@ -6,7 +6,9 @@ import net.ttddyy.dsproxy.listener.MethodExecutionContext;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -22,6 +24,9 @@ import static java.lang.String.format;
 /**
  * Allows {@link java.sql.ResultSet} to be consumed more than once.
  *
+ * <p>When rows and metadata are given to the builder instead of a {@link ResultSet}, the logic serves the given rows
+ * without a driver result set(e.g. cached result). Since 1.11.
+ *
  * @author Liam Williams
  * @author Réda Housni Alaoui
  * @see net.ttddyy.dsproxy.proxy.jdk.ResultSetInvocationHandler
@@ -57,6 +62,19 @@ public class RepeatableReadResultSetProxyLogic extends ProxyLogicSupport impleme
         }
     });
 
+    // getter methods which take column index or label. Method#getParameterTypes() copies an array per call.
+    private static final Set<Method> GET_METHODS = Collections.unmodifiableSet(
+            new HashSet<Method>() {
+                {
+                    for (Method method : ResultSet.class.getMethods()) {
+                        if (method.getName().startsWith("get") && method.getParameterTypes().length > 0) {
+                            add(method);
+                        }
+                    }
+                }
+            }
+    );
+
     private static final Object UNCONSUMED_RESULT_COLUMN = new Object();
 
     public static class Builder {
@@ -64,7 +82,10 @@ public class RepeatableReadResultSetProxyLogic extends ProxyLogicSupport impleme
         private ConnectionInfo connectionInfo;
         private ProxyConfig proxyConfig;
         private Map<String, Integer> columnNameToIndex;
+        private ColumnLabelIndex columnLabelIndex;
         private int columnCount;
+        private List<Object[]> cachedResults;
+        private ResultSetMetaData metaData;
 
         public static Builder create() {
             return new Builder();
@@ -76,7 +97,14 @@ public class RepeatableReadResultSetProxyLogic extends ProxyLogicSupport impleme
             logic.connectionInfo = this.connectionInfo;
             logic.proxyConfig = this.proxyConfig;
             logic.columnNameToIndex = this.columnNameToIndex;
+            logic.columnLabelIndex = this.columnLabelIndex;
             logic.columnCount = this.columnCount;
+            if (this.cachedResults != null) {
+                logic.cachedResults = this.cachedResults;
+                logic.metaData = this.metaData;
+                logic.resultSetConsumed = true;
+                logic.resultPointer = -1;
+            }
             return logic;
         }
 
@@ -100,13 +128,52 @@ public class RepeatableReadResultSetProxyLogic extends ProxyLogicSupport impleme
             return this;
         }
 
+        /**
+         * Case-insensitive label lookup used instead of {@link #columnNameToIndex(Map)}.
+         *
+         * @param columnLabelIndex label lookup
+         * @return builder
+         * @since 1.11
+         */
+        public Builder columnLabelIndex(ColumnLabelIndex columnLabelIndex) {
+            this.columnLabelIndex = columnLabelIndex;
+            return this;
+        }
+
         public Builder columnCount(int columnCount) {
             this.columnCount = columnCount;
             return this;
         }
+
+        /**
+         * Rows to serve without a driver result set. Each row is indexed by column index(1 based).
+         * Rows are not modified by the logic, and mutable values({@code byte[]} and {@link java.util.Date}) are
+         * returned as copies, so that the rows can be shared.
+         *
+         * @param cachedResults rows
+         * @return builder
+         * @since 1.11
+         */
+        public Builder cachedResults(List<Object[]> cachedResults) {
+            this.cachedResults = cachedResults;
+            return this;
+        }
+
+        /**
+         * Metadata returned by {@code getMetaData()} when rows are given by {@link #cachedResults(List)}.
+         *
+         * @param metaData metadata
+         * @return builder
+         * @since 1.11
+         */
+        public Builder metaData(ResultSetMetaData metaData) {
+            this.metaData = metaData;
+            return this;
+        }
     }
 
     private Map<String, Integer> columnNameToIndex;
+    private ColumnLabelIndex columnLabelIndex;
     private ResultSet resultSet;
     private ConnectionInfo connectionInfo;
     private int columnCount;
@@ -116,7 +183,8 @@ public class RepeatableReadResultSetProxyLogic extends ProxyLogicSupport impleme
     private boolean resultSetConsumed;
     private boolean closed;
     private Object[] currentResult;
-    private final List<Object[]> cachedResults = new ArrayList<Object[]>();
+    private List<Object[]> cachedResults = new ArrayList<Object[]>();
+    private ResultSetMetaData metaData;  // used when there is no driver result set
 
     private boolean wasNull;
 
@@ -129,6 +197,10 @@ public class RepeatableReadResultSetProxyLogic extends ProxyLogicSupport impleme
     protected Object performProxyLogic(Object proxy, Method method, Object[] args, MethodExecutionContext methodContext) throws Throwable {
         final String methodName = method.getName();
 
+        if (this.resultSet == null) {
+            return performDetachedLogic(proxy, method, args);
+        }
+
         if (!METHODS_TO_INTERCEPT.contains(methodName)) {
             return proceedExecution(method, this.resultSet, args);
         }
@@ -182,6 +254,58 @@ public class RepeatableReadResultSetProxyLogic extends ProxyLogicSupport impleme
         throw new UnsupportedOperationException(format("Method '%s' is not supported by this proxy", method));
     }
 
+    /**
+     * Serve given rows when there is no driver result set.
+     */
+    private Object performDetachedLogic(Object proxy, Method method, Object[] args) throws Throwable {
+        final String methodName = method.getName();
+        if ("toString".equals(methodName)) {
+            return "CachedResultSet [rows=" + this.cachedResults.size() + "]";
+        } else if ("equals".equals(methodName)) {
+            return proxy == args[0];
+        } else if ("hashCode".equals(methodName)) {
+            return System.identityHashCode(proxy);
+        } else if ("getTarget".equals(methodName)) {
+            return null;
+        } else if ("getProxyConfig".equals(methodName)) {
+            return this.proxyConfig;
+        } else if ("getDataSourceName".equals(methodName)) {
+            return this.proxyConfig.getDataSourceName();
+        } else if ("unwrap".equals(methodName)) {
+            if (((Class<?>) args[0]).isInstance(proxy)) {
+                return proxy;
+            }
+            throw new SQLException("Not a wrapper for " + ((Class<?>) args[0]).getName());
+        } else if ("isWrapperFor".equals(methodName)) {
+            return ((Class<?>) args[0]).isInstance(proxy);
+        } else if ("getMetaData".equals(methodName)) {
+            return this.metaData;
+        } else if ("close".equals(methodName)) {
+            this.closed = true;
+            return null;
+        } else if ("isClosed".equals(methodName)) {
+            return this.closed;
+        }
+
+        if (this.closed) {
+            throw new SQLException("Already closed");
+        }
+        if ("findColumn".equals(methodName)) {
+            return determineColumnIndex(args);
+        } else if (isWasNullMethod(method)) {
+            return this.wasNull;
+        } else if (isGetMethod(method)) {
+            return handleGetMethodUsingCache(method, args);
+        } else if (isNextMethod(method)) {
+            return handleNextMethodUsingCache();
+        } else if (isBeforeFirstMethod(method)) {
+            this.resultPointer = -1;
+            this.currentResult = null;
+            return null;
+        }
+        throw new SQLFeatureNotSupportedException(format("Method '%s' is not supported by this proxy", method));
+    }
+
     private void beforeNextOrBeforeFirst() throws SQLException {
         if (currentResult == null) {
             return;
@@ -230,7 +354,13 @@ public class RepeatableReadResultSetProxyLogic extends ProxyLogicSupport impleme
         } else if (resultPointer < cachedResults.size()) {
             int columnIndex = determineColumnIndex(args);
             Object columnValue = currentResult[columnIndex];
+            if (this.resultSet == null) {
+                columnValue = copyMutableValue(columnValue);  // given rows may be shared
+            }
             this.wasNull = isNullValue(columnValue, method, args);
+            if (columnValue != null && !(columnValue instanceof String) && "getString".equals(method.getName())) {
+                return columnValue.toString();
+            }
             if (!(columnValue instanceof Number)) {
                 return columnValue;
             }
@@ -240,6 +370,15 @@ public class RepeatableReadResultSetProxyLogic extends ProxyLogicSupport impleme
         }
     }
 
+    private static Object copyMutableValue(Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        } else if (value instanceof java.util.Date) {
+            return ((java.util.Date) value).clone();
+        }
+        return value;
+    }
+
     /**
      * Determine whether the retrieved value is {@code null} for {@link #wasNull}.
      * <p> Subclass may override this method to provide more sophisticated wasNull check.
@@ -263,7 +402,7 @@ public class RepeatableReadResultSetProxyLogic extends ProxyLogicSupport impleme
     }
 
     private boolean isGetMethod(Method method) {
-        return method.getName().startsWith("get") && method.getParameterTypes().length > 0;
+        return GET_METHODS.contains(method);
     }
 
     private boolean isNextMethod(Method method) {
@@ -284,6 +423,13 @@ public class RepeatableReadResultSetProxyLogic extends ProxyLogicSupport impleme
             return (Integer) lookup;
         }
         String columnName = (String) lookup;
+        if (this.columnLabelIndex != null) {
+            int index = this.columnLabelIndex.indexOf(columnName);
+            if (index < 0) {
+                throw new SQLException(format("Unknown column name '%s'", columnName));
+            }
+            return index;
+        }
         Integer indexForColumnName = columnNameToIndex(columnName);
         if (indexForColumnName != null) {
             return indexForColumnName;
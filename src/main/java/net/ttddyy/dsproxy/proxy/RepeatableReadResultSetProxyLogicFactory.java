@@ -6,42 +6,76 @@ import net.ttddyy.dsproxy.DataSourceProxyException;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Factory to create {@link RepeatableReadResultSetProxyLogic}.
  *
+ * <p>{@link ColumnLabelIndex} is shared among result sets with the same column labels. When
+ * {@link ResultSetShapeCache} is configured, the index is obtained from the cached shape of the query. Since 1.11.
+ *
  * @author Tadaya Tsuyukubo
  * @author Liam Williams
  * @since 1.4.3
  */
-public class RepeatableReadResultSetProxyLogicFactory implements ResultSetProxyLogicFactory {
+public class RepeatableReadResultSetProxyLogicFactory implements QueryAwareResultSetProxyLogicFactory {
+
+    private static final int MAX_SHARED_LABEL_INDEXES = 256;
+
+    private final ConcurrentMap<List<String>, ColumnLabelIndex> labelIndexes = new ConcurrentHashMap<List<String>, ColumnLabelIndex>();
 
     @Override
     public ResultSetProxyLogic create(ResultSet resultSet, ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
-        Map<String, Integer> columnNameToIndex = columnNameToIndex(resultSet);
+        return create(resultSet, null, connectionInfo, proxyConfig);
+    }
+
+    @Override
+    public ResultSetProxyLogic create(ResultSet resultSet, String query, ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
+        ColumnLabelIndex columnLabelIndex = columnLabelIndex(resultSet, query, proxyConfig);
         return RepeatableReadResultSetProxyLogic.Builder.create()
                 .resultSet(resultSet)
                 .connectionInfo(connectionInfo)
                 .proxyConfig(proxyConfig)
-                .columnNameToIndex(columnNameToIndex)
-                .columnCount(columnNameToIndex.size())
+                .columnLabelIndex(columnLabelIndex)
+                .columnCount(columnLabelIndex.getColumnCount())
                 .build();
     }
 
-    private Map<String, Integer> columnNameToIndex(ResultSet resultSet) {
+    private ColumnLabelIndex columnLabelIndex(ResultSet resultSet, String query, ProxyConfig proxyConfig) {
         try {
+            ResultSetShapeCache shapeCache = proxyConfig.getResultSetShapeCache();
+            if (shapeCache != null) {
+                return shapeCache.getShape(resultSet, query).getColumnLabelIndex();
+            }
             ResultSetMetaData metaData = resultSet.getMetaData();
             int columnCount = metaData.getColumnCount();
-            Map<String, Integer> columnNameToIndex = new HashMap<String, Integer>();
-            for (int i = 1; i <= columnCount; i++) {
-                columnNameToIndex.put(metaData.getColumnLabel(i).toUpperCase(), i);
+            String[] labels = new String[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                labels[i] = metaData.getColumnLabel(i + 1);
             }
-            return columnNameToIndex;
+            return sharedLabelIndex(labels);
         } catch (SQLException e) {
             throw new DataSourceProxyException("Failed to obtain resultset metadata", e);
         }
     }
 
+    private ColumnLabelIndex sharedLabelIndex(String[] labels) {
+        List<String> key = Arrays.asList(labels);
+        ColumnLabelIndex index = this.labelIndexes.get(key);
+        if (index == null) {
+            index = new ColumnLabelIndex(labels);
+            // stop sharing new shapes once the limit is reached
+            if (this.labelIndexes.size() < MAX_SHARED_LABEL_INDEXES) {
+                ColumnLabelIndex existing = this.labelIndexes.putIfAbsent(key, index);
+                if (existing != null) {
+                    index = existing;
+                }
+            }
+        }
+        return index;
+    }
+
 }
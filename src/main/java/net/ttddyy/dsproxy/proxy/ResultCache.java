@@ -0,0 +1,614 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.AttributeKey;
+import net.ttddyy.dsproxy.ConnectionInfo;
+import net.ttddyy.dsproxy.QueryType;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import net.ttddyy.dsproxy.proxy.jdk.ResultSetInvocationHandler;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side read-through cache of query results.
+ *
+ * Only queries registered by {@link #cacheQuery(String, String...)} are cached; queries are matched by fingerprint(see
+ * {@link QueryUtils#fingerprint(String)}). Results are keyed by the query and its parameters, and cached as rows of
+ * {@link RepeatableReadResultSetProxyLogic}. On a cache hit, {@code executeQuery()} returns the cached rows without
+ * calling the driver. Query listeners are still called with {@link #CACHE_HIT} attribute on {@link
+ * net.ttddyy.dsproxy.ExecutionInfo}, and {@link net.ttddyy.dsproxy.listener.DataSourceQueryCountListener} counts it as
+ * {@link net.ttddyy.dsproxy.QueryCount#getCacheHit()}.
+ *
+ * <p>Entries expire after the TTL, and least recently used entries are evicted when the estimated size exceeds the max
+ * bytes. When a non-SELECT statement mentioning one of the tables given at registration is executed on the same data
+ * source, cached results depending on the table are invalidated. Tables are matched by name as a word in the
+ * statement; writes through views, synonyms or triggers are not detected, thus register such tables or call {@link
+ * #invalidateTable(String)}. Stored procedure calls invalidate all cached results. Writes in uncommitted transactions
+ * of other connections are not visible to readers, thus the same results are invalidated again when the writing
+ * transaction ends by {@code commit}, {@code rollback}, {@code setAutoCommit} or connection {@code close}.
+ * Expired entries are removed when accessed, and by a sweep on store that runs at most once per TTL.
+ *
+ * <p>Results containing values other than strings, numbers, booleans, binaries and date/time values(e.g. LOBs),
+ * results larger than the max bytes, and prepared statements with non-cacheable parameters are not cached. Reading
+ * such results stops at the first non-cacheable row. Cached binary and date/time values are returned as copies.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see net.ttddyy.dsproxy.support.ProxyDataSourceBuilder#resultCache(ResultCache)
+ * @since 1.11
+ */
+public class ResultCache {
+
+    /**
+     * Set to {@link net.ttddyy.dsproxy.ExecutionInfo} when the result is returned from the cache.
+     */
+    public static final AttributeKey<Boolean> CACHE_HIT = AttributeKey.create("resultCacheHit", Boolean.class);
+
+    // tables written in the current transaction of a connection
+    private static final AttributeKey<PendingInvalidation> PENDING_INVALIDATION =
+            AttributeKey.create("resultCachePendingInvalidation", PendingInvalidation.class);
+
+    private static final int ROW_OVERHEAD_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+
+    private final long maxBytes;
+    private final long ttlNanos;
+
+    // fingerprint -> upper-cased table names
+    private final Map<String, String[]> registeredQueries = new ConcurrentHashMap<String, String[]>();
+    private final Set<String> registeredTables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    // guarded by "this"
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private long currentBytes;
+    private long lastExpirySweep;
+
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param maxBytes max estimated size of cached results
+     * @param ttl      time to live of cached results
+     * @param timeUnit time unit of ttl
+     */
+    public ResultCache(long maxBytes, long ttl, TimeUnit timeUnit) {
+        this.maxBytes = maxBytes;
+        this.ttlNanos = timeUnit.toNanos(ttl);
+    }
+
+    /**
+     * Register a query to cache.
+     *
+     * @param query  query to cache. Literal values and formatting may differ.
+     * @param tables tables that invalidate cached results of the query when written
+     * @return this instance
+     */
+    public ResultCache cacheQuery(String query, String... tables) {
+        String[] upperCaseTables = new String[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            upperCaseTables[i] = tables[i].toUpperCase(Locale.ROOT);
+            this.registeredTables.add(upperCaseTables[i]);
+        }
+        this.registeredQueries.put(QueryUtils.fingerprint(query), upperCaseTables);
+        return this;
+    }
+
+    /**
+     * @param query query
+     * @return {@code true} if the query is registered to cache
+     */
+    public boolean isTarget(String query) {
+        return query != null && this.registeredQueries.containsKey(QueryUtils.fingerprint(query));
+    }
+
+    /**
+     * Create a cache key.
+     *
+     * @param query      query
+     * @param parameters parameters of prepared statement. empty for statement.
+     * @return cache key, or {@code null} when the parameters are not cacheable
+     */
+    Object createKey(String query, Collection<ParameterSetOperation> parameters) {
+        List<Object> values = new ArrayList<Object>(parameters.size() * 3);
+        for (ParameterSetOperation operation : parameters) {
+            values.add(operation.getMethod().getName());
+            for (Object arg : operation.getArgs()) {
+                if (!isCacheableParameter(arg)) {
+                    return null;
+                }
+                values.add(arg);
+            }
+        }
+        return new Key(query, values.toArray());
+    }
+
+    /**
+     * @return current invalidation counter. Used to detect invalidation while populating the cache.
+     */
+    long getInvalidationCount() {
+        return this.invalidationCount.get();
+    }
+
+    /**
+     * Returns a result set of the cached result.
+     *
+     * @param key            cache key
+     * @param connectionInfo connection info
+     * @param proxyConfig    proxy config
+     * @return result set or {@code null} when not cached
+     */
+    ResultSet get(Object key, ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
+        Entry entry;
+        synchronized (this) {
+            entry = this.entries.get(key);
+            if (entry != null && currentTimeNanos() - entry.createdAt >= this.ttlNanos) {
+                removeEntry((Key) key, entry);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+        this.hitCount.incrementAndGet();
+        return createResultSet(entry.metaData, entry.columnLabelIndex, entry.columnCount, entry.rows,
+                connectionInfo, proxyConfig);
+    }
+
+    /**
+     * Read rows from the result set, store them when possible, and return a result set of the rows.
+     *
+     * <p>When the whole result is cacheable, the given result set is closed. Otherwise, reading stops at the row
+     * containing a non-cacheable value or exceeding the max bytes, and the returned result set serves the read rows
+     * then the rest from the given result set.
+     *
+     * @param key                 cache key
+     * @param query               query
+     * @param resultSet           result set from the driver
+     * @param invalidationCount   invalidation counter before the query is executed
+     * @param connectionInfo      connection info
+     * @param proxyConfig         proxy config
+     * @return result set of the read rows
+     * @throws SQLException on failure to read the result set
+     */
+    ResultSet put(Object key, String query, ResultSet resultSet, long invalidationCount,
+                  ConnectionInfo connectionInfo, ProxyConfig proxyConfig) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        ColumnLabelIndex columnLabelIndex = ColumnLabelIndex.of(metaData);
+
+        List<Object[]> rows = new ArrayList<Object[]>();
+        long bytes = 0;
+        boolean cacheable = true;
+        try {
+            while (cacheable && resultSet.next()) {
+                Object[] row = new Object[columnCount + 1];
+                for (int i = 1; i <= columnCount; i++) {
+                    Object value = resultSet.getObject(i);
+                    row[i] = value;
+                    long valueBytes = estimateBytes(value);
+                    if (valueBytes < 0) {
+                        cacheable = false;
+                    }
+                    bytes += valueBytes;
+                }
+                rows.add(row);
+                bytes += ROW_OVERHEAD_BYTES + REFERENCE_BYTES * (columnCount + 1);
+                if (bytes > this.maxBytes) {
+                    cacheable = false;
+                }
+            }
+        } catch (SQLException ex) {
+            resultSet.close();
+            throw ex;
+        } catch (RuntimeException ex) {
+            resultSet.close();
+            throw ex;
+        }
+
+        if (!cacheable) {
+            // rest of the rows are read from the driver
+            ResultSet readRows = createResultSet(new CachedResultSetMetaData(metaData), columnLabelIndex, columnCount,
+                    rows, connectionInfo, proxyConfig);
+            return (ResultSet) Proxy.newProxyInstance(ProxyJdbcObject.class.getClassLoader(),
+                    new Class[]{ResultSet.class}, new PartiallyReadResultSetHandler(readRows, resultSet));
+        }
+        resultSet.close();
+
+        Entry entry = new Entry(new CachedResultSetMetaData(metaData), columnLabelIndex, columnCount,
+                Collections.unmodifiableList(rows), bytes, getTables(query), currentTimeNanos());
+        synchronized (this) {
+            if (entry.createdAt - this.lastExpirySweep >= this.ttlNanos) {
+                removeExpired(entry.createdAt);
+                this.lastExpirySweep = entry.createdAt;
+            }
+            // do not store when invalidated while executing the query
+            if (this.invalidationCount.get() == invalidationCount) {
+                Entry previous = this.entries.put((Key) key, entry);
+                if (previous != null) {
+                    this.currentBytes -= previous.bytes;
+                }
+                this.currentBytes += bytes;
+                evictIfNecessary();
+            }
+        }
+        return createResultSet(entry.metaData, entry.columnLabelIndex, entry.columnCount, entry.rows,
+                connectionInfo, proxyConfig);
+    }
+
+    /**
+     * Invalidate cached results when the query writes to registered tables, or all cached results when the query
+     * calls a stored procedure.
+     *
+     * @param query executed query
+     */
+    public void onQuery(String query) {
+        onQuery(query, null);
+    }
+
+    /**
+     * Invalidate cached results written by the query, and remember them to invalidate again when the transaction of
+     * the connection ends.
+     *
+     * @param query          executed query
+     * @param connectionInfo connection in a transaction, or {@code null} in auto-commit mode
+     */
+    void onQuery(String query, ConnectionInfo connectionInfo) {
+        if (this.registeredTables.isEmpty() || QueryUtils.getQueryType(query) == QueryType.SELECT) {
+            return;
+        }
+        PendingInvalidation pending = null;
+        if (connectionInfo != null) {
+            pending = connectionInfo.getAttribute(PENDING_INVALIDATION);
+            if (pending == null) {
+                pending = new PendingInvalidation();
+                connectionInfo.setAttribute(PENDING_INVALIDATION, pending);
+            }
+        }
+        if (isRoutineCall(query)) {
+            invalidateAll();  // tables written by the routine are unknown
+            if (pending != null) {
+                pending.all = true;
+            }
+            return;
+        }
+        for (String table : this.registeredTables) {
+            if (containsWord(query, table)) {
+                invalidateTable(table);
+                if (pending != null) {
+                    pending.tables.add(table);
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidate again the cached results written in the transaction that has ended.
+     * Results cached by other connections before the commit may have been read from the state before the writes.
+     *
+     * @param connectionInfo connection whose transaction has ended
+     */
+    void onTransactionEnd(ConnectionInfo connectionInfo) {
+        PendingInvalidation pending = connectionInfo.getAttribute(PENDING_INVALIDATION);
+        if (pending == null) {
+            return;
+        }
+        connectionInfo.setAttribute(PENDING_INVALIDATION, null);
+        if (pending.all) {
+            invalidateAll();
+            return;
+        }
+        for (String table : pending.tables) {
+            invalidateTable(table);
+        }
+    }
+
+    /**
+     * Invalidate cached results depending on the table.
+     *
+     * @param table table name
+     */
+    public synchronized void invalidateTable(String table) {
+        this.invalidationCount.incrementAndGet();
+        String upperCaseTable = table.toUpperCase(Locale.ROOT);
+        Iterator<Map.Entry<Key, Entry>> iterator = this.entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> mapEntry = iterator.next();
+            if (Arrays.asList(mapEntry.getValue().tables).contains(upperCaseTable)) {
+                this.currentBytes -= mapEntry.getValue().bytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Invalidate all cached results.
+     */
+    public synchronized void invalidateAll() {
+        this.invalidationCount.incrementAndGet();
+        this.entries.clear();
+        this.currentBytes = 0;
+    }
+
+    private String[] getTables(String query) {
+        String[] tables = this.registeredQueries.get(QueryUtils.fingerprint(query));
+        return tables != null ? tables : new String[0];
+    }
+
+    // guarded by "this"
+    private void evictIfNecessary() {
+        Iterator<Map.Entry<Key, Entry>> iterator = this.entries.entrySet().iterator();
+        while (this.currentBytes > this.maxBytes && iterator.hasNext()) {
+            Map.Entry<Key, Entry> eldest = iterator.next();
+            this.currentBytes -= eldest.getValue().bytes;
+            iterator.remove();
+            this.evictionCount.incrementAndGet();
+        }
+    }
+
+    // guarded by "this"
+    private void removeExpired(long now) {
+        Iterator<Map.Entry<Key, Entry>> iterator = this.entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (now - entry.createdAt >= this.ttlNanos) {
+                this.currentBytes -= entry.bytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    // guarded by "this"
+    private void removeEntry(Key key, Entry entry) {
+        this.entries.remove(key);
+        this.currentBytes -= entry.bytes;
+    }
+
+    private static ResultSet createResultSet(ResultSetMetaData metaData, ColumnLabelIndex columnLabelIndex,
+                                            int columnCount, List<Object[]> rows,
+                                            ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
+        final ResultSetProxyLogic logic = RepeatableReadResultSetProxyLogic.Builder.create()
+                .connectionInfo(connectionInfo)
+                .proxyConfig(proxyConfig)
+                .columnLabelIndex(columnLabelIndex)
+                .columnCount(columnCount)
+                .cachedResults(rows)
+                .metaData(metaData)
+                .build();
+        ResultSetProxyLogicFactory factory = new ResultSetProxyLogicFactory() {
+            @Override
+            public ResultSetProxyLogic create(ResultSet resultSet, ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
+                return logic;
+            }
+        };
+        return (ResultSet) Proxy.newProxyInstance(ProxyJdbcObject.class.getClassLoader(),
+                new Class[]{ProxyJdbcObject.class, ResultSet.class},
+                new ResultSetInvocationHandler(factory, null, connectionInfo, proxyConfig));
+    }
+
+    private static boolean isRoutineCall(String query) {
+        int start = 0;
+        while (start < query.length() && Character.isWhitespace(query.charAt(start))) {
+            start++;
+        }
+        return query.regionMatches(true, start, "CALL", 0, 4) || query.regionMatches(true, start, "EXEC", 0, 4)
+                || query.startsWith("{", start) || query.regionMatches(true, start, "BEGIN", 0, 5)
+                || query.regionMatches(true, start, "DECLARE", 0, 7);
+    }
+
+    // case-insensitive match without copying the text
+    private static boolean containsWord(String text, String upperCaseWord) {
+        int length = upperCaseWord.length();
+        int last = text.length() - length;
+        for (int index = 0; index <= last; index++) {
+            if (!text.regionMatches(true, index, upperCaseWord, 0, length)) {
+                continue;
+            }
+            int end = index + length;
+            boolean startBoundary = index == 0 || !isIdentifierChar(text.charAt(index - 1));
+            boolean endBoundary = end == text.length() || !isIdentifierChar(text.charAt(end));
+            if (startBoundary && endBoundary) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isCacheableParameter(Object value) {
+        return value == null || value instanceof String || value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte || value instanceof Boolean
+                || value instanceof Character || value instanceof Double || value instanceof Float
+                || value instanceof BigDecimal || value instanceof BigInteger;
+    }
+
+    /**
+     * @return estimated size of the value, or {@code -1} if the value is not cacheable
+     */
+    private static long estimateBytes(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            return 48;
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return 24;
+        } else if (value instanceof java.util.Date) {
+            return 32;
+        } else if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        }
+        return -1;
+    }
+
+    /**
+     * Current time in nanoseconds. Only the difference between values is meaningful.
+     *
+     * @return current time
+     */
+    protected long currentTimeNanos() {
+        return System.nanoTime();
+    }
+
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * @return estimated size of cached results
+     */
+    public synchronized long getCurrentBytes() {
+        return this.currentBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return this.entries.size();
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    private static final class Key {
+
+        private final String query;
+        private final Object[] values;
+        private final int hash;
+
+        private Key(String query, Object[] values) {
+            this.query = query;
+            this.values = values;
+            this.hash = 31 * query.hashCode() + Arrays.deepHashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.hash == other.hash && this.query.equals(other.query) && Arrays.deepEquals(this.values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    /**
+     * Serve rows read while trying to cache, then the rest of the rows from the driver result set.
+     */
+    private static final class PartiallyReadResultSetHandler implements InvocationHandler {
+
+        private final ResultSet readRows;
+        private final ResultSet resultSet;
+        private boolean readingRows = true;
+
+        private PartiallyReadResultSetHandler(ResultSet readRows, ResultSet resultSet) {
+            this.readRows = readRows;
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("equals".equals(methodName)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(methodName)) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(methodName)) {
+                return getClass().getSimpleName() + "[" + this.resultSet + "]";
+            } else if ("next".equals(methodName)) {
+                if (this.readingRows) {
+                    if (this.readRows.next()) {
+                        return true;
+                    }
+                    this.readingRows = false;  // driver result set is on the last read row
+                }
+                return this.resultSet.next();
+            } else if ("close".equals(methodName)) {
+                this.readRows.close();
+                this.resultSet.close();
+                return null;
+            }
+
+            // column values of the read rows
+            boolean isColumnMethod = "wasNull".equals(methodName) || "findColumn".equals(methodName)
+                    || (methodName.startsWith("get") && args != null && args.length > 0
+                    && (args[0] instanceof Integer || args[0] instanceof String));
+            ResultSet target = this.readingRows && isColumnMethod ? this.readRows : this.resultSet;
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getTargetException();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final ResultSetMetaData metaData;
+        private final ColumnLabelIndex columnLabelIndex;
+        private final int columnCount;
+        private final List<Object[]> rows;
+        private final long bytes;
+        private final String[] tables;
+        private final long createdAt;
+
+        private Entry(ResultSetMetaData metaData, ColumnLabelIndex columnLabelIndex, int columnCount,
+                      List<Object[]> rows, long bytes, String[] tables, long createdAt) {
+            this.metaData = metaData;
+            this.columnLabelIndex = columnLabelIndex;
+            this.columnCount = columnCount;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.tables = tables;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private static final class PendingInvalidation {
+
+        private final Set<String> tables = new HashSet<String>();
+        private boolean all;
+    }
+
+}
@@ -0,0 +1,23 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ConnectionInfo;
+
+/**
+ * Decide whether to create a proxy for a {@link java.sql.ResultSet} returned by a statement.
+ *
+ * When a result set is not proxied, the result set from the driver is returned to the application as is.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see net.ttddyy.dsproxy.support.ProxyDataSourceBuilder#resultSetProxyPolicy(ResultSetProxyPolicy)
+ * @since 1.11
+ */
+public interface ResultSetProxyPolicy {
+
+    /**
+     * @param query          originating query. can be {@code null} when unknown
+     * @param connectionInfo connection info
+     * @return {@code true} to create a proxy
+     */
+    boolean shouldProxy(String query, ConnectionInfo connectionInfo);
+
+}
@@ -0,0 +1,71 @@
+package net.ttddyy.dsproxy.proxy;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Column information of a {@link java.sql.ResultSet} that is reusable among result sets of the same query.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see ResultSetShapeCache
+ * @since 1.11
+ */
+public class ResultSetShape {
+
+    private final CachedResultSetMetaData metaData;
+    private final ColumnLabelIndex columnLabelIndex;
+
+    /**
+     * Create a shape from the given metadata.
+     *
+     * @param metaData result set metadata
+     * @return shape
+     * @throws SQLException when failed to read the metadata
+     */
+    public static ResultSetShape of(ResultSetMetaData metaData) throws SQLException {
+        CachedResultSetMetaData cachedMetaData = metaData instanceof CachedResultSetMetaData ?
+                (CachedResultSetMetaData) metaData : new CachedResultSetMetaData(metaData);
+        return new ResultSetShape(cachedMetaData, ColumnLabelIndex.of(cachedMetaData));
+    }
+
+    public ResultSetShape(CachedResultSetMetaData metaData, ColumnLabelIndex columnLabelIndex) {
+        this.metaData = metaData;
+        this.columnLabelIndex = columnLabelIndex;
+    }
+
+    /**
+     * @return snapshot of the metadata
+     */
+    public CachedResultSetMetaData getMetaData() {
+        return this.metaData;
+    }
+
+    public ColumnLabelIndex getColumnLabelIndex() {
+        return this.columnLabelIndex;
+    }
+
+    public int getColumnCount() {
+        return this.columnLabelIndex.getColumnCount();
+    }
+
+    /**
+     * Check whether the given metadata has the same column count and column types as this shape.
+     *
+     * @param metaData result set metadata
+     * @return {@code true} if the columns match
+     * @throws SQLException when failed to read the metadata
+     */
+    public boolean matches(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = getColumnCount();
+        if (metaData.getColumnCount() != columnCount) {
+            return false;
+        }
+        for (int i = 1; i <= columnCount; i++) {
+            if (metaData.getColumnType(i) != this.metaData.getColumnType(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
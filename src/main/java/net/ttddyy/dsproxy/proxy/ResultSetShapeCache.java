@@ -0,0 +1,109 @@
+package net.ttddyy.dsproxy.proxy;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of {@link ResultSetShape} keyed by the originating query string.
+ *
+ * When a result set of an already seen query is proxied, only its column count is read from the driver to validate
+ * the cached shape; labels, column types and other metadata are served from the cached shape. A shape whose column
+ * count does not match is replaced. Keying by the query string avoids computing a fingerprint per result set; queries
+ * that only differ by literal values are cached separately.
+ *
+ * <p>Queries that return result sets of different columns with the same column count(e.g. multiple result sets from a
+ * stored procedure, or a table altered while the application runs) should not rely on this cache.
+ *
+ * <p>Once {@link #getMaxSize()} shapes are cached, shapes of new queries are created per result set and not cached.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see net.ttddyy.dsproxy.support.ProxyDataSourceBuilder#resultSetShapeCache(ResultSetShapeCache)
+ * @since 1.11
+ */
+public class ResultSetShapeCache {
+
+    /**
+     * Default max num of cached shapes.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final int maxSize;
+    private final ConcurrentMap<String, ResultSetShape> shapes = new ConcurrentHashMap<String, ResultSetShape>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public ResultSetShapeCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize max num of cached shapes
+     */
+    public ResultSetShapeCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the shape of the given result set.
+     *
+     * @param resultSet result set
+     * @param query     originating query. When {@code null}, the shape is created from the metadata without caching
+     * @return shape of the result set
+     * @throws SQLException when failed to read the metadata
+     */
+    public ResultSetShape getShape(ResultSet resultSet, String query) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        if (query == null) {
+            return ResultSetShape.of(metaData);
+        }
+        ResultSetShape shape = this.shapes.get(query);
+        if (shape != null && shape.getColumnCount() == metaData.getColumnCount()) {
+            this.hitCount.incrementAndGet();
+            return shape;
+        }
+        this.missCount.incrementAndGet();
+
+        ResultSetShape created = ResultSetShape.of(metaData);
+        if (shape != null) {
+            this.shapes.replace(query, shape, created);
+        } else if (this.shapes.size() < this.maxSize) {
+            this.shapes.putIfAbsent(query, created);
+        }
+        return created;
+    }
+
+    /**
+     * Remove all cached shapes.
+     */
+    public void clear() {
+        this.shapes.clear();
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return num of cached shapes
+     */
+    public int size() {
+        return this.shapes.size();
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+}
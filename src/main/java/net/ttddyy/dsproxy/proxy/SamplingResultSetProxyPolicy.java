@@ -0,0 +1,34 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ConnectionInfo;
+import net.ttddyy.dsproxy.Sampler;
+
+/**
+ * {@link ResultSetProxyPolicy} to proxy a fraction of result sets.
+ *
+ * Sampling is deterministic({@link Sampler}); with rate {@code 0.1}, every 10th result set is proxied.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class SamplingResultSetProxyPolicy implements ResultSetProxyPolicy {
+
+    private final Sampler sampler;
+
+    /**
+     * @param rate fraction of result sets to proxy, from {@code 0.0} to {@code 1.0}
+     */
+    public SamplingResultSetProxyPolicy(double rate) {
+        this.sampler = new Sampler(rate);
+    }
+
+    @Override
+    public boolean shouldProxy(String query, ConnectionInfo connectionInfo) {
+        return this.sampler.sample();
+    }
+
+    public double getRate() {
+        return this.sampler.getRate();
+    }
+
+}
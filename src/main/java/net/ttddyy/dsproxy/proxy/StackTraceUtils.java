@@ -0,0 +1,40 @@
+package net.ttddyy.dsproxy.proxy;
+
+/**
+ * Utilities to find the application frame in a stack trace.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class StackTraceUtils {
+
+    /**
+     * @param className class name of a stack frame
+     * @return {@code true} if the frame is datasource-proxy or reflection/proxy frame
+     */
+    public static boolean isInternalFrame(String className) {
+        return className.startsWith("net.ttddyy.dsproxy.")
+                || className.startsWith("java.lang.reflect.")
+                || className.startsWith("jdk.internal.reflect.")
+                || className.startsWith("sun.reflect.")
+                || className.startsWith("com.sun.proxy.")
+                || className.startsWith("jdk.proxy")
+                || className.contains("$Proxy");
+    }
+
+    /**
+     * Returns the first frame outside of datasource-proxy and reflection/proxy frames.
+     *
+     * @param elements stack trace
+     * @return application frame or {@code null}
+     */
+    public static StackTraceElement findCallSite(StackTraceElement[] elements) {
+        for (StackTraceElement element : elements) {
+            if (!isInternalFrame(element.getClassName())) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+}
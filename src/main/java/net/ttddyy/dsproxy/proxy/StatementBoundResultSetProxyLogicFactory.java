@@ -0,0 +1,17 @@
+package net.ttddyy.dsproxy.proxy;
+
+/**
+ * {@link ResultSetProxyLogicFactory} whose result set proxies need to see the close of the result set even when the
+ * application does not call {@link java.sql.ResultSet#close()}.
+ *
+ * <p>JDBC drivers close a result set implicitly when its statement is closed, re-executed, or moves to the next
+ * result by {@link java.sql.Statement#getMoreResults()}. For result sets created by this factory, the statement proxy
+ * calls {@code close()} on the result set proxy in those cases.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see MetricsResultSetProxyLogicFactory
+ * @since 1.11
+ */
+public interface StatementBoundResultSetProxyLogicFactory extends ResultSetProxyLogicFactory {
+
+}
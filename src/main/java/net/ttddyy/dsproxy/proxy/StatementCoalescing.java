@@ -0,0 +1,278 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.AttributeKey;
+import net.ttddyy.dsproxy.ConnectionInfo;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.QueryType;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import net.ttddyy.dsproxy.metrics.ConnectionMetrics;
+
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Configuration for statement coalescing.
+ *
+ * When configured, {@code executeUpdate()} on a {@link java.sql.PreparedStatement} whose query matches one of the
+ * configured query fingerprints(see {@link QueryUtils#fingerprint(String)}) is deferred into a JDBC batch while
+ * auto-commit is off. Deferred executions are kept per connection and keyed by the query, so that executions of
+ * statements prepared again with the same query join the same batch even when the previous statement is closed.
+ * Deferred executions are flushed as a single {@code executeBatch()} when the batch size is reached, before any other
+ * statement execution on the same connection, and before {@code commit}, {@code rollback}, {@code setAutoCommit},
+ * savepoint operations and connection {@code close}. A closed statement holding deferred executions is closed when
+ * they are flushed.
+ *
+ * <p>Auto-commit mode is taken from {@link ConnectionInfo#isAutoCommit()}. When it is not known yet, it is retrieved
+ * from the connection once.
+ *
+ * <p>Deferred {@code executeUpdate()} returns {@code 1} before the statement runs. Therefore, only single-row
+ * {@code INSERT ... VALUES} queries are accepted, and other queries such as {@code UPDATE}, {@code DELETE} and
+ * {@code INSERT ... SELECT} are rejected with {@link IllegalArgumentException}; their update counts are used for
+ * checks such as optimistic locking. When a flushed batch still reports a different update count(e.g.: an insert that
+ * ignores conflicts), the flush fails with {@link java.sql.SQLException}.
+ *
+ * <p>Query listeners observe the flushed batch execution instead of the deferred executions.
+ * Statements prepared with auto-generated keys are not coalesced.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see net.ttddyy.dsproxy.support.ProxyDataSourceBuilder#statementCoalescing(StatementCoalescing)
+ * @since 1.11
+ */
+public class StatementCoalescing {
+
+    /**
+     * Default max num of deferred executions in a batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    static final AttributeKey<DeferredBatch> DEFERRED_BATCH = AttributeKey.create("deferredBatch", DeferredBatch.class);
+
+    private static final Pattern SELECT_PATTERN = Pattern.compile("\\bselect\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final Method EXECUTE_BATCH_METHOD;
+
+    static {
+        try {
+            EXECUTE_BATCH_METHOD = PreparedStatement.class.getMethod("executeBatch");
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private final Set<String> fingerprints = new HashSet<String>();
+
+    private final int batchSize;
+
+    /**
+     * @param queries single-row {@code INSERT} queries to coalesce. Literal values and formatting may differ.
+     */
+    public StatementCoalescing(String... queries) {
+        this(DEFAULT_BATCH_SIZE, Arrays.asList(queries));
+    }
+
+    /**
+     * @param batchSize max num of deferred executions in a batch
+     * @param queries   single-row {@code INSERT} queries to coalesce. Literal values and formatting may differ.
+     */
+    public StatementCoalescing(int batchSize, Collection<String> queries) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+        for (String query : queries) {
+            String fingerprint = QueryUtils.fingerprint(query);
+            if (QueryUtils.getQueryType(query) != QueryType.INSERT || SELECT_PATTERN.matcher(fingerprint).find()) {
+                throw new IllegalArgumentException("Only single-row INSERT can be coalesced: " + query);
+            }
+            this.fingerprints.add(fingerprint);
+        }
+    }
+
+    /**
+     * @param query query of a prepared statement
+     * @return {@code true} if executions of the query are coalesced
+     */
+    public boolean isTarget(String query) {
+        return query != null && this.fingerprints.contains(QueryUtils.fingerprint(query));
+    }
+
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    public Set<String> getFingerprints() {
+        return Collections.unmodifiableSet(this.fingerprints);
+    }
+
+    /**
+     * Executions of a query deferred on a connection.
+     *
+     * <p>The batch is held by the physical statement that started it. Executions from other statements with the same
+     * query are bound to that statement and added to the batch.
+     */
+    public static class DeferredBatch {
+
+        private final String query;
+        private final PreparedStatement statement;
+        private final ConnectionInfo connectionInfo;
+        private final ProxyConfig proxyConfig;
+        private final List<List<ParameterSetOperation>> parametersList = new ArrayList<List<ParameterSetOperation>>();
+
+        // statement proxy logic using the physical statement. null when the proxy has been closed.
+        private StatementProxyLogic owner;
+
+        DeferredBatch(String query, PreparedStatement statement, StatementProxyLogic owner,
+                      ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
+            this.query = query;
+            this.statement = statement;
+            this.owner = owner;
+            this.connectionInfo = connectionInfo;
+            this.proxyConfig = proxyConfig;
+        }
+
+        /**
+         * Add an execution to the batch.
+         *
+         * @param source     physical statement of the deferred execution
+         * @param parameters parameters of the deferred execution. already bound to the source statement.
+         * @return num of deferred executions
+         * @throws SQLException when failed to add to the batch
+         */
+        int add(PreparedStatement source, Collection<ParameterSetOperation> parameters) throws SQLException {
+            if (source != this.statement) {
+                for (ParameterSetOperation operation : parameters) {
+                    operation.invoke(this.statement);
+                }
+            }
+            this.statement.addBatch();
+            this.parametersList.add(new ArrayList<ParameterSetOperation>(parameters));
+
+            // drivers may clear parameters on "addBatch()". re-apply them to keep the semantics of "executeUpdate()".
+            if (this.owner != null) {
+                this.owner.restoreParameters();
+            }
+            return this.parametersList.size();
+        }
+
+        /**
+         * Execute deferred executions as a batch.
+         *
+         * <p>Query listeners observe a batch execution. When the statement proxy has been closed, the physical
+         * statement is closed, or returned to the prepared statement cache.
+         *
+         * @throws SQLException when batch execution failed or an update count is not {@code 1}
+         */
+        void flush() throws SQLException {
+            if (this.connectionInfo.getAttribute(DEFERRED_BATCH) == this) {
+                this.connectionInfo.setAttribute(DEFERRED_BATCH, null);
+            }
+            try {
+                if (!this.parametersList.isEmpty()) {
+                    executeBatch();
+                }
+            } finally {
+                if (this.owner == null) {
+                    closeStatement();
+                }
+            }
+        }
+
+        private void executeBatch() throws SQLException {
+            final int batchSize = this.parametersList.size();
+            final QueryInfo queryInfo = new QueryInfo(this.query);
+            queryInfo.getParametersList().addAll(this.parametersList);
+            this.parametersList.clear();
+
+            final List<QueryInfo> queries = new ArrayList<QueryInfo>(1);
+            queries.add(queryInfo);
+            final ExecutionInfo execInfo = new ExecutionInfo(this.connectionInfo, this.statement, true, batchSize, EXECUTE_BATCH_METHOD, null);
+
+            final QueryExecutionListener queryListener = this.proxyConfig.getQueryListener();
+            final ConnectionMetrics connectionMetrics = this.proxyConfig.getConnectionMetrics();
+
+            queryListener.beforeQuery(execInfo, queries);
+            if (connectionMetrics != null) {
+                connectionMetrics.beforeStatement(this.connectionInfo);
+            }
+            final Stopwatch stopwatch = this.proxyConfig.getStopwatchFactory().create().start();
+
+            int[] updateCounts;
+            try {
+                updateCounts = this.statement.executeBatch();
+                if (this.proxyConfig.getResultCache() != null) {
+                    this.proxyConfig.getResultCache().onQuery(this.query);
+                }
+                execInfo.setResult(updateCounts);
+                execInfo.setElapsedTime(stopwatch.getElapsedTime());
+                execInfo.setSuccess(true);
+            } catch (SQLException ex) {
+                execInfo.setElapsedTime(stopwatch.getElapsedTime());
+                execInfo.setThrowable(ex);
+                execInfo.setSuccess(false);
+                throw ex;
+            } finally {
+                if (connectionMetrics != null) {
+                    connectionMetrics.afterStatement(this.connectionInfo);
+                }
+                queryListener.afterQuery(execInfo, queries);
+            }
+
+            for (int updateCount : updateCounts) {
+                if (updateCount != 1 && updateCount != Statement.SUCCESS_NO_INFO) {
+                    throw new SQLException("Deferred execution of \"" + this.query + "\" updated " + updateCount
+                            + " rows, but 1 was returned from executeUpdate()");
+                }
+            }
+        }
+
+        private void closeStatement() throws SQLException {
+            PreparedStatementCache.ConnectionStatements cachedStatements = this.connectionInfo.getAttribute(PreparedStatementCache.CONNECTION_STATEMENTS);
+            if (cachedStatements == null || !cachedStatements.checkin(this.statement)) {
+                this.statement.close();
+            }
+        }
+
+        /**
+         * The statement proxy has been closed. The physical statement is closed when the batch is flushed.
+         */
+        void release() {
+            this.owner = null;
+        }
+
+        /**
+         * @param query query of a prepared statement
+         * @return {@code true} if executions of the query are deferred into this batch
+         */
+        boolean isFor(String query) {
+            return this.query.equals(query);
+        }
+
+        boolean isOwner(StatementProxyLogic logic) {
+            return this.owner == logic;
+        }
+
+        public String getQuery() {
+            return this.query;
+        }
+
+        /**
+         * @return num of deferred executions
+         */
+        public int size() {
+            return this.parametersList.size();
+        }
+    }
+
+}
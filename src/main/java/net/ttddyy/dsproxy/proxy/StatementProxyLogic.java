@@ -6,6 +6,8 @@ import net.ttddyy.dsproxy.QueryInfo;
 import net.ttddyy.dsproxy.StatementType;
 import net.ttddyy.dsproxy.listener.MethodExecutionContext;
 import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.metrics.ConnectionMetrics;
+import net.ttddyy.dsproxy.transform.IndexChangingParameterTransformer;
 import net.ttddyy.dsproxy.transform.ParameterReplacer;
 import net.ttddyy.dsproxy.transform.ParameterTransformer;
 import net.ttddyy.dsproxy.transform.QueryTransformer;
@@ -20,9 +22,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static net.ttddyy.dsproxy.proxy.StatementMethodNames.GET_GENERATED_KEYS_METHOD;
 import static net.ttddyy.dsproxy.proxy.StatementMethodNames.GET_RESULTSET_METHOD;
@@ -36,6 +43,17 @@ import static net.ttddyy.dsproxy.proxy.StatementMethodNames.METHODS_TO_RETURN_RE
  */
 public class StatementProxyLogic extends ProxyLogicSupport {
 
+    // methods on a statement with the query of deferred executions that require flushing them first
+    private static final Set<String> COALESCING_FLUSH_METHODS = Collections.unmodifiableSet(
+            new HashSet<String>() {
+                {
+                    addAll(StatementMethodNames.BATCH_PARAM_METHODS);
+                    addAll(Arrays.asList("getUpdateCount", "getLargeUpdateCount", "getMoreResults",
+                            StatementMethodNames.GET_RESULTSET_METHOD, StatementMethodNames.GET_GENERATED_KEYS_METHOD));
+                }
+            }
+    );
+
     /**
      * Builder for {@link StatementProxyLogic}.
      *
@@ -63,6 +81,20 @@ public class StatementProxyLogic extends ProxyLogicSupport {
             logic.proxyConfig = this.proxyConfig;
             logic.statementType = this.statementType;
             logic.generateKey = this.generateKey;
+            if (this.proxyConfig != null && StatementType.STATEMENT != this.statementType
+                    && this.proxyConfig.getParameterTransformer() != ParameterTransformer.DEFAULT) {
+                logic.boundParameters = new LinkedHashMap<ParameterKey, ParameterSetOperation>();
+                logic.deferParameterBinding = this.proxyConfig.getParameterTransformer() instanceof IndexChangingParameterTransformer;
+            }
+
+            StatementCoalescing statementCoalescing = this.proxyConfig != null ? this.proxyConfig.getStatementCoalescing() : null;
+            logic.coalescingEnabled = statementCoalescing != null && this.connectionInfo != null;
+            logic.coalescing = logic.coalescingEnabled && StatementType.PREPARED == this.statementType
+                    && !this.generateKey && statementCoalescing.isTarget(this.query);
+
+            ResultCache resultCache = this.proxyConfig != null ? this.proxyConfig.getResultCache() : null;
+            logic.resultCacheTarget = resultCache != null && StatementType.PREPARED == this.statementType
+                    && resultCache.isTarget(this.query);
             return logic;
         }
 
@@ -107,6 +139,18 @@ public class StatementProxyLogic extends ProxyLogicSupport {
     // using a map, so that putting same key will override the entry.
     private Map<ParameterKey, ParameterSetOperation> parameters = new LinkedHashMap<ParameterKey, ParameterSetOperation>();
 
+    // parameters set by the application while "parameters" holds the ones modified by the parameter transformer.
+    // they are transformed again for the next execution.
+    private Map<ParameterKey, ParameterSetOperation> untransformedParameters;
+
+    // parameters currently bound to the statement. only tracked when a parameter transformer is configured, so that
+    // only changed parameters are bound again after transformation.
+    private Map<ParameterKey, ParameterSetOperation> boundParameters;
+
+    // true when parameters are bound to the statement after parameter transformation, instead of when they are set.
+    // the transformer changes parameter indexes(e.g. padding IN-lists), thus set operations cannot be passed through.
+    private boolean deferParameterBinding;
+
     private List<String> batchQueries = new ArrayList<String>();  // used for batch statement
     private List<Map<ParameterKey, ParameterSetOperation>> batchParameters = new ArrayList<Map<ParameterKey, ParameterSetOperation>>();
 
@@ -115,6 +159,38 @@ public class StatementProxyLogic extends ProxyLogicSupport {
     private ResultSet generatedKeys;
     private boolean generateKey;  // set true if auto-generate keys is enabled at "Connection#prepareStatement()"
 
+    // reused across executions when "ProxyConfig#isReuseExecutionInfo()" is enabled
+    private ExecutionInfo reusableExecutionInfo;
+    private List<QueryInfo> reusableQueries;
+    private List<QueryInfo> queryInfoPool;
+    private boolean reusableInUse;  // true while listeners are using reusable objects (guard for re-entrant call)
+
+    // statement coalescing: true when "executeUpdate()" of this prepared statement can be deferred into a batch
+    private boolean coalescingEnabled;
+    private boolean coalescing;
+
+    // result cache: true when results of this prepared statement can be cached
+    private boolean resultCacheTarget;
+
+    // true when the physical statement has been returned to the prepared statement cache, or handed over to the
+    // deferred executions of statement coalescing
+    private boolean released;
+
+    // last executed query of "Statement", used as the originating query of "getResultSet()"
+    private String lastStatementQuery;
+
+    // result set proxies of "StatementBoundResultSetProxyLogicFactory" that are still open.
+    // the first "keptResultSetCount" entries are kept open by "getMoreResults(KEEP_CURRENT_RESULT)"
+    private List<ResultSet> openResultSets;
+    private int keptResultSetCount;
+
+    // true when the application has called "setFetchSize()", fetch size advisor does not override it
+    private boolean fetchSizeSetByApplication;
+
+    // fetch size of the physical statement before the application or fetch size advisor changed it.
+    // restored when the statement is returned to the prepared statement cache. -1 when unchanged.
+    private int fetchSizeToRestore = -1;
+
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         return proceedMethodExecution(this.proxyConfig, this.statement, this.connectionInfo, proxy, method, args);
     }
@@ -123,7 +199,58 @@ public class StatementProxyLogic extends ProxyLogicSupport {
     protected Object performProxyLogic(Object proxy, Method method, Object[] args, MethodExecutionContext methodContext) throws Throwable {
         final String methodName = method.getName();
 
+        // the physical statement has been returned to the prepared statement cache and may be used by another proxy
+        if (this.released) {
+            if (isCommonMethod(methodName)) {
+                return handleCommonMethod(methodName, this.statement, this.proxyConfig, args);
+            } else if ("close".equals(methodName)) {
+                return null;
+            } else if ("isClosed".equals(methodName)) {
+                return true;
+            }
+            throw new SQLException("Statement is closed");
+        }
+
+        if (isCommonMethod(methodName)) {
+            return handleCommonMethod(methodName, this.statement, this.proxyConfig, args);
+        }
+
+        // driver implicitly closes result sets; let their proxies see it
+        if (this.openResultSets != null) {
+            closeOpenResultSets(methodName, args);
+        }
+
+        // statement coalescing
+        if (this.coalescingEnabled) {
+            final StatementCoalescing.DeferredBatch deferredBatch = this.connectionInfo.getAttribute(StatementCoalescing.DEFERRED_BATCH);
+            final boolean isCoalescableUpdate = this.coalescing && isCoalescableUpdate(methodName, args);
+            if (deferredBatch != null) {
+                if (isCoalescableUpdate && deferredBatch.isFor(this.query)) {
+                    return deferExecution(deferredBatch, methodName);
+                } else if ("close".equals(methodName) && deferredBatch.isOwner(this)) {
+                    deferredBatch.release();  // physical statement is closed when flushed
+                    this.released = true;
+                    return null;
+                } else if (StatementMethodNames.EXEC_METHODS.contains(methodName)
+                        || (this.coalescing && deferredBatch.isFor(this.query) && COALESCING_FLUSH_METHODS.contains(methodName))) {
+                    deferredBatch.flush();
+                }
+            }
+            if (isCoalescableUpdate && !isAutoCommit()) {
+                return deferExecution(null, methodName);
+            }
+        }
+
+        if ("close".equals(methodName) && this.connectionInfo != null && this.connectionInfo.getAttribute(PreparedStatementCache.CONNECTION_STATEMENTS) != null) {
+            closeStatement();
+            return null;
+        }
+
         if (!StatementMethodNames.METHODS_TO_INTERCEPT.contains(methodName)) {
+            if ("setFetchSize".equals(methodName)) {
+                this.fetchSizeSetByApplication = true;
+                rememberFetchSize();
+            }
             return proceedExecution(method, this.statement, args);
         }
 
@@ -132,10 +259,6 @@ public class StatementProxyLogic extends ProxyLogicSupport {
         QueryExecutionListener queryListener = this.proxyConfig.getQueryListener();
         JdbcProxyFactory proxyFactory = this.proxyConfig.getJdbcProxyFactory();
 
-        if (isCommonMethod(methodName)) {
-            return handleCommonMethod(methodName, this.statement, this.proxyConfig, args);
-        }
-
         // "getConnection"
         if (StatementMethodNames.GET_CONNECTION_METHOD.equals(methodName)) {
             return this.proxyConnection;
@@ -170,7 +293,11 @@ public class StatementProxyLogic extends ProxyLogicSupport {
 
                     // operation to set or clear parameterOperationHolder
                     if ("clearParameters".equals(methodName)) {
+                        dropTransformedParameters();
                         parameters.clear();
+                        if (this.boundParameters != null) {
+                            this.boundParameters.clear();
+                        }
                     } else {
 
                         ParameterKey parameterKey;
@@ -183,7 +310,14 @@ public class StatementProxyLogic extends ProxyLogicSupport {
                         }
 
                         // when same key is specified, old value will be overridden
-                        parameters.put(parameterKey, new ParameterSetOperation(method, args));
+                        Map<ParameterKey, ParameterSetOperation> target = this.untransformedParameters != null ? this.untransformedParameters : parameters;
+                        ParameterSetOperation operation = new ParameterSetOperation(method, args);
+                        target.put(parameterKey, operation);
+                        if (this.deferParameterBinding) {
+                            return null;  // bound when executed or added to batch
+                        } else if (this.boundParameters != null) {
+                            this.boundParameters.put(parameterKey, operation);
+                        }
                     }
 
                 } else if (StatementMethodNames.BATCH_PARAM_METHODS.contains(methodName)) {
@@ -198,7 +332,11 @@ public class StatementProxyLogic extends ProxyLogicSupport {
                         Map<ParameterKey, ParameterSetOperation> newParams = new LinkedHashMap<ParameterKey, ParameterSetOperation>(parameters);
                         batchParameters.add(newParams);
 
+                        dropTransformedParameters();
                         parameters.clear();
+                        if (this.boundParameters != null) {
+                            this.boundParameters.clear();  // drivers may clear parameters on "addBatch()"
+                        }
                     } else if ("clearBatch".equals(methodName)) {
                         batchParameters.clear();
                     }
@@ -213,7 +351,9 @@ public class StatementProxyLogic extends ProxyLogicSupport {
 
         // query execution methods
 
-        final List<QueryInfo> queries = new ArrayList<QueryInfo>();
+        // when reusable objects are still in use(e.g.: a listener executes a query on this statement), create new ones
+        final boolean reuseExecutionInfo = this.proxyConfig.isReuseExecutionInfo() && !this.reusableInUse;
+        final List<QueryInfo> queries = acquireQueries(reuseExecutionInfo);
         boolean isBatchExecution = StatementMethodNames.BATCH_EXEC_METHODS.contains(methodName);
         int batchSize = 0;
 
@@ -222,13 +362,13 @@ public class StatementProxyLogic extends ProxyLogicSupport {
             if (StatementType.STATEMENT == statementType) {
 
                 for (String batchQuery : batchQueries) {
-                    queries.add(new QueryInfo(batchQuery));
+                    queries.add(acquireQueryInfo(reuseExecutionInfo, queries.size(), batchQuery));
                 }
                 batchSize = batchQueries.size();
                 batchQueries.clear();
             } else {
                 // one query with multiple parameters
-                QueryInfo queryInfo = new QueryInfo(this.query);
+                QueryInfo queryInfo = acquireQueryInfo(reuseExecutionInfo, 0, this.query);
                 for (Map<ParameterKey, ParameterSetOperation> params : batchParameters) {
                     queryInfo.getParametersList().add(new ArrayList<ParameterSetOperation>(params.values()));
                 }
@@ -246,16 +386,45 @@ public class StatementProxyLogic extends ProxyLogicSupport {
                 final TransformInfo transformInfo = new TransformInfo(Statement.class, this.connectionInfo.getDataSourceName(), query, false, 0);
                 final String transformedQuery = queryTransformer.transformQuery(transformInfo);
                 args[0] = transformedQuery; // replace to the new query
+                this.lastStatementQuery = transformedQuery;
 
-                queryInfo = new QueryInfo(transformedQuery);
+                queryInfo = acquireQueryInfo(reuseExecutionInfo, 0, transformedQuery);
             } else {
                 PreparedStatement ps = (PreparedStatement) this.statement;
                 transformParameters(parameterTransformer, ps, false, 0);
 
-                queryInfo = new QueryInfo(this.query);
+                queryInfo = acquireQueryInfo(reuseExecutionInfo, 0, this.query);
                 queryInfo.getParametersList().add(new ArrayList<ParameterSetOperation>(parameters.values()));
             }
             queries.add(queryInfo);
+
+            FetchSizeAdvisor fetchSizeAdvisor = this.proxyConfig.getFetchSizeAdvisor();
+            // in REPORT mode, the advisor does not change the fetch size; no need to remember it
+            if (fetchSizeAdvisor != null && fetchSizeAdvisor.getMode() == FetchSizeAdvisor.Mode.APPLY
+                    && !this.fetchSizeSetByApplication && ("executeQuery".equals(methodName) || "execute".equals(methodName))) {
+                rememberFetchSize();
+                fetchSizeAdvisor.apply(this.statement, queryInfo.getQuery());
+            }
+        }
+
+        // result cache
+        final ResultCache resultCache = this.proxyConfig.getResultCache();
+        Object resultCacheKey = null;
+        long resultCacheInvalidationCount = 0;
+        ResultSet cachedResultSet = null;
+        if (resultCache != null && "executeQuery".equals(methodName)) {
+            if (StatementType.STATEMENT == this.statementType) {
+                String query = (String) args[0];
+                if (resultCache.isTarget(query)) {
+                    resultCacheKey = resultCache.createKey(query, Collections.<ParameterSetOperation>emptyList());
+                }
+            } else if (this.resultCacheTarget) {
+                resultCacheKey = resultCache.createKey(this.query, this.parameters.values());
+            }
+            if (resultCacheKey != null) {
+                resultCacheInvalidationCount = resultCache.getInvalidationCount();
+                cachedResultSet = resultCache.get(resultCacheKey, this.connectionInfo, this.proxyConfig);
+            }
         }
 
         final boolean isGetGeneratedKeysMethod = GET_GENERATED_KEYS_METHOD.equals(methodName);
@@ -270,21 +439,64 @@ public class StatementProxyLogic extends ProxyLogicSupport {
             }
         }
 
-        final ExecutionInfo execInfo = new ExecutionInfo(this.connectionInfo, this.statement, isBatchExecution, batchSize, method, args);
+        final ExecutionInfo execInfo;
+        if (reuseExecutionInfo) {
+            execInfo = acquireExecutionInfo(isBatchExecution, batchSize, method, args);
+        } else {
+            execInfo = new ExecutionInfo(this.connectionInfo, this.statement, isBatchExecution, batchSize, method, args);
+        }
+        if (cachedResultSet != null) {
+            execInfo.setAttribute(ResultCache.CACHE_HIT, Boolean.TRUE);
+        }
 
         boolean isGetResultSetMethod = GET_RESULTSET_METHOD.equals(methodName);
         boolean performQueryListener = !isGetGeneratedKeysMethod && !isGetResultSetMethod;
 
-        if (performQueryListener) {
-            queryListener.beforeQuery(execInfo, queries);
+        // reusable objects are in use until "afterQuery" returns, or "beforeQuery" fails
+        if (reuseExecutionInfo) {
+            this.reusableInUse = true;
         }
+        final ConnectionMetrics connectionMetrics;
+        final Stopwatch stopwatch;
+        try {
+            if (performQueryListener) {
+                queryListener.beforeQuery(execInfo, queries);
+            }
+
+            connectionMetrics = performQueryListener ? this.proxyConfig.getConnectionMetrics() : null;
+            if (connectionMetrics != null) {
+                isAutoCommit();  // transaction time needs auto-commit mode
+                connectionMetrics.beforeStatement(this.connectionInfo);
+            }
 
-        final Stopwatch stopwatch = this.proxyConfig.getStopwatchFactory().create().start();
+            stopwatch = this.proxyConfig.getStopwatchFactory().create().start();
+        } catch (Throwable ex) {
+            if (reuseExecutionInfo) {
+                this.reusableInUse = false;
+            }
+            throw ex;
+        }
 
         // Invoke method on original Statement.
         try {
 
-            Object retVal = method.invoke(this.statement, args);
+            Object retVal;
+            if (cachedResultSet != null) {
+                retVal = cachedResultSet;  // bypass the driver
+            } else {
+                retVal = method.invoke(this.statement, args);
+                if (resultCacheKey != null) {
+                    String query = StatementType.STATEMENT == this.statementType ? (String) args[0] : this.query;
+                    retVal = resultCache.put(resultCacheKey, query, (ResultSet) retVal, resultCacheInvalidationCount,
+                            this.connectionInfo, this.proxyConfig);
+                } else if (resultCache != null && StatementMethodNames.EXEC_METHODS.contains(methodName)) {
+                    // invalidate cached results on writes, and again when the transaction ends
+                    ConnectionInfo transaction = isAutoCommit() ? null : this.connectionInfo;
+                    for (QueryInfo queryInfo : queries) {
+                        resultCache.onQuery(queryInfo.getQuery(), transaction);
+                    }
+                }
+            }
 
             final long elapsedTime = stopwatch.getElapsedTime();
 
@@ -293,13 +505,27 @@ public class StatementProxyLogic extends ProxyLogicSupport {
             final boolean isResultSetReturningMethod = !isGetGeneratedKeysMethod && METHODS_TO_RETURN_RESULTSET.contains(methodName);
 
             final boolean isCreateGeneratedKeysProxy = isGetGeneratedKeysMethod && this.proxyConfig.isGeneratedKeysProxyEnabled();
-            final boolean isCreateResultSetProxy = isResultSetReturningMethod && this.proxyConfig.isResultSetProxyEnabled();
+            boolean isCreateResultSetProxy = isResultSetReturningMethod && this.proxyConfig.isResultSetProxyEnabled();
+            String resultSetQuery = null;
+            if (isCreateResultSetProxy) {
+                resultSetQuery = StatementType.STATEMENT == this.statementType ? this.lastStatementQuery : this.query;
+                ResultSetProxyPolicy resultSetProxyPolicy = this.proxyConfig.getResultSetProxyPolicy();
+                if (resultSetProxyPolicy != null && !resultSetProxyPolicy.shouldProxy(resultSetQuery, this.connectionInfo)) {
+                    isCreateResultSetProxy = false;
+                }
+            }
 
             // create proxy for returned ResultSet
             if (isCreateGeneratedKeysProxy) {
                 retVal = proxyFactory.createGeneratedKeys((ResultSet) retVal, this.connectionInfo, this.proxyConfig);
             } else if (isCreateResultSetProxy) {
-                retVal = proxyFactory.createResultSet((ResultSet) retVal, this.connectionInfo, this.proxyConfig);
+                retVal = proxyFactory.createResultSet((ResultSet) retVal, resultSetQuery, this.connectionInfo, this.proxyConfig);
+                if (retVal != null && this.proxyConfig.getResultSetProxyLogicFactory() instanceof StatementBoundResultSetProxyLogicFactory) {
+                    if (this.openResultSets == null) {
+                        this.openResultSets = new ArrayList<ResultSet>();
+                    }
+                    this.openResultSets.add((ResultSet) retVal);
+                }
             }
 
 
@@ -360,10 +586,26 @@ public class StatementProxyLogic extends ProxyLogicSupport {
             execInfo.setThrowable(ex.getTargetException());
             execInfo.setSuccess(false);
             throw ex.getTargetException();
+        } catch (SQLException ex) {
+            // failure after the driver call, such as reading the result to cache
+            execInfo.setElapsedTime(stopwatch.getElapsedTime());
+            execInfo.setThrowable(ex);
+            execInfo.setSuccess(false);
+            throw ex;
         } finally {
 
-            if (performQueryListener) {
-                queryListener.afterQuery(execInfo, queries);
+            try {
+                if (connectionMetrics != null) {
+                    connectionMetrics.afterStatement(this.connectionInfo);
+                }
+
+                if (performQueryListener) {
+                    queryListener.afterQuery(execInfo, queries);
+                }
+            } finally {
+                if (reuseExecutionInfo) {
+                    this.reusableInUse = false;
+                }
             }
 
             // auto-close the auto-retrieved generated keys. result of "getGeneratedKeys()" should not be affected.
@@ -377,28 +619,262 @@ public class StatementProxyLogic extends ProxyLogicSupport {
     }
 
 
+    /**
+     * Close result set proxies that the driver closes implicitly by the invoked statement method.
+     */
+    private void closeOpenResultSets(String methodName, Object[] args) {
+        int from;
+        if ("getMoreResults".equals(methodName)) {
+            int current = args == null ? Statement.CLOSE_CURRENT_RESULT : (Integer) args[0];
+            if (current == Statement.KEEP_CURRENT_RESULT) {
+                this.keptResultSetCount = this.openResultSets.size();
+                return;
+            }
+            from = current == Statement.CLOSE_CURRENT_RESULT ? this.keptResultSetCount : 0;
+        } else if ("close".equals(methodName) || StatementMethodNames.EXEC_METHODS.contains(methodName)) {
+            from = 0;
+        } else {
+            return;
+        }
+        List<ResultSet> toClose = this.openResultSets.subList(from, this.openResultSets.size());
+        for (ResultSet resultSet : toClose) {
+            try {
+                resultSet.close();
+            } catch (SQLException ex) {
+                // the driver closes the result set regardless, nothing to report to the application
+            }
+        }
+        toClose.clear();
+        this.keptResultSetCount = Math.min(this.keptResultSetCount, from);
+    }
+
+    private void rememberFetchSize() throws SQLException {
+        if (this.fetchSizeToRestore < 0 && this.statement instanceof PreparedStatement
+                && this.connectionInfo != null && this.connectionInfo.getAttribute(PreparedStatementCache.CONNECTION_STATEMENTS) != null) {
+            this.fetchSizeToRestore = this.statement.getFetchSize();
+        }
+    }
+
+    /**
+     * Return the statement to the prepared statement cache if it is cached, otherwise close it.
+     */
+    private void closeStatement() throws SQLException {
+        PreparedStatementCache.ConnectionStatements cachedStatements = this.connectionInfo.getAttribute(PreparedStatementCache.CONNECTION_STATEMENTS);
+        if (cachedStatements != null && this.statement instanceof PreparedStatement
+                && cachedStatements.checkin((PreparedStatement) this.statement, this.fetchSizeToRestore)) {
+            this.released = true;
+            this.generatedKeys = null;
+            return;
+        }
+        this.statement.close();
+    }
+
+    private static boolean isCoalescableUpdate(String methodName, Object[] args) {
+        return ("executeUpdate".equals(methodName) || "executeLargeUpdate".equals(methodName))
+                && (args == null || args.length == 0);
+    }
+
+    /**
+     * Returns auto-commit mode recorded on {@link ConnectionInfo}. When it is not known yet, it is retrieved from the
+     * connection once and recorded for all statements of the connection. When the retrieval fails, auto-commit is
+     * recorded, which disables transaction dependent features instead of asking the connection on every execution.
+     */
+    private boolean isAutoCommit() {
+        ConnectionInfo connectionInfo = this.connectionInfo;
+        if (!connectionInfo.isAutoCommitKnown()) {
+            boolean autoCommit;
+            try {
+                autoCommit = this.statement.getConnection().getAutoCommit();
+            } catch (SQLException ex) {
+                autoCommit = true;
+            }
+            connectionInfo.setAutoCommit(autoCommit);
+        }
+        return connectionInfo.isAutoCommit();
+    }
+
+    /**
+     * Add current parameters to the deferred executions instead of executing the update.
+     *
+     * @param deferredBatch deferred executions of the same query, or {@code null} to start new one
+     */
+    private Object deferExecution(StatementCoalescing.DeferredBatch deferredBatch, String methodName) throws Throwable {
+        PreparedStatement ps = (PreparedStatement) this.statement;
+        transformParameters(this.proxyConfig.getParameterTransformer(), ps, false, 0);
+
+        if (deferredBatch == null) {
+            deferredBatch = new StatementCoalescing.DeferredBatch(this.query, ps, this, this.connectionInfo, this.proxyConfig);
+            this.connectionInfo.setAttribute(StatementCoalescing.DEFERRED_BATCH, deferredBatch);
+        }
+        int size = deferredBatch.add(ps, this.parameters.values());
+        if (size >= this.proxyConfig.getStatementCoalescing().getBatchSize()) {
+            deferredBatch.flush();
+        }
+
+        // deferred statements are configured as single-row updates. verified when flushed.
+        if ("executeLargeUpdate".equals(methodName)) {
+            return 1L;
+        }
+        return 1;
+    }
+
+    /**
+     * Bind current parameters except streams and LOBs to the statement again.
+     *
+     * @throws SQLException when failed to bind parameters
+     * @since 1.11
+     */
+    void restoreParameters() throws SQLException {
+        if (this.boundParameters != null) {
+            this.boundParameters.clear();
+        }
+        for (Map.Entry<ParameterKey, ParameterSetOperation> entry : this.parameters.entrySet()) {
+            ParameterSetOperation operation = entry.getValue();
+            if (ParameterSetOperation.isStreamOrLobParameterOperation(operation)) {
+                continue;  // may have been consumed. never bound again.
+            }
+            operation.invoke(this.statement);
+            if (this.boundParameters != null) {
+                this.boundParameters.put(entry.getKey(), operation);
+            }
+        }
+    }
+
+    private List<QueryInfo> acquireQueries(boolean reuse) {
+        if (!reuse) {
+            return new ArrayList<QueryInfo>();
+        }
+        if (this.reusableQueries == null) {
+            this.reusableQueries = new ArrayList<QueryInfo>();
+        } else {
+            this.reusableQueries.clear();
+        }
+        return this.reusableQueries;
+    }
+
+    private QueryInfo acquireQueryInfo(boolean reuse, int index, String query) {
+        if (!reuse) {
+            return new QueryInfo(query);
+        }
+        if (this.queryInfoPool == null) {
+            this.queryInfoPool = new ArrayList<QueryInfo>();
+        }
+        if (index < this.queryInfoPool.size()) {
+            QueryInfo queryInfo = this.queryInfoPool.get(index);
+            queryInfo.reset(query);
+            return queryInfo;
+        }
+        QueryInfo queryInfo = new QueryInfo(query);
+        this.queryInfoPool.add(queryInfo);
+        return queryInfo;
+    }
+
+    private ExecutionInfo acquireExecutionInfo(boolean isBatchExecution, int batchSize, Method method, Object[] args) {
+        if (this.reusableExecutionInfo == null) {
+            this.reusableExecutionInfo = new ExecutionInfo(this.connectionInfo, this.statement, isBatchExecution, batchSize, method, args);
+        } else {
+            this.reusableExecutionInfo.reset(this.connectionInfo, this.statement, isBatchExecution, batchSize, method, args);
+        }
+        return this.reusableExecutionInfo;
+    }
+
     private void transformParameters(ParameterTransformer parameterTransformer, PreparedStatement ps, boolean isBatch, int count) throws SQLException, IllegalAccessException, InvocationTargetException {
 
-        // transform parameters
-        final ParameterReplacer parameterReplacer = new ParameterReplacer(this.parameters);
+        if (parameterTransformer == ParameterTransformer.DEFAULT) {
+            return;  // no-op
+        }
+
+        // transform parameters set by the application, not the ones transformed by previous execution
+        final Map<ParameterKey, ParameterSetOperation> sourceParameters =
+                this.untransformedParameters != null ? this.untransformedParameters : this.parameters;
+        final ParameterReplacer parameterReplacer = new ParameterReplacer(sourceParameters);
         final TransformInfo transformInfo = new TransformInfo(ps.getClass(), this.connectionInfo.getDataSourceName(), query, isBatch, count);
         parameterTransformer.transformParameters(parameterReplacer, transformInfo);
 
         if (parameterReplacer.isModified()) {
-
-            ps.clearParameters();  // clear existing parameters
-
-            // re-set parameters
             Map<ParameterKey, ParameterSetOperation> modifiedParameters = parameterReplacer.getModifiedParameters();
-            for (ParameterSetOperation operation : modifiedParameters.values()) {
-                final Method paramMethod = operation.getMethod();
-                final Object[] paramArgs = operation.getArgs();
-                paramMethod.invoke(ps, paramArgs);
-            }
+            bindParameters(ps, modifiedParameters);
 
             // replace
             this.parameters = modifiedParameters;
+            this.untransformedParameters = sourceParameters;
+        } else if (this.untransformedParameters != null || this.deferParameterBinding) {
+            // bind parameters set by the application. statement may still have the ones modified by previous execution
+            bindParameters(ps, sourceParameters);
+            this.parameters = sourceParameters;
+            this.untransformedParameters = null;
+        }
+    }
+
+    /**
+     * Use parameters set by the application, since transformed parameters are a read-only view.
+     */
+    private void dropTransformedParameters() {
+        if (this.untransformedParameters != null) {
+            this.parameters = this.untransformedParameters;
+            this.untransformedParameters = null;
+        }
+    }
+
+    /**
+     * Bind parameters that differ from the ones bound to the statement.
+     *
+     * <p>Parameters are cleared only when a bound parameter is not in the given parameters. Streams and LOBs are not
+     * bound again, since they may have been consumed by a previous execution.
+     */
+    private void bindParameters(PreparedStatement ps, Map<ParameterKey, ParameterSetOperation> parameters) throws SQLException {
+        Map<ParameterKey, ParameterSetOperation> bound = this.boundParameters;
+        Collection<ParameterSetOperation> cleared = Collections.emptyList();
+        if (!parameters.keySet().containsAll(bound.keySet())) {
+            ps.clearParameters();
+            cleared = new ArrayList<ParameterSetOperation>(bound.values());
+            bound.clear();
+        }
+
+        for (Map.Entry<ParameterKey, ParameterSetOperation> entry : parameters.entrySet()) {
+            final ParameterSetOperation operation = entry.getValue();
+            final ParameterSetOperation boundOperation = bound.get(entry.getKey());
+            if (boundOperation != null && isSameOperation(operation, boundOperation)) {
+                continue;  // already bound
+            }
+            if (ParameterSetOperation.isStreamOrLobParameterOperation(operation)
+                    && (isBoundValue(operation, bound.values()) || isBoundValue(operation, cleared))) {
+                throw new SQLException("Parameter " + entry.getKey() + " is a stream or LOB that has already been bound. "
+                        + "Set it again before executing the statement.");
+            }
+            operation.invoke(ps);
+            bound.put(entry.getKey(), operation);
+        }
+    }
+
+    private static boolean isSameOperation(ParameterSetOperation operation, ParameterSetOperation other) {
+        if (operation == other) {
+            return true;
+        }
+        if (operation instanceof PrimitiveParameterSetOperation && other instanceof PrimitiveParameterSetOperation) {
+            return ((PrimitiveParameterSetOperation) operation).isSameOperation((PrimitiveParameterSetOperation) other);
+        }
+        Object[] args = operation.getArgs();
+        Object[] otherArgs = other.getArgs();
+        if (!operation.getMethod().equals(other.getMethod()) || args.length != otherArgs.length) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] != otherArgs[i] && !(i == 0 && args[i].equals(otherArgs[i]))) {  // index may be boxed again
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBoundValue(ParameterSetOperation operation, Collection<ParameterSetOperation> boundOperations) {
+        Object value = operation.getArgs()[1];
+        for (ParameterSetOperation boundOperation : boundOperations) {
+            if (boundOperation.getArgs().length > 1 && boundOperation.getArgs()[1] == value) {
+                return true;
+            }
         }
+        return false;
     }
 
 }
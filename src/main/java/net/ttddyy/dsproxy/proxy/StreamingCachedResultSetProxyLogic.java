@@ -0,0 +1,982 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ConnectionInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * Read-only scrollable {@link ResultSet} proxy that caches rows without {@link javax.sql.rowset.CachedRowSet}.
+ *
+ * <p>Rows are fetched from the actual {@link ResultSet} in fixed-size blocks when the cursor moves beyond the rows
+ * read so far, so that iterating forward does not read the whole result up front. The cursor can move forward,
+ * backward and to an absolute position.
+ *
+ * <p>Numeric and boolean columns are stored in primitive arrays per block; other values are stored as objects.
+ * {@link Blob} and {@link Clob} values are copied to {@link SerialBlob} and {@link SerialClob}.
+ *
+ * <p>When the estimated size of the blocks in memory exceeds the memory limit, least recently used blocks are written
+ * to a temporary file and read back when the cursor moves to them. The file is deleted when the result set is closed;
+ * result sets are closed with their statement, and the file of a result set that is garbage collected without being
+ * closed is deleted when a later result set creates a temporary file.
+ * Values are written in a typed format that supports strings, numbers, booleans, binaries, date/time values, {@link
+ * Blob} and {@link Clob}; once a value of other types is read, blocks are kept in memory beyond the limit.
+ *
+ * <p>Metadata is obtained from {@link ResultSetShapeCache} when it is configured.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see StreamingCachedResultSetProxyLogicFactory
+ * @since 1.11
+ */
+public class StreamingCachedResultSetProxyLogic extends ProxyLogicSupport implements ResultSetProxyLogic {
+
+    // storage kind per column
+    private static final int KIND_OBJECT = 0;
+    private static final int KIND_BOOLEAN = 1;
+    private static final int KIND_BYTE = 2;
+    private static final int KIND_SHORT = 3;
+    private static final int KIND_INT = 4;
+    private static final int KIND_LONG = 5;
+    private static final int KIND_FLOAT = 6;
+    private static final int KIND_DOUBLE = 7;
+
+    // value types in the temporary file
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_STRING = 1;
+    private static final int TYPE_BIG_DECIMAL = 2;
+    private static final int TYPE_BIG_INTEGER = 3;
+    private static final int TYPE_BYTES = 4;
+    private static final int TYPE_DATE = 5;
+    private static final int TYPE_TIME = 6;
+    private static final int TYPE_TIMESTAMP = 7;
+    private static final int TYPE_UTIL_DATE = 8;
+    private static final int TYPE_BLOB = 9;
+    private static final int TYPE_CLOB = 10;
+    private static final int TYPE_BOOLEAN = 11;
+    private static final int TYPE_BYTE = 12;
+    private static final int TYPE_SHORT = 13;
+    private static final int TYPE_INT = 14;
+    private static final int TYPE_LONG = 15;
+    private static final int TYPE_FLOAT = 16;
+    private static final int TYPE_DOUBLE = 17;
+
+    private static final Map<String, Integer> KIND_PER_CLASS_NAME = new HashMap<String, Integer>();
+
+    static {
+        KIND_PER_CLASS_NAME.put(Boolean.class.getName(), KIND_BOOLEAN);
+        KIND_PER_CLASS_NAME.put(Byte.class.getName(), KIND_BYTE);
+        KIND_PER_CLASS_NAME.put(Short.class.getName(), KIND_SHORT);
+        KIND_PER_CLASS_NAME.put(Integer.class.getName(), KIND_INT);
+        KIND_PER_CLASS_NAME.put(Long.class.getName(), KIND_LONG);
+        KIND_PER_CLASS_NAME.put(Float.class.getName(), KIND_FLOAT);
+        KIND_PER_CLASS_NAME.put(Double.class.getName(), KIND_DOUBLE);
+    }
+
+    /**
+     * Rows of a block. Arrays are indexed by column index(1 based) and then by row in the block.
+     */
+    private static class Block {
+
+        private final long[][] longs;  // integral and boolean columns
+        private final double[][] doubles;  // floating point columns
+        private final boolean[][] nulls;  // for primitive columns
+        private final Object[][] objects;  // other columns
+        private int rowCount;
+        private long size;  // estimated bytes
+
+        private Block(int[] kinds, int blockSize) {
+            int length = kinds.length;
+            this.longs = new long[length][];
+            this.doubles = new double[length][];
+            this.nulls = new boolean[length][];
+            this.objects = new Object[length][];
+            for (int i = 1; i < length; i++) {
+                int kind = kinds[i];
+                if (kind == KIND_OBJECT) {
+                    this.objects[i] = new Object[blockSize];
+                } else {
+                    if (kind == KIND_FLOAT || kind == KIND_DOUBLE) {
+                        this.doubles[i] = new double[blockSize];
+                    } else {
+                        this.longs[i] = new long[blockSize];
+                    }
+                    this.nulls[i] = new boolean[blockSize];
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the temporary file of a result set that is garbage collected without being closed.
+     * Collected references are processed when another result set creates a temporary file.
+     */
+    private static class SpillFileReference extends PhantomReference<Object> {
+
+        private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<Object>();
+        private static final Set<SpillFileReference> PENDING = Collections.synchronizedSet(new HashSet<SpillFileReference>());
+
+        private final File file;
+        private final RandomAccessFile access;
+
+        private SpillFileReference(Object owner, File file, RandomAccessFile access) {
+            super(owner, QUEUE);
+            this.file = file;
+            this.access = access;
+            PENDING.add(this);
+        }
+
+        private static void expunge() {
+            Reference<?> reference;
+            while ((reference = QUEUE.poll()) != null) {
+                ((SpillFileReference) reference).release();
+            }
+        }
+
+        private void release() {
+            PENDING.remove(this);
+            clear();
+            try {
+                this.access.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            this.file.delete();
+        }
+    }
+
+    private static class BlockSlot {
+        private Block block;  // null when spilled
+        private final long size;
+        private long fileOffset = -1;
+        private int fileLength;
+
+        private BlockSlot(Block block) {
+            this.block = block;
+            this.size = block.size;
+        }
+    }
+
+    private final ResultSet resultSet;  // original resultset
+    private final ConnectionInfo connectionInfo;
+    private final ProxyConfig proxyConfig;
+    private final int blockSize;
+    private final long maxMemoryBytes;
+    private final File spillDirectory;
+
+    private final ResultSetMetaData metaData;
+    private final int columnCount;
+    private final int[] kinds;
+    private final ColumnLabelIndex columnLabelIndex;
+
+    private final List<BlockSlot> slots = new ArrayList<BlockSlot>();
+    private final LinkedHashMap<Integer, BlockSlot> residentSlots = new LinkedHashMap<Integer, BlockSlot>(16, 0.75f, true);
+    private long residentBytes;
+    private Block recycledBlock;
+    private int rowCount;  // num of rows read from the original resultset
+    private boolean exhausted;
+    private boolean spillable = true;  // false once a value cannot be written to the temporary file
+
+    private int cursor;  // 0: before first, rowCount + 1: after last
+    private int currentBlockIndex = -1;
+    private Block currentBlock;
+    private int currentRowInBlock;
+    private boolean wasNull;
+    private boolean closed;
+    private int fetchSize;
+    private int fetchDirection = ResultSet.FETCH_FORWARD;
+
+    private File spillFile;
+    private RandomAccessFile spillFileAccess;
+    private SpillFileReference spillFileReference;
+    private long spillFileLength;
+
+    /**
+     * @param resultSet      actual result set
+     * @param query          query executed by the statement. {@code null} when unknown
+     * @param connectionInfo connection info
+     * @param proxyConfig    proxy config
+     * @param blockSize      num of rows fetched at once
+     * @param maxMemoryBytes estimated bytes of rows to keep in memory
+     * @param spillDirectory directory for the temporary file. {@code null} to use the default temporary directory
+     * @throws SQLException when failed to read the metadata
+     */
+    public StreamingCachedResultSetProxyLogic(ResultSet resultSet, String query, ConnectionInfo connectionInfo, ProxyConfig proxyConfig,
+                                              int blockSize, long maxMemoryBytes, File spillDirectory) throws SQLException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+        }
+        this.resultSet = resultSet;
+        this.connectionInfo = connectionInfo;
+        this.proxyConfig = proxyConfig;
+        this.blockSize = blockSize;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.spillDirectory = spillDirectory;
+
+        ResultSetShapeCache shapeCache = proxyConfig.getResultSetShapeCache();
+        ResultSetShape shape = shapeCache != null ?
+                shapeCache.getShape(resultSet, query) : ResultSetShape.of(resultSet.getMetaData());
+        this.metaData = shape.getMetaData();
+        this.columnCount = shape.getColumnCount();
+        this.columnLabelIndex = shape.getColumnLabelIndex();
+        this.kinds = new int[this.columnCount + 1];
+        for (int i = 1; i <= this.columnCount; i++) {
+            Integer kind = KIND_PER_CLASS_NAME.get(this.metaData.getColumnClassName(i));
+            this.kinds[i] = kind != null ? kind : KIND_OBJECT;
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (this.proxyConfig.getMethodListener().getListeners().isEmpty()) {
+            return performProxyLogic(proxy, method, args, null);
+        }
+        return proceedMethodExecution(this.proxyConfig, this.resultSet, this.connectionInfo, proxy, method, args);
+    }
+
+    @Override
+    protected Object performProxyLogic(Object proxy, Method method, Object[] args, MethodExecutionContext methodContext) throws Throwable {
+        final String methodName = method.getName();
+
+        if (isCommonMethod(methodName)) {
+            return handleCommonMethod(methodName, this.resultSet, this.proxyConfig, args);
+        } else if ("close".equals(methodName)) {
+            close();
+            return null;
+        } else if ("isClosed".equals(methodName)) {
+            return this.closed;
+        }
+
+        if (this.closed) {
+            throw new SQLException("ResultSet is closed");
+        }
+
+        if (args != null && args.length > 0 && methodName.startsWith("get")) {
+            return getColumnValue(method, args);
+        } else if ("next".equals(methodName)) {
+            return moveTo(this.cursor + 1);
+        } else if ("previous".equals(methodName)) {
+            return moveTo(this.cursor - 1);
+        } else if ("first".equals(methodName)) {
+            return moveTo(1);
+        } else if ("last".equals(methodName)) {
+            loadAll();
+            return moveTo(this.rowCount);
+        } else if ("beforeFirst".equals(methodName)) {
+            moveTo(0);
+            return null;
+        } else if ("afterLast".equals(methodName)) {
+            loadAll();
+            moveTo(this.rowCount + 1);
+            return null;
+        } else if ("absolute".equals(methodName)) {
+            int row = (Integer) args[0];
+            if (row < 0) {
+                loadAll();
+                row = this.rowCount + 1 + row;
+            }
+            return moveTo(row);
+        } else if ("relative".equals(methodName)) {
+            return moveTo(this.cursor + (Integer) args[0]);
+        } else if ("isBeforeFirst".equals(methodName)) {
+            ensureLoaded(1);
+            return this.cursor == 0 && this.rowCount > 0;
+        } else if ("isAfterLast".equals(methodName)) {
+            return this.cursor > this.rowCount && this.rowCount > 0;
+        } else if ("isFirst".equals(methodName)) {
+            return this.cursor == 1 && this.rowCount > 0;
+        } else if ("isLast".equals(methodName)) {
+            if (this.cursor < 1 || this.cursor > this.rowCount) {
+                return false;
+            }
+            ensureLoaded(this.cursor + 1);
+            return this.cursor == this.rowCount;
+        } else if ("getRow".equals(methodName)) {
+            return this.cursor <= this.rowCount ? this.cursor : 0;
+        } else if ("wasNull".equals(methodName)) {
+            return this.wasNull;
+        } else if ("findColumn".equals(methodName)) {
+            return findColumn(args[0]);
+        } else if ("getMetaData".equals(methodName)) {
+            return this.metaData;
+        } else if ("getType".equals(methodName)) {
+            return ResultSet.TYPE_SCROLL_INSENSITIVE;
+        } else if ("getConcurrency".equals(methodName)) {
+            return ResultSet.CONCUR_READ_ONLY;
+        } else if ("getFetchSize".equals(methodName)) {
+            return this.fetchSize;
+        } else if ("setFetchSize".equals(methodName)) {
+            this.fetchSize = (Integer) args[0];
+            return null;
+        } else if ("getFetchDirection".equals(methodName)) {
+            return this.fetchDirection;
+        } else if ("setFetchDirection".equals(methodName)) {
+            this.fetchDirection = (Integer) args[0];
+            return null;
+        } else if ("rowUpdated".equals(methodName) || "rowInserted".equals(methodName) || "rowDeleted".equals(methodName)) {
+            return false;
+        } else if ("getStatement".equals(methodName) || "getHoldability".equals(methodName)
+                || "getWarnings".equals(methodName) || "clearWarnings".equals(methodName)) {
+            return proceedExecution(method, this.resultSet, args);
+        }
+
+        throw new SQLFeatureNotSupportedException(format("Method '%s' is not supported by read-only cached ResultSet", methodName));
+    }
+
+    private boolean moveTo(int row) throws SQLException {
+        if (row > 0) {
+            ensureLoaded(row);
+        }
+        if (row <= 0 || row > this.rowCount) {
+            this.cursor = row <= 0 ? 0 : this.rowCount + 1;
+            this.currentBlock = null;
+            return false;
+        }
+        this.cursor = row;
+        int blockIndex = (row - 1) / this.blockSize;
+        if (blockIndex != this.currentBlockIndex || this.currentBlock == null) {
+            this.currentBlock = residentBlock(blockIndex);
+            this.currentBlockIndex = blockIndex;
+        }
+        this.currentRowInBlock = (row - 1) % this.blockSize;
+        return true;
+    }
+
+    private void ensureLoaded(int row) throws SQLException {
+        while (this.rowCount < row && !this.exhausted) {
+            loadBlock();
+        }
+    }
+
+    private void loadAll() throws SQLException {
+        while (!this.exhausted) {
+            loadBlock();
+        }
+    }
+
+    private void loadBlock() throws SQLException {
+        Block block = this.recycledBlock != null ? this.recycledBlock : new Block(this.kinds, this.blockSize);
+        this.recycledBlock = null;
+        readRows(block);
+        if (block.rowCount == 0) {
+            this.recycledBlock = block;
+            return;
+        }
+        BlockSlot slot = new BlockSlot(block);
+        int index = this.slots.size();
+        this.slots.add(slot);
+        this.residentSlots.put(index, slot);
+        this.residentBytes += slot.size;
+        this.rowCount += block.rowCount;
+        enforceMemoryLimit(index);
+    }
+
+    private void readRows(Block block) throws SQLException {
+        ResultSet rs = this.resultSet;
+        long objectBytes = 0;
+        int row = 0;
+        while (row < this.blockSize) {
+            if (!rs.next()) {
+                this.exhausted = true;
+                break;
+            }
+            for (int i = 1; i <= this.columnCount; i++) {
+                switch (this.kinds[i]) {
+                    case KIND_OBJECT:
+                        Object value = rs.getObject(i);
+                        if (value instanceof Blob) {
+                            value = new SerialBlob((Blob) value);
+                        } else if (value instanceof Clob) {
+                            value = new SerialClob((Clob) value);
+                        }
+                        block.objects[i][row] = value;
+                        objectBytes += estimateSize(value);
+                        if (this.spillable && valueType(value) < 0) {
+                            this.spillable = false;
+                        }
+                        continue;
+                    case KIND_BOOLEAN:
+                        block.longs[i][row] = rs.getBoolean(i) ? 1 : 0;
+                        break;
+                    case KIND_FLOAT:
+                    case KIND_DOUBLE:
+                        block.doubles[i][row] = rs.getDouble(i);
+                        break;
+                    default:
+                        block.longs[i][row] = rs.getLong(i);
+                }
+                block.nulls[i][row] = rs.wasNull();
+            }
+            row++;
+        }
+        if (row < this.blockSize) {
+            // release values left by the previous use of a recycled block
+            for (Object[] values : block.objects) {
+                if (values != null) {
+                    Arrays.fill(values, row, this.blockSize, null);
+                }
+            }
+        }
+        block.rowCount = row;
+        block.size = 9L * this.blockSize * this.columnCount + objectBytes;
+    }
+
+    private static long estimateSize(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        } else if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        }
+        try {
+            if (value instanceof Blob) {
+                return 64 + ((Blob) value).length();
+            } else if (value instanceof Clob) {
+                return 64 + 2 * ((Clob) value).length();
+            }
+        } catch (SQLException e) {
+            // use default size
+        }
+        return 48;
+    }
+
+    private Block residentBlock(int index) throws SQLException {
+        BlockSlot slot = this.residentSlots.get(index);  // access order is updated
+        if (slot != null) {
+            return slot.block;
+        }
+        slot = this.slots.get(index);
+        slot.block = readSpilledBlock(slot);
+        this.residentSlots.put(index, slot);
+        this.residentBytes += slot.size;
+        enforceMemoryLimit(index);
+        return slot.block;
+    }
+
+    private void enforceMemoryLimit(int keepIndex) throws SQLException {
+        if (!this.spillable) {
+            return;
+        }
+        Iterator<Map.Entry<Integer, BlockSlot>> iterator = this.residentSlots.entrySet().iterator();
+        while (this.residentBytes > this.maxMemoryBytes && iterator.hasNext()) {
+            Map.Entry<Integer, BlockSlot> entry = iterator.next();
+            int index = entry.getKey();
+            if (index == keepIndex || index == this.currentBlockIndex) {
+                continue;
+            }
+            BlockSlot slot = entry.getValue();
+            spill(slot);
+            iterator.remove();
+            this.residentBytes -= slot.size;
+            this.recycledBlock = slot.block;
+            slot.block = null;
+        }
+    }
+
+    private void spill(BlockSlot slot) throws SQLException {
+        if (slot.fileOffset >= 0) {
+            return;  // blocks are read-only, already written content is still valid
+        }
+        try {
+            if (this.spillFileAccess == null) {
+                SpillFileReference.expunge();
+                this.spillFile = File.createTempFile("dsproxy-", ".rows", this.spillDirectory);
+                this.spillFileAccess = new RandomAccessFile(this.spillFile, "rw");
+                this.spillFileReference = new SpillFileReference(this, this.spillFile, this.spillFileAccess);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeBlock(slot.block, out);
+            out.close();
+
+            this.spillFileAccess.seek(this.spillFileLength);
+            this.spillFileAccess.write(bytes.toByteArray());
+            slot.fileOffset = this.spillFileLength;
+            slot.fileLength = bytes.size();
+            this.spillFileLength += slot.fileLength;
+        } catch (IOException e) {
+            throw new SQLException("Failed to write rows to temporary file " + this.spillFile, e);
+        }
+    }
+
+    private Block readSpilledBlock(BlockSlot slot) throws SQLException {
+        try {
+            byte[] bytes = new byte[slot.fileLength];
+            this.spillFileAccess.seek(slot.fileOffset);
+            this.spillFileAccess.readFully(bytes);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            Block block = this.recycledBlock != null ? this.recycledBlock : new Block(this.kinds, this.blockSize);
+            this.recycledBlock = null;
+            readBlock(block, in);
+            block.size = slot.size;
+            return block;
+        } catch (IOException e) {
+            throw new SQLException("Failed to read rows from temporary file " + this.spillFile, e);
+        }
+    }
+
+    private void writeBlock(Block block, DataOutputStream out) throws IOException, SQLException {
+        int rows = block.rowCount;
+        out.writeInt(rows);
+        for (int i = 1; i <= this.columnCount; i++) {
+            int kind = this.kinds[i];
+            if (kind == KIND_OBJECT) {
+                for (int row = 0; row < rows; row++) {
+                    writeValue(block.objects[i][row], out);
+                }
+                continue;
+            }
+            for (int row = 0; row < rows; row++) {
+                out.writeBoolean(block.nulls[i][row]);
+                if (kind == KIND_FLOAT || kind == KIND_DOUBLE) {
+                    out.writeDouble(block.doubles[i][row]);
+                } else {
+                    out.writeLong(block.longs[i][row]);
+                }
+            }
+        }
+    }
+
+    private void readBlock(Block block, DataInputStream in) throws IOException, SQLException {
+        int rows = in.readInt();
+        for (int i = 1; i <= this.columnCount; i++) {
+            int kind = this.kinds[i];
+            if (kind == KIND_OBJECT) {
+                for (int row = 0; row < rows; row++) {
+                    block.objects[i][row] = readValue(in);
+                }
+                Arrays.fill(block.objects[i], rows, this.blockSize, null);
+                continue;
+            }
+            for (int row = 0; row < rows; row++) {
+                block.nulls[i][row] = in.readBoolean();
+                if (kind == KIND_FLOAT || kind == KIND_DOUBLE) {
+                    block.doubles[i][row] = in.readDouble();
+                } else {
+                    block.longs[i][row] = in.readLong();
+                }
+            }
+        }
+        block.rowCount = rows;
+    }
+
+    /**
+     * @return type in the temporary file, or {@code -1} if the value cannot be written
+     */
+    private static int valueType(Object value) {
+        if (value == null) {
+            return TYPE_NULL;
+        } else if (value instanceof String) {
+            return TYPE_STRING;
+        } else if (value instanceof BigDecimal) {
+            return TYPE_BIG_DECIMAL;
+        } else if (value instanceof BigInteger) {
+            return TYPE_BIG_INTEGER;
+        } else if (value instanceof byte[]) {
+            return TYPE_BYTES;
+        } else if (value instanceof Blob) {
+            return TYPE_BLOB;
+        } else if (value instanceof Clob) {
+            return TYPE_CLOB;
+        }
+        // exact classes, subclasses may have more state
+        Class<?> type = value.getClass();
+        if (type == java.sql.Date.class) {
+            return TYPE_DATE;
+        } else if (type == java.sql.Time.class) {
+            return TYPE_TIME;
+        } else if (type == Timestamp.class) {
+            return TYPE_TIMESTAMP;
+        } else if (type == java.util.Date.class) {
+            return TYPE_UTIL_DATE;
+        } else if (type == Boolean.class) {
+            return TYPE_BOOLEAN;
+        } else if (type == Byte.class) {
+            return TYPE_BYTE;
+        } else if (type == Short.class) {
+            return TYPE_SHORT;
+        } else if (type == Integer.class) {
+            return TYPE_INT;
+        } else if (type == Long.class) {
+            return TYPE_LONG;
+        } else if (type == Float.class) {
+            return TYPE_FLOAT;
+        } else if (type == Double.class) {
+            return TYPE_DOUBLE;
+        }
+        return -1;
+    }
+
+    private static void writeValue(Object value, DataOutputStream out) throws IOException, SQLException {
+        int type = valueType(value);
+        out.writeByte(type);
+        switch (type) {
+            case TYPE_NULL:
+                break;
+            case TYPE_STRING:
+                writeString((String) value, out);
+                break;
+            case TYPE_BIG_DECIMAL:
+                BigDecimal decimal = (BigDecimal) value;
+                out.writeInt(decimal.scale());
+                writeBytes(decimal.unscaledValue().toByteArray(), out);
+                break;
+            case TYPE_BIG_INTEGER:
+                writeBytes(((BigInteger) value).toByteArray(), out);
+                break;
+            case TYPE_BYTES:
+                writeBytes((byte[]) value, out);
+                break;
+            case TYPE_BLOB:
+                Blob blob = (Blob) value;
+                writeBytes(blob.getBytes(1, (int) blob.length()), out);
+                break;
+            case TYPE_CLOB:
+                Clob clob = (Clob) value;
+                writeString(clob.getSubString(1, (int) clob.length()), out);
+                break;
+            case TYPE_DATE:
+            case TYPE_TIME:
+            case TYPE_UTIL_DATE:
+                out.writeLong(((java.util.Date) value).getTime());
+                break;
+            case TYPE_TIMESTAMP:
+                out.writeLong(((Timestamp) value).getTime());
+                out.writeInt(((Timestamp) value).getNanos());
+                break;
+            case TYPE_BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case TYPE_FLOAT:
+            case TYPE_DOUBLE:
+                out.writeDouble(((Number) value).doubleValue());
+                break;
+            case TYPE_BYTE:
+            case TYPE_SHORT:
+            case TYPE_INT:
+            case TYPE_LONG:
+                out.writeLong(((Number) value).longValue());
+                break;
+            default:
+                throw new SQLException("Cannot write " + value.getClass().getName() + " to temporary file");
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException, SQLException {
+        int type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_BIG_DECIMAL:
+                int scale = in.readInt();
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            case TYPE_BIG_INTEGER:
+                return new BigInteger(readBytes(in));
+            case TYPE_BYTES:
+                return readBytes(in);
+            case TYPE_BLOB:
+                return new SerialBlob(readBytes(in));
+            case TYPE_CLOB:
+                return new SerialClob(readString(in).toCharArray());
+            case TYPE_DATE:
+                return new java.sql.Date(in.readLong());
+            case TYPE_TIME:
+                return new java.sql.Time(in.readLong());
+            case TYPE_UTIL_DATE:
+                return new java.util.Date(in.readLong());
+            case TYPE_TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_FLOAT:
+                return (float) in.readDouble();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_BYTE:
+                return (byte) in.readLong();
+            case TYPE_SHORT:
+                return (short) in.readLong();
+            case TYPE_INT:
+                return (int) in.readLong();
+            case TYPE_LONG:
+                return in.readLong();
+            default:
+                throw new SQLException("Unknown value type in temporary file: " + type);
+        }
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        out.writeInt(value.length());
+        out.writeChars(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        char[] chars = new char[in.readInt()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    private static void writeBytes(byte[] value, DataOutputStream out) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private void close() throws SQLException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.currentBlock = null;
+        this.recycledBlock = null;
+        this.slots.clear();
+        this.residentSlots.clear();
+        try {
+            this.resultSet.close();
+        } finally {
+            if (this.spillFileReference != null) {
+                this.spillFileReference.release();
+            }
+        }
+    }
+
+    private int findColumn(Object lookup) throws SQLException {
+        if (lookup instanceof Integer) {
+            int index = (Integer) lookup;
+            if (index < 1 || index > this.columnCount) {
+                throw new SQLException(format("Invalid column index %d", index));
+            }
+            return index;
+        }
+        int index = this.columnLabelIndex.indexOf((String) lookup);
+        if (index < 0) {
+            throw new SQLException(format("Unknown column name '%s'", lookup));
+        }
+        return index;
+    }
+
+    private Object getColumnValue(Method method, Object[] args) throws SQLException {
+        int columnIndex = findColumn(args[0]);
+        if (this.currentBlock == null) {
+            throw new SQLException("No current row");
+        }
+        Class<?> type = method.getReturnType();
+        if (args.length > 1) {
+            Object arg = args[1];
+            if (arg instanceof Class) {
+                type = (Class<?>) arg;  // getObject(column, Class)
+            } else if (arg instanceof Calendar || (arg instanceof Map && !((Map<?, ?>) arg).isEmpty())) {
+                throw new SQLFeatureNotSupportedException(format("Method '%s' with %s is not supported by cached ResultSet",
+                        method.getName(), arg.getClass().getSimpleName()));
+            }
+        }
+
+        Block block = this.currentBlock;
+        int row = this.currentRowInBlock;
+        Object value;
+        switch (this.kinds[columnIndex]) {
+            case KIND_OBJECT:
+                value = block.objects[columnIndex][row];
+                this.wasNull = value == null;
+                if (value == null) {
+                    return zero(type);
+                }
+                break;
+            case KIND_FLOAT:
+            case KIND_DOUBLE:
+                this.wasNull = block.nulls[columnIndex][row];
+                if (this.wasNull) {
+                    return zero(type);
+                }
+                double doubleValue = block.doubles[columnIndex][row];
+                if (type == double.class) {
+                    return doubleValue;
+                }
+                value = this.kinds[columnIndex] == KIND_FLOAT ? Float.valueOf((float) doubleValue) : Double.valueOf(doubleValue);
+                break;
+            default:
+                this.wasNull = block.nulls[columnIndex][row];
+                if (this.wasNull) {
+                    return zero(type);
+                }
+                long longValue = block.longs[columnIndex][row];
+                if (type == int.class) {
+                    return (int) longValue;
+                } else if (type == long.class) {
+                    return longValue;
+                }
+                value = box(this.kinds[columnIndex], longValue);
+        }
+
+        if (type == Object.class) {
+            return value;
+        }
+        Object converted = convert(value, type);
+        if (args.length > 1 && args[1] instanceof Integer && converted instanceof BigDecimal) {
+            // getBigDecimal(column, scale)
+            return ((BigDecimal) converted).setScale((Integer) args[1], RoundingMode.HALF_UP);
+        }
+        return converted;
+    }
+
+    private static Object box(int kind, long value) {
+        switch (kind) {
+            case KIND_BOOLEAN:
+                return value != 0;
+            case KIND_BYTE:
+                return (byte) value;
+            case KIND_SHORT:
+                return (short) value;
+            case KIND_INT:
+                return (int) value;
+            default:
+                return value;
+        }
+    }
+
+    private static Object zero(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == float.class) {
+            return 0f;
+        }
+        return 0d;
+    }
+
+    private static Object convert(Object value, Class<?> type) throws SQLException {
+        if (type.isInstance(value)) {
+            return value;
+        } else if (type == String.class) {
+            if (value instanceof Clob) {
+                Clob clob = (Clob) value;
+                return clob.getSubString(1, (int) clob.length());
+            }
+            return value.toString();
+        }
+
+        if (value instanceof Boolean) {
+            value = ((Boolean) value) ? 1 : 0;
+        } else if (value instanceof String && (type.isPrimitive() || Number.class.isAssignableFrom(type) || type == Boolean.class)) {
+            String text = ((String) value).trim();
+            if (type == boolean.class || type == Boolean.class) {
+                return "true".equalsIgnoreCase(text) || "1".equals(text);
+            }
+            try {
+                value = new BigDecimal(text);
+            } catch (NumberFormatException e) {
+                throw new SQLException(format("Cannot convert '%s' to %s", text, type.getName()));
+            }
+        }
+
+        if (value instanceof Number) {
+            Number number = (Number) value;
+            if (type == int.class || type == Integer.class) {
+                return number.intValue();
+            } else if (type == long.class || type == Long.class) {
+                return number.longValue();
+            } else if (type == double.class || type == Double.class) {
+                return number.doubleValue();
+            } else if (type == float.class || type == Float.class) {
+                return number.floatValue();
+            } else if (type == short.class || type == Short.class) {
+                return number.shortValue();
+            } else if (type == byte.class || type == Byte.class) {
+                return number.byteValue();
+            } else if (type == boolean.class || type == Boolean.class) {
+                return number.doubleValue() != 0;
+            } else if (type == BigDecimal.class) {
+                if (number instanceof BigInteger) {
+                    return new BigDecimal((BigInteger) number);
+                } else if (number instanceof Double || number instanceof Float) {
+                    return BigDecimal.valueOf(number.doubleValue());
+                }
+                return new BigDecimal(number.toString());
+            }
+        } else if (value instanceof java.util.Date) {
+            long time = ((java.util.Date) value).getTime();
+            if (type == java.sql.Date.class) {
+                return new java.sql.Date(time);
+            } else if (type == java.sql.Time.class) {
+                return new java.sql.Time(time);
+            } else if (type == java.sql.Timestamp.class) {
+                return new java.sql.Timestamp(time);
+            }
+        } else if (type == InputStream.class) {
+            if (value instanceof byte[]) {
+                return new ByteArrayInputStream((byte[]) value);
+            } else if (value instanceof Blob) {
+                return ((Blob) value).getBinaryStream();
+            }
+        } else if (type == Reader.class) {
+            if (value instanceof String) {
+                return new StringReader((String) value);
+            } else if (value instanceof Clob) {
+                return ((Clob) value).getCharacterStream();
+            }
+        } else if (type == byte[].class && value instanceof Blob) {
+            Blob blob = (Blob) value;
+            return blob.getBytes(1, (int) blob.length());
+        }
+        throw new SQLException(format("Cannot convert %s to %s", value.getClass().getName(), type.getName()));
+    }
+
+}
@@ -0,0 +1,83 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ConnectionInfo;
+import net.ttddyy.dsproxy.DataSourceProxyException;
+
+import java.io.File;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Factory to create {@link StreamingCachedResultSetProxyLogic}.
+ *
+ * Alternative to {@link CachedRowSetResultSetProxyLogicFactory} that does not read all rows up front and keeps memory
+ * usage bounded by writing rows to a temporary file. Result sets are closed with their statement, so that the temporary
+ * file is deleted even when the application does not close the result set.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see StreamingCachedResultSetProxyLogic
+ * @since 1.11
+ */
+public class StreamingCachedResultSetProxyLogicFactory implements QueryAwareResultSetProxyLogicFactory, StatementBoundResultSetProxyLogicFactory {
+
+    public static final int DEFAULT_BLOCK_SIZE = 128;
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 16 * 1024 * 1024;
+
+    private final int blockSize;
+    private final long maxMemoryBytes;
+    private final File spillDirectory;
+
+    public StreamingCachedResultSetProxyLogicFactory() {
+        this(DEFAULT_BLOCK_SIZE, DEFAULT_MAX_MEMORY_BYTES, null);
+    }
+
+    /**
+     * @param blockSize      num of rows fetched at once
+     * @param maxMemoryBytes estimated bytes of rows to keep in memory per result set
+     */
+    public StreamingCachedResultSetProxyLogicFactory(int blockSize, long maxMemoryBytes) {
+        this(blockSize, maxMemoryBytes, null);
+    }
+
+    /**
+     * @param blockSize      num of rows fetched at once
+     * @param maxMemoryBytes estimated bytes of rows to keep in memory per result set
+     * @param spillDirectory directory for temporary files. {@code null} to use the default temporary directory
+     */
+    public StreamingCachedResultSetProxyLogicFactory(int blockSize, long maxMemoryBytes, File spillDirectory) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    @Override
+    public ResultSetProxyLogic create(ResultSet resultSet, ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
+        return create(resultSet, null, connectionInfo, proxyConfig);
+    }
+
+    @Override
+    public ResultSetProxyLogic create(ResultSet resultSet, String query, ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
+        try {
+            return new StreamingCachedResultSetProxyLogic(resultSet, query, connectionInfo, proxyConfig,
+                    this.blockSize, this.maxMemoryBytes, this.spillDirectory);
+        } catch (SQLException e) {
+            throw new DataSourceProxyException("Failed to create cached ResultSet", e);
+        }
+    }
+
+    public int getBlockSize() {
+        return this.blockSize;
+    }
+
+    public long getMaxMemoryBytes() {
+        return this.maxMemoryBytes;
+    }
+
+    public File getSpillDirectory() {
+        return this.spillDirectory;
+    }
+
+}
@@ -61,10 +61,15 @@ public class JdkJdbcProxyFactory implements JdbcProxyFactory {
 
     @Override
     public ResultSet createResultSet(ResultSet resultSet, ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
+        return createResultSet(resultSet, null, connectionInfo, proxyConfig);
+    }
+
+    @Override
+    public ResultSet createResultSet(ResultSet resultSet, String query, ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
         ResultSetProxyLogicFactory factory = proxyConfig.getResultSetProxyLogicFactory();
         return (ResultSet) Proxy.newProxyInstance(ProxyJdbcObject.class.getClassLoader(),
                 new Class[]{ProxyJdbcObject.class, ResultSet.class},
-                new ResultSetInvocationHandler(factory, resultSet, connectionInfo, proxyConfig));
+                new ResultSetInvocationHandler(factory, resultSet, query, connectionInfo, proxyConfig));
     }
 
     @Override
@@ -2,6 +2,7 @@ package net.ttddyy.dsproxy.proxy.jdk;
 
 import net.ttddyy.dsproxy.ConnectionInfo;
 import net.ttddyy.dsproxy.proxy.ProxyConfig;
+import net.ttddyy.dsproxy.proxy.QueryAwareResultSetProxyLogicFactory;
 import net.ttddyy.dsproxy.proxy.ResultSetProxyLogic;
 import net.ttddyy.dsproxy.proxy.ResultSetProxyLogicFactory;
 
@@ -24,6 +25,17 @@ public class ResultSetInvocationHandler implements InvocationHandler {
         this.delegate = factory.create(resultSet, connectionInfo, proxyConfig);
     }
 
+    /**
+     * @since 1.11
+     */
+    public ResultSetInvocationHandler(ResultSetProxyLogicFactory factory, ResultSet resultSet, String query, ConnectionInfo connectionInfo, ProxyConfig proxyConfig) {
+        if (factory instanceof QueryAwareResultSetProxyLogicFactory) {
+            this.delegate = ((QueryAwareResultSetProxyLogicFactory) factory).create(resultSet, query, connectionInfo, proxyConfig);
+        } else {
+            this.delegate = factory.create(resultSet, connectionInfo, proxyConfig);
+        }
+    }
+
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         return delegate.invoke(proxy, method, args);
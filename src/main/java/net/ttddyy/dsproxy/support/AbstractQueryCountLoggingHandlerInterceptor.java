@@ -2,10 +2,12 @@ package net.ttddyy.dsproxy.support;
 
 import net.ttddyy.dsproxy.QueryCount;
 import net.ttddyy.dsproxy.QueryCountHolder;
+import net.ttddyy.dsproxy.QueryCountScope;
 import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -15,25 +17,67 @@ import java.util.List;
  */
 public abstract class AbstractQueryCountLoggingHandlerInterceptor extends HandlerInterceptorAdapter {
 
+    private static final String QUERY_COUNT_SCOPE_ATTRIBUTE = AbstractQueryCountLoggingHandlerInterceptor.class.getName() + ".QUERY_COUNT_SCOPE";
+
     private boolean clearQueryCounter = true;
     private boolean writeAsJson = false;
+    private boolean useQueryCountScope = false;
     private QueryCountLogEntryCreator logFormatter = new DefaultQueryCountLogEntryCreator();
 
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (this.useQueryCountScope) {
+            // resume the scope on async dispatch
+            QueryCountScope scope = (QueryCountScope) request.getAttribute(QUERY_COUNT_SCOPE_ATTRIBUTE);
+            if (scope == null) {
+                scope = new QueryCountScope();
+                request.setAttribute(QUERY_COUNT_SCOPE_ATTRIBUTE, scope);
+            }
+            QueryCountScope.open(scope);
+        }
+        return true;
+    }
+
+    /**
+     * Unbind the {@link QueryCountScope} from the request thread when async request processing starts.
+     * The scope is bound again by {@code preHandle} on the async dispatch.
+     *
+     * <p>Overrides {@code AsyncHandlerInterceptor#afterConcurrentHandlingStarted} on Spring 3.2 or later.
+     *
+     * @param request  current request
+     * @param response current response
+     * @param handler  handler
+     * @throws Exception in case of errors
+     * @since 1.11
+     */
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        QueryCountScope scope = (QueryCountScope) request.getAttribute(QUERY_COUNT_SCOPE_ATTRIBUTE);
+        if (scope != null) {
+            scope.close();
+        }
+    }
+
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
 
+        QueryCountScope scope = (QueryCountScope) request.getAttribute(QUERY_COUNT_SCOPE_ATTRIBUTE);
+        if (scope != null) {
+            request.removeAttribute(QUERY_COUNT_SCOPE_ATTRIBUTE);
+            scope.close();
+
+            List<String> dsNames = new ArrayList<String>(scope.getDataSourceNames());
+            Collections.sort(dsNames);
+            for (String dsName : dsNames) {
+                writeQueryCount(dsName, scope.getQueryCount(dsName));
+            }
+            return;
+        }
+
         List<String> dsNames = QueryCountHolder.getDataSourceNamesAsList();
         Collections.sort(dsNames);
 
         for (String dsName : dsNames) {
-            QueryCount count = QueryCountHolder.get(dsName);
-            String logEntry;
-            if (this.writeAsJson) {
-                logEntry = logFormatter.getLogMessageAsJson(dsName, count);
-            } else {
-                logEntry = logFormatter.getLogMessage(dsName, count);
-            }
-            writeLog(logEntry);
+            writeQueryCount(dsName, QueryCountHolder.get(dsName));
         }
 
         if (clearQueryCounter) {
@@ -42,6 +86,16 @@ public abstract class AbstractQueryCountLoggingHandlerInterceptor extends Handle
 
     }
 
+    private void writeQueryCount(String dsName, QueryCount count) {
+        String logEntry;
+        if (this.writeAsJson) {
+            logEntry = logFormatter.getLogMessageAsJson(dsName, count);
+        } else {
+            logEntry = logFormatter.getLogMessage(dsName, count);
+        }
+        writeLog(logEntry);
+    }
+
     protected abstract void writeLog(String logEntry);
 
     /**
@@ -74,4 +128,16 @@ public abstract class AbstractQueryCountLoggingHandlerInterceptor extends Handle
     public void setWriteAsJson(boolean writeAsJson) {
         this.writeAsJson = writeAsJson;
     }
+
+    /**
+     * Open a {@link QueryCountScope} in {@code preHandle} and log the query counts of the scope in
+     * {@code afterCompletion}. Use with {@link net.ttddyy.dsproxy.listener.ScopedQueryCountStrategy}.
+     * For async requests, the scope is unbound when async processing starts and bound again on the async dispatch.
+     *
+     * @param useQueryCountScope {@code true} to use {@link QueryCountScope}
+     * @since 1.11
+     */
+    public void setUseQueryCountScope(boolean useQueryCountScope) {
+        this.useQueryCountScope = useQueryCountScope;
+    }
 }
@@ -2,11 +2,14 @@ package net.ttddyy.dsproxy.support;
 
 import net.ttddyy.dsproxy.QueryCount;
 import net.ttddyy.dsproxy.QueryCountHolder;
+import net.ttddyy.dsproxy.QueryCountScope;
 
 import javax.servlet.*;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Servlet filter to output query statistics.
@@ -18,6 +21,10 @@ import java.util.List;
  *
  * <p><em>loggerName</em> parameter(Optional): create a logger instance by this name if specified.
  *
+ * <p><em>useQueryCountScope</em> parameter(Optional): when {@code true}, each request is executed in a new
+ * {@link QueryCountScope} by {@link QueryCountScope#call(Callable)} and the query counts of the scope are logged. Use with
+ * {@link net.ttddyy.dsproxy.listener.ScopedQueryCountStrategy}. Since 1.11.
+ *
  * <pre>
  * {@code
  *   <filter>
@@ -49,9 +56,11 @@ public abstract class AbstractQueryCountLoggingServletFilter implements Filter {
     public static final String LOG_LEVEL_PARAM = "logLevel";
     public static final String FORMAT_PARAM = "format";
     public static final String LOGGER_NAME = "loggerName";
+    public static final String USE_QUERY_COUNT_SCOPE_PARAM = "useQueryCountScope";
 
     protected boolean clearQueryCounter = true;
     protected boolean writeAsJson = false;
+    protected boolean useQueryCountScope = false;
     protected QueryCountLogEntryCreator logFormatter = new DefaultQueryCountLogEntryCreator();
 
 
@@ -78,24 +87,50 @@ public abstract class AbstractQueryCountLoggingServletFilter implements Filter {
             this.writeAsJson = true;
         }
 
+        String useQueryCountScopeParam = filterConfig.getInitParameter(USE_QUERY_COUNT_SCOPE_PARAM);
+        if (useQueryCountScopeParam != null && "true".equalsIgnoreCase(useQueryCountScopeParam)) {
+            this.useQueryCountScope = true;
+        }
+
     }
 
     @Override
-    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+    public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain) throws IOException, ServletException {
+        if (this.useQueryCountScope) {
+            QueryCountScope scope = new QueryCountScope();
+            try {
+                scope.call(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        chain.doFilter(request, response);
+                        return null;
+                    }
+                });
+            } catch (IOException ex) {
+                throw ex;
+            } catch (ServletException ex) {
+                throw ex;
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new ServletException(ex);
+            }
+
+            List<String> dsNames = new ArrayList<String>(scope.getDataSourceNames());
+            Collections.sort(dsNames);
+            for (String dsName : dsNames) {
+                writeQueryCount(dsName, scope.getQueryCount(dsName));
+            }
+            return;
+        }
+
         chain.doFilter(request, response);
 
         final List<String> dsNames = QueryCountHolder.getDataSourceNamesAsList();
         Collections.sort(dsNames);
 
         for (String dsName : dsNames) {
-            QueryCount count = QueryCountHolder.get(dsName);
-            String message;
-            if (this.writeAsJson) {
-                message = this.logFormatter.getLogMessageAsJson(dsName, count);
-            } else {
-                message = this.logFormatter.getLogMessage(dsName, count);
-            }
-            writeLog(message);
+            writeQueryCount(dsName, QueryCountHolder.get(dsName));
         }
 
         if (clearQueryCounter) {
@@ -103,6 +138,16 @@ public abstract class AbstractQueryCountLoggingServletFilter implements Filter {
         }
     }
 
+    private void writeQueryCount(String dsName, QueryCount count) {
+        String message;
+        if (this.writeAsJson) {
+            message = this.logFormatter.getLogMessageAsJson(dsName, count);
+        } else {
+            message = this.logFormatter.getLogMessage(dsName, count);
+        }
+        writeLog(message);
+    }
+
     @Override
     public void destroy() {
     }
@@ -131,4 +176,14 @@ public abstract class AbstractQueryCountLoggingServletFilter implements Filter {
     public void setWriteAsJson(boolean writeAsJson) {
         this.writeAsJson = writeAsJson;
     }
+
+    /**
+     * Execute each request in a new {@link QueryCountScope} and log the query counts of the scope.
+     *
+     * @param useQueryCountScope {@code true} to use {@link QueryCountScope}
+     * @since 1.11
+     */
+    public void setUseQueryCountScope(boolean useQueryCountScope) {
+        this.useQueryCountScope = useQueryCountScope;
+    }
 }
@@ -5,6 +5,7 @@ import net.ttddyy.dsproxy.ConnectionInfo;
 import net.ttddyy.dsproxy.DataSourceProxyException;
 import net.ttddyy.dsproxy.listener.MethodExecutionContext;
 import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.metrics.ConnectionMetrics;
 import net.ttddyy.dsproxy.proxy.JdbcProxyFactory;
 import net.ttddyy.dsproxy.proxy.ProxyConfig;
 import net.ttddyy.dsproxy.proxy.ProxyLogicSupport;
@@ -96,6 +97,9 @@ public class ProxyDataSource extends ProxyLogicSupport implements DataSource, Cl
         ConnectionIdManager connectionIdManager = this.proxyConfig.getConnectionIdManager();
         final JdbcProxyFactory jdbcProxyFactory = this.proxyConfig.getJdbcProxyFactory();
 
+        final ConnectionMetrics connectionMetrics = this.proxyConfig.getConnectionMetrics();
+        final long acquireStartTime = connectionMetrics != null ? System.nanoTime() : 0;
+
         Connection connection = (Connection) proceedExecution(method, this.dataSource, args);
 
         String connectionId = connectionIdManager.getId(connection);
@@ -106,6 +110,9 @@ public class ProxyDataSource extends ProxyLogicSupport implements DataSource, Cl
         if (this.proxyConfig.isRetrieveIsolationLevel()) {
             connectionInfo.setIsolationLevel(connection.getTransactionIsolation());
         }
+        if (connectionMetrics != null) {
+            connectionMetrics.onAcquire(connectionInfo, acquireStartTime);
+        }
 
         // make ConnectionInfo available in afterMethod() callback
         methodContext.setConnectionInfo(connectionInfo);
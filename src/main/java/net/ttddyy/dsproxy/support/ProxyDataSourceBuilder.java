@@ -3,6 +3,7 @@ package net.ttddyy.dsproxy.support;
 import net.ttddyy.dsproxy.ConnectionIdManager;
 import net.ttddyy.dsproxy.ExecutionInfo;
 import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.ResultSetInfo;
 import net.ttddyy.dsproxy.listener.DataSourceQueryCountListener;
 import net.ttddyy.dsproxy.listener.MethodExecutionContext;
 import net.ttddyy.dsproxy.listener.MethodExecutionListener;
@@ -10,6 +11,7 @@ import net.ttddyy.dsproxy.listener.NoOpMethodExecutionListener;
 import net.ttddyy.dsproxy.listener.NoOpQueryExecutionListener;
 import net.ttddyy.dsproxy.listener.QueryCountStrategy;
 import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.ResultSetCompletionListener;
 import net.ttddyy.dsproxy.listener.TracingMethodListener;
 import net.ttddyy.dsproxy.listener.lifecycle.JdbcLifecycleEventExecutionListener;
 import net.ttddyy.dsproxy.listener.lifecycle.JdbcLifecycleEventListener;
@@ -29,15 +31,28 @@ import net.ttddyy.dsproxy.listener.logging.SLF4JQueryLoggingListener;
 import net.ttddyy.dsproxy.listener.logging.SLF4JSlowQueryListener;
 import net.ttddyy.dsproxy.listener.logging.SystemOutQueryLoggingListener;
 import net.ttddyy.dsproxy.listener.logging.SystemOutSlowQueryListener;
+import net.ttddyy.dsproxy.metrics.ConnectionMetrics;
+import net.ttddyy.dsproxy.metrics.QueryMetrics;
 import net.ttddyy.dsproxy.proxy.DefaultConnectionIdManager;
+import net.ttddyy.dsproxy.proxy.FetchSizeAdvisor;
 import net.ttddyy.dsproxy.proxy.JdbcProxyFactory;
+import net.ttddyy.dsproxy.proxy.LeakDetectionConnectionIdManager;
+import net.ttddyy.dsproxy.proxy.MetricsResultSetProxyLogicFactory;
+import net.ttddyy.dsproxy.proxy.PreparedStatementCache;
 import net.ttddyy.dsproxy.proxy.ProxyConfig;
 import net.ttddyy.dsproxy.proxy.RepeatableReadResultSetProxyLogicFactory;
+import net.ttddyy.dsproxy.proxy.ResultCache;
 import net.ttddyy.dsproxy.proxy.ResultSetProxyLogicFactory;
+import net.ttddyy.dsproxy.proxy.ResultSetProxyPolicy;
+import net.ttddyy.dsproxy.proxy.ResultSetShapeCache;
+import net.ttddyy.dsproxy.proxy.StatementCoalescing;
+import net.ttddyy.dsproxy.support.jmx.DataSourceProxyStats;
 import net.ttddyy.dsproxy.transform.ParameterTransformer;
 import net.ttddyy.dsproxy.transform.QueryTransformer;
 
+import javax.management.MBeanServer;
 import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
@@ -156,6 +171,16 @@ public class ProxyDataSourceBuilder {
     private FormatQueryCallback formatQueryCallback;
     private boolean writeIsolation;
     private boolean retrieveIsolation;
+    private boolean reuseExecutionInfo;
+    private ConnectionMetrics connectionMetrics;
+    private StatementCoalescing statementCoalescing;
+    private ResultCache resultCache;
+    private PreparedStatementCache preparedStatementCache;
+    private ResultSetShapeCache resultSetShapeCache;
+    private ResultSetProxyPolicy resultSetProxyPolicy;
+    private FetchSizeAdvisor fetchSizeAdvisor;
+    private QueryMetrics queryMetrics;
+    private MBeanServer mBeanServer;
     private List<QueryExecutionListener> queryExecutionListeners = new ArrayList<QueryExecutionListener>();
 
     private ParameterTransformer parameterTransformer;
@@ -817,6 +842,196 @@ public class ProxyDataSourceBuilder {
         return this;
     }
 
+    /**
+     * Reuse {@link ExecutionInfo} and {@link QueryInfo} objects per statement proxy across executions.
+     *
+     * <p>This reduces allocation per query execution. However, objects passed to {@link QueryExecutionListener} are
+     * only valid until {@link QueryExecutionListener#afterQuery(ExecutionInfo, List)} returns.
+     * Listeners that keep them need to use {@link ExecutionInfo#retain()} and {@link QueryInfo#retainAll(List)}.
+     *
+     * @return builder
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder reuseExecutionInfo() {
+        this.reuseExecutionInfo = true;
+        return this;
+    }
+
+    /**
+     * Record connection lifecycle metrics(acquire time, hold time, transaction time, idle time and statements per
+     * connection).
+     *
+     * @return builder
+     * @see ConnectionMetrics
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder connectionMetrics() {
+        this.connectionMetrics = new ConnectionMetrics();
+        return this;
+    }
+
+    /**
+     * Record connection lifecycle metrics to the given {@link ConnectionMetrics}.
+     *
+     * @param connectionMetrics connection metrics to record
+     * @return builder
+     * @see ConnectionMetrics
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder connectionMetrics(ConnectionMetrics connectionMetrics) {
+        this.connectionMetrics = connectionMetrics;
+        return this;
+    }
+
+    /**
+     * Defer repeated single-row inserts of the given queries into JDBC batches while auto-commit is off.
+     *
+     * @param queries single-row {@code INSERT} queries to coalesce
+     * @return builder
+     * @see StatementCoalescing
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder statementCoalescing(String... queries) {
+        this.statementCoalescing = new StatementCoalescing(queries);
+        return this;
+    }
+
+    /**
+     * Defer repeated single-row inserts into JDBC batches while auto-commit is off.
+     *
+     * @param statementCoalescing statement coalescing configuration
+     * @return builder
+     * @see StatementCoalescing
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder statementCoalescing(StatementCoalescing statementCoalescing) {
+        this.statementCoalescing = statementCoalescing;
+        return this;
+    }
+
+    /**
+     * Cache results of queries registered to the given {@link ResultCache}.
+     *
+     * @param resultCache result cache
+     * @return builder
+     * @see ResultCache
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder resultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+        return this;
+    }
+
+    /**
+     * Cache prepared statements per connection with the given {@link PreparedStatementCache}.
+     *
+     * @param preparedStatementCache prepared statement cache
+     * @return builder
+     * @see PreparedStatementCache
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder preparedStatementCache(PreparedStatementCache preparedStatementCache) {
+        this.preparedStatementCache = preparedStatementCache;
+        return this;
+    }
+
+    /**
+     * Reuse metadata of result sets of the same query with the given {@link ResultSetShapeCache}.
+     *
+     * Used by result set proxy logic that reads column information. e.g.
+     * {@link RepeatableReadResultSetProxyLogicFactory}.
+     *
+     * @param resultSetShapeCache result set shape cache
+     * @return builder
+     * @see ResultSetShapeCache
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder resultSetShapeCache(ResultSetShapeCache resultSetShapeCache) {
+        this.resultSetShapeCache = resultSetShapeCache;
+        return this;
+    }
+
+    /**
+     * Decide which result sets to proxy with the given {@link ResultSetProxyPolicy}.
+     *
+     * Applies when result set proxy is enabled by {@link #proxyResultSet()} or its variants. Result sets that are
+     * not chosen by the policy are returned without proxy.
+     *
+     * @param resultSetProxyPolicy result set proxy policy
+     * @return builder
+     * @see net.ttddyy.dsproxy.proxy.QueryResultSetProxyPolicy
+     * @see net.ttddyy.dsproxy.proxy.SamplingResultSetProxyPolicy
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder resultSetProxyPolicy(ResultSetProxyPolicy resultSetProxyPolicy) {
+        this.resultSetProxyPolicy = resultSetProxyPolicy;
+        return this;
+    }
+
+    /**
+     * Recommend fetch size of statements with the given {@link FetchSizeAdvisor}.
+     *
+     * {@link MetricsResultSetProxyLogicFactory} is used to let the advisor learn result set sizes; configuring an advisor
+     * therefore enables result set proxying even when no result set proxy is configured. When
+     * {@link #proxyResultSetWithMetrics(ResultSetCompletionListener)} is also configured, both the listener and the
+     * advisor receive metrics. Other result set proxies cannot be combined, and {@link #build()} throws
+     * {@link IllegalStateException}.
+     *
+     * @param fetchSizeAdvisor fetch size advisor
+     * @return builder
+     * @see FetchSizeAdvisor
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder fetchSizeAdvisor(FetchSizeAdvisor fetchSizeAdvisor) {
+        this.fetchSizeAdvisor = fetchSizeAdvisor;
+        return this;
+    }
+
+    /**
+     * Register {@link QueryMetrics} to accumulate query counts, latency and per statement statistics.
+     *
+     * @param queryMetrics query metrics
+     * @return builder
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder queryMetrics(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+        return this;
+    }
+
+    /**
+     * Register {@link DataSourceProxyStats} MBean to the platform MBean server when the proxy is built by
+     * {@link #build()} or {@link #buildProxy()}.
+     *
+     * <p>If {@link QueryMetrics} is not specified by {@link #queryMetrics(QueryMetrics)}, a new one is created.
+     * MBean is registered with the name from {@link DataSourceProxyStats#createObjectName(String)}, and building fails
+     * with {@link net.ttddyy.dsproxy.DataSourceProxyException} if the name is already registered.
+     * Data sources without {@link #name(String) name} get unique names.
+     * Enable {@link #connectionMetrics()} to expose connection counts; otherwise they are reported as {@code -1}.
+     *
+     * @return builder
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder registerMBean() {
+        return registerMBean(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Register {@link DataSourceProxyStats} MBean to the given MBean server when the proxy is built.
+     *
+     * @param mBeanServer MBean server
+     * @return builder
+     * @see #registerMBean()
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder registerMBean(MBeanServer mBeanServer) {
+        this.mBeanServer = mBeanServer;
+        if (this.queryMetrics == null) {
+            this.queryMetrics = new QueryMetrics();
+        }
+        return this;
+    }
+
     /**
      * Register {@link JdbcProxyFactory}.
      *
@@ -841,6 +1056,20 @@ public class ProxyDataSourceBuilder {
         return this;
     }
 
+    /**
+     * Register {@link LeakDetectionConnectionIdManager} as {@link ConnectionIdManager} and as
+     * {@link MethodExecutionListener} to detect connection leaks.
+     *
+     * @param leakDetectionConnectionIdManager leak detecting connection id manager
+     * @return builder
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder leakDetection(LeakDetectionConnectionIdManager leakDetectionConnectionIdManager) {
+        this.connectionIdManager = leakDetectionConnectionIdManager;
+        this.methodExecutionListeners.add(leakDetectionConnectionIdManager);
+        return this;
+    }
+
     /**
      * Enable resultset proxy.
      *
@@ -865,6 +1094,19 @@ public class ProxyDataSourceBuilder {
         return this;
     }
 
+    /**
+     * Enable resultset proxy that reports iteration metrics of each closed result set.
+     *
+     * @param listener callback for closed result sets
+     * @return builder
+     * @see MetricsResultSetProxyLogicFactory
+     * @since 1.11
+     */
+    public ProxyDataSourceBuilder proxyResultSetWithMetrics(ResultSetCompletionListener listener) {
+        this.resultSetProxyLogicFactory = new MetricsResultSetProxyLogicFactory(listener);
+        return this;
+    }
+
     /**
      * Enable {@link java.sql.ResultSet} proxy for generated keys(e.g.: Statement#getGeneratedKeys()).
      *
@@ -1120,7 +1362,9 @@ public class ProxyDataSourceBuilder {
      */
     public DataSource buildProxy() {
         ProxyConfig proxyConfig = buildProxyConfig();
-        return proxyConfig.getJdbcProxyFactory().createDataSource(this.dataSource, proxyConfig);
+        DataSource proxy = proxyConfig.getJdbcProxyFactory().createDataSource(this.dataSource, proxyConfig);
+        registerMBean(proxyConfig);
+        return proxy;
     }
 
     /**
@@ -1143,9 +1387,36 @@ public class ProxyDataSourceBuilder {
             proxyDataSource.setDataSource(dataSource);
         }
         proxyDataSource.setProxyConfig(proxyConfig);
+        registerMBean(proxyConfig);
         return proxyDataSource;
     }
 
+    private ResultSetProxyLogicFactory resolveResultSetProxyLogicFactory() {
+        if (this.fetchSizeAdvisor == null) {
+            return this.resultSetProxyLogicFactory;
+        }
+        if (this.resultSetProxyLogicFactory == null) {
+            // let fetch size advisor learn result set sizes
+            return new MetricsResultSetProxyLogicFactory(this.fetchSizeAdvisor);
+        }
+        if (!(this.resultSetProxyLogicFactory instanceof MetricsResultSetProxyLogicFactory)) {
+            throw new IllegalStateException("fetchSizeAdvisor requires result set metrics and cannot be combined with "
+                    + this.resultSetProxyLogicFactory.getClass().getName());
+        }
+        final ResultSetCompletionListener listener = ((MetricsResultSetProxyLogicFactory) this.resultSetProxyLogicFactory).getListener();
+        final FetchSizeAdvisor advisor = this.fetchSizeAdvisor;
+        if (listener == advisor) {
+            return this.resultSetProxyLogicFactory;
+        }
+        return new MetricsResultSetProxyLogicFactory(new ResultSetCompletionListener() {
+            @Override
+            public void onComplete(ResultSetInfo resultSetInfo) {
+                listener.onComplete(resultSetInfo);
+                advisor.onComplete(resultSetInfo);
+            }
+        });
+    }
+
     private ProxyConfig buildProxyConfig() {
 
         // Query Logging Listeners
@@ -1197,6 +1468,11 @@ public class ProxyDataSourceBuilder {
             listeners.add(countListener);
         }
 
+        // query metrics listener
+        if (this.queryMetrics != null) {
+            listeners.add(this.queryMetrics);
+        }
+
         // tracing listener
         if (this.createTracingMethodListener) {
             this.methodExecutionListeners.add(buildTracingMethodListener());
@@ -1245,7 +1521,7 @@ public class ProxyDataSourceBuilder {
         }
 
         // this can be null if creation of resultset proxy is disabled
-        proxyConfigBuilder.resultSetProxyLogicFactory(this.resultSetProxyLogicFactory);
+        proxyConfigBuilder.resultSetProxyLogicFactory(resolveResultSetProxyLogicFactory());
 
         // generated keys
         proxyConfigBuilder.autoRetrieveGeneratedKeys(this.autoRetrieveGeneratedKeys);
@@ -1260,10 +1536,24 @@ public class ProxyDataSourceBuilder {
         proxyConfigBuilder.generatedKeysProxyLogicFactory(this.generatedKeysProxyLogicFactory);
 
         proxyConfigBuilder.retrieveIsolationLevel(this.retrieveIsolation);
+        proxyConfigBuilder.reuseExecutionInfo(this.reuseExecutionInfo);
+        proxyConfigBuilder.connectionMetrics(this.connectionMetrics);
+        proxyConfigBuilder.statementCoalescing(this.statementCoalescing);
+        proxyConfigBuilder.resultCache(this.resultCache);
+        proxyConfigBuilder.preparedStatementCache(this.preparedStatementCache);
+        proxyConfigBuilder.resultSetShapeCache(this.resultSetShapeCache);
+        proxyConfigBuilder.resultSetProxyPolicy(this.resultSetProxyPolicy);
+        proxyConfigBuilder.fetchSizeAdvisor(this.fetchSizeAdvisor);
 
         return proxyConfigBuilder.build();
     }
 
+    private void registerMBean(ProxyConfig proxyConfig) {
+        if (this.mBeanServer != null) {
+            new DataSourceProxyStats(proxyConfig, this.queryMetrics).register(this.mBeanServer);
+        }
+    }
+
     private CommonsQueryLoggingListener buildCommonsQueryListener() {
         CommonsQueryLoggingListener listener = new CommonsQueryLoggingListener();
         if (this.commonsLogLevel != null) {
@@ -0,0 +1,276 @@
+package net.ttddyy.dsproxy.support.jmx;
+
+import net.ttddyy.dsproxy.ConnectionIdManager;
+import net.ttddyy.dsproxy.DataSourceProxyException;
+import net.ttddyy.dsproxy.QueryCount;
+import net.ttddyy.dsproxy.metrics.ConnectionMetrics;
+import net.ttddyy.dsproxy.metrics.QueryMetrics;
+import net.ttddyy.dsproxy.metrics.StatementStatistics;
+import net.ttddyy.dsproxy.proxy.ConcurrentConnectionIdManager;
+import net.ttddyy.dsproxy.proxy.ProxyConfig;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JMX MBean exposing metrics of a proxy data source.
+ *
+ * <p>Values are read from {@link QueryMetrics}, {@link ConnectionMetrics}(when enabled) and
+ * {@link ConnectionIdManager} of the given {@link ProxyConfig}. Connection counts that are not tracked by the
+ * configuration are reported as {@code -1}(see {@link DataSourceProxyStatsMBean}). All values are read from atomic counters; reads do not
+ * take locks used by connection acquisitions or query executions.
+ *
+ * <pre>
+ * {@code
+ * QueryMetrics queryMetrics = new QueryMetrics();
+ * DataSource dataSource = ProxyDataSourceBuilder.create(actual).name("myDS").listener(queryMetrics).build();
+ * new DataSourceProxyStats(dataSource.getProxyConfig(), queryMetrics).register(ManagementFactory.getPlatformMBeanServer());
+ * }
+ * </pre>
+ *
+ * {@link net.ttddyy.dsproxy.support.ProxyDataSourceBuilder#registerMBean()} does the above.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class DataSourceProxyStats implements DataSourceProxyStatsMBean {
+
+    /**
+     * JMX domain for registered MBeans.
+     */
+    public static final String DOMAIN = "net.ttddyy.dsproxy";
+
+    private static final AtomicInteger UNNAMED_COUNTER = new AtomicInteger();
+
+    private final ProxyConfig proxyConfig;
+    private final QueryMetrics queryMetrics;
+
+    private volatile ObjectName objectName;
+
+    public DataSourceProxyStats(ProxyConfig proxyConfig, QueryMetrics queryMetrics) {
+        this.proxyConfig = proxyConfig;
+        this.queryMetrics = queryMetrics;
+    }
+
+    /**
+     * Create {@link ObjectName} for the given data source name.
+     *
+     * @param dataSourceName data source name
+     * @return object name
+     */
+    public static ObjectName createObjectName(String dataSourceName) {
+        String name = dataSourceName == null || dataSourceName.length() == 0 ? "default" : dataSourceName;
+        try {
+            return new ObjectName(DOMAIN + ":type=DataSourceProxy,name=" + ObjectName.quote(name));
+        } catch (JMException ex) {
+            throw new DataSourceProxyException("Failed to create ObjectName for " + name, ex);
+        }
+    }
+
+    /**
+     * Register this MBean to the given {@link MBeanServer}.
+     *
+     * <p>The name is from {@link #createObjectName(String)} with the data source name. When the data source does not
+     * have a name, a unique name {@code default-<n>} is generated.
+     *
+     * @param mBeanServer MBean server
+     * @return registered object name
+     * @throws DataSourceProxyException if an MBean with the same name is already registered
+     */
+    public ObjectName register(MBeanServer mBeanServer) {
+        String dataSourceName = this.proxyConfig.getDataSourceName();
+        if (dataSourceName == null || dataSourceName.length() == 0) {
+            dataSourceName = "default-" + UNNAMED_COUNTER.incrementAndGet();
+        }
+        ObjectName objectName = createObjectName(dataSourceName);
+        try {
+            mBeanServer.registerMBean(this, objectName);
+        } catch (InstanceAlreadyExistsException ex) {
+            throw new DataSourceProxyException("MBean " + objectName + " is already registered. Use a unique data source name.", ex);
+        } catch (JMException ex) {
+            throw new DataSourceProxyException("Failed to register MBean " + objectName, ex);
+        }
+        this.objectName = objectName;
+        return objectName;
+    }
+
+    /**
+     * Unregister this MBean from the given {@link MBeanServer}. No-op if this MBean is not registered.
+     *
+     * @param mBeanServer MBean server
+     */
+    public void unregister(MBeanServer mBeanServer) {
+        ObjectName objectName = this.objectName;
+        if (objectName == null) {
+            return;
+        }
+        try {
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException ex) {
+            throw new DataSourceProxyException("Failed to unregister MBean " + objectName, ex);
+        }
+        this.objectName = null;
+    }
+
+    /**
+     * @return registered object name. {@code null} if not registered.
+     */
+    public ObjectName getObjectName() {
+        return this.objectName;
+    }
+
+    @Override
+    public String getDataSourceName() {
+        return this.proxyConfig.getDataSourceName();
+    }
+
+    @Override
+    public long getTotal() {
+        return this.queryMetrics.getQueryCount().getTotal();
+    }
+
+    @Override
+    public long getSuccess() {
+        return this.queryMetrics.getQueryCount().getSuccess();
+    }
+
+    @Override
+    public long getFailure() {
+        return this.queryMetrics.getQueryCount().getFailure();
+    }
+
+    @Override
+    public long getSelect() {
+        return this.queryMetrics.getQueryCount().getSelect();
+    }
+
+    @Override
+    public long getInsert() {
+        return this.queryMetrics.getQueryCount().getInsert();
+    }
+
+    @Override
+    public long getUpdate() {
+        return this.queryMetrics.getQueryCount().getUpdate();
+    }
+
+    @Override
+    public long getDelete() {
+        return this.queryMetrics.getQueryCount().getDelete();
+    }
+
+    @Override
+    public long getOther() {
+        return this.queryMetrics.getQueryCount().getOther();
+    }
+
+    @Override
+    public long getStatement() {
+        return this.queryMetrics.getQueryCount().getStatement();
+    }
+
+    @Override
+    public long getPrepared() {
+        return this.queryMetrics.getQueryCount().getPrepared();
+    }
+
+    @Override
+    public long getCallable() {
+        return this.queryMetrics.getQueryCount().getCallable();
+    }
+
+    @Override
+    public long getCacheHit() {
+        return this.queryMetrics.getQueryCount().getCacheHit();
+    }
+
+    @Override
+    public long getTotalTime() {
+        return this.queryMetrics.getQueryCount().getTime();
+    }
+
+    @Override
+    public double getLatencyMean() {
+        return this.queryMetrics.getLatency().getMean();
+    }
+
+    @Override
+    public long getLatencyMax() {
+        return this.queryMetrics.getLatency().getMax();
+    }
+
+    @Override
+    public long getLatency50thPercentile() {
+        return this.queryMetrics.getLatency().getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getLatency95thPercentile() {
+        return this.queryMetrics.getLatency().getValueAtPercentile(95);
+    }
+
+    @Override
+    public long getLatency99thPercentile() {
+        return this.queryMetrics.getLatency().getValueAtPercentile(99);
+    }
+
+    @Override
+    public int getOpenConnectionCount() {
+        ConnectionMetrics connectionMetrics = this.proxyConfig.getConnectionMetrics();
+        if (connectionMetrics != null) {
+            return (int) connectionMetrics.getOpenCount();
+        }
+        ConnectionIdManager connectionIdManager = this.proxyConfig.getConnectionIdManager();
+        if (connectionIdManager instanceof ConcurrentConnectionIdManager) {
+            return (int) ((ConcurrentConnectionIdManager) connectionIdManager).getOpenConnectionCount();
+        }
+        return -1;
+    }
+
+    @Override
+    public long getInFlightQueryCount() {
+        return this.queryMetrics.getInFlightQueryCount();
+    }
+
+    @Override
+    public long getAcquiredConnectionCount() {
+        ConnectionMetrics connectionMetrics = this.proxyConfig.getConnectionMetrics();
+        return connectionMetrics != null ? connectionMetrics.getAcquiredCount() : -1;
+    }
+
+    @Override
+    public long getClosedConnectionCount() {
+        ConnectionMetrics connectionMetrics = this.proxyConfig.getConnectionMetrics();
+        return connectionMetrics != null ? connectionMetrics.getClosedCount() : -1;
+    }
+
+    @Override
+    public void reset() {
+        this.queryMetrics.reset();
+        ConnectionMetrics connectionMetrics = this.proxyConfig.getConnectionMetrics();
+        if (connectionMetrics != null) {
+            connectionMetrics.reset();
+        }
+    }
+
+    @Override
+    public String[] dumpTopStatements(int limit) {
+        List<StatementStatistics> topStatements = this.queryMetrics.getTopStatements(limit);
+        String[] result = new String[topStatements.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = topStatements.get(i).toString();
+        }
+        return result;
+    }
+
+    public QueryMetrics getQueryMetrics() {
+        return this.queryMetrics;
+    }
+
+}
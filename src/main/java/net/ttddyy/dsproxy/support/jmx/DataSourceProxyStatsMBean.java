@@ -0,0 +1,91 @@
+package net.ttddyy.dsproxy.support.jmx;
+
+/**
+ * JMX management interface for {@link DataSourceProxyStats}.
+ *
+ * <p>Connection attributes are only tracked when connection metrics are enabled(or, for
+ * {@link #getOpenConnectionCount() OpenConnectionCount}, when
+ * {@link net.ttddyy.dsproxy.proxy.ConcurrentConnectionIdManager} is used). Otherwise they report {@code -1}, which
+ * means "not tracked" rather than a count; monitoring should ignore negative values.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public interface DataSourceProxyStatsMBean {
+
+    String getDataSourceName();
+
+    long getTotal();
+
+    long getSuccess();
+
+    long getFailure();
+
+    long getSelect();
+
+    long getInsert();
+
+    long getUpdate();
+
+    long getDelete();
+
+    long getOther();
+
+    long getStatement();
+
+    long getPrepared();
+
+    long getCallable();
+
+    /**
+     * @return num of queries served by {@link net.ttddyy.dsproxy.proxy.ResultCache}. Not included in {@link #getTotal()}.
+     */
+    long getCacheHit();
+
+    long getTotalTime();
+
+    double getLatencyMean();
+
+    long getLatencyMax();
+
+    long getLatency50thPercentile();
+
+    long getLatency95thPercentile();
+
+    long getLatency99thPercentile();
+
+    /**
+     * @return num of open connections. {@code -1}(not tracked) when neither connection metrics nor
+     * {@link net.ttddyy.dsproxy.proxy.ConcurrentConnectionIdManager} is used.
+     */
+    int getOpenConnectionCount();
+
+    /**
+     * @return num of queries currently executing
+     */
+    long getInFlightQueryCount();
+
+    /**
+     * @return num of acquired connections. {@code -1}(not tracked) when connection metrics is disabled.
+     */
+    long getAcquiredConnectionCount();
+
+    /**
+     * @return num of closed connections. {@code -1}(not tracked) when connection metrics is disabled.
+     */
+    long getClosedConnectionCount();
+
+    /**
+     * Reset query and connection metrics.
+     */
+    void reset();
+
+    /**
+     * Dump top statements ordered by total execution time.
+     *
+     * @param limit max num of statements
+     * @return statements
+     */
+    String[] dumpTopStatements(int limit);
+
+}
@@ -0,0 +1,132 @@
+package net.ttddyy.dsproxy.support.prometheus;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer that is reused across renderings.
+ *
+ * Appending ASCII strings, precomputed bytes, {@code long} values and scaled decimals does not allocate once the
+ * buffer has grown to the size of the output.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+class MetricsBuffer {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] MIN_LONG = String.valueOf(Long.MIN_VALUE).getBytes(UTF_8);
+
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+            100000000L, 1000000000L};
+
+    private byte[] bytes;
+    private int size;
+    private final byte[] digits = new byte[20];
+
+    MetricsBuffer(int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    void reset() {
+        this.size = 0;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Append ASCII characters.
+     */
+    MetricsBuffer append(String ascii) {
+        int length = ascii.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            this.bytes[this.size++] = (byte) ascii.charAt(i);
+        }
+        return this;
+    }
+
+    MetricsBuffer append(char ascii) {
+        ensureCapacity(1);
+        this.bytes[this.size++] = (byte) ascii;
+        return this;
+    }
+
+    MetricsBuffer append(byte[] source) {
+        ensureCapacity(source.length);
+        System.arraycopy(source, 0, this.bytes, this.size, source.length);
+        this.size += source.length;
+        return this;
+    }
+
+    MetricsBuffer append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append(MIN_LONG);
+        }
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int position = this.digits.length;
+        do {
+            this.digits[--position] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        int length = this.digits.length - position;
+        ensureCapacity(length);
+        System.arraycopy(this.digits, position, this.bytes, this.size, length);
+        this.size += length;
+        return this;
+    }
+
+    /**
+     * Append {@code value / 10^scale} as a decimal number, e.g. {@code 1500} with scale {@code 3} is {@code 1.5}.
+     * Trailing zeros of the fraction are omitted, but at least one fraction digit is written.
+     */
+    MetricsBuffer appendDecimal(long value, int scale) {
+        long divisor = POWERS_OF_TEN[scale];
+        long integer = value / divisor;
+        long fraction = value % divisor;
+        if (value < 0) {
+            append('-');
+            integer = -integer;
+            fraction = -fraction;
+        }
+        append(integer).append('.');
+        if (fraction == 0) {
+            return append('0');
+        }
+        int digits = scale;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        // leading zeros of the fraction
+        for (int i = digits - 1; i > 0 && fraction < POWERS_OF_TEN[i]; i--) {
+            append('0');
+        }
+        return append(fraction);
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(this.bytes, this.size);
+    }
+
+    @Override
+    public String toString() {
+        return new String(this.bytes, 0, this.size, UTF_8);
+    }
+
+    private void ensureCapacity(int additional) {
+        int required = this.size + additional;
+        if (required > this.bytes.length) {
+            byte[] newBytes = new byte[Math.max(required, this.bytes.length << 1)];
+            System.arraycopy(this.bytes, 0, newBytes, 0, this.size);
+            this.bytes = newBytes;
+        }
+    }
+
+}
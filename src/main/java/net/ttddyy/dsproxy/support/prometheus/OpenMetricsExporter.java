@@ -0,0 +1,493 @@
+package net.ttddyy.dsproxy.support.prometheus;
+
+import net.ttddyy.dsproxy.ConnectionIdManager;
+import net.ttddyy.dsproxy.QueryCount;
+import net.ttddyy.dsproxy.listener.SingleQueryCountHolder;
+import net.ttddyy.dsproxy.metrics.ConnectionMetrics;
+import net.ttddyy.dsproxy.metrics.Histogram;
+import net.ttddyy.dsproxy.metrics.QueryMetrics;
+import net.ttddyy.dsproxy.proxy.ConcurrentConnectionIdManager;
+import net.ttddyy.dsproxy.proxy.NanoTimeStopwatchFactory;
+import net.ttddyy.dsproxy.proxy.ProxyConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render datasource-proxy metrics in
+ * <a href="https://github.com/OpenObservability/OpenMetrics/blob/main/specification/OpenMetrics.md">OpenMetrics</a>
+ * text format, which can be scraped by Prometheus.
+ *
+ * <p>Metrics sources are registered per data source:
+ * <ul>
+ * <li>{@link #register(ProxyConfig, QueryMetrics)}: query counters and latency histogram from {@link QueryMetrics},
+ * connection metrics from {@link ProxyConfig#getConnectionMetrics()}. Open connections are read from
+ * {@link ConnectionMetrics}, or from {@link ConcurrentConnectionIdManager} when connection metrics is disabled
+ * <li>{@link #register(SingleQueryCountHolder)}: query counters of all data sources in the holder
+ * </ul>
+ *
+ * <p>Each data source can be registered only once, so that every series is unique. Data sources kept in a registered
+ * {@link SingleQueryCountHolder} are skipped when a data source with the same name is already rendered.
+ *
+ * <p>Durations are rendered in seconds with {@code _seconds} unit suffix. Connection durations are recorded in
+ * nanoseconds. Query execution times are recorded in the unit of the {@link net.ttddyy.dsproxy.proxy.StopwatchFactory}:
+ * nanoseconds for {@link NanoTimeStopwatchFactory}, otherwise {@link #setQueryTimeUnit(TimeUnit) query time unit}
+ * (milliseconds by default).
+ *
+ * <p>Histograms are rendered with their own log-linear buckets; only non-empty buckets are written, with cumulative
+ * counts as required by the format.
+ *
+ * <p>Output is rendered into a reused byte buffer. Label values are encoded once per data source, and numbers are
+ * written without intermediate strings, so rendering does not allocate per series once the buffer has grown.
+ * Rendering is serialized on this exporter, but writing the rendered bytes is not; query executions and connection
+ * acquisitions are never blocked by it.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see OpenMetricsHttpServer
+ * @since 1.11
+ */
+public class OpenMetricsExporter {
+
+    /**
+     * Content type for the rendered text.
+     */
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final String[] QUERY_TYPES = {"select", "insert", "update", "delete", "other"};
+    private static final String[] STATEMENT_TYPES = {"statement", "prepared", "callable"};
+
+    private final List<Source> registeredSources = new CopyOnWriteArrayList<Source>();
+    private final CopyOnWriteArrayList<SingleQueryCountHolder> holders = new CopyOnWriteArrayList<SingleQueryCountHolder>();
+
+    // reused across renderings. guarded by "this"
+    private final MetricsBuffer buffer = new MetricsBuffer(8192);
+    private final List<Source> sources = new ArrayList<Source>();
+    private final Map<String, Source> holderSources = new HashMap<String, Source>();
+    private final long[] bucketCounts = new long[Histogram.BUCKET_COUNT];
+
+    private String prefix = "dsproxy_";
+
+    private volatile TimeUnit queryTimeUnit = TimeUnit.MILLISECONDS;
+
+    /**
+     * Register metrics of a data source.
+     *
+     * @param proxyConfig  proxy config of the data source
+     * @param queryMetrics query metrics registered to the data source. Can be {@code null}.
+     * @throws IllegalArgumentException if a data source with the same name is already registered
+     */
+    public void register(ProxyConfig proxyConfig, QueryMetrics queryMetrics) {
+        Source source = new Source(proxyConfig.getDataSourceName());
+        source.queryMetrics = queryMetrics;
+        source.connectionMetrics = proxyConfig.getConnectionMetrics();
+        source.connectionIdManager = proxyConfig.getConnectionIdManager();
+        if (proxyConfig.getStopwatchFactory() instanceof NanoTimeStopwatchFactory) {
+            source.queryTimeUnit = TimeUnit.NANOSECONDS;
+        }
+        addSource(source);
+    }
+
+    /**
+     * Register metrics of a data source.
+     *
+     * @param dataSourceName    data source name
+     * @param queryMetrics      query metrics. Can be {@code null}.
+     * @param connectionMetrics connection metrics. Can be {@code null}.
+     * @throws IllegalArgumentException if a data source with the same name is already registered
+     */
+    public void register(String dataSourceName, QueryMetrics queryMetrics, ConnectionMetrics connectionMetrics) {
+        Source source = new Source(dataSourceName);
+        source.queryMetrics = queryMetrics;
+        source.connectionMetrics = connectionMetrics;
+        addSource(source);
+    }
+
+    /**
+     * Register query counters of all data sources kept in the given {@link SingleQueryCountHolder}.
+     * Registering the same holder again is ignored.
+     *
+     * @param holder query count holder
+     */
+    public void register(SingleQueryCountHolder holder) {
+        this.holders.addIfAbsent(holder);
+    }
+
+    private void addSource(Source source) {
+        synchronized (this.registeredSources) {
+            if (findSource(this.registeredSources, source.name) != null) {
+                throw new IllegalArgumentException("Data source \"" + source.name + "\" is already registered");
+            }
+            this.registeredSources.add(source);
+        }
+    }
+
+    private static Source findSource(List<Source> sources, String dataSourceName) {
+        for (int i = 0; i < sources.size(); i++) {
+            Source source = sources.get(i);
+            if (source.name.equals(dataSourceName)) {
+                return source;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Render metrics to the given stream.
+     *
+     * <p>Metrics are rendered into a byte array first, so a slow stream does not block other renderings.
+     *
+     * @param out output stream
+     * @return num of bytes written
+     * @throws IOException on write failure
+     */
+    public int writeTo(OutputStream out) throws IOException {
+        byte[] bytes = renderToBytes();
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * Render metrics as bytes.
+     *
+     * @return rendered text in UTF-8
+     */
+    public synchronized byte[] renderToBytes() {
+        return renderToBuffer().toByteArray();
+    }
+
+    /**
+     * Render metrics as string.
+     *
+     * @return rendered text
+     */
+    public synchronized String render() {
+        renderToBuffer();
+        return this.buffer.toString();
+    }
+
+    /**
+     * Render metrics into the internal buffer.
+     *
+     * @return internal buffer holding rendered bytes
+     */
+    synchronized MetricsBuffer renderToBuffer() {
+        collectSources();
+        MetricsBuffer buf = this.buffer;
+        buf.reset();
+
+        // query counters
+        writeType("queries", "counter");
+        for (int i = 0; i < this.sources.size(); i++) {
+            Source source = this.sources.get(i);
+            QueryCount count = source.getQueryCount();
+            if (count == null) {
+                continue;
+            }
+            writeTypedSample("queries_total", source, "type", QUERY_TYPES[0], count.getSelect());
+            writeTypedSample("queries_total", source, "type", QUERY_TYPES[1], count.getInsert());
+            writeTypedSample("queries_total", source, "type", QUERY_TYPES[2], count.getUpdate());
+            writeTypedSample("queries_total", source, "type", QUERY_TYPES[3], count.getDelete());
+            writeTypedSample("queries_total", source, "type", QUERY_TYPES[4], count.getOther());
+        }
+
+        writeType("statements", "counter");
+        for (int i = 0; i < this.sources.size(); i++) {
+            Source source = this.sources.get(i);
+            QueryCount count = source.getQueryCount();
+            if (count == null) {
+                continue;
+            }
+            writeTypedSample("statements_total", source, "statement_type", STATEMENT_TYPES[0], count.getStatement());
+            writeTypedSample("statements_total", source, "statement_type", STATEMENT_TYPES[1], count.getPrepared());
+            writeTypedSample("statements_total", source, "statement_type", STATEMENT_TYPES[2], count.getCallable());
+        }
+
+        writeType("executions", "counter");
+        for (int i = 0; i < this.sources.size(); i++) {
+            Source source = this.sources.get(i);
+            QueryCount count = source.getQueryCount();
+            if (count == null) {
+                continue;
+            }
+            writeTypedSample("executions_total", source, "result", "success", count.getSuccess());
+            writeTypedSample("executions_total", source, "result", "failure", count.getFailure());
+        }
+
+        writeType("execution_time_seconds", "counter");
+        writeUnit("execution_time_seconds", "seconds");
+        for (int i = 0; i < this.sources.size(); i++) {
+            Source source = this.sources.get(i);
+            QueryCount count = source.getQueryCount();
+            if (count != null) {
+                writeName("execution_time_seconds", "_total");
+                this.buffer.append('{').append(source.label).append("} ")
+                        .appendDecimal(count.getTime(), getSecondsScale(source.getQueryTimeUnit(this.queryTimeUnit)))
+                        .append('\n');
+            }
+        }
+
+        // histograms
+        writeType("query_latency_seconds", "histogram");
+        writeUnit("query_latency_seconds", "seconds");
+        for (int i = 0; i < this.sources.size(); i++) {
+            Source source = this.sources.get(i);
+            if (source.queryMetrics != null) {
+                int scale = getSecondsScale(source.getQueryTimeUnit(this.queryTimeUnit));
+                writeHistogram("query_latency_seconds", source, source.queryMetrics.getLatency(), scale);
+            }
+        }
+
+        // connections
+        writeType("connections_open", "gauge");
+        for (int i = 0; i < this.sources.size(); i++) {
+            Source source = this.sources.get(i);
+            long openConnectionCount = source.getOpenConnectionCount();
+            if (openConnectionCount >= 0) {
+                writeSample("connections_open", source, openConnectionCount);
+            }
+        }
+
+        writeType("connections_acquired", "counter");
+        for (int i = 0; i < this.sources.size(); i++) {
+            Source source = this.sources.get(i);
+            if (source.connectionMetrics != null) {
+                writeSample("connections_acquired_total", source, source.connectionMetrics.getAcquiredCount());
+            }
+        }
+
+        writeType("connections_closed", "counter");
+        for (int i = 0; i < this.sources.size(); i++) {
+            Source source = this.sources.get(i);
+            if (source.connectionMetrics != null) {
+                writeSample("connections_closed_total", source, source.connectionMetrics.getClosedCount());
+            }
+        }
+
+        writeConnectionHistogram("connection_acquire_time_seconds", 0);
+        writeConnectionHistogram("connection_hold_time_seconds", 1);
+        writeConnectionHistogram("connection_transaction_time_seconds", 2);
+        writeConnectionHistogram("connection_idle_time_seconds", 3);
+        writeConnectionHistogram("connection_statements", 4);
+
+        buf.append("# EOF\n");
+        return buf;
+    }
+
+    private void collectSources() {
+        this.sources.clear();
+        this.sources.addAll(this.registeredSources);
+        for (int i = 0; i < this.holders.size(); i++) {
+            Map<String, QueryCount> queryCountMap = this.holders.get(i).getQueryCountMap();
+            // iterate keys instead of entries to avoid allocating entry objects
+            for (String dataSourceName : queryCountMap.keySet()) {
+                QueryCount queryCount = queryCountMap.get(dataSourceName);
+                // skip data sources already rendered to keep the series unique
+                if (queryCount == null || findSource(this.sources, dataSourceName) != null) {
+                    continue;
+                }
+                Source source = this.holderSources.get(dataSourceName);
+                if (source == null) {
+                    source = new Source(dataSourceName);
+                    this.holderSources.put(dataSourceName, source);
+                }
+                source.queryCount = queryCount;
+                this.sources.add(source);
+            }
+        }
+    }
+
+    private void writeConnectionHistogram(String name, int kind) {
+        writeType(name, "histogram");
+        // durations are in nanoseconds, statements per connection has no unit
+        int scale = kind == 4 ? 0 : getSecondsScale(TimeUnit.NANOSECONDS);
+        if (scale != 0) {
+            writeUnit(name, "seconds");
+        }
+        for (int i = 0; i < this.sources.size(); i++) {
+            Source source = this.sources.get(i);
+            ConnectionMetrics metrics = source.connectionMetrics;
+            if (metrics == null) {
+                continue;
+            }
+            Histogram histogram;
+            switch (kind) {
+                case 0:
+                    histogram = metrics.getAcquireTime();
+                    break;
+                case 1:
+                    histogram = metrics.getHoldTime();
+                    break;
+                case 2:
+                    histogram = metrics.getTransactionTime();
+                    break;
+                case 3:
+                    histogram = metrics.getIdleTime();
+                    break;
+                default:
+                    histogram = metrics.getStatementsPerConnection();
+            }
+            writeHistogram(name, source, histogram, scale);
+        }
+    }
+
+    /**
+     * @param scale num of decimal digits to shift recorded values, e.g. {@code 9} for nanoseconds to seconds
+     */
+    private void writeHistogram(String name, Source source, Histogram histogram, int scale) {
+        long total = histogram.copyBucketCounts(this.bucketCounts);
+        long cumulative = 0;
+        for (int bucket = 0; bucket < Histogram.BUCKET_COUNT; bucket++) {
+            long bucketCount = this.bucketCounts[bucket];
+            if (bucketCount == 0) {
+                continue;
+            }
+            cumulative += bucketCount;
+            writeName(name, "_bucket");
+            this.buffer.append('{').append(source.label).append(",le=\"")
+                    .appendDecimal(Histogram.getBucketUpperBound(bucket), scale).append("\"} ").append(cumulative)
+                    .append('\n');
+        }
+        writeName(name, "_bucket");
+        this.buffer.append('{').append(source.label).append(",le=\"+Inf\"} ").append(total).append('\n');
+        writeName(name, "_count");
+        this.buffer.append('{').append(source.label).append("} ").append(total).append('\n');
+        writeName(name, "_sum");
+        this.buffer.append('{').append(source.label).append("} ").appendDecimal(histogram.getSum(), scale).append('\n');
+    }
+
+    private void writeType(String name, String type) {
+        this.buffer.append("# TYPE ").append(this.prefix).append(name).append(' ').append(type).append('\n');
+    }
+
+    private void writeUnit(String name, String unit) {
+        this.buffer.append("# UNIT ").append(this.prefix).append(name).append(' ').append(unit).append('\n');
+    }
+
+    private void writeName(String name, String suffix) {
+        this.buffer.append(this.prefix).append(name).append(suffix);
+    }
+
+    private void writeSample(String name, Source source, long value) {
+        this.buffer.append(this.prefix).append(name).append('{').append(source.label).append("} ")
+                .append(value).append('\n');
+    }
+
+    private void writeTypedSample(String name, Source source, String labelName, String labelValue, long value) {
+        this.buffer.append(this.prefix).append(name).append('{').append(source.label).append(',').append(labelName)
+                .append("=\"").append(labelValue).append("\"} ").append(value).append('\n');
+    }
+
+    /**
+     * Encode {@code datasource="..."} label with escaping.
+     */
+    static byte[] encodeLabel(String dataSourceName) {
+        String value = dataSourceName == null ? "" : dataSourceName;
+        StringBuilder sb = new StringBuilder(value.length() + 14);
+        sb.append("datasource=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+        return sb.toString().getBytes(MetricsBuffer.UTF_8);
+    }
+
+    public String getPrefix() {
+        return this.prefix;
+    }
+
+    /**
+     * Set prefix of metric names. Default is {@code dsproxy_}.
+     *
+     * @param prefix metric name prefix
+     */
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * @return num of decimal digits to convert the given unit to seconds
+     */
+    private static int getSecondsScale(TimeUnit timeUnit) {
+        switch (timeUnit) {
+            case NANOSECONDS:
+                return 9;
+            case MICROSECONDS:
+                return 6;
+            case MILLISECONDS:
+                return 3;
+            case SECONDS:
+                return 0;
+            default:
+                throw new IllegalArgumentException("Unsupported time unit " + timeUnit);
+        }
+    }
+
+    public TimeUnit getQueryTimeUnit() {
+        return this.queryTimeUnit;
+    }
+
+    /**
+     * Set the unit of query execution times recorded by the {@link net.ttddyy.dsproxy.proxy.StopwatchFactory}.
+     * Default is {@link TimeUnit#MILLISECONDS}. Data sources using {@link NanoTimeStopwatchFactory} are always
+     * rendered as nanoseconds.
+     *
+     * @param queryTimeUnit one of {@code NANOSECONDS}, {@code MICROSECONDS}, {@code MILLISECONDS} or {@code SECONDS}
+     * @throws IllegalArgumentException if the unit is not supported
+     */
+    public void setQueryTimeUnit(TimeUnit queryTimeUnit) {
+        getSecondsScale(queryTimeUnit);
+        this.queryTimeUnit = queryTimeUnit;
+    }
+
+    private static class Source {
+
+        private final String name;
+        private final byte[] label;
+        private QueryMetrics queryMetrics;
+        private QueryCount queryCount;
+        private ConnectionMetrics connectionMetrics;
+        private ConnectionIdManager connectionIdManager;
+        private TimeUnit queryTimeUnit;  // null to use the exporter default
+
+        private Source(String dataSourceName) {
+            this.name = dataSourceName == null ? "" : dataSourceName;
+            this.label = encodeLabel(dataSourceName);
+        }
+
+        private TimeUnit getQueryTimeUnit(TimeUnit defaultTimeUnit) {
+            return this.queryTimeUnit != null ? this.queryTimeUnit : defaultTimeUnit;
+        }
+
+        private QueryCount getQueryCount() {
+            return this.queryMetrics != null ? this.queryMetrics.getQueryCount() : this.queryCount;
+        }
+
+        /**
+         * @return num of open connections from atomic counters. {@code -1} if not available.
+         */
+        private long getOpenConnectionCount() {
+            if (this.connectionMetrics != null) {
+                return this.connectionMetrics.getOpenCount();
+            }
+            if (this.connectionIdManager instanceof ConcurrentConnectionIdManager) {
+                return ((ConcurrentConnectionIdManager) this.connectionIdManager).getOpenConnectionCount();
+            }
+            return -1;
+        }
+
+    }
+
+}
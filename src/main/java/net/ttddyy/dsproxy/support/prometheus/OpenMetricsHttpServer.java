@@ -0,0 +1,80 @@
+package net.ttddyy.dsproxy.support.prometheus;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+/**
+ * Serve {@link OpenMetricsExporter} output over HTTP using the JDK built-in {@code com.sun.net.httpserver}.
+ *
+ * <pre>
+ * {@code
+ * OpenMetricsHttpServer server = new OpenMetricsHttpServer(exporter, new InetSocketAddress(9400), "/metrics");
+ * server.start();
+ * }
+ * </pre>
+ *
+ * Requests are handled on a single thread; metrics are rendered into a byte array, then written to the response
+ * without holding the exporter lock.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+@IgnoreJRERequirement
+public class OpenMetricsHttpServer implements Closeable {
+
+    private final OpenMetricsExporter exporter;
+    private final HttpServer server;
+
+    public OpenMetricsHttpServer(OpenMetricsExporter exporter, InetSocketAddress address, String path) throws IOException {
+        this.exporter = exporter;
+        this.server = HttpServer.create(address, 0);
+        this.server.createContext(path, new MetricsHandler());
+    }
+
+    public void start() {
+        this.server.start();
+    }
+
+    /**
+     * @return address the server is bound to
+     */
+    public InetSocketAddress getAddress() {
+        return this.server.getAddress();
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+    }
+
+    @IgnoreJRERequirement
+    private class MetricsHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", OpenMetricsExporter.CONTENT_TYPE);
+                // render under the exporter lock, then write without holding it
+                byte[] bytes = exporter.renderToBytes();
+                exchange.sendResponseHeaders(200, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.flush();
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+}
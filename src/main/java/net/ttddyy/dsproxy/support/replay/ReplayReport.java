@@ -0,0 +1,111 @@
+package net.ttddyy.dsproxy.support.replay;
+
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import net.ttddyy.dsproxy.metrics.Histogram;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Result of {@link WorkloadReplayer#replay(WorkloadReader)}.
+ *
+ * Latencies are in microseconds. Per query latencies are keyed by the query fingerprint(see {@link
+ * QueryUtils#fingerprint(String)}) of the first query of each execution.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see WorkloadReplayer
+ * @since 1.11
+ */
+public class ReplayReport {
+
+    private final Histogram latency = new Histogram();
+    private final ConcurrentMap<String, Histogram> latencyByQuery = new ConcurrentHashMap<String, Histogram>();
+    private final AtomicLong queryCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong connectionCount = new AtomicLong();
+    private final AtomicReference<Exception> firstError = new AtomicReference<Exception>();
+    private volatile long elapsedTime;
+
+    void recordQuery(String query, long elapsedNanos) {
+        long micros = elapsedNanos / 1000;
+        this.latency.record(micros);
+        String fingerprint = QueryUtils.fingerprint(query);
+        Histogram histogram = this.latencyByQuery.get(fingerprint);
+        if (histogram == null) {
+            Histogram newHistogram = new Histogram();
+            histogram = this.latencyByQuery.putIfAbsent(fingerprint, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        histogram.record(micros);
+        this.queryCount.incrementAndGet();
+    }
+
+    void recordError(Exception ex) {
+        this.errorCount.incrementAndGet();
+        this.firstError.compareAndSet(null, ex);
+    }
+
+    void incrementConnectionCount() {
+        this.connectionCount.incrementAndGet();
+    }
+
+    void setElapsedTime(long elapsedTime) {
+        this.elapsedTime = elapsedTime;
+    }
+
+    /**
+     * @return latency of all query executions in microseconds
+     */
+    public Histogram getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * @return latency per query fingerprint in microseconds
+     */
+    public Map<String, Histogram> getLatencyByQuery() {
+        return Collections.unmodifiableMap(this.latencyByQuery);
+    }
+
+    /**
+     * @return num of replayed query executions including failed ones
+     */
+    public long getQueryCount() {
+        return this.queryCount.get();
+    }
+
+    /**
+     * @return num of failed operations
+     */
+    public long getErrorCount() {
+        return this.errorCount.get();
+    }
+
+    /**
+     * @return first failure or {@code null}
+     */
+    public Exception getFirstError() {
+        return this.firstError.get();
+    }
+
+    /**
+     * @return num of replayed connections
+     */
+    public long getConnectionCount() {
+        return this.connectionCount.get();
+    }
+
+    /**
+     * @return wall clock time of the replay in milliseconds
+     */
+    public long getElapsedTime() {
+        return this.elapsedTime;
+    }
+
+}
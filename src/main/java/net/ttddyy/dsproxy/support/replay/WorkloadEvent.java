@@ -0,0 +1,153 @@
+package net.ttddyy.dsproxy.support.replay;
+
+import net.ttddyy.dsproxy.StatementType;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An event of a recorded JDBC workload.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see WorkloadRecorder
+ * @see WorkloadReader
+ * @since 1.11
+ */
+public class WorkloadEvent {
+
+    public enum Type {
+        /**
+         * {@code DataSource#getConnection}
+         */
+        CONNECTION_OPEN,
+        /**
+         * {@code Connection#close}
+         */
+        CONNECTION_CLOSE,
+        /**
+         * {@code Connection#setAutoCommit}
+         */
+        AUTO_COMMIT,
+        /**
+         * {@code Connection#setTransactionIsolation}
+         */
+        ISOLATION,
+        /**
+         * {@code Connection#commit}
+         */
+        COMMIT,
+        /**
+         * {@code Connection#rollback} without savepoint
+         */
+        ROLLBACK,
+        /**
+         * Query execution
+         */
+        QUERY
+    }
+
+    private final Type type;
+    private final long timestamp;
+    private final String connectionId;
+
+    // for AUTO_COMMIT and ISOLATION
+    private int intValue;
+
+    // for QUERY
+    private StatementType statementType;
+    private boolean batch;
+    private long elapsedTime;
+    private List<String> queries = Collections.emptyList();
+    private List<List<WorkloadParameter>> parametersList = Collections.emptyList();
+
+    WorkloadEvent(Type type, long timestamp, String connectionId) {
+        this.type = type;
+        this.timestamp = timestamp;
+        this.connectionId = connectionId;
+    }
+
+    static WorkloadEvent intValueEvent(Type type, long timestamp, String connectionId, int value) {
+        WorkloadEvent event = new WorkloadEvent(type, timestamp, connectionId);
+        event.intValue = value;
+        return event;
+    }
+
+    static WorkloadEvent queryEvent(long timestamp, String connectionId, StatementType statementType, boolean batch,
+                                    long elapsedTime, List<String> queries, List<List<WorkloadParameter>> parametersList) {
+        WorkloadEvent event = new WorkloadEvent(Type.QUERY, timestamp, connectionId);
+        event.statementType = statementType;
+        event.batch = batch;
+        event.elapsedTime = elapsedTime;
+        event.queries = queries;
+        event.parametersList = parametersList;
+        return event;
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * @return time of the event in nanoseconds since the recording has started
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    public String getConnectionId() {
+        return this.connectionId;
+    }
+
+    /**
+     * @return auto-commit mode for {@link Type#AUTO_COMMIT}
+     */
+    public boolean isAutoCommit() {
+        return this.intValue != 0;
+    }
+
+    /**
+     * @return isolation level for {@link Type#ISOLATION}
+     */
+    public int getIsolationLevel() {
+        return this.intValue;
+    }
+
+    int getIntValue() {
+        return this.intValue;
+    }
+
+    public StatementType getStatementType() {
+        return this.statementType;
+    }
+
+    public boolean isBatch() {
+        return this.batch;
+    }
+
+    /**
+     * @return recorded execution time in nanoseconds
+     */
+    public long getElapsedTime() {
+        return this.elapsedTime;
+    }
+
+    /**
+     * @return executed queries. Multiple queries for batch execution of {@link java.sql.Statement}.
+     */
+    public List<String> getQueries() {
+        return this.queries;
+    }
+
+    /**
+     * @return parameters of prepared or callable statement. Multiple parameter sets for batch execution.
+     */
+    public List<List<WorkloadParameter>> getParametersList() {
+        return this.parametersList;
+    }
+
+    @Override
+    public String toString() {
+        return this.type + "[" + this.connectionId + "@" + this.timestamp + (this.queries.isEmpty() ? "" : this.queries) + "]";
+    }
+
+}
@@ -0,0 +1,213 @@
+package net.ttddyy.dsproxy.support.replay;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+
+/**
+ * Constants and primitives of the workload file format.
+ *
+ * <pre>
+ * file   := MAGIC(int) VERSION(byte) event*
+ * event  := type(byte) timestamp-delta(zigzag varlong) connection-id(string) payload
+ * string := 0 utf8 (not added to dictionary)
+ *         | 1 utf8 (added to dictionary)
+ *         | (id + 2) (reference to dictionary)
+ * utf8   := length(varint) bytes
+ * </pre>
+ *
+ * Payload of {@code QUERY} is statement type, batch flag, elapsed time, queries and parameter sets. Parameter values
+ * are written with a type tag.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+final class WorkloadFormat {
+
+    static final int MAGIC = 0x44535057;  // "DSPW"
+    static final int VERSION = 1;
+
+    // max num of distinct strings kept in the dictionary
+    static final int MAX_DICTIONARY_SIZE = 4096;
+
+    static final int STRING_INLINE = 0;
+    static final int STRING_NEW = 1;
+    static final int STRING_REFERENCE_OFFSET = 2;
+
+    static final int KEY_INDEX = 0;
+    static final int KEY_NAME = 1;
+
+    // value tags
+    static final int TAG_NULL = 0;
+    static final int TAG_STRING = 1;
+    static final int TAG_INT = 2;
+    static final int TAG_LONG = 3;
+    static final int TAG_SHORT = 4;
+    static final int TAG_BYTE = 5;
+    static final int TAG_BOOLEAN = 6;
+    static final int TAG_DOUBLE = 7;
+    static final int TAG_FLOAT = 8;
+    static final int TAG_BIG_DECIMAL = 9;
+    static final int TAG_BYTES = 10;
+    static final int TAG_DATE = 11;
+    static final int TAG_TIME = 12;
+    static final int TAG_TIMESTAMP = 13;
+    static final int TAG_UNSUPPORTED = 14;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private WorkloadFormat() {
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length number");
+    }
+
+    static void writeZigZagLong(DataOutput out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long readZigZagLong(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeUtf8(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readUtf8(DataInput in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeUtf8(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INT);
+            writeZigZagLong(out, (Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            writeZigZagLong(out, (Long) value);
+        } else if (value instanceof Short) {
+            out.writeByte(TAG_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(TAG_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(TAG_BIG_DECIMAL);
+            writeUtf8(out, value.toString());
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(TAG_BYTES);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(TAG_DATE);
+            writeZigZagLong(out, ((java.sql.Date) value).getTime());
+        } else if (value instanceof java.sql.Time) {
+            out.writeByte(TAG_TIME);
+            writeZigZagLong(out, ((java.sql.Time) value).getTime());
+        } else if (value instanceof java.sql.Timestamp) {
+            java.sql.Timestamp timestamp = (java.sql.Timestamp) value;
+            out.writeByte(TAG_TIMESTAMP);
+            writeZigZagLong(out, timestamp.getTime());
+            writeVarLong(out, timestamp.getNanos());
+        } else {
+            out.writeByte(TAG_UNSUPPORTED);  // streams, LOBs, etc.
+        }
+    }
+
+    static Object readValue(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case TAG_NULL:
+            case TAG_UNSUPPORTED:
+                return null;
+            case TAG_STRING:
+                return readUtf8(in);
+            case TAG_INT:
+                return (int) readZigZagLong(in);
+            case TAG_LONG:
+                return readZigZagLong(in);
+            case TAG_SHORT:
+                return in.readShort();
+            case TAG_BYTE:
+                return in.readByte();
+            case TAG_BOOLEAN:
+                return in.readBoolean();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_BIG_DECIMAL:
+                return new BigDecimal(readUtf8(in));
+            case TAG_BYTES:
+                byte[] bytes = new byte[(int) readVarLong(in)];
+                in.readFully(bytes);
+                return bytes;
+            case TAG_DATE:
+                return new java.sql.Date(readZigZagLong(in));
+            case TAG_TIME:
+                return new java.sql.Time(readZigZagLong(in));
+            case TAG_TIMESTAMP:
+                java.sql.Timestamp timestamp = new java.sql.Timestamp(readZigZagLong(in));
+                timestamp.setNanos((int) readVarLong(in));
+                return timestamp;
+            default:
+                throw new IOException("Unknown value tag: " + tag);
+        }
+    }
+
+    /**
+     * Read the first byte of an event, or detect the end of the stream.
+     *
+     * @param in input
+     * @return event type byte, or {@code -1} at the end of the stream
+     * @throws IOException on read failure
+     */
+    static int readEventType(DataInput in) throws IOException {
+        try {
+            return in.readUnsignedByte();
+        } catch (EOFException ex) {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package net.ttddyy.dsproxy.support.replay;
+
+/**
+ * A recorded parameter operation of a prepared or callable statement.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see WorkloadEvent
+ * @since 1.11
+ */
+public class WorkloadParameter {
+
+    public enum Kind {
+        /**
+         * {@code set*} methods. Replayed by {@code setObject}.
+         */
+        VALUE,
+        /**
+         * {@code setNull}
+         */
+        NULL,
+        /**
+         * {@code registerOutParameter}
+         */
+        OUT_PARAMETER
+    }
+
+    private final Kind kind;
+    private final Object key;
+    private final Object value;
+    private final int sqlType;
+
+    WorkloadParameter(Kind kind, Object key, Object value, int sqlType) {
+        this.kind = kind;
+        this.key = key;
+        this.value = value;
+        this.sqlType = sqlType;
+    }
+
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * @return parameter index({@link Integer}) or name({@link String})
+     */
+    public Object getKey() {
+        return this.key;
+    }
+
+    /**
+     * @return parameter value for {@link Kind#VALUE}. {@code null} when the value type is not supported for recording.
+     */
+    public Object getValue() {
+        return this.value;
+    }
+
+    /**
+     * @return SQL type for {@link Kind#NULL} and {@link Kind#OUT_PARAMETER}
+     */
+    public int getSqlType() {
+        return this.sqlType;
+    }
+
+    @Override
+    public String toString() {
+        return this.key + "=" + (this.kind == Kind.VALUE ? this.value : this.kind + "(" + this.sqlType + ")");
+    }
+
+}
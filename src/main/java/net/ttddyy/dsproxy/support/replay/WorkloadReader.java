@@ -0,0 +1,145 @@
+package net.ttddyy.dsproxy.support.replay;
+
+import net.ttddyy.dsproxy.StatementType;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads events of a workload file written by {@link WorkloadRecorder} one by one.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see WorkloadRecorder
+ * @since 1.11
+ */
+public class WorkloadReader implements Closeable {
+
+    private static final WorkloadEvent.Type[] EVENT_TYPES = WorkloadEvent.Type.values();
+    private static final StatementType[] STATEMENT_TYPES = StatementType.values();
+    private static final WorkloadParameter.Kind[] PARAMETER_KINDS = WorkloadParameter.Kind.values();
+
+    private final DataInputStream in;
+    private final List<String> dictionary = new ArrayList<String>();
+    private long lastTimestamp;
+
+    /**
+     * @param file workload file
+     * @throws IOException when failed to open the file or it is not a workload file
+     */
+    public WorkloadReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    /**
+     * @param inputStream stream to read. closed by {@link #close()}.
+     * @throws IOException when failed to read or the stream is not a workload file
+     */
+    public WorkloadReader(InputStream inputStream) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (this.in.readInt() != WorkloadFormat.MAGIC) {
+            throw new IOException("Not a workload file");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != WorkloadFormat.VERSION) {
+            throw new IOException("Unsupported workload file version: " + version);
+        }
+    }
+
+    /**
+     * Read the next event.
+     *
+     * @return next event or {@code null} at the end
+     * @throws IOException when failed to read
+     */
+    public WorkloadEvent read() throws IOException {
+        int typeOrdinal = WorkloadFormat.readEventType(this.in);
+        if (typeOrdinal < 0) {
+            return null;
+        }
+        if (typeOrdinal >= EVENT_TYPES.length) {
+            throw new IOException("Unknown event type: " + typeOrdinal);
+        }
+        WorkloadEvent.Type type = EVENT_TYPES[typeOrdinal];
+        long timestamp = this.lastTimestamp + WorkloadFormat.readZigZagLong(this.in);
+        this.lastTimestamp = timestamp;
+        String connectionId = readString();
+
+        switch (type) {
+            case AUTO_COMMIT:
+            case ISOLATION:
+                int value = (int) WorkloadFormat.readZigZagLong(this.in);
+                return WorkloadEvent.intValueEvent(type, timestamp, connectionId, value);
+            case QUERY:
+                return readQueryEvent(timestamp, connectionId);
+            default:
+                return new WorkloadEvent(type, timestamp, connectionId);
+        }
+    }
+
+    private WorkloadEvent readQueryEvent(long timestamp, String connectionId) throws IOException {
+        StatementType statementType = STATEMENT_TYPES[this.in.readUnsignedByte()];
+        boolean batch = this.in.readBoolean();
+        long elapsedTime = WorkloadFormat.readVarLong(this.in);
+
+        int queryCount = (int) WorkloadFormat.readVarLong(this.in);
+        List<String> queries = new ArrayList<String>(queryCount);
+        for (int i = 0; i < queryCount; i++) {
+            queries.add(readString());
+        }
+
+        int parameterSetCount = (int) WorkloadFormat.readVarLong(this.in);
+        List<List<WorkloadParameter>> parametersList = new ArrayList<List<WorkloadParameter>>(parameterSetCount);
+        for (int i = 0; i < parameterSetCount; i++) {
+            int parameterCount = (int) WorkloadFormat.readVarLong(this.in);
+            List<WorkloadParameter> parameters = new ArrayList<WorkloadParameter>(parameterCount);
+            for (int j = 0; j < parameterCount; j++) {
+                parameters.add(readParameter());
+            }
+            parametersList.add(parameters);
+        }
+        return WorkloadEvent.queryEvent(timestamp, connectionId, statementType, batch, elapsedTime, queries, parametersList);
+    }
+
+    private WorkloadParameter readParameter() throws IOException {
+        WorkloadParameter.Kind kind = PARAMETER_KINDS[this.in.readUnsignedByte()];
+        Object key;
+        if (this.in.readUnsignedByte() == WorkloadFormat.KEY_NAME) {
+            key = readString();
+        } else {
+            key = (int) WorkloadFormat.readVarLong(this.in);
+        }
+        if (kind == WorkloadParameter.Kind.VALUE) {
+            return new WorkloadParameter(kind, key, WorkloadFormat.readValue(this.in), 0);
+        }
+        return new WorkloadParameter(kind, key, null, this.in.readInt());
+    }
+
+    private String readString() throws IOException {
+        int code = (int) WorkloadFormat.readVarLong(this.in);
+        if (code == WorkloadFormat.STRING_INLINE) {
+            return WorkloadFormat.readUtf8(this.in);
+        } else if (code == WorkloadFormat.STRING_NEW) {
+            String value = WorkloadFormat.readUtf8(this.in);
+            this.dictionary.add(value);
+            return value;
+        }
+        int id = code - WorkloadFormat.STRING_REFERENCE_OFFSET;
+        if (id >= this.dictionary.size()) {
+            throw new IOException("Unknown string reference: " + id);
+        }
+        return this.dictionary.get(id);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+}
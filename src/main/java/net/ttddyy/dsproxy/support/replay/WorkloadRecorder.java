@@ -0,0 +1,440 @@
+package net.ttddyy.dsproxy.support.replay;
+
+import net.ttddyy.dsproxy.ConnectionInfo;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.LongAttributeKey;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.StatementType;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records a JDBC workload to a file for {@link WorkloadReplayer}.
+ *
+ * Register the same instance as both query listener and method listener:
+ * <pre>
+ * WorkloadRecorder recorder = new WorkloadRecorder(new File("workload.bin"));
+ * ProxyDataSourceBuilder.create(dataSource).listener(recorder).methodListener(recorder).build();
+ * </pre>
+ *
+ * Recorded events are query executions(queries, parameters and timing), connection open/close, auto-commit and
+ * isolation level changes, commit and rollback. Listeners only capture the events and hand them to a background
+ * writer thread through a bounded queue; the writer encodes them in a compact binary format and streams them to the
+ * output. When the writer falls behind and the queue is full, recording threads wait for space. Only the queue and a
+ * bounded dictionary of frequent strings are kept in memory.
+ *
+ * <p>Parameter values other than strings, numbers, booleans, byte arrays and {@code java.sql} date/time values(e.g.
+ * streams and LOBs) are recorded as {@code null}. Savepoints and generated keys are not recorded.
+ *
+ * <p>When writing fails, recording stops and the failure is available from {@link #getFailure()}.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see WorkloadReplayer
+ * @see WorkloadReader
+ * @since 1.11
+ */
+public class WorkloadRecorder implements QueryExecutionListener, MethodExecutionListener, Flushable, Closeable {
+
+    /**
+     * Default num of events waiting for the writer.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+    private static final Logger LOGGER = Logger.getLogger(WorkloadRecorder.class.getName());
+
+    private static final LongAttributeKey START_TIME_KEY = LongAttributeKey.create("workloadRecorderStartTime");
+
+    // stops the writer
+    private static final Object CLOSE = new Object();
+
+    // parameter value that is not recorded(e.g. streams and LOBs)
+    private static final Object UNSUPPORTED_VALUE = new Object();
+
+    private final long startTime = System.nanoTime();
+
+    private final BlockingQueue<Object> queue;
+    private final Thread writer;
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private final AtomicLong eventCount = new AtomicLong();
+
+    // confined to the writer thread
+    private final DataOutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+    private long lastTimestamp;
+
+    /**
+     * @param file file to write
+     * @throws IOException when failed to open the file
+     */
+    public WorkloadRecorder(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    /**
+     * @param outputStream stream to write. closed by {@link #close()}.
+     * @throws IOException when failed to write the header
+     */
+    public WorkloadRecorder(OutputStream outputStream) throws IOException {
+        this(outputStream, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param outputStream  stream to write. closed by {@link #close()}.
+     * @param queueCapacity max num of events waiting for the writer
+     * @throws IOException when failed to write the header
+     */
+    public WorkloadRecorder(OutputStream outputStream, int queueCapacity) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        this.out.writeInt(WorkloadFormat.MAGIC);
+        this.out.writeByte(WorkloadFormat.VERSION);
+        this.queue = new LinkedBlockingQueue<Object>(queueCapacity);
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeEvents();
+            }
+        }, "WorkloadRecorder");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        execInfo.setLongAttribute(START_TIME_KEY, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (this.closed || this.failure != null) {
+            return;
+        }
+        long start = execInfo.getLongAttribute(START_TIME_KEY);
+        Event event = new Event(WorkloadEvent.Type.QUERY, start, execInfo.getConnectionId());
+        event.elapsedTime = System.nanoTime() - start;
+        StatementType statementType = execInfo.getStatementType();
+        event.statementType = statementType != null ? statementType : StatementType.STATEMENT;
+        event.batch = execInfo.isBatch();
+
+        // copy since query infos and parameters are reused by the statement
+        event.queries = new String[queryInfoList.size()];
+        for (int i = 0; i < event.queries.length; i++) {
+            event.queries[i] = queryInfoList.get(i).getQuery();
+        }
+        // parameters are only for prepared and callable statements, which have one query
+        List<List<ParameterSetOperation>> parametersList = StatementType.STATEMENT == event.statementType
+                || queryInfoList.isEmpty() ? null : queryInfoList.get(0).getParametersList();
+        if (parametersList != null) {
+            event.parameters = new Parameter[parametersList.size()][];
+            for (int i = 0; i < event.parameters.length; i++) {
+                List<ParameterSetOperation> parameters = parametersList.get(i);
+                event.parameters[i] = new Parameter[parameters.size()];
+                for (int j = 0; j < parameters.size(); j++) {
+                    event.parameters[i][j] = new Parameter(parameters.get(j));
+                }
+            }
+        }
+        enqueue(event);
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        if (executionContext.getThrown() != null) {
+            return;
+        }
+        Object target = executionContext.getTarget();
+        String methodName = executionContext.getMethod().getName();
+        ConnectionInfo connectionInfo = executionContext.getConnectionInfo();
+        if (connectionInfo == null) {
+            return;
+        }
+
+        if (target instanceof DataSource) {
+            if ("getConnection".equals(methodName)) {
+                writeEvent(WorkloadEvent.Type.CONNECTION_OPEN, connectionInfo.getConnectionId(), 0);
+            }
+        } else if (target instanceof Connection) {
+            Object[] args = executionContext.getMethodArgs();
+            if ("close".equals(methodName)) {
+                writeEvent(WorkloadEvent.Type.CONNECTION_CLOSE, connectionInfo.getConnectionId(), 0);
+            } else if ("commit".equals(methodName)) {
+                writeEvent(WorkloadEvent.Type.COMMIT, connectionInfo.getConnectionId(), 0);
+            } else if ("rollback".equals(methodName) && (args == null || args.length == 0)) {
+                writeEvent(WorkloadEvent.Type.ROLLBACK, connectionInfo.getConnectionId(), 0);
+            } else if ("setAutoCommit".equals(methodName)) {
+                int autoCommit = Boolean.TRUE.equals(args[0]) ? 1 : 0;
+                writeEvent(WorkloadEvent.Type.AUTO_COMMIT, connectionInfo.getConnectionId(), autoCommit);
+            } else if ("setTransactionIsolation".equals(methodName)) {
+                writeEvent(WorkloadEvent.Type.ISOLATION, connectionInfo.getConnectionId(), (Integer) args[0]);
+            }
+        }
+    }
+
+    private void writeEvent(WorkloadEvent.Type type, String connectionId, int intValue) {
+        Event event = new Event(type, System.nanoTime(), connectionId);
+        event.intValue = intValue;
+        enqueue(event);
+    }
+
+    private boolean enqueue(Object item) {
+        if (this.closed || this.failure != null) {
+            return false;
+        }
+        try {
+            this.queue.put(item);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();  // event is not recorded
+            return false;
+        }
+    }
+
+    // writer thread
+    private void writeEvents() {
+        try {
+            while (true) {
+                Object item = this.queue.take();
+                if (item == CLOSE) {
+                    return;
+                } else if (item instanceof CountDownLatch) {
+                    if (this.failure == null) {
+                        try {
+                            this.out.flush();
+                        } catch (IOException ex) {
+                            fail(ex);
+                        }
+                    }
+                    ((CountDownLatch) item).countDown();
+                } else if (this.failure == null) {
+                    write((Event) item);
+                }
+            }
+        } catch (InterruptedException ex) {
+            // stop writing
+        }
+    }
+
+    // writer thread
+    private void write(Event event) {
+        try {
+            this.out.writeByte(event.type.ordinal());
+            long timestamp = event.time - this.startTime;
+            WorkloadFormat.writeZigZagLong(this.out, timestamp - this.lastTimestamp);
+            writeString(event.connectionId != null ? event.connectionId : "");
+            this.lastTimestamp = timestamp;
+
+            if (event.type == WorkloadEvent.Type.AUTO_COMMIT || event.type == WorkloadEvent.Type.ISOLATION) {
+                WorkloadFormat.writeZigZagLong(this.out, event.intValue);
+            } else if (event.type == WorkloadEvent.Type.QUERY) {
+                this.out.writeByte(event.statementType.ordinal());
+                this.out.writeBoolean(event.batch);
+                WorkloadFormat.writeVarLong(this.out, event.elapsedTime);
+                WorkloadFormat.writeVarLong(this.out, event.queries.length);
+                for (String query : event.queries) {
+                    writeString(query);
+                }
+                WorkloadFormat.writeVarLong(this.out, event.parameters == null ? 0 : event.parameters.length);
+                if (event.parameters != null) {
+                    for (Parameter[] parameters : event.parameters) {
+                        WorkloadFormat.writeVarLong(this.out, parameters.length);
+                        for (Parameter parameter : parameters) {
+                            writeParameter(parameter);
+                        }
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            fail(ex);
+            return;
+        }
+        this.eventCount.incrementAndGet();
+    }
+
+    // writer thread
+    private void writeString(String value) throws IOException {
+        Integer id = this.dictionary.get(value);
+        if (id != null) {
+            WorkloadFormat.writeVarLong(this.out, id + WorkloadFormat.STRING_REFERENCE_OFFSET);
+        } else if (this.dictionary.size() < WorkloadFormat.MAX_DICTIONARY_SIZE) {
+            this.dictionary.put(value, this.dictionary.size());
+            WorkloadFormat.writeVarLong(this.out, WorkloadFormat.STRING_NEW);
+            WorkloadFormat.writeUtf8(this.out, value);
+        } else {
+            WorkloadFormat.writeVarLong(this.out, WorkloadFormat.STRING_INLINE);
+            WorkloadFormat.writeUtf8(this.out, value);
+        }
+    }
+
+    // writer thread
+    private void writeParameter(Parameter parameter) throws IOException {
+        this.out.writeByte(parameter.kind.ordinal());
+
+        if (parameter.key instanceof String) {
+            this.out.writeByte(WorkloadFormat.KEY_NAME);
+            writeString((String) parameter.key);
+        } else {
+            this.out.writeByte(WorkloadFormat.KEY_INDEX);
+            WorkloadFormat.writeVarLong(this.out, ((Number) parameter.key).intValue());
+        }
+
+        Object value = parameter.value;
+        if (parameter.kind == WorkloadParameter.Kind.VALUE) {
+            WorkloadFormat.writeValue(this.out, value);  // unsupported value is written as unsupported
+        } else {
+            this.out.writeInt(value instanceof Integer ? (Integer) value : java.sql.Types.NULL);
+        }
+    }
+
+    private void fail(IOException ex) {
+        this.failure = ex;
+        LOGGER.log(Level.WARNING, "Failed to record workload. Recording is stopped.", ex);
+    }
+
+    /**
+     * Write events recorded so far and flush the output.
+     *
+     * @throws IOException when writing has failed
+     */
+    @Override
+    public void flush() throws IOException {
+        CountDownLatch flushed = new CountDownLatch(1);
+        if (enqueue(flushed)) {
+            try {
+                // writer may have stopped before taking the request
+                while (!flushed.await(100, TimeUnit.MILLISECONDS) && this.writer.isAlive()) {
+                    // wait
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while flushing workload");
+            }
+        }
+        if (this.failure != null) {
+            throw this.failure;
+        }
+    }
+
+    /**
+     * Write events recorded so far, stop recording and close the output.
+     *
+     * @throws IOException when failed to close the output
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.queue.put(CLOSE);
+            this.writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            this.writer.interrupt();
+            throw new InterruptedIOException("Interrupted while writing workload");
+        } finally {
+            if (!this.writer.isAlive()) {
+                this.out.close();
+            }
+        }
+    }
+
+    /**
+     * @return num of recorded events. Events waiting for the writer are not included.
+     */
+    public long getEventCount() {
+        return this.eventCount.get();
+    }
+
+    /**
+     * @return failure that stopped recording, or {@code null}
+     */
+    public IOException getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * Event captured by listeners.
+     */
+    private static final class Event {
+
+        private final WorkloadEvent.Type type;
+        private final long time;
+        private final String connectionId;
+        private int intValue;
+        private StatementType statementType;
+        private boolean batch;
+        private long elapsedTime;
+        private String[] queries;
+        private Parameter[][] parameters;
+
+        private Event(WorkloadEvent.Type type, long time, String connectionId) {
+            this.type = type;
+            this.time = time;
+            this.connectionId = connectionId;
+        }
+    }
+
+    /**
+     * Snapshot of a parameter. Mutable values are copied, and values that are not recorded are not retained.
+     */
+    private static final class Parameter {
+
+        private final WorkloadParameter.Kind kind;
+        private final Object key;
+        private final Object value;
+
+        private Parameter(ParameterSetOperation operation) {
+            Object[] args = operation.getArgs();
+            if (ParameterSetOperation.isSetNullParameterOperation(operation)) {
+                this.kind = WorkloadParameter.Kind.NULL;
+            } else if (ParameterSetOperation.isRegisterOutParameterOperation(operation)) {
+                this.kind = WorkloadParameter.Kind.OUT_PARAMETER;
+            } else {
+                this.kind = WorkloadParameter.Kind.VALUE;
+            }
+            this.key = args[0];
+            Object value = args.length > 1 ? args[1] : null;
+            if (this.kind != WorkloadParameter.Kind.VALUE) {
+                this.value = value;  // sql type
+            } else if (value instanceof byte[]) {
+                this.value = ((byte[]) value).clone();
+            } else if (value instanceof java.util.Date) {
+                this.value = ((java.util.Date) value).clone();
+            } else if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+                this.value = value;
+            } else {
+                this.value = UNSUPPORTED_VALUE;
+            }
+        }
+    }
+
+}
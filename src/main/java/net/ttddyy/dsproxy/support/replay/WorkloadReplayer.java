@@ -0,0 +1,404 @@
+package net.ttddyy.dsproxy.support.replay;
+
+import net.ttddyy.dsproxy.StatementType;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays a workload recorded by {@link WorkloadRecorder} against a {@link DataSource}.
+ *
+ * <pre>
+ * WorkloadReplayer replayer = new WorkloadReplayer(dataSource);
+ * replayer.setConcurrency(50);
+ * replayer.setSpeedUp(2.0);
+ * ReplayReport report = replayer.replay(new File("workload.bin"));
+ * </pre>
+ *
+ * Each recorded connection is replayed as a session on its own connection and thread in the recorded order, thus the
+ * replay has the same num of concurrently open connections as the recording. Events are dispatched at their recorded
+ * time divided by the speed-up factor. The workload file is read as a stream.
+ *
+ * <p>At most {@link #getConcurrency()} sessions are open at the same time. When a new session exceeds it, reading
+ * waits until a session whose close has been dispatched finishes; if no session is closing, the recording has more
+ * concurrent connections than allowed and the replay fails with {@link IllegalStateException}. Events are queued per
+ * session up to {@link #getSessionQueueCapacity()}; when a session falls behind, reading waits for it.
+ *
+ * <p>Queries are replayed with {@code execute()} or {@code executeBatch()}, and returned result sets are read to
+ * the end. Parameters are replayed with {@code setObject}, {@code setNull} and {@code registerOutParameter}.
+ * Failures are counted in {@link ReplayReport} and do not stop the replay.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see WorkloadRecorder
+ * @see ReplayReport
+ * @since 1.11
+ */
+public class WorkloadReplayer {
+
+    // marks the end of the workload for sessions that are still open
+    private static final WorkloadEvent END_OF_WORKLOAD = new WorkloadEvent(WorkloadEvent.Type.CONNECTION_CLOSE, 0, null);
+
+    public static final int DEFAULT_CONCURRENCY = 100;
+    public static final int DEFAULT_SESSION_QUEUE_CAPACITY = 1000;
+
+    private final DataSource dataSource;
+    private double speedUp = 1.0;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int sessionQueueCapacity = DEFAULT_SESSION_QUEUE_CAPACITY;
+
+    /**
+     * @param dataSource data source to replay the workload against
+     */
+    public WorkloadReplayer(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Replay the workload in the file.
+     *
+     * @param file workload file
+     * @return report
+     * @throws IOException          when failed to read the file
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public ReplayReport replay(File file) throws IOException, InterruptedException {
+        WorkloadReader reader = new WorkloadReader(file);
+        try {
+            return replay(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Replay the workload from the reader.
+     *
+     * @param reader workload reader
+     * @return report
+     * @throws IOException          when failed to read the workload
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public ReplayReport replay(WorkloadReader reader) throws IOException, InterruptedException {
+        ReplayReport report = new ReplayReport();
+        // a session holds a permit while it is open, thus each open session has a thread
+        ExecutorService executorService = Executors.newFixedThreadPool(this.concurrency);
+        Semaphore permits = new Semaphore(this.concurrency);
+        AtomicInteger closingSessions = new AtomicInteger();
+        Map<String, Session> sessions = new HashMap<String, Session>();
+
+        long replayStart = System.nanoTime();
+        boolean completed = false;
+        try {
+            long firstTimestamp = 0;
+            boolean first = true;
+            WorkloadEvent event;
+            while ((event = reader.read()) != null) {
+                if (first) {
+                    firstTimestamp = event.getTimestamp();
+                    first = false;
+                }
+
+                long dueTime = replayStart + (long) ((event.getTimestamp() - firstTimestamp) / this.speedUp);
+                long waitTime = dueTime - System.nanoTime();
+                if (waitTime > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitTime);
+                }
+
+                String connectionId = event.getConnectionId();
+                Session session = sessions.get(connectionId);
+                if (session == null) {
+                    acquire(permits, closingSessions);
+                    session = new Session(report, permits, closingSessions);
+                    sessions.put(connectionId, session);
+                    executorService.execute(session);
+                }
+                if (event.getType() == WorkloadEvent.Type.CONNECTION_CLOSE) {
+                    session.closing = true;
+                    closingSessions.incrementAndGet();
+                    sessions.remove(connectionId);
+                }
+                session.queue.put(event);  // waits when the session falls behind
+            }
+            completed = true;
+        } finally {
+            for (Session session : sessions.values()) {
+                if (completed) {
+                    session.queue.put(END_OF_WORKLOAD);
+                } else {
+                    session.queue.clear();  // abandon pending events
+                    session.queue.add(END_OF_WORKLOAD);
+                }
+            }
+            executorService.shutdown();
+        }
+        executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        report.setElapsedTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - replayStart));
+        return report;
+    }
+
+    /**
+     * Take a permit for a new session. Waits only while a closing session will release a permit, since other open
+     * sessions wait for events that come after the new session.
+     */
+    private void acquire(Semaphore permits, AtomicInteger closingSessions) throws InterruptedException {
+        while (!permits.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+            // a session releases the permit before it is no longer counted as closing
+            if (closingSessions.get() == 0 && !permits.tryAcquire()) {
+                throw new IllegalStateException("Recorded workload has more than " + this.concurrency
+                        + " concurrently open connections. Increase concurrency.");
+            }
+        }
+    }
+
+    private class Session implements Runnable {
+
+        private final BlockingQueue<WorkloadEvent> queue;
+        private final ReplayReport report;
+        private final Semaphore permits;
+        private final AtomicInteger closingSessions;
+        private volatile boolean closing;  // true when the close event has been dispatched
+        private Connection connection;
+
+        private Session(ReplayReport report, Semaphore permits, AtomicInteger closingSessions) {
+            this.queue = new LinkedBlockingQueue<WorkloadEvent>(WorkloadReplayer.this.sessionQueueCapacity);
+            this.report = report;
+            this.permits = permits;
+            this.closingSessions = closingSessions;
+        }
+
+        @Override
+        public void run() {
+            try {
+                WorkloadEvent event;
+                while ((event = this.queue.take()).getType() != WorkloadEvent.Type.CONNECTION_CLOSE) {
+                    try {
+                        handle(event);
+                    } catch (SQLException ex) {
+                        this.report.recordError(ex);
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (this.connection != null) {
+                    try {
+                        this.connection.close();
+                    } catch (SQLException ex) {
+                        this.report.recordError(ex);
+                    }
+                }
+                this.permits.release();
+                if (this.closing) {
+                    this.closingSessions.decrementAndGet();
+                }
+            }
+        }
+
+        private Connection getConnection() throws SQLException {
+            if (this.connection == null) {
+                this.connection = WorkloadReplayer.this.dataSource.getConnection();
+                this.report.incrementConnectionCount();
+            }
+            return this.connection;
+        }
+
+        private void handle(WorkloadEvent event) throws SQLException {
+            switch (event.getType()) {
+                case CONNECTION_OPEN:
+                    getConnection();
+                    break;
+                case AUTO_COMMIT:
+                    getConnection().setAutoCommit(event.isAutoCommit());
+                    break;
+                case ISOLATION:
+                    getConnection().setTransactionIsolation(event.getIsolationLevel());
+                    break;
+                case COMMIT:
+                    getConnection().commit();
+                    break;
+                case ROLLBACK:
+                    getConnection().rollback();
+                    break;
+                case QUERY:
+                    executeQuery(getConnection(), event);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void executeQuery(Connection connection, WorkloadEvent event) throws SQLException {
+            List<String> queries = event.getQueries();
+            if (queries.isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                if (StatementType.STATEMENT == event.getStatementType()) {
+                    executeStatement(connection, event);
+                } else {
+                    executePrepared(connection, event);
+                }
+            } finally {
+                this.report.recordQuery(queries.get(0), System.nanoTime() - start);
+            }
+        }
+
+        private void executeStatement(Connection connection, WorkloadEvent event) throws SQLException {
+            Statement statement = connection.createStatement();
+            try {
+                if (event.isBatch()) {
+                    for (String query : event.getQueries()) {
+                        statement.addBatch(query);
+                    }
+                    statement.executeBatch();
+                } else {
+                    consume(statement, statement.execute(event.getQueries().get(0)));
+                }
+            } finally {
+                statement.close();
+            }
+        }
+
+        private void executePrepared(Connection connection, WorkloadEvent event) throws SQLException {
+            String query = event.getQueries().get(0);
+            PreparedStatement statement = StatementType.CALLABLE == event.getStatementType()
+                    ? connection.prepareCall(query) : connection.prepareStatement(query);
+            try {
+                List<List<WorkloadParameter>> parametersList = event.getParametersList();
+                if (event.isBatch()) {
+                    for (List<WorkloadParameter> parameters : parametersList) {
+                        setParameters(statement, parameters);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                } else {
+                    if (!parametersList.isEmpty()) {
+                        setParameters(statement, parametersList.get(0));
+                    }
+                    consume(statement, statement.execute());
+                }
+            } finally {
+                statement.close();
+            }
+        }
+
+        private void setParameters(PreparedStatement statement, List<WorkloadParameter> parameters) throws SQLException {
+            for (WorkloadParameter parameter : parameters) {
+                Object key = parameter.getKey();
+                if (key instanceof String) {
+                    CallableStatement callable = (CallableStatement) statement;
+                    String name = (String) key;
+                    switch (parameter.getKind()) {
+                        case NULL:
+                            callable.setNull(name, parameter.getSqlType());
+                            break;
+                        case OUT_PARAMETER:
+                            callable.registerOutParameter(name, parameter.getSqlType());
+                            break;
+                        default:
+                            callable.setObject(name, parameter.getValue());
+                            break;
+                    }
+                } else {
+                    int index = (Integer) key;
+                    switch (parameter.getKind()) {
+                        case NULL:
+                            statement.setNull(index, parameter.getSqlType());
+                            break;
+                        case OUT_PARAMETER:
+                            ((CallableStatement) statement).registerOutParameter(index, parameter.getSqlType());
+                            break;
+                        default:
+                            statement.setObject(index, parameter.getValue());
+                            break;
+                    }
+                }
+            }
+        }
+
+        // read all results to replay the cost of fetching
+        private void consume(Statement statement, boolean isResultSet) throws SQLException {
+            while (true) {
+                if (isResultSet) {
+                    ResultSet resultSet = statement.getResultSet();
+                    try {
+                        while (resultSet.next()) {
+                            // read rows
+                        }
+                    } finally {
+                        resultSet.close();
+                    }
+                } else if (statement.getUpdateCount() == -1) {
+                    return;
+                }
+                isResultSet = statement.getMoreResults();
+            }
+        }
+
+    }
+
+    /**
+     * @param speedUp factor to shorten intervals between recorded events. {@code 1.0}(default) replays in the recorded
+     *                timing, and {@link Double#POSITIVE_INFINITY} replays as fast as possible.
+     */
+    public void setSpeedUp(double speedUp) {
+        if (!(speedUp > 0)) {
+            throw new IllegalArgumentException("speedUp must be positive");
+        }
+        this.speedUp = speedUp;
+    }
+
+    public double getSpeedUp() {
+        return this.speedUp;
+    }
+
+    /**
+     * @param concurrency max num of sessions(connections and threads) open at the same time. defaults to
+     *                    {@link #DEFAULT_CONCURRENCY}.
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        this.concurrency = concurrency;
+    }
+
+    public int getConcurrency() {
+        return this.concurrency;
+    }
+
+    /**
+     * @param sessionQueueCapacity max num of events queued per session before reading waits. defaults to
+     *                             {@link #DEFAULT_SESSION_QUEUE_CAPACITY}.
+     */
+    public void setSessionQueueCapacity(int sessionQueueCapacity) {
+        if (sessionQueueCapacity < 1) {
+            throw new IllegalArgumentException("sessionQueueCapacity must be positive");
+        }
+        this.sessionQueueCapacity = sessionQueueCapacity;
+    }
+
+    public int getSessionQueueCapacity() {
+        return this.sessionQueueCapacity;
+    }
+
+}
@@ -0,0 +1,142 @@
+package net.ttddyy.dsproxy.transform;
+
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link QueryTransformer} that memoizes the result of the delegate.
+ *
+ * Results are keyed by statement class, data source name and query. The delegate is called only once per key, thus it
+ * must be deterministic for the key; a transformer that depends on {@link TransformInfo#isBatch()},
+ * {@link TransformInfo#getCount()} or any other state(e.g. thread local context) should not be cached.
+ *
+ * <p>Once {@link #getMaxSize()} results are cached, queries not yet cached are transformed by the delegate every time.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class CachingQueryTransformer implements QueryTransformer {
+
+    /**
+     * Default max num of cached queries.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final QueryTransformer delegate;
+    private final int maxSize;
+    private final ConcurrentMap<Key, String> cache = new ConcurrentHashMap<Key, String>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param delegate transformer to memoize
+     */
+    public CachingQueryTransformer(QueryTransformer delegate) {
+        this(delegate, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param delegate transformer to memoize
+     * @param maxSize  max num of cached queries
+     */
+    public CachingQueryTransformer(QueryTransformer delegate, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public String transformQuery(TransformInfo transformInfo) {
+        String query = transformInfo.getQuery();
+        if (query == null) {
+            return this.delegate.transformQuery(transformInfo);
+        }
+        Key key = new Key(transformInfo.getClazz(), transformInfo.getDataSourceName(), query);
+        String transformed = this.cache.get(key);
+        if (transformed != null) {
+            this.hitCount.incrementAndGet();
+            return transformed;
+        }
+        this.missCount.incrementAndGet();
+
+        transformed = this.delegate.transformQuery(transformInfo);
+        if (transformed != null && this.cache.size() < this.maxSize) {
+            this.cache.putIfAbsent(key, transformed);
+        }
+        return transformed;
+    }
+
+    /**
+     * Remove all cached results.
+     */
+    public void clear() {
+        this.cache.clear();
+    }
+
+    public QueryTransformer getDelegate() {
+        return this.delegate;
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return num of cached queries
+     */
+    public int size() {
+        return this.cache.size();
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    private static final class Key {
+
+        private final Class<? extends Statement> clazz;
+        private final String dataSourceName;
+        private final String query;
+        private final int hash;
+
+        private Key(Class<? extends Statement> clazz, String dataSourceName, String query) {
+            this.clazz = clazz;
+            this.dataSourceName = dataSourceName;
+            this.query = query;
+            int hash = query.hashCode();
+            hash = 31 * hash + (clazz != null ? clazz.hashCode() : 0);
+            hash = 31 * hash + (dataSourceName != null ? dataSourceName.hashCode() : 0);
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return this.hash == that.hash
+                    && this.clazz == that.clazz
+                    && (this.dataSourceName != null ? this.dataSourceName.equals(that.dataSourceName) : that.dataSourceName == null)
+                    && this.query.equals(that.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+}
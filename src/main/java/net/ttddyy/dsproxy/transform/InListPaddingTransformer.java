@@ -0,0 +1,293 @@
+package net.ttddyy.dsproxy.transform;
+
+import net.ttddyy.dsproxy.proxy.ParameterKey;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pads IN-lists of placeholders to the next power of two.
+ *
+ * Queries such as {@code WHERE id IN (?, ?, ?)} generated with variable number of placeholders produce a distinct
+ * statement per list size, which fragments statement caches of drivers and databases. This transformer rewrites the
+ * query to have {@code 1, 2, 4, 8, ...} placeholders in each IN-list, and binds the last value of the list to the
+ * added placeholders. Lists are padded up to {@link #getMaxListSize()}, and longer lists are left as is.
+ *
+ * <p>This class is both {@link QueryTransformer} and {@link ParameterTransformer}; register the same instance as both.
+ * <pre>
+ * InListPaddingTransformer padding = new InListPaddingTransformer();
+ * ProxyDataSourceBuilder.create(dataSource)
+ *     .queryTransformer(padding)
+ *     .parameterTransformer(padding)
+ *     .build();
+ * </pre>
+ *
+ * <p>As an {@link IndexChangingParameterTransformer}, parameters are bound to the statement at execution.
+ * Parameters are remapped only when all parameters of the original query are set by index. Queries are not padded
+ * when the padded query is already used by another query with the same num of parameters but different mapping, or
+ * when {@link #getMaxQueries()} queries are already known.
+ *
+ * @author Tadaya Tsuyukubo
+ * @since 1.11
+ */
+public class InListPaddingTransformer implements QueryTransformer, IndexChangingParameterTransformer {
+
+    /**
+     * Default max num of placeholders in a padded IN-list. Some databases(e.g. Oracle) limit the size to 1000.
+     */
+    public static final int DEFAULT_MAX_LIST_SIZE = 1000;
+
+    /**
+     * Default max num of remembered queries.
+     */
+    public static final int DEFAULT_MAX_QUERIES = 1000;
+
+    // string literal, quoted identifier, comments, IN-list of placeholders, or a placeholder
+    private static final Pattern TOKEN_PATTERN = Pattern.compile(
+            "'(?:[^']|'')*'|\"[^\"]*\"|--[^\\n]*|/\\*.*?\\*/|(\\bIN\\s*\\()\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)|\\?",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final int maxListSize;
+    private final int maxQueries;
+
+    private final ConcurrentMap<String, String> queries = new ConcurrentHashMap<String, String>();  // original -> padded
+    private final ConcurrentMap<String, Boolean> paddedQueries = new ConcurrentHashMap<String, Boolean>();
+    private final ConcurrentMap<String, ConcurrentMap<Integer, Plan>> plans = new ConcurrentHashMap<String, ConcurrentMap<Integer, Plan>>();
+
+    private final AtomicInteger inListQueryCount = new AtomicInteger();
+    private final AtomicLong paddedExecutionCount = new AtomicLong();
+
+    public InListPaddingTransformer() {
+        this(DEFAULT_MAX_LIST_SIZE, DEFAULT_MAX_QUERIES);
+    }
+
+    /**
+     * @param maxListSize max num of placeholders in a padded IN-list
+     * @param maxQueries  max num of remembered queries
+     */
+    public InListPaddingTransformer(int maxListSize, int maxQueries) {
+        if (maxListSize < 1) {
+            throw new IllegalArgumentException("maxListSize must be positive");
+        }
+        if (maxQueries < 1) {
+            throw new IllegalArgumentException("maxQueries must be positive");
+        }
+        this.maxListSize = maxListSize;
+        this.maxQueries = maxQueries;
+    }
+
+    @Override
+    public String transformQuery(TransformInfo transformInfo) {
+        String query = transformInfo.getQuery();
+        if (query == null || query.indexOf('?') < 0) {
+            return query;
+        }
+        String padded = this.queries.get(query);
+        if (padded != null) {
+            return padded;
+        }
+        if (this.queries.size() >= this.maxQueries) {
+            return query;
+        }
+
+        Padding padding = pad(query);
+        padded = query;
+        if (padding != null && padding.plan != null) {
+            ConcurrentMap<Integer, Plan> candidates = this.plans.get(padding.query);
+            if (candidates == null) {
+                candidates = new ConcurrentHashMap<Integer, Plan>();
+                ConcurrentMap<Integer, Plan> existing = this.plans.putIfAbsent(padding.query, candidates);
+                if (existing != null) {
+                    candidates = existing;
+                }
+            }
+            Plan plan = candidates.putIfAbsent(padding.plan.parameterCount, padding.plan);
+            if (plan == null || plan.equals(padding.plan)) {
+                padded = padding.query;
+            }
+            // otherwise, parameters cannot be distinguished from the other query. keep the original.
+        }
+
+        if (this.queries.putIfAbsent(query, padded) == null && padding != null) {
+            this.inListQueryCount.incrementAndGet();
+            this.paddedQueries.putIfAbsent(padded, Boolean.TRUE);
+        }
+        return padded;
+    }
+
+    @Override
+    public void transformParameters(ParameterReplacer replacer, TransformInfo transformInfo) {
+        String query = transformInfo.getQuery();
+        ConcurrentMap<Integer, Plan> candidates = query != null ? this.plans.get(query) : null;
+        if (candidates == null) {
+            return;
+        }
+        Map<ParameterKey, ParameterSetOperation> parameters = replacer.getModifiedParameters();
+        Plan plan = candidates.get(parameters.size());
+        if (plan == null) {
+            return;  // already padded, or parameters are not for the original query
+        }
+
+        ParameterSetOperation[] operations = new ParameterSetOperation[plan.parameterCount + 1];
+        for (Map.Entry<ParameterKey, ParameterSetOperation> entry : parameters.entrySet()) {
+            ParameterKey key = entry.getKey();
+            if (!key.isByIndex() || key.getIndex() < 1 || key.getIndex() > plan.parameterCount) {
+                return;
+            }
+            operations[key.getIndex()] = entry.getValue();
+        }
+
+        replacer.clearParameters();
+        int[] sources = plan.sources;
+        for (int i = 0; i < sources.length; i++) {
+            replacer.setParameter(i + 1, operations[sources[i]]);
+        }
+        this.paddedExecutionCount.incrementAndGet();
+    }
+
+    /**
+     * @return padding, or {@code null} when the query has no IN-list of placeholders
+     */
+    private Padding pad(String query) {
+        Matcher matcher = TOKEN_PATTERN.matcher(query);
+        StringBuilder sb = null;
+        int[] sources = new int[16];  // index of the original parameter per padded parameter
+        int paddedCount = 0;
+        int parameterCount = 0;
+        int last = 0;
+        boolean hasInList = false;
+        while (matcher.find()) {
+            if (matcher.group(1) != null) {
+                hasInList = true;
+                int size = 0;
+                for (int i = matcher.end(1); i < matcher.end(); i++) {
+                    if (query.charAt(i) == '?') {
+                        size++;
+                    }
+                }
+                int paddedSize = paddedSize(size);
+                if (paddedCount + paddedSize > sources.length) {
+                    sources = Arrays.copyOf(sources, Math.max(sources.length * 2, paddedCount + paddedSize));
+                }
+                for (int i = 0; i < paddedSize; i++) {
+                    sources[paddedCount++] = parameterCount + Math.min(i + 1, size);  // repeat the last one
+                }
+                parameterCount += size;
+
+                if (paddedSize != size) {
+                    if (sb == null) {
+                        sb = new StringBuilder(query.length() + paddedSize * 3);
+                    }
+                    sb.append(query, last, matcher.start()).append(matcher.group(1)).append('?');
+                    for (int i = 1; i < paddedSize; i++) {
+                        sb.append(", ?");
+                    }
+                    sb.append(')');
+                    last = matcher.end();
+                }
+            } else if (matcher.end() - matcher.start() == 1 && query.charAt(matcher.start()) == '?') {
+                if (paddedCount == sources.length) {
+                    sources = Arrays.copyOf(sources, sources.length * 2);
+                }
+                sources[paddedCount++] = ++parameterCount;
+            }
+        }
+        if (!hasInList) {
+            return null;
+        }
+        if (sb == null) {
+            return new Padding(query, null);  // all lists are already padded
+        }
+        sb.append(query, last, query.length());
+        return new Padding(sb.toString(), new Plan(parameterCount, Arrays.copyOf(sources, paddedCount)));
+    }
+
+    private int paddedSize(int size) {
+        if (size > this.maxListSize) {
+            return size;
+        }
+        int padded = Integer.highestOneBit(size);
+        if (padded < size) {
+            padded <<= 1;
+        }
+        return Math.min(padded, this.maxListSize);
+    }
+
+    public int getMaxListSize() {
+        return this.maxListSize;
+    }
+
+    public int getMaxQueries() {
+        return this.maxQueries;
+    }
+
+    /**
+     * @return num of distinct queries with IN-lists
+     */
+    public int getDistinctQueryCount() {
+        return this.inListQueryCount.get();
+    }
+
+    /**
+     * Compared with {@link #getDistinctQueryCount()}, this shows how many statements are saved by padding.
+     *
+     * @return num of distinct queries with IN-lists after padding
+     */
+    public int getDistinctPaddedQueryCount() {
+        return this.paddedQueries.size();
+    }
+
+    /**
+     * @return num of executions whose parameters are padded
+     */
+    public long getPaddedExecutionCount() {
+        return this.paddedExecutionCount.get();
+    }
+
+    private static class Padding {
+
+        private final String query;
+        private final Plan plan;  // null when the query is not changed
+
+        private Padding(String query, Plan plan) {
+            this.query = query;
+            this.plan = plan;
+        }
+    }
+
+    private static class Plan {
+
+        private final int parameterCount;  // num of parameters in the original query
+        private final int[] sources;  // original parameter index(1 based) per padded parameter
+
+        private Plan(int parameterCount, int[] sources) {
+            this.parameterCount = parameterCount;
+            this.sources = sources;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Plan)) {
+                return false;
+            }
+            Plan that = (Plan) o;
+            return this.parameterCount == that.parameterCount && Arrays.equals(this.sources, that.sources);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.parameterCount + Arrays.hashCode(this.sources);
+        }
+    }
+
+}
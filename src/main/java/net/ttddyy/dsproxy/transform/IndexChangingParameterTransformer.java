@@ -0,0 +1,20 @@
+package net.ttddyy.dsproxy.transform;
+
+/**
+ * Marker for {@link ParameterTransformer} that changes parameter indexes or the number of parameters.
+ *
+ * <p>Parameters set by the application are meant for the original query, so they cannot be passed to the statement
+ * whose query has been transformed. When the configured parameter transformer implements this interface, parameter
+ * set operations on prepared and callable statements are recorded, and bound to the statement after the
+ * transformation at execution or {@code addBatch()}. Therefore, an invalid parameter index is reported at execution
+ * instead of at the {@code set*} call.
+ *
+ * <p>Other parameter transformers keep parameter set operations passed to the statement as they are called.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see InListPaddingTransformer
+ * @since 1.11
+ */
+public interface IndexChangingParameterTransformer extends ParameterTransformer {
+
+}
@@ -3,6 +3,7 @@ package net.ttddyy.dsproxy.transform;
 
 import net.ttddyy.dsproxy.proxy.ParameterKey;
 import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.proxy.PrimitiveParameterSetOperation;
 
 import java.io.InputStream;
 import java.io.Reader;
@@ -10,45 +11,181 @@ import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.*;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
+ * Replaces parameters of a statement in {@link ParameterTransformer}.
+ *
+ * <p>Since 1.11, the replacer works as an overlay on the given parameters; the given map is neither copied nor
+ * modified. Set operations are recorded separately, and {@link #getModifiedParameters()} returns a view of the given
+ * parameters with the recorded operations applied. The view is copied on its first modification.
+ * Primitive values such as {@code setInt} are kept without boxing.
+ *
  * @author Tadaya Tsuyukubo
  * @since 1.2
  */
 public class ParameterReplacer {
 
-    private Map<ParameterKey, ParameterSetOperation> parameters = new LinkedHashMap<ParameterKey, ParameterSetOperation>();
+    private static final Method PS_SET_NULL = getDeclaredMethod(PreparedStatement.class, "setNull", int.class, int.class);
+    private static final Method PS_SET_BOOLEAN = getDeclaredMethod(PreparedStatement.class, "setBoolean", int.class, boolean.class);
+    private static final Method PS_SET_BYTE = getDeclaredMethod(PreparedStatement.class, "setByte", int.class, byte.class);
+    private static final Method PS_SET_SHORT = getDeclaredMethod(PreparedStatement.class, "setShort", int.class, short.class);
+    private static final Method PS_SET_INT = getDeclaredMethod(PreparedStatement.class, "setInt", int.class, int.class);
+    private static final Method PS_SET_LONG = getDeclaredMethod(PreparedStatement.class, "setLong", int.class, long.class);
+    private static final Method PS_SET_FLOAT = getDeclaredMethod(PreparedStatement.class, "setFloat", int.class, float.class);
+    private static final Method PS_SET_DOUBLE = getDeclaredMethod(PreparedStatement.class, "setDouble", int.class, double.class);
+    private static final Method PS_SET_BIG_DECIMAL = getDeclaredMethod(PreparedStatement.class, "setBigDecimal", int.class, BigDecimal.class);
+    private static final Method PS_SET_STRING = getDeclaredMethod(PreparedStatement.class, "setString", int.class, String.class);
+    private static final Method PS_SET_BYTES = getDeclaredMethod(PreparedStatement.class, "setBytes", int.class, byte[].class);
+    private static final Method PS_SET_DATE = getDeclaredMethod(PreparedStatement.class, "setDate", int.class, Date.class);
+    private static final Method PS_SET_TIME = getDeclaredMethod(PreparedStatement.class, "setTime", int.class, Time.class);
+    private static final Method PS_SET_TIMESTAMP = getDeclaredMethod(PreparedStatement.class, "setTimestamp", int.class, Timestamp.class);
+    private static final Method PS_SET_ASCII_STREAM_INT = getDeclaredMethod(PreparedStatement.class, "setAsciiStream", int.class, InputStream.class, int.class);
+    private static final Method PS_SET_UNICODE_STREAM = getDeclaredMethod(PreparedStatement.class, "setUnicodeStream", int.class, InputStream.class, int.class);
+    private static final Method PS_SET_BINARY_STREAM_INT = getDeclaredMethod(PreparedStatement.class, "setBinaryStream", int.class, InputStream.class, int.class);
+    private static final Method PS_SET_OBJECT_INT = getDeclaredMethod(PreparedStatement.class, "setObject", int.class, Object.class, int.class);
+    private static final Method PS_SET_OBJECT = getDeclaredMethod(PreparedStatement.class, "setObject", int.class, Object.class);
+    private static final Method PS_SET_CHARACTER_STREAM_INT = getDeclaredMethod(PreparedStatement.class, "setCharacterStream", int.class, Reader.class, int.class);
+    private static final Method PS_SET_REF = getDeclaredMethod(PreparedStatement.class, "setRef", int.class, Ref.class);
+    private static final Method PS_SET_BLOB_BLOB = getDeclaredMethod(PreparedStatement.class, "setBlob", int.class, Blob.class);
+    private static final Method PS_SET_CLOB_CLOB = getDeclaredMethod(PreparedStatement.class, "setClob", int.class, Clob.class);
+    private static final Method PS_SET_ARRAY = getDeclaredMethod(PreparedStatement.class, "setArray", int.class, Array.class);
+    private static final Method PS_SET_DATE_CALENDAR = getDeclaredMethod(PreparedStatement.class, "setDate", int.class, Date.class, Calendar.class);
+    private static final Method PS_SET_TIME_CALENDAR = getDeclaredMethod(PreparedStatement.class, "setTime", int.class, Time.class, Calendar.class);
+    private static final Method PS_SET_TIMESTAMP_CALENDAR = getDeclaredMethod(PreparedStatement.class, "setTimestamp", int.class, Timestamp.class, Calendar.class);
+    private static final Method PS_SET_NULL_STRING = getDeclaredMethod(PreparedStatement.class, "setNull", int.class, int.class, String.class);
+    private static final Method PS_SET_URL = getDeclaredMethod(PreparedStatement.class, "setURL", int.class, URL.class);
+    private static final Method PS_SET_ROW_ID = getDeclaredMethod(PreparedStatement.class, "setRowId", int.class, RowId.class);
+    private static final Method PS_SET_NSTRING = getDeclaredMethod(PreparedStatement.class, "setNString", int.class, String.class);
+    private static final Method PS_SET_NCHARACTER_STREAM_LONG = getDeclaredMethod(PreparedStatement.class, "setNCharacterStream", int.class, Reader.class, long.class);
+    private static final Method PS_SET_NCLOB_NCLOB = getDeclaredMethod(PreparedStatement.class, "setNClob", int.class, NClob.class);
+    private static final Method PS_SET_CLOB_READER_LONG = getDeclaredMethod(PreparedStatement.class, "setClob", int.class, Reader.class, long.class);
+    private static final Method PS_SET_BLOB_INPUT_STREAM_LONG = getDeclaredMethod(PreparedStatement.class, "setBlob", int.class, InputStream.class, long.class);
+    private static final Method PS_SET_NCLOB_READER_LONG = getDeclaredMethod(PreparedStatement.class, "setNClob", int.class, Reader.class, long.class);
+    private static final Method PS_SET_SQLXML = getDeclaredMethod(PreparedStatement.class, "setSQLXML", int.class, SQLXML.class);
+    private static final Method PS_SET_OBJECT_INT_INT = getDeclaredMethod(PreparedStatement.class, "setObject", int.class, Object.class, int.class, int.class);
+    private static final Method PS_SET_ASCII_STREAM_LONG = getDeclaredMethod(PreparedStatement.class, "setAsciiStream", int.class, InputStream.class, long.class);
+    private static final Method PS_SET_BINARY_STREAM_LONG = getDeclaredMethod(PreparedStatement.class, "setBinaryStream", int.class, InputStream.class, long.class);
+    private static final Method PS_SET_CHARACTER_STREAM_LONG = getDeclaredMethod(PreparedStatement.class, "setCharacterStream", int.class, Reader.class, long.class);
+    private static final Method PS_SET_ASCII_STREAM = getDeclaredMethod(PreparedStatement.class, "setAsciiStream", int.class, InputStream.class);
+    private static final Method PS_SET_BINARY_STREAM = getDeclaredMethod(PreparedStatement.class, "setBinaryStream", int.class, InputStream.class);
+    private static final Method PS_SET_CHARACTER_STREAM = getDeclaredMethod(PreparedStatement.class, "setCharacterStream", int.class, Reader.class);
+    private static final Method PS_SET_NCHARACTER_STREAM = getDeclaredMethod(PreparedStatement.class, "setNCharacterStream", int.class, Reader.class);
+    private static final Method PS_SET_CLOB_READER = getDeclaredMethod(PreparedStatement.class, "setClob", int.class, Reader.class);
+    private static final Method PS_SET_BLOB_INPUT_STREAM = getDeclaredMethod(PreparedStatement.class, "setBlob", int.class, InputStream.class);
+    private static final Method PS_SET_NCLOB_READER = getDeclaredMethod(PreparedStatement.class, "setNClob", int.class, Reader.class);
+    private static final Method CS_SET_NULL = getDeclaredMethod(CallableStatement.class, "setNull", String.class, int.class);
+    private static final Method CS_SET_BOOLEAN = getDeclaredMethod(CallableStatement.class, "setBoolean", String.class, boolean.class);
+    private static final Method CS_SET_BYTE = getDeclaredMethod(CallableStatement.class, "setByte", String.class, byte.class);
+    private static final Method CS_SET_SHORT = getDeclaredMethod(CallableStatement.class, "setShort", String.class, short.class);
+    private static final Method CS_SET_INT = getDeclaredMethod(CallableStatement.class, "setInt", String.class, int.class);
+    private static final Method CS_SET_LONG = getDeclaredMethod(CallableStatement.class, "setLong", String.class, long.class);
+    private static final Method CS_SET_FLOAT = getDeclaredMethod(CallableStatement.class, "setFloat", String.class, float.class);
+    private static final Method CS_SET_DOUBLE = getDeclaredMethod(CallableStatement.class, "setDouble", String.class, double.class);
+    private static final Method CS_SET_BIG_DECIMAL = getDeclaredMethod(CallableStatement.class, "setBigDecimal", String.class, BigDecimal.class);
+    private static final Method CS_SET_STRING = getDeclaredMethod(CallableStatement.class, "setString", String.class, String.class);
+    private static final Method CS_SET_BYTES = getDeclaredMethod(CallableStatement.class, "setBytes", String.class, byte[].class);
+    private static final Method CS_SET_DATE = getDeclaredMethod(CallableStatement.class, "setDate", String.class, Date.class);
+    private static final Method CS_SET_TIME = getDeclaredMethod(CallableStatement.class, "setTime", String.class, Time.class);
+    private static final Method CS_SET_TIMESTAMP = getDeclaredMethod(CallableStatement.class, "setTimestamp", String.class, Timestamp.class);
+    private static final Method CS_SET_ASCII_STREAM_INT = getDeclaredMethod(CallableStatement.class, "setAsciiStream", String.class, InputStream.class, int.class);
+    private static final Method CS_SET_BINARY_STREAM_INT = getDeclaredMethod(CallableStatement.class, "setBinaryStream", String.class, InputStream.class, int.class);
+    private static final Method CS_SET_OBJECT_INT_INT = getDeclaredMethod(CallableStatement.class, "setObject", String.class, Object.class, int.class, int.class);
+    private static final Method CS_SET_OBJECT_INT = getDeclaredMethod(CallableStatement.class, "setObject", String.class, Object.class, int.class);
+    private static final Method CS_SET_OBJECT = getDeclaredMethod(CallableStatement.class, "setObject", String.class, Object.class);
+    private static final Method CS_SET_CHARACTER_STREAM_INT = getDeclaredMethod(CallableStatement.class, "setCharacterStream", String.class, Reader.class, int.class);
+    private static final Method CS_SET_DATE_CALENDAR = getDeclaredMethod(CallableStatement.class, "setDate", String.class, Date.class, Calendar.class);
+    private static final Method CS_SET_TIME_CALENDAR = getDeclaredMethod(CallableStatement.class, "setTime", String.class, Time.class, Calendar.class);
+    private static final Method CS_SET_TIMESTAMP_CALENDAR = getDeclaredMethod(CallableStatement.class, "setTimestamp", String.class, Timestamp.class, Calendar.class);
+    private static final Method CS_SET_NULL_STRING = getDeclaredMethod(CallableStatement.class, "setNull", String.class, int.class, String.class);
+    private static final Method CS_SET_ROW_ID = getDeclaredMethod(CallableStatement.class, "setRowId", String.class, RowId.class);
+    private static final Method CS_SET_NSTRING = getDeclaredMethod(CallableStatement.class, "setNString", String.class, String.class);
+    private static final Method CS_SET_NCHARACTER_STREAM_LONG = getDeclaredMethod(CallableStatement.class, "setNCharacterStream", String.class, Reader.class, long.class);
+    private static final Method CS_SET_NCLOB_NCLOB = getDeclaredMethod(CallableStatement.class, "setNClob", String.class, NClob.class);
+    private static final Method CS_SET_CLOB_READER_LONG = getDeclaredMethod(CallableStatement.class, "setClob", String.class, Reader.class, long.class);
+    private static final Method CS_SET_BLOB_INPUT_STREAM_LONG = getDeclaredMethod(CallableStatement.class, "setBlob", String.class, InputStream.class, long.class);
+    private static final Method CS_SET_NCLOB_READER_LONG = getDeclaredMethod(CallableStatement.class, "setNClob", String.class, Reader.class, long.class);
+    private static final Method CS_SET_SQLXML = getDeclaredMethod(CallableStatement.class, "setSQLXML", String.class, SQLXML.class);
+    private static final Method CS_SET_BLOB_BLOB = getDeclaredMethod(CallableStatement.class, "setBlob", String.class, Blob.class);
+    private static final Method CS_SET_CLOB_CLOB = getDeclaredMethod(CallableStatement.class, "setClob", String.class, Clob.class);
+    private static final Method CS_SET_ASCII_STREAM_LONG = getDeclaredMethod(CallableStatement.class, "setAsciiStream", String.class, InputStream.class, long.class);
+    private static final Method CS_SET_BINARY_STREAM_LONG = getDeclaredMethod(CallableStatement.class, "setBinaryStream", String.class, InputStream.class, long.class);
+    private static final Method CS_SET_CHARACTER_STREAM_LONG = getDeclaredMethod(CallableStatement.class, "setCharacterStream", String.class, Reader.class, long.class);
+    private static final Method CS_SET_ASCII_STREAM = getDeclaredMethod(CallableStatement.class, "setAsciiStream", String.class, InputStream.class);
+    private static final Method CS_SET_BINARY_STREAM = getDeclaredMethod(CallableStatement.class, "setBinaryStream", String.class, InputStream.class);
+    private static final Method CS_SET_CHARACTER_STREAM = getDeclaredMethod(CallableStatement.class, "setCharacterStream", String.class, Reader.class);
+    private static final Method CS_SET_NCHARACTER_STREAM = getDeclaredMethod(CallableStatement.class, "setNCharacterStream", String.class, Reader.class);
+    private static final Method CS_SET_CLOB_READER = getDeclaredMethod(CallableStatement.class, "setClob", String.class, Reader.class);
+    private static final Method CS_SET_BLOB_INPUT_STREAM = getDeclaredMethod(CallableStatement.class, "setBlob", String.class, InputStream.class);
+    private static final Method CS_SET_NCLOB_READER = getDeclaredMethod(CallableStatement.class, "setNClob", String.class, Reader.class);
+    private static final Method CS_REGISTER_OUT_PARAMETER_BY_INDEX = getDeclaredMethod(CallableStatement.class, "registerOutParameter", int.class, int.class);
+    private static final Method CS_REGISTER_OUT_PARAMETER_BY_INDEX_INT = getDeclaredMethod(CallableStatement.class, "registerOutParameter", int.class, int.class, int.class);
+    private static final Method CS_REGISTER_OUT_PARAMETER_BY_INDEX_STRING = getDeclaredMethod(CallableStatement.class, "registerOutParameter", int.class, int.class, String.class);
+    private static final Method CS_REGISTER_OUT_PARAMETER = getDeclaredMethod(CallableStatement.class, "registerOutParameter", String.class, int.class);
+    private static final Method CS_REGISTER_OUT_PARAMETER_INT = getDeclaredMethod(CallableStatement.class, "registerOutParameter", String.class, int.class, int.class);
+    private static final Method CS_REGISTER_OUT_PARAMETER_STRING = getDeclaredMethod(CallableStatement.class, "registerOutParameter", String.class, int.class, String.class);
+
+    private final Map<ParameterKey, ParameterSetOperation> parameters;  // not modified
+    private Map<ParameterKey, ParameterSetOperation> modifiedParameters;  // created when a parameter is set
+    private int addedCount;  // num of keys in modifiedParameters that are not in parameters
+    private Map<ParameterKey, ParameterSetOperation> materialized;  // copy made when the view is modified
+    private OverlayMap view;
+    private boolean cleared = false;
     private boolean modified = false;
 
     public ParameterReplacer() {
+        this(Collections.<ParameterKey, ParameterSetOperation>emptyMap());
     }
 
     public ParameterReplacer(Map<ParameterKey, ParameterSetOperation> parameters) {
-        // make a copy
-        this.parameters.putAll(parameters);
+        this.parameters = parameters;
     }
 
     @SuppressWarnings("unchecked")
     public <T> T getValue(int index) {
         ParameterKey parameterKey = new ParameterKey(index);
-        return (T) this.parameters.get(parameterKey).getArgs()[1];  // index 1 in arguments is always value
+        return (T) getOperation(parameterKey).getArgs()[1];  // index 1 in arguments is always value
     }
 
     @SuppressWarnings("unchecked")
     public <T> T getValue(String paramName) {
         ParameterKey parameterKey = new ParameterKey(paramName);
-        return (T) this.parameters.get(parameterKey).getArgs()[1];  // index 1 in arguments is always value
+        return (T) getOperation(parameterKey).getArgs()[1];  // index 1 in arguments is always value
+    }
+
+    private ParameterSetOperation getOperation(ParameterKey parameterKey) {
+        if (this.materialized != null) {
+            return this.materialized.get(parameterKey);
+        }
+        ParameterSetOperation operation = this.modifiedParameters != null ? this.modifiedParameters.get(parameterKey) : null;
+        if (operation == null && !this.cleared) {
+            operation = this.parameters.get(parameterKey);
+        }
+        return operation;
     }
 
     public void clearParameters() {
-        this.parameters.clear();
+        if (this.materialized != null) {
+            this.materialized.clear();
+        } else {
+            if (this.modifiedParameters != null) {
+                this.modifiedParameters.clear();
+            }
+            this.addedCount = 0;
+            this.cleared = true;
+        }
         modified = true;
     }
 
-    private Method getDeclaredMethod(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
+    private static Method getDeclaredMethod(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
         try {
             return clazz.getDeclaredMethod(methodName, parameterTypes);
         } catch (NoSuchMethodException e) {
@@ -57,14 +194,24 @@ public class ParameterReplacer {
     }
 
     private void record(int parameterIndex, Method paramMethod, Object... args) {
-        ParameterKey parameterKey = new ParameterKey(parameterIndex);
-        this.parameters.put(parameterKey, new ParameterSetOperation(paramMethod, args));
-        modified = true;
+        put(new ParameterKey(parameterIndex), new ParameterSetOperation(paramMethod, args));
     }
 
     private void recordByName(String parameterName, Method paramMethod, Object... args) {
-        ParameterKey parameterKey = new ParameterKey(parameterName);
-        this.parameters.put(parameterKey, new ParameterSetOperation(paramMethod, args));
+        put(new ParameterKey(parameterName), new ParameterSetOperation(paramMethod, args));
+    }
+
+    private void put(ParameterKey parameterKey, ParameterSetOperation operation) {
+        if (this.materialized != null) {
+            this.materialized.put(parameterKey, operation);
+        } else {
+            if (this.modifiedParameters == null) {
+                this.modifiedParameters = new LinkedHashMap<ParameterKey, ParameterSetOperation>();
+            }
+            if (this.modifiedParameters.put(parameterKey, operation) == null && !isOriginal(parameterKey)) {
+                this.addedCount++;
+            }
+        }
         modified = true;
     }
 
@@ -72,414 +219,611 @@ public class ParameterReplacer {
         return modified;
     }
 
+    private boolean isOriginal(ParameterKey parameterKey) {
+        return !this.cleared && this.parameters.containsKey(parameterKey);
+    }
+
+    /**
+     * Copy the current parameters when the map returned by {@link #getModifiedParameters()} is modified.
+     * Afterwards, all operations go to the copy.
+     */
+    private Map<ParameterKey, ParameterSetOperation> materialize() {
+        if (this.materialized == null) {
+            Map<ParameterKey, ParameterSetOperation> copy = new LinkedHashMap<ParameterKey, ParameterSetOperation>();
+            Iterator<Map.Entry<ParameterKey, ParameterSetOperation>> iterator = new OverlayIterator();
+            while (iterator.hasNext()) {
+                Map.Entry<ParameterKey, ParameterSetOperation> entry = iterator.next();
+                copy.put(entry.getKey(), entry.getValue());
+            }
+            this.materialized = copy;
+        }
+        modified = true;
+        return this.materialized;
+    }
+
+    /**
+     * Returns the parameters with modifications.
+     *
+     * The returned map is a view that has the given parameters(unless cleared) followed by added ones. The view
+     * reflects later modifications and changes to the given parameters; copy it to keep a snapshot.
+     * The view can be modified. The first modification copies the parameters, so the given map is never modified.
+     *
+     * @return parameters
+     */
     public Map<ParameterKey, ParameterSetOperation> getModifiedParameters() {
-        return this.parameters;
+        if (this.view == null) {
+            this.view = new OverlayMap();
+        }
+        return this.view;
+    }
+
+    /**
+     * View of the given parameters overlaid with the modified parameters.
+     */
+    private class OverlayMap extends AbstractMap<ParameterKey, ParameterSetOperation> {
+
+        private final Set<Map.Entry<ParameterKey, ParameterSetOperation>> entrySet = new AbstractSet<Map.Entry<ParameterKey, ParameterSetOperation>>() {
+            @Override
+            public Iterator<Map.Entry<ParameterKey, ParameterSetOperation>> iterator() {
+                if (materialized != null) {
+                    return materialized.entrySet().iterator();
+                }
+                return new OverlayIterator();
+            }
+
+            @Override
+            public int size() {
+                return OverlayMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                OverlayMap.this.clear();
+            }
+        };
+
+        @Override
+        public Set<Map.Entry<ParameterKey, ParameterSetOperation>> entrySet() {
+            return this.entrySet;
+        }
+
+        @Override
+        public int size() {
+            if (materialized != null) {
+                return materialized.size();
+            }
+            return (cleared ? 0 : parameters.size()) + addedCount;
+        }
+
+        @Override
+        public ParameterSetOperation get(Object key) {
+            return key instanceof ParameterKey ? getOperation((ParameterKey) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public ParameterSetOperation put(ParameterKey key, ParameterSetOperation value) {
+            return materialize().put(key, value);
+        }
+
+        @Override
+        public ParameterSetOperation remove(Object key) {
+            return materialize().remove(key);
+        }
+
+        @Override
+        public void clear() {
+            materialize().clear();
+        }
+    }
+
+    /**
+     * Iterate the given parameters with modified values, then the added parameters.
+     */
+    private class OverlayIterator implements Iterator<Map.Entry<ParameterKey, ParameterSetOperation>> {
+
+        private final Iterator<Map.Entry<ParameterKey, ParameterSetOperation>> originals = cleared ?
+                Collections.<ParameterKey, ParameterSetOperation>emptyMap().entrySet().iterator() : parameters.entrySet().iterator();
+        private final Map<ParameterKey, ParameterSetOperation> modifications = modifiedParameters != null ?
+                modifiedParameters : Collections.<ParameterKey, ParameterSetOperation>emptyMap();
+        private final Iterator<Map.Entry<ParameterKey, ParameterSetOperation>> modificationIterator = this.modifications.entrySet().iterator();
+        private final boolean originalsCleared = cleared;
+        private Map.Entry<ParameterKey, ParameterSetOperation> next;
+        private ParameterKey lastKey;
+
+        @Override
+        public boolean hasNext() {
+            if (this.next != null) {
+                return true;
+            }
+            if (this.originals.hasNext()) {
+                Map.Entry<ParameterKey, ParameterSetOperation> original = this.originals.next();
+                ParameterSetOperation modifiedOperation = this.modifications.get(original.getKey());
+                this.next = new OverlayEntry(original.getKey(), modifiedOperation != null ? modifiedOperation : original.getValue());
+                return true;
+            }
+            while (this.modificationIterator.hasNext()) {
+                Map.Entry<ParameterKey, ParameterSetOperation> modification = this.modificationIterator.next();
+                if (this.originalsCleared || !parameters.containsKey(modification.getKey())) {
+                    this.next = new OverlayEntry(modification.getKey(), modification.getValue());
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Map.Entry<ParameterKey, ParameterSetOperation> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<ParameterKey, ParameterSetOperation> result = this.next;
+            this.next = null;
+            this.lastKey = result.getKey();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            if (this.lastKey == null) {
+                throw new IllegalStateException();
+            }
+            materialize().remove(this.lastKey);
+            this.lastKey = null;
+        }
+    }
+
+    /**
+     * Entry of {@link OverlayMap}. Setting a value modifies the view, not the given parameters.
+     */
+    private class OverlayEntry extends AbstractMap.SimpleEntry<ParameterKey, ParameterSetOperation> {
+
+        private OverlayEntry(ParameterKey key, ParameterSetOperation value) {
+            super(key, value);
+        }
+
+        @Override
+        public ParameterSetOperation setValue(ParameterSetOperation value) {
+            materialize().put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * Set the parameter with the same set operation as the given one, but for the given index.
+     *
+     * @param parameterIndex parameter index to set
+     * @param operation      operation of a parameter set by index
+     * @since 1.11
+     */
+    public void setParameter(int parameterIndex, ParameterSetOperation operation) {
+        Object[] args = operation.getArgs().clone();
+        args[0] = parameterIndex;  // index 0 in arguments is always index
+        record(parameterIndex, operation.getMethod(), args);
     }
 
 
     //////  Parameter set operations for PreparedStatement
 
     public void setNull(int parameterIndex, int sqlType) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setNull", int.class, int.class), parameterIndex, sqlType);
+        record(parameterIndex, PS_SET_NULL, parameterIndex, sqlType);
     }
 
     public void setBoolean(int parameterIndex, boolean x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setBoolean", int.class, boolean.class), parameterIndex, x);
+        ParameterKey parameterKey = new ParameterKey(parameterIndex);
+        put(parameterKey, PrimitiveParameterSetOperation.ofBoolean(PS_SET_BOOLEAN, parameterKey, x));
     }
 
     public void setByte(int parameterIndex, byte x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setByte", int.class, byte.class), parameterIndex, x);
+        ParameterKey parameterKey = new ParameterKey(parameterIndex);
+        put(parameterKey, PrimitiveParameterSetOperation.ofByte(PS_SET_BYTE, parameterKey, x));
     }
 
     public void setShort(int parameterIndex, short x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setShort", int.class, short.class), parameterIndex, x);
+        ParameterKey parameterKey = new ParameterKey(parameterIndex);
+        put(parameterKey, PrimitiveParameterSetOperation.ofShort(PS_SET_SHORT, parameterKey, x));
     }
 
     public void setInt(int parameterIndex, int x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setInt", int.class, int.class), parameterIndex, x);
+        ParameterKey parameterKey = new ParameterKey(parameterIndex);
+        put(parameterKey, PrimitiveParameterSetOperation.ofInt(PS_SET_INT, parameterKey, x));
     }
 
     public void setLong(int parameterIndex, long x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setLong", int.class, long.class), parameterIndex, x);
+        ParameterKey parameterKey = new ParameterKey(parameterIndex);
+        put(parameterKey, PrimitiveParameterSetOperation.ofLong(PS_SET_LONG, parameterKey, x));
     }
 
     public void setFloat(int parameterIndex, float x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setFloat", int.class, float.class), parameterIndex, x);
+        ParameterKey parameterKey = new ParameterKey(parameterIndex);
+        put(parameterKey, PrimitiveParameterSetOperation.ofFloat(PS_SET_FLOAT, parameterKey, x));
     }
 
     public void setDouble(int parameterIndex, double x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setDouble", int.class, double.class), parameterIndex, x);
+        ParameterKey parameterKey = new ParameterKey(parameterIndex);
+        put(parameterKey, PrimitiveParameterSetOperation.ofDouble(PS_SET_DOUBLE, parameterKey, x));
     }
 
     public void setBigDecimal(int parameterIndex, BigDecimal x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setBigDecimal", int.class, BigDecimal.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_BIG_DECIMAL, parameterIndex, x);
     }
 
     public void setString(int parameterIndex, String x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setString", int.class, String.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_STRING, parameterIndex, x);
     }
 
     public void setBytes(int parameterIndex, byte x[]) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setBytes", int.class, byte[].class), parameterIndex, x);
+        record(parameterIndex, PS_SET_BYTES, parameterIndex, x);
     }
 
     public void setDate(int parameterIndex, java.sql.Date x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setDate", int.class, Date.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_DATE, parameterIndex, x);
     }
 
     public void setTime(int parameterIndex, java.sql.Time x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setTime", int.class, Time.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_TIME, parameterIndex, x);
     }
 
     public void setTimestamp(int parameterIndex, java.sql.Timestamp x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setTimestamp", int.class, Timestamp.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_TIMESTAMP, parameterIndex, x);
     }
 
     public void setAsciiStream(int parameterIndex, java.io.InputStream x, int length) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setAsciiStream", int.class, InputStream.class, int.class), parameterIndex, x, length);
+        record(parameterIndex, PS_SET_ASCII_STREAM_INT, parameterIndex, x, length);
     }
 
     public void setUnicodeStream(int parameterIndex, java.io.InputStream x, int length) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setUnicodeStream", int.class, InputStream.class, int.class), parameterIndex, x, length);
+        record(parameterIndex, PS_SET_UNICODE_STREAM, parameterIndex, x, length);
     }
 
     public void setBinaryStream(int parameterIndex, java.io.InputStream x, int length) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setBinaryStream", int.class, InputStream.class, int.class), parameterIndex, x, length);
+        record(parameterIndex, PS_SET_BINARY_STREAM_INT, parameterIndex, x, length);
     }
 
     public void setObject(int parameterIndex, Object x, int targetSqlType) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setObject", int.class, Object.class, int.class, int.class), parameterIndex, x, targetSqlType);
+        record(parameterIndex, PS_SET_OBJECT_INT, parameterIndex, x, targetSqlType);
     }
 
     public void setObject(int parameterIndex, Object x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setObject", int.class, Object.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_OBJECT, parameterIndex, x);
     }
 
     //--------------------------JDBC 2.0-----------------------------
     public void setCharacterStream(int parameterIndex, java.io.Reader reader, int length) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setCharacterStream", int.class, Reader.class, int.class), parameterIndex, reader, length);
+        record(parameterIndex, PS_SET_CHARACTER_STREAM_INT, parameterIndex, reader, length);
     }
 
     public void setRef(int parameterIndex, Ref x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setRef", int.class, Ref.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_REF, parameterIndex, x);
     }
 
     public void setBlob(int parameterIndex, Blob x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setBlob", int.class, Blob.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_BLOB_BLOB, parameterIndex, x);
     }
 
     public void setClob(int parameterIndex, Clob x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setClob", int.class, Clob.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_CLOB_CLOB, parameterIndex, x);
     }
 
     public void setArray(int parameterIndex, Array x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setArray", int.class, Array.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_ARRAY, parameterIndex, x);
     }
 
     public void setDate(int parameterIndex, java.sql.Date x, Calendar cal) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setDate", int.class, Date.class, Calendar.class), parameterIndex, x, cal);
+        record(parameterIndex, PS_SET_DATE_CALENDAR, parameterIndex, x, cal);
     }
 
     public void setTime(int parameterIndex, java.sql.Time x, Calendar cal) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setTime", int.class, Time.class, Calendar.class), parameterIndex, x, cal);
+        record(parameterIndex, PS_SET_TIME_CALENDAR, parameterIndex, x, cal);
     }
 
     public void setTimestamp(int parameterIndex, java.sql.Timestamp x, Calendar cal) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setTimestamp", int.class, Timestamp.class, Calendar.class), parameterIndex, x, cal);
+        record(parameterIndex, PS_SET_TIMESTAMP_CALENDAR, parameterIndex, x, cal);
     }
 
     public void setNull(int parameterIndex, int sqlType, String typeName) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setNull", int.class, int.class, String.class), parameterIndex, sqlType, typeName);
+        record(parameterIndex, PS_SET_NULL_STRING, parameterIndex, sqlType, typeName);
     }
 
     //------------------------- JDBC 3.0 -----------------------------------
     public void setURL(int parameterIndex, java.net.URL x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setURL", int.class, URL.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_URL, parameterIndex, x);
     }
 
     public void setRowId(int parameterIndex, RowId x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setRowId", int.class, RowId.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_ROW_ID, parameterIndex, x);
     }
 
     public void setNString(int parameterIndex, String value) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setNString", int.class, String.class), parameterIndex, value);
+        record(parameterIndex, PS_SET_NSTRING, parameterIndex, value);
     }
 
     public void setNCharacterStream(int parameterIndex, Reader value, long length) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setNCharacterStream", int.class, Reader.class, long.class), parameterIndex, value, length);
+        record(parameterIndex, PS_SET_NCHARACTER_STREAM_LONG, parameterIndex, value, length);
     }
 
     public void setNClob(int parameterIndex, NClob value) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setNClob", int.class, NClob.class), parameterIndex, value);
+        record(parameterIndex, PS_SET_NCLOB_NCLOB, parameterIndex, value);
     }
 
     public void setClob(int parameterIndex, Reader reader, long length) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setClob", int.class, Reader.class, long.class), parameterIndex, reader, length);
+        record(parameterIndex, PS_SET_CLOB_READER_LONG, parameterIndex, reader, length);
     }
 
     public void setBlob(int parameterIndex, InputStream inputStream, long length) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setBlob", int.class, InputStream.class, long.class), parameterIndex, inputStream, length);
+        record(parameterIndex, PS_SET_BLOB_INPUT_STREAM_LONG, parameterIndex, inputStream, length);
     }
 
     public void setNClob(int parameterIndex, Reader reader, long length) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setNClob", int.class, Reader.class, long.class), parameterIndex, reader, length);
+        record(parameterIndex, PS_SET_NCLOB_READER_LONG, parameterIndex, reader, length);
     }
 
     public void setSQLXML(int parameterIndex, SQLXML xmlObject) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setSQLXML", int.class, SQLXML.class), parameterIndex, xmlObject);
+        record(parameterIndex, PS_SET_SQLXML, parameterIndex, xmlObject);
     }
 
     public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setObject", int.class, Object.class, int.class, int.class), parameterIndex, x, targetSqlType, scaleOrLength);
+        record(parameterIndex, PS_SET_OBJECT_INT_INT, parameterIndex, x, targetSqlType, scaleOrLength);
     }
 
     public void setAsciiStream(int parameterIndex, java.io.InputStream x, long length) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setAsciiStream", int.class, InputStream.class, long.class), parameterIndex, x, length);
+        record(parameterIndex, PS_SET_ASCII_STREAM_LONG, parameterIndex, x, length);
     }
 
     public void setBinaryStream(int parameterIndex, java.io.InputStream x, long length) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setBinaryStream", int.class, InputStream.class, long.class), parameterIndex, x, length);
+        record(parameterIndex, PS_SET_BINARY_STREAM_LONG, parameterIndex, x, length);
     }
 
     public void setCharacterStream(int parameterIndex, java.io.Reader reader, long length) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setCharacterStream", int.class, Reader.class, long.class), parameterIndex, reader, length);
+        record(parameterIndex, PS_SET_CHARACTER_STREAM_LONG, parameterIndex, reader, length);
     }
 
     public void setAsciiStream(int parameterIndex, java.io.InputStream x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setAsciiStream", int.class, InputStream.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_ASCII_STREAM, parameterIndex, x);
     }
 
     public void setBinaryStream(int parameterIndex, java.io.InputStream x) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setBinaryStream", int.class, InputStream.class), parameterIndex, x);
+        record(parameterIndex, PS_SET_BINARY_STREAM, parameterIndex, x);
     }
 
     public void setCharacterStream(int parameterIndex, java.io.Reader reader) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setCharacterStream", int.class, Reader.class), parameterIndex, reader);
+        record(parameterIndex, PS_SET_CHARACTER_STREAM, parameterIndex, reader);
     }
 
     public void setNCharacterStream(int parameterIndex, Reader value) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setNCharacterStream", int.class, Reader.class), parameterIndex, value);
+        record(parameterIndex, PS_SET_NCHARACTER_STREAM, parameterIndex, value);
     }
 
     public void setClob(int parameterIndex, Reader reader) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setClob", int.class, Reader.class), parameterIndex, reader);
+        record(parameterIndex, PS_SET_CLOB_READER, parameterIndex, reader);
     }
 
     public void setBlob(int parameterIndex, InputStream inputStream) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setBlob", int.class, InputStream.class), parameterIndex, inputStream);
+        record(parameterIndex, PS_SET_BLOB_INPUT_STREAM, parameterIndex, inputStream);
     }
 
     public void setNClob(int parameterIndex, Reader reader) {
-        record(parameterIndex, getDeclaredMethod(PreparedStatement.class, "setNClob", int.class, Reader.class), parameterIndex, reader);
+        record(parameterIndex, PS_SET_NCLOB_READER, parameterIndex, reader);
     }
 
 
     //////  Parameter set operations for CallableStatement
 
     public void setNull(String parameterName, int sqlType) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setNull", String.class, int.class), parameterName, sqlType);
+        recordByName(parameterName, CS_SET_NULL, parameterName, sqlType);
     }
 
     public void setBoolean(String parameterName, boolean x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setBoolean", String.class, boolean.class), parameterName, x);
+        ParameterKey parameterKey = new ParameterKey(parameterName);
+        put(parameterKey, PrimitiveParameterSetOperation.ofBoolean(CS_SET_BOOLEAN, parameterKey, x));
     }
 
     public void setByte(String parameterName, byte x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setByte", String.class, byte.class), parameterName, x);
+        ParameterKey parameterKey = new ParameterKey(parameterName);
+        put(parameterKey, PrimitiveParameterSetOperation.ofByte(CS_SET_BYTE, parameterKey, x));
     }
 
     public void setShort(String parameterName, short x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setShort", String.class, short.class), parameterName, x);
+        ParameterKey parameterKey = new ParameterKey(parameterName);
+        put(parameterKey, PrimitiveParameterSetOperation.ofShort(CS_SET_SHORT, parameterKey, x));
     }
 
     public void setInt(String parameterName, int x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setInt", String.class, int.class), parameterName, x);
+        ParameterKey parameterKey = new ParameterKey(parameterName);
+        put(parameterKey, PrimitiveParameterSetOperation.ofInt(CS_SET_INT, parameterKey, x));
     }
 
     public void setLong(String parameterName, long x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setLong", String.class, long.class), parameterName, x);
+        ParameterKey parameterKey = new ParameterKey(parameterName);
+        put(parameterKey, PrimitiveParameterSetOperation.ofLong(CS_SET_LONG, parameterKey, x));
     }
 
     public void setFloat(String parameterName, float x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setFloat", String.class, float.class), parameterName, x);
+        ParameterKey parameterKey = new ParameterKey(parameterName);
+        put(parameterKey, PrimitiveParameterSetOperation.ofFloat(CS_SET_FLOAT, parameterKey, x));
     }
 
     public void setDouble(String parameterName, double x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setDouble", String.class, double.class), parameterName, x);
+        ParameterKey parameterKey = new ParameterKey(parameterName);
+        put(parameterKey, PrimitiveParameterSetOperation.ofDouble(CS_SET_DOUBLE, parameterKey, x));
     }
 
     public void setBigDecimal(String parameterName, BigDecimal x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setBigDecimal", String.class, BigDecimal.class), parameterName, x);
+        recordByName(parameterName, CS_SET_BIG_DECIMAL, parameterName, x);
     }
 
     public void setString(String parameterName, String x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setString", String.class, String.class), parameterName, x);
+        recordByName(parameterName, CS_SET_STRING, parameterName, x);
     }
 
     public void setBytes(String parameterName, byte x[]) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setBytes", String.class, byte[].class), parameterName, x);
+        recordByName(parameterName, CS_SET_BYTES, parameterName, x);
     }
 
     public void setDate(String parameterName, Date x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setDate", String.class, Date.class), parameterName, x);
+        recordByName(parameterName, CS_SET_DATE, parameterName, x);
     }
 
     public void setTime(String parameterName, Time x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setTime", String.class, Time.class), parameterName, x);
+        recordByName(parameterName, CS_SET_TIME, parameterName, x);
     }
 
     public void setTimestamp(String parameterName, Timestamp x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setTimestamp", String.class, Timestamp.class), parameterName, x);
+        recordByName(parameterName, CS_SET_TIMESTAMP, parameterName, x);
     }
 
     public void setAsciiStream(String parameterName, InputStream x, int length) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setAsciiStream", String.class, InputStream.class, int.class), parameterName, x, length);
+        recordByName(parameterName, CS_SET_ASCII_STREAM_INT, parameterName, x, length);
     }
 
     public void setBinaryStream(String parameterName, InputStream x, int length) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setBinaryStream", String.class, InputStream.class, int.class), parameterName, x, length);
+        recordByName(parameterName, CS_SET_BINARY_STREAM_INT, parameterName, x, length);
     }
 
     public void setObject(String parameterName, Object x, int targetSqlType, int scale) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setObject", String.class, Object.class, int.class, int.class), parameterName, x, targetSqlType, scale);
+        recordByName(parameterName, CS_SET_OBJECT_INT_INT, parameterName, x, targetSqlType, scale);
     }
 
     public void setObject(String parameterName, Object x, int targetSqlType) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setObject", String.class, Object.class, int.class), parameterName, x, targetSqlType);
+        recordByName(parameterName, CS_SET_OBJECT_INT, parameterName, x, targetSqlType);
     }
 
     public void setObject(String parameterName, Object x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setObject", String.class, Object.class), parameterName, x);
+        recordByName(parameterName, CS_SET_OBJECT, parameterName, x);
     }
 
     public void setCharacterStream(String parameterName, Reader reader, int length) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setCharacterStream", String.class, Reader.class, int.class), parameterName, reader, length);
+        recordByName(parameterName, CS_SET_CHARACTER_STREAM_INT, parameterName, reader, length);
     }
 
     public void setDate(String parameterName, Date x, Calendar cal) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setDate", String.class, Date.class, Calendar.class), parameterName, x, cal);
+        recordByName(parameterName, CS_SET_DATE_CALENDAR, parameterName, x, cal);
     }
 
     public void setTime(String parameterName, Time x, Calendar cal) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setTime", String.class, Time.class, Calendar.class), parameterName, x, cal);
+        recordByName(parameterName, CS_SET_TIME_CALENDAR, parameterName, x, cal);
     }
 
     public void setTimestamp(String parameterName, Timestamp x, Calendar cal) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setTimestamp", String.class, Timestamp.class, Calendar.class), parameterName, x, cal);
+        recordByName(parameterName, CS_SET_TIMESTAMP_CALENDAR, parameterName, x, cal);
     }
 
     public void setNull(String parameterName, int sqlType, String typeName) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setNull", String.class, int.class, String.class), parameterName, sqlType, typeName);
+        recordByName(parameterName, CS_SET_NULL_STRING, parameterName, sqlType, typeName);
     }
 
     // since 1.6
     public void setRowId(String parameterName, RowId x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setRowId", String.class, RowId.class), parameterName, x);
+        recordByName(parameterName, CS_SET_ROW_ID, parameterName, x);
     }
 
     public void setNString(String parameterName, String value) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setNString", String.class, String.class), parameterName, value);
+        recordByName(parameterName, CS_SET_NSTRING, parameterName, value);
     }
 
     public void setNCharacterStream(String parameterName, Reader value, long length) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setNCharacterStream", String.class, Reader.class, long.class), parameterName, value, length);
+        recordByName(parameterName, CS_SET_NCHARACTER_STREAM_LONG, parameterName, value, length);
     }
 
     public void setNClob(String parameterName, NClob value) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setNClob", String.class, NClob.class), parameterName, value);
+        recordByName(parameterName, CS_SET_NCLOB_NCLOB, parameterName, value);
     }
 
     public void setClob(String parameterName, Reader reader, long length) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setClob", String.class, Reader.class, long.class), parameterName, reader, length);
+        recordByName(parameterName, CS_SET_CLOB_READER_LONG, parameterName, reader, length);
     }
 
     public void setBlob(String parameterName, InputStream inputStream, long length) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setBlob", String.class, InputStream.class, long.class), parameterName, inputStream, length);
+        recordByName(parameterName, CS_SET_BLOB_INPUT_STREAM_LONG, parameterName, inputStream, length);
     }
 
     public void setNClob(String parameterName, Reader reader, long length) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setNClob", String.class, Reader.class, long.class), parameterName, reader, length);
+        recordByName(parameterName, CS_SET_NCLOB_READER_LONG, parameterName, reader, length);
     }
 
     public void setSQLXML(String parameterName, SQLXML xmlObject) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setSQLXML", String.class, SQLXML.class), parameterName, xmlObject);
+        recordByName(parameterName, CS_SET_SQLXML, parameterName, xmlObject);
     }
 
     public void setBlob(String parameterName, Blob x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setBlob", String.class, Blob.class), parameterName, x);
+        recordByName(parameterName, CS_SET_BLOB_BLOB, parameterName, x);
     }
 
     public void setClob(String parameterName, Clob x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setClob", String.class, Clob.class), parameterName, x);
+        recordByName(parameterName, CS_SET_CLOB_CLOB, parameterName, x);
     }
 
     public void setAsciiStream(String parameterName, InputStream x, long length) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setAsciiStream", String.class, InputStream.class, long.class), parameterName, x, length);
+        recordByName(parameterName, CS_SET_ASCII_STREAM_LONG, parameterName, x, length);
     }
 
     public void setBinaryStream(String parameterName, InputStream x, long length) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setBinaryStream", String.class, InputStream.class), parameterName, x, length);
+        recordByName(parameterName, CS_SET_BINARY_STREAM_LONG, parameterName, x, length);
     }
 
     public void setCharacterStream(String parameterName, Reader reader, long length) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setCharacterStream", String.class, Reader.class, long.class), parameterName, reader, length);
+        recordByName(parameterName, CS_SET_CHARACTER_STREAM_LONG, parameterName, reader, length);
     }
 
     public void setAsciiStream(String parameterName, InputStream x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setAsciiStream", String.class, InputStream.class), parameterName, x);
+        recordByName(parameterName, CS_SET_ASCII_STREAM, parameterName, x);
     }
 
     public void setBinaryStream(String parameterName, InputStream x) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setBinaryStream", String.class, InputStream.class), parameterName, x);
+        recordByName(parameterName, CS_SET_BINARY_STREAM, parameterName, x);
     }
 
     public void setCharacterStream(String parameterName, Reader reader) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setCharacterStream", String.class, Reader.class), parameterName, reader);
+        recordByName(parameterName, CS_SET_CHARACTER_STREAM, parameterName, reader);
     }
 
     public void setNCharacterStream(String parameterName, Reader value) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setNCharacterStream", String.class, Reader.class), parameterName, value);
+        recordByName(parameterName, CS_SET_NCHARACTER_STREAM, parameterName, value);
     }
 
     public void setClob(String parameterName, Reader reader) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setClob", String.class, Reader.class), parameterName, reader);
+        recordByName(parameterName, CS_SET_CLOB_READER, parameterName, reader);
     }
 
     public void setBlob(String parameterName, InputStream inputStream) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setBlob", String.class, InputStream.class), parameterName, inputStream);
+        recordByName(parameterName, CS_SET_BLOB_INPUT_STREAM, parameterName, inputStream);
     }
 
     public void setNClob(String parameterName, Reader reader) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "setNClob", String.class, Reader.class), parameterName, reader);
+        recordByName(parameterName, CS_SET_NCLOB_READER, parameterName, reader);
     }
 
 
     //////  Output parameter operations for CallableStatement
 
     public void registerOutParameter(int parameterIndex, int sqlType) {
-        record(parameterIndex, getDeclaredMethod(CallableStatement.class, "registerOutParameter", int.class, int.class), parameterIndex, sqlType);
+        record(parameterIndex, CS_REGISTER_OUT_PARAMETER_BY_INDEX, parameterIndex, sqlType);
     }
 
     public void registerOutParameter(int parameterIndex, int sqlType, int scale) {
-        record(parameterIndex, getDeclaredMethod(CallableStatement.class, "registerOutParameter", int.class, int.class, int.class), parameterIndex, sqlType, scale);
+        record(parameterIndex, CS_REGISTER_OUT_PARAMETER_BY_INDEX_INT, parameterIndex, sqlType, scale);
     }
 
     //--------------------------JDBC 2.0-----------------------------
     public void registerOutParameter(int parameterIndex, int sqlType, String typeName) {
-        record(parameterIndex, getDeclaredMethod(CallableStatement.class, "registerOutParameter", int.class, int.class, int.class), parameterIndex, sqlType, typeName);
+        record(parameterIndex, CS_REGISTER_OUT_PARAMETER_BY_INDEX_STRING, parameterIndex, sqlType, typeName);
     }
     //--------------------------JDBC 3.0-----------------------------
 
     public void registerOutParameter(String parameterName, int sqlType) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "registerOutParameter", String.class, int.class), parameterName, sqlType);
+        recordByName(parameterName, CS_REGISTER_OUT_PARAMETER, parameterName, sqlType);
     }
 
     public void registerOutParameter(String parameterName, int sqlType, int scale) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "registerOutParameter", String.class, int.class, int.class), parameterName, sqlType, scale);
+        recordByName(parameterName, CS_REGISTER_OUT_PARAMETER_INT, parameterName, sqlType, scale);
     }
 
     public void registerOutParameter(String parameterName, int sqlType, String typeName) {
-        recordByName(parameterName, getDeclaredMethod(CallableStatement.class, "registerOutParameter", String.class, int.class, String.class), parameterName, sqlType, typeName);
+        recordByName(parameterName, CS_REGISTER_OUT_PARAMETER_STRING, parameterName, sqlType, typeName);
     }
 
 }
@@ -0,0 +1,199 @@
+package net.ttddyy.dsproxy.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link QueryTransformer} that applies multiple rewrite rules in a single pass.
+ *
+ * All rules are compiled into one pattern when the transformer is built. The query is scanned once from left to right
+ * and each match is replaced by the replacement of the rule that matched; when multiple rules match at the same
+ * position, the rule added first wins. Unlike applying {@link String#replaceAll(String, String)} per rule, a rule does
+ * not see the output of other rules.
+ *
+ * <pre>
+ * QueryTransformer transformer = RuleQueryTransformer.Builder.create()
+ *     .literal("FROM emp", "FROM employee")
+ *     .regex("(?i)\\bnow\\(\\)", "CURRENT_TIMESTAMP")
+ *     .regex("LIMIT (\\d+)", "FETCH FIRST $1 ROWS ONLY")
+ *     .build();
+ * </pre>
+ *
+ * <p>In regex replacements, {@code $n} refers to the n-th group of the rule's own pattern and {@code \} escapes the
+ * following character. Named group references in replacements and back references(e.g. {@code \1}) in regexes are
+ * not supported.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see CachingQueryTransformer
+ * @since 1.11
+ */
+public class RuleQueryTransformer implements QueryTransformer {
+
+    public static class Builder {
+
+        private List<String> regexes = new ArrayList<String>();
+        private List<String> replacements = new ArrayList<String>();
+        private List<Boolean> literals = new ArrayList<Boolean>();
+
+        public static Builder create() {
+            return new Builder();
+        }
+
+        /**
+         * Add a rule that replaces matches of the regular expression.
+         *
+         * @param regex       regular expression
+         * @param replacement replacement. {@code $n} refers to a group of the regex
+         * @return builder
+         */
+        public Builder regex(String regex, String replacement) {
+            Pattern.compile(regex);  // fail fast for an invalid regex
+            this.regexes.add(regex);
+            this.replacements.add(replacement);
+            this.literals.add(Boolean.FALSE);
+            return this;
+        }
+
+        /**
+         * Add a rule that replaces occurrences of the literal string.
+         *
+         * @param target      string to replace
+         * @param replacement replacement, used as is
+         * @return builder
+         */
+        public Builder literal(String target, String replacement) {
+            if (target.isEmpty()) {
+                throw new IllegalArgumentException("target must not be empty");
+            }
+            this.regexes.add(Pattern.quote(target));
+            this.replacements.add(replacement);
+            this.literals.add(Boolean.TRUE);
+            return this;
+        }
+
+        public RuleQueryTransformer build() {
+            if (this.regexes.isEmpty()) {
+                throw new IllegalStateException("At least one rule is required");
+            }
+            return new RuleQueryTransformer(this.regexes, this.replacements, this.literals);
+        }
+    }
+
+    private final Pattern pattern;
+    private final int[] ruleGroups;  // group index of the enclosing group per rule
+    private final Object[][] replacements;  // per rule; String for literal text, Integer for group index
+
+    private RuleQueryTransformer(List<String> regexes, List<String> replacements, List<Boolean> literals) {
+        int ruleCount = regexes.size();
+        this.ruleGroups = new int[ruleCount];
+        this.replacements = new Object[ruleCount][];
+
+        StringBuilder sb = new StringBuilder();
+        int group = 1;
+        for (int i = 0; i < ruleCount; i++) {
+            String regex = regexes.get(i);
+            int groupCount = Pattern.compile(regex).matcher("").groupCount();
+            if (i > 0) {
+                sb.append('|');
+            }
+            sb.append('(').append(regex).append(')');
+
+            this.ruleGroups[i] = group;
+            if (literals.get(i)) {
+                this.replacements[i] = new Object[]{replacements.get(i)};
+            } else {
+                this.replacements[i] = parseReplacement(replacements.get(i), group, groupCount);
+            }
+            group += groupCount + 1;
+        }
+        this.pattern = Pattern.compile(sb.toString());
+    }
+
+    private static Object[] parseReplacement(String replacement, int ruleGroup, int groupCount) {
+        List<Object> parts = new ArrayList<Object>();
+        StringBuilder text = new StringBuilder();
+        int length = replacement.length();
+        int i = 0;
+        while (i < length) {
+            char c = replacement.charAt(i++);
+            if (c == '\\') {
+                if (i == length) {
+                    throw new IllegalArgumentException("character to be escaped is missing: " + replacement);
+                }
+                text.append(replacement.charAt(i++));
+            } else if (c == '$') {
+                if (i == length || !Character.isDigit(replacement.charAt(i))) {
+                    throw new IllegalArgumentException("Illegal group reference: " + replacement);
+                }
+                // same as Matcher: take as many digits as form a valid group number
+                int ref = replacement.charAt(i++) - '0';
+                while (i < length && Character.isDigit(replacement.charAt(i))) {
+                    int next = ref * 10 + (replacement.charAt(i) - '0');
+                    if (next > groupCount) {
+                        break;
+                    }
+                    ref = next;
+                    i++;
+                }
+                if (ref > groupCount) {
+                    throw new IndexOutOfBoundsException("No group " + ref + ": " + replacement);
+                }
+                if (text.length() > 0) {
+                    parts.add(text.toString());
+                    text.setLength(0);
+                }
+                parts.add(ruleGroup + ref);  // $0 is the enclosing group
+            } else {
+                text.append(c);
+            }
+        }
+        if (text.length() > 0) {
+            parts.add(text.toString());
+        }
+        return parts.toArray();
+    }
+
+    @Override
+    public String transformQuery(TransformInfo transformInfo) {
+        String query = transformInfo.getQuery();
+        if (query == null) {
+            return null;
+        }
+        Matcher matcher = this.pattern.matcher(query);
+        if (!matcher.find()) {
+            return query;
+        }
+
+        StringBuilder sb = new StringBuilder(query.length() + 16);
+        int last = 0;
+        do {
+            Object[] replacement = this.replacements[matchedRule(matcher)];
+            sb.append(query, last, matcher.start());
+            for (Object part : replacement) {
+                if (part instanceof String) {
+                    sb.append((String) part);
+                } else {
+                    String value = matcher.group((Integer) part);
+                    if (value != null) {
+                        sb.append(value);
+                    }
+                }
+            }
+            last = matcher.end();
+        } while (matcher.find());
+        sb.append(query, last, query.length());
+        return sb.toString();
+    }
+
+    private int matchedRule(Matcher matcher) {
+        for (int i = 0; i < this.ruleGroups.length; i++) {
+            if (matcher.start(this.ruleGroups[i]) != -1) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("No rule matched");  // should not happen
+    }
+
+}
@@ -0,0 +1,216 @@
+package net.ttddyy.dsproxy.transform;
+
+import net.ttddyy.dsproxy.AttributeKey;
+import net.ttddyy.dsproxy.QueryCountScope;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Dynamic tags appended to queries by {@link SqlCommenterQueryTransformer}.
+ *
+ * <p>Tags are looked up from two places:
+ * <ul>
+ * <li>Tags bound to the current thread by {@link #open()} or {@link #run(Runnable)}. They do not need a
+ * {@link QueryCountScope}.
+ * <li>Tags stored on the current {@link QueryCountScope}. They follow the scope wherever it is bound: the request scope
+ * opened by query count logging servlet filters with <em>useQueryCountScope</em>, an explicitly opened scope, tasks run
+ * by {@link QueryCountScope#run(Runnable)} including {@code StructuredTaskScope} forks, and tasks propagated by
+ * {@link QueryCountScope#wrap(Runnable)}. Tags are discarded with the scope.
+ * </ul>
+ * Tags bound to the thread take precedence over the ones of the scope.
+ *
+ * <pre>
+ * {@code
+ * // without QueryCountScope
+ * SqlCommentTags tags = SqlCommentTags.open();
+ * try {
+ *     tags.put("route", "/users/{id}").put("traceparent", traceparent);
+ *     ...
+ * } finally {
+ *     tags.close();
+ * }
+ *
+ * // in QueryCountScope
+ * QueryCountScope scope = QueryCountScope.open();
+ * try {
+ *     SqlCommentTags.forCurrentScope().put("route", "/users/{id}").put("traceparent", traceparent);
+ *     ...
+ * } finally {
+ *     scope.close();
+ * }
+ * }
+ * </pre>
+ *
+ * <p>The rendered tags are cached until the tags are changed.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see SqlCommenterQueryTransformer
+ * @since 1.11
+ */
+public class SqlCommentTags implements Closeable {
+
+    private static final AttributeKey<SqlCommentTags> TAGS_KEY = AttributeKey.create("sqlCommentTags", SqlCommentTags.class);
+
+    // tags bound to the thread by "open()" or "run(Runnable)"
+    private static final ThreadLocal<SqlCommentTags> CURRENT = new ThreadLocal<SqlCommentTags>();
+
+    private final Map<String, String> tags = new TreeMap<String, String>();  // sorted by key. guarded by "this"
+    private volatile String rendered;  // null when not rendered yet
+
+    // set by "open()"
+    private Thread openedThread;
+    private SqlCommentTags previous;
+    private boolean closed;
+
+    /**
+     * Open new tags and bind them to the current thread until {@link #close()} is called.
+     *
+     * @return opened tags
+     */
+    public static SqlCommentTags open() {
+        SqlCommentTags tags = new SqlCommentTags();
+        tags.openedThread = Thread.currentThread();
+        tags.previous = CURRENT.get();
+        CURRENT.set(tags);
+        return tags;
+    }
+
+    /**
+     * Returns the tags of the given scope, creating them on first access.
+     *
+     * @param scope query count scope
+     * @return tags of the scope
+     */
+    public static SqlCommentTags of(QueryCountScope scope) {
+        synchronized (scope) {
+            SqlCommentTags tags = scope.getAttribute(TAGS_KEY);
+            if (tags == null) {
+                tags = new SqlCommentTags();
+                scope.setAttribute(TAGS_KEY, tags);
+            }
+            return tags;
+        }
+    }
+
+    /**
+     * Returns the tags bound to the current thread, or the tags of the current {@link QueryCountScope} creating them on
+     * first access.
+     *
+     * @return current tags
+     * @throws IllegalStateException if neither tags nor a scope is bound
+     */
+    public static SqlCommentTags forCurrentScope() {
+        SqlCommentTags tags = CURRENT.get();
+        if (tags != null) {
+            return tags;
+        }
+        QueryCountScope scope = QueryCountScope.current();
+        if (scope == null) {
+            throw new IllegalStateException("Neither SqlCommentTags nor QueryCountScope is bound to the current execution. Use SqlCommentTags#open()");
+        }
+        return of(scope);
+    }
+
+    /**
+     * @return tags bound to the current thread, or tags of the current {@link QueryCountScope}. {@code null} if neither
+     * is bound or no tag has been put to the scope.
+     */
+    public static SqlCommentTags current() {
+        SqlCommentTags tags = CURRENT.get();
+        if (tags != null) {
+            return tags;
+        }
+        QueryCountScope scope = QueryCountScope.current();
+        return scope != null ? scope.getAttribute(TAGS_KEY) : null;
+    }
+
+    /**
+     * Run the task with these tags bound to the current thread.
+     *
+     * @param task task to run
+     */
+    public void run(Runnable task) {
+        SqlCommentTags previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            task.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Unbind these tags opened by {@link #open()} and restore the previous ones. No-op if not opened, or when called on
+     * a thread other than the one that opened these tags.
+     *
+     * <p>When tags opened later are still open, they stay bound and these tags are skipped when they are closed.
+     */
+    @Override
+    public void close() {
+        if (this.closed || this.openedThread != Thread.currentThread()) {
+            return;
+        }
+        this.closed = true;
+        if (CURRENT.get() == this) {
+            restore(this.previous);
+        }
+    }
+
+    private static void restore(SqlCommentTags previous) {
+        // skip the ones closed while tags opened later were bound
+        while (previous != null && previous.closed) {
+            previous = previous.previous;
+        }
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Put a tag.
+     *
+     * @param key   tag key
+     * @param value tag value. {@code null} removes the tag.
+     * @return this tags
+     */
+    public synchronized SqlCommentTags put(String key, String value) {
+        if (value == null) {
+            this.tags.remove(key);
+        } else {
+            this.tags.put(key, value);
+        }
+        this.rendered = null;
+        return this;
+    }
+
+    /**
+     * @param key tag key
+     * @return tag value or {@code null}
+     */
+    public synchronized String get(String key) {
+        return this.tags.get(key);
+    }
+
+    /**
+     * Returns the tags in the sqlcommenter format, e.g. {@code route='%2Fusers',traceparent='00-...'}.
+     *
+     * @return rendered tags. empty string when there is no tag.
+     */
+    public String render() {
+        String rendered = this.rendered;
+        if (rendered == null) {
+            synchronized (this) {
+                StringBuilder sb = new StringBuilder();
+                SqlCommenterQueryTransformer.appendTags(sb, this.tags);
+                rendered = sb.toString();
+                this.rendered = rendered;
+            }
+        }
+        return rendered;
+    }
+
+}
@@ -0,0 +1,227 @@
+package net.ttddyy.dsproxy.transform;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.sql.PreparedStatement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * {@link QueryTransformer} that appends a comment with tags in the
+ * <a href="https://google.github.io/sqlcommenter/spec/">sqlcommenter</a> format.
+ *
+ * <pre>
+ * SELECT * FROM users WHERE id = ? /*service='user-service',route='%2Fusers%2F%7Bid%7D'*&#47;
+ * </pre>
+ *
+ * <p>Constant tags(e.g. service name) are given at construction and rendered once. Dynamic tags(e.g. route, trace id)
+ * are taken from the current {@link SqlCommentTags}(see {@link SqlCommentTags#current()}). Constant tags come first,
+ * then dynamic tags; each group is sorted by key. The comment is placed right after the last token of the statement,
+ * before trailing {@code ;}, whitespaces and other comments.
+ *
+ * <p>Queries that already have a comment with sqlcommenter tags(e.g. <code>/*key='value'*&#47;</code> added by
+ * another commenter) are not changed; other comments do not prevent tagging. Comment markers inside string literals
+ * and quoted identifiers are not regarded as comments, and optimizer hints(<code>/*+ ... *&#47;</code>) are regarded
+ * as a part of the statement.
+ *
+ * <p>A comment with dynamic tags makes each prepared statement a distinct query for drivers and databases, which
+ * defeats statement and plan caching. By default, only constant tags are appended to prepared and callable
+ * statements; see {@link PreparedStatementMode}.
+ *
+ * @author Tadaya Tsuyukubo
+ * @see SqlCommentTags
+ * @since 1.11
+ */
+public class SqlCommenterQueryTransformer implements QueryTransformer {
+
+    /**
+     * Tags appended to queries of {@link PreparedStatement} and {@link java.sql.CallableStatement}.
+     */
+    public enum PreparedStatementMode {
+        /**
+         * Constant and dynamic tags.
+         */
+        ALL_TAGS,
+        /**
+         * Only constant tags.
+         */
+        CONSTANT_TAGS,
+        /**
+         * No comment.
+         */
+        NONE
+    }
+
+    // content of a block comment in the sqlcommenter format: key='value'[,key='value']...
+    private static final Pattern TAG_COMMENT = Pattern.compile("\\s*[^\\s=',]+='[^']*'(?:\\s*,\\s*[^\\s=',]+='[^']*')*\\s*");
+
+    private final PreparedStatementMode preparedStatementMode;
+    private final String constantComment;  // " /*...*/", or null when no constant tag
+    private final String prefix;  // " /*...," or " /*"
+
+    /**
+     * @param constantTags tags appended to all queries. can be empty.
+     */
+    public SqlCommenterQueryTransformer(Map<String, String> constantTags) {
+        this(constantTags, PreparedStatementMode.CONSTANT_TAGS);
+    }
+
+    /**
+     * @param constantTags          tags appended to all queries. can be empty.
+     * @param preparedStatementMode tags appended to prepared and callable statements
+     */
+    public SqlCommenterQueryTransformer(Map<String, String> constantTags, PreparedStatementMode preparedStatementMode) {
+        this.preparedStatementMode = preparedStatementMode;
+        StringBuilder sb = new StringBuilder(" /*");
+        appendTags(sb, new TreeMap<String, String>(constantTags));
+        if (constantTags.isEmpty()) {
+            this.constantComment = null;
+            this.prefix = sb.toString();
+        } else {
+            this.constantComment = sb.toString() + "*/";
+            this.prefix = sb.append(',').toString();
+        }
+    }
+
+    @Override
+    public String transformQuery(TransformInfo transformInfo) {
+        String query = transformInfo.getQuery();
+        if (query == null) {
+            return null;
+        }
+
+        boolean prepared = transformInfo.getClazz() != null && PreparedStatement.class.isAssignableFrom(transformInfo.getClazz());
+        String dynamicTags = null;
+        if (prepared) {
+            if (this.preparedStatementMode == PreparedStatementMode.NONE) {
+                return query;
+            }
+            if (this.preparedStatementMode == PreparedStatementMode.ALL_TAGS) {
+                dynamicTags = currentTags();
+            }
+        } else {
+            dynamicTags = currentTags();
+        }
+
+        if (dynamicTags == null && this.constantComment == null) {
+            return query;
+        }
+        int position = commentPosition(query);
+        if (position < 0) {
+            return query;
+        }
+
+        if (dynamicTags == null) {
+            if (position == query.length()) {
+                return query.concat(this.constantComment);
+            }
+            return new StringBuilder(query.length() + this.constantComment.length())
+                    .append(query, 0, position).append(this.constantComment).append(query, position, query.length())
+                    .toString();
+        }
+        return new StringBuilder(query.length() + this.prefix.length() + dynamicTags.length() + 2)
+                .append(query, 0, position).append(this.prefix).append(dynamicTags).append("*/")
+                .append(query, position, query.length()).toString();
+    }
+
+    /**
+     * Returns the position to insert the comment, which is right after the last token of the statement.
+     *
+     * @return position, or {@code -1} when the query already has a comment with sqlcommenter tags
+     */
+    static int commentPosition(String query) {
+        int length = query.length();
+        if (query.indexOf("/*") < 0 && query.indexOf("--") < 0) {
+            // no comment. before trailing ";" and whitespaces
+            int position = length;
+            while (position > 0) {
+                char c = query.charAt(position - 1);
+                if (c != ';' && !Character.isWhitespace(c)) {
+                    break;
+                }
+                position--;
+            }
+            return position;
+        }
+
+        int position = 0;  // end of the last token which is not a comment, whitespace nor ";"
+        int i = 0;
+        while (i < length) {
+            char c = query.charAt(i);
+            if (c == '-' && i + 1 < length && query.charAt(i + 1) == '-') {
+                int end = query.indexOf('\n', i + 2);
+                i = end < 0 ? length : end + 1;
+                continue;
+            }
+            if (c == '/' && i + 1 < length && query.charAt(i + 1) == '*') {
+                int end = query.indexOf("*/", i + 2);
+                int commentEnd = end < 0 ? length : end + 2;
+                if (i + 2 < length && query.charAt(i + 2) == '+') {
+                    // optimizer hint
+                    position = commentEnd;
+                } else if (end >= 0 && TAG_COMMENT.matcher(query).region(i + 2, end).matches()) {
+                    return -1;
+                }
+                i = commentEnd;
+                continue;
+            }
+            if (c == '\'' || c == '"' || c == '`') {
+                // string literal or quoted identifier. doubled quote is an escaped quote
+                i++;
+                while (i < length) {
+                    if (query.charAt(i) == c) {
+                        if (i + 1 < length && query.charAt(i + 1) == c) {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                position = Math.min(i + 1, length);
+            } else if (c != ';' && !Character.isWhitespace(c)) {
+                position = i + 1;
+            }
+            i++;
+        }
+        return position;
+    }
+
+    /**
+     * @return rendered current tags, or {@code null} when there is no tag
+     */
+    private static String currentTags() {
+        SqlCommentTags tags = SqlCommentTags.current();
+        if (tags == null) {
+            return null;
+        }
+        String rendered = tags.render();
+        return rendered.isEmpty() ? null : rendered;
+    }
+
+    public PreparedStatementMode getPreparedStatementMode() {
+        return this.preparedStatementMode;
+    }
+
+    static void appendTags(StringBuilder sb, Map<String, String> sortedTags) {
+        boolean first = true;
+        for (Map.Entry<String, String> entry : sortedTags.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append(encode(entry.getKey())).append("='").append(encode(entry.getValue())).append('\'');
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            // URL encoded value does not have quote nor "*/"
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);  // UTF-8 is always supported
+        }
+    }
+
+}
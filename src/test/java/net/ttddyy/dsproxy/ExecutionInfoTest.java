@@ -7,6 +7,7 @@ import java.sql.PreparedStatement;
 import java.sql.Statement;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
 /**
@@ -35,4 +36,70 @@ public class ExecutionInfoTest {
         assertThat(executionInfo.getStatementType()).isEqualTo(StatementType.CALLABLE);
 
     }
+
+    @Test
+    public void customValues() {
+        ExecutionInfo executionInfo = new ExecutionInfo();
+        assertThat(executionInfo.getCustomValue("foo", String.class)).isNull();
+
+        executionInfo.addCustomValue("foo", "FOO");
+        assertThat(executionInfo.getCustomValue("foo", String.class)).isEqualTo("FOO");
+    }
+
+    @Test
+    public void retain() {
+        ExecutionInfo executionInfo = new ExecutionInfo();
+        executionInfo.setDataSourceName("myDS");
+        executionInfo.setElapsedTime(100);
+        executionInfo.setSuccess(true);
+        executionInfo.addCustomValue("foo", "FOO");
+
+        ExecutionInfo retained = executionInfo.retain();
+        executionInfo.setElapsedTime(200);
+        executionInfo.addCustomValue("foo", "BAR");
+
+        assertThat(retained.getDataSourceName()).isEqualTo("myDS");
+        assertThat(retained.getElapsedTime()).isEqualTo(100);
+        assertThat(retained.isSuccess()).isTrue();
+        assertThat(retained.getCustomValue("foo", String.class)).isEqualTo("FOO");
+        assertThat(retained.retain()).isSameAs(retained);
+
+        try {
+            retained.setElapsedTime(300);
+            fail("retained execution info should be immutable");
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
+    @Test
+    public void attributes() {
+        AttributeKey<String> fooKey = AttributeKey.create("foo", String.class);
+        LongAttributeKey startKey = LongAttributeKey.create("start");
+
+        ExecutionInfo executionInfo = new ExecutionInfo();
+        assertThat(executionInfo.getAttribute(fooKey)).isNull();
+        assertThat(executionInfo.getLongAttribute(startKey)).isEqualTo(0L);
+
+        executionInfo.setAttribute(fooKey, "FOO");
+        executionInfo.setLongAttribute(startKey, 100L);
+        assertThat(executionInfo.getAttribute(fooKey)).isEqualTo("FOO");
+        assertThat(executionInfo.getLongAttribute(startKey)).isEqualTo(100L);
+
+        // key created after the attribute array is allocated
+        AttributeKey<Integer> barKey = AttributeKey.create("bar", Integer.class);
+        executionInfo.setAttribute(barKey, 10);
+        assertThat(executionInfo.getAttribute(barKey)).isEqualTo(10);
+        assertThat(executionInfo.getAttribute(fooKey)).isEqualTo("FOO");
+
+        ExecutionInfo retained = executionInfo.retain();
+
+        ConnectionInfo connectionInfo = new ConnectionInfo();
+        executionInfo.reset(connectionInfo, null, false, 0, null, null);
+        assertThat(executionInfo.getAttribute(fooKey)).isNull();
+        assertThat(executionInfo.getAttribute(barKey)).isNull();
+        assertThat(executionInfo.getLongAttribute(startKey)).isEqualTo(0L);
+
+        assertThat(retained.getAttribute(fooKey)).isEqualTo("FOO");
+        assertThat(retained.getLongAttribute(startKey)).isEqualTo(100L);
+    }
 }
@@ -0,0 +1,213 @@
+package net.ttddyy.dsproxy;
+
+import net.ttddyy.dsproxy.listener.ScopedQueryCountStrategy;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class QueryCountScopeTest {
+
+    private DataSource jdbcDataSource;
+    private DataSource proxyDataSource;
+    private ScopedQueryCountStrategy strategy;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+        this.strategy = new ScopedQueryCountStrategy();
+        this.proxyDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource).name("myDS")
+                .countQuery(this.strategy).build();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    private void select(int times) throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        Statement statement = connection.createStatement();
+        for (int i = 0; i < times; i++) {
+            statement.executeQuery("SELECT * FROM emp");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void openAndClose() throws Exception {
+        assertThat(QueryCountScope.current()).isNull();
+
+        QueryCountScope scope = QueryCountScope.open();
+        try {
+            assertThat(QueryCountScope.current()).isSameAs(scope);
+            select(2);
+        } finally {
+            scope.close();
+        }
+        assertThat(QueryCountScope.current()).isNull();
+
+        select(1);  // outside of scope
+
+        assertThat(scope.getDataSourceNames()).containsExactly("myDS");
+        assertThat(scope.getQueryCount("myDS").getSelect()).isEqualTo(2);
+        assertThat(scope.getGrandTotal().getSelect()).isEqualTo(2);
+        assertThat(this.strategy.getUnscopedQueryCount("myDS").getSelect()).isEqualTo(1);
+    }
+
+    @Test
+    public void nested() throws Exception {
+        QueryCountScope outer = QueryCountScope.open();
+        select(1);
+        QueryCountScope inner = QueryCountScope.open();
+        select(2);
+        inner.close();
+        assertThat(QueryCountScope.current()).isSameAs(outer);
+        select(1);
+        outer.close();
+
+        assertThat(outer.getQueryCount("myDS").getSelect()).isEqualTo(2);
+        assertThat(inner.getQueryCount("myDS").getSelect()).isEqualTo(2);
+        assertThat(QueryCountScope.current()).isNull();
+    }
+
+    @Test
+    public void run() throws Exception {
+        final QueryCountScope scope = new QueryCountScope();
+        String result = scope.call(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                assertThat(QueryCountScope.current()).isSameAs(scope);
+                select(3);
+                return "done";
+            }
+        });
+        assertThat(result).isEqualTo("done");
+        assertThat(scope.getQueryCount("myDS").getSelect()).isEqualTo(3);
+        assertThat(QueryCountScope.current()).isNull();
+    }
+
+    @Test
+    public void openInsideCall() throws Exception {
+        final QueryCountScope outer = new QueryCountScope();
+        final QueryCountScope[] inner = new QueryCountScope[1];
+        outer.call(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                select(1);
+                inner[0] = QueryCountScope.open();
+                try {
+                    assertThat(QueryCountScope.current()).isSameAs(inner[0]);
+                    select(2);
+                } finally {
+                    inner[0].close();
+                }
+                assertThat(QueryCountScope.current()).isSameAs(outer);
+                return null;
+            }
+        });
+        assertThat(outer.getQueryCount("myDS").getSelect()).isEqualTo(1);
+        assertThat(inner[0].getQueryCount("myDS").getSelect()).isEqualTo(2);
+        assertThat(QueryCountScope.current()).isNull();
+    }
+
+    @Test
+    public void callInsideOpen() throws Exception {
+        QueryCountScope outer = QueryCountScope.open();
+        try {
+            final QueryCountScope inner = new QueryCountScope();
+            inner.run(new Runnable() {
+                @Override
+                public void run() {
+                    assertThat(QueryCountScope.current()).isSameAs(inner);
+                }
+            });
+            assertThat(QueryCountScope.current()).isSameAs(outer);
+        } finally {
+            outer.close();
+        }
+        assertThat(QueryCountScope.current()).isNull();
+    }
+
+    @Test
+    public void closeOnOtherThread() throws Exception {
+        final QueryCountScope scope = QueryCountScope.open();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                scope.close();
+            }
+        });
+        thread.start();
+        thread.join();
+
+        // binding closed on the other thread is discarded on lookup
+        assertThat(QueryCountScope.current()).isNull();
+
+        // resume on another thread
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    QueryCountScope.open(scope);
+                    try {
+                        select(1);
+                    } finally {
+                        scope.close();
+                    }
+                    assertThat(QueryCountScope.current()).isNull();
+                    return null;
+                }
+            }).get();
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(scope.getQueryCount("myDS").getSelect()).isEqualTo(1);
+    }
+
+    @Test
+    public void closeOutOfOrder() throws Exception {
+        QueryCountScope outer = QueryCountScope.open();
+        QueryCountScope inner = QueryCountScope.open();
+        outer.close();
+        assertThat(QueryCountScope.current()).isSameAs(inner);
+        inner.close();
+        assertThat(QueryCountScope.current()).isNull();
+    }
+
+    @Test
+    public void wrap() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        QueryCountScope scope = QueryCountScope.open();
+        try {
+            Callable<Void> task = new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    select(1);
+                    return null;
+                }
+            };
+            executor.submit(QueryCountScope.wrap(task)).get();
+            executor.submit(QueryCountScope.wrap(task)).get();
+        } finally {
+            scope.close();
+            executor.shutdown();
+        }
+        assertThat(scope.getQueryCount("myDS").getSelect()).isEqualTo(2);
+        assertThat(this.strategy.getUnscopedQueryCount("myDS")).isNull();
+    }
+
+}
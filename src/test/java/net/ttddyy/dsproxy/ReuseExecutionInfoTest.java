@@ -0,0 +1,236 @@
+package net.ttddyy.dsproxy;
+
+import net.ttddyy.dsproxy.listener.NoOpQueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ProxyConfig;
+import net.ttddyy.dsproxy.proxy.jdk.JdkJdbcProxyFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class ReuseExecutionInfoTest {
+
+    private DataSource jdbcDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        jdbcDataSource = TestUtils.getDataSourceWithData();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(jdbcDataSource);
+    }
+
+    private Connection getProxyConnection(boolean reuse, CollectingListener listener) throws Exception {
+        ConnectionInfo connectionInfo = new ConnectionInfo();
+        connectionInfo.setDataSourceName("myDS");
+
+        ProxyConfig proxyConfig = ProxyConfig.Builder.create()
+                .queryListener(listener)
+                .reuseExecutionInfo(reuse)
+                .build();
+
+        return new JdkJdbcProxyFactory().createConnection(jdbcDataSource.getConnection(), connectionInfo, proxyConfig);
+    }
+
+    @Test
+    public void reuseForPreparedStatement() throws Exception {
+        CollectingListener listener = new CollectingListener();
+        Connection connection = getProxyConnection(true, listener);
+
+        PreparedStatement ps = connection.prepareStatement("select * from emp where id = ?");
+        ps.setInt(1, 1);
+        ps.executeQuery();
+        ps.setInt(1, 2);
+        ps.executeQuery();
+
+        assertThat(listener.executionInfos).hasSize(2);
+        assertThat(listener.executionInfos.get(0)).isSameAs(listener.executionInfos.get(1));
+        assertThat(listener.queryInfoLists.get(0)).isSameAs(listener.queryInfoLists.get(1));
+
+        // retained snapshots keep the values of each execution
+        assertThat(listener.retainedQueries).hasSize(2);
+        assertThat(listener.retainedQueries.get(0).get(0).getParametersList().get(0).get(0).getArgs()[1]).isEqualTo(1);
+        assertThat(listener.retainedQueries.get(1).get(0).getParametersList().get(0).get(0).getArgs()[1]).isEqualTo(2);
+        assertThat(listener.retainedExecutionInfos.get(0)).isNotSameAs(listener.retainedExecutionInfos.get(1));
+        assertThat(listener.retainedExecutionInfos.get(1).isSuccess()).isTrue();
+
+        connection.close();
+    }
+
+    @Test
+    public void reuseForBatchStatement() throws Exception {
+        CollectingListener listener = new CollectingListener();
+        Connection connection = getProxyConnection(true, listener);
+
+        Statement statement = connection.createStatement();
+        statement.addBatch("update emp set name = 'FOO' where id = 1");
+        statement.addBatch("update emp set name = 'BAR' where id = 2");
+        statement.executeBatch();
+
+        statement.addBatch("update emp set name = 'BAZ' where id = 1");
+        statement.executeBatch();
+
+        assertThat(listener.executionInfos).hasSize(2);
+        assertThat(listener.retainedQueries.get(0)).extracting("query")
+                .containsExactly("update emp set name = 'FOO' where id = 1", "update emp set name = 'BAR' where id = 2");
+        assertThat(listener.retainedQueries.get(1)).extracting("query")
+                .containsExactly("update emp set name = 'BAZ' where id = 1");
+        assertThat(listener.retainedExecutionInfos.get(0).getBatchSize()).isEqualTo(2);
+        assertThat(listener.retainedExecutionInfos.get(1).getBatchSize()).isEqualTo(1);
+
+        connection.close();
+    }
+
+    @Test
+    public void noReuseByDefault() throws Exception {
+        CollectingListener listener = new CollectingListener();
+        Connection connection = getProxyConnection(false, listener);
+
+        Statement statement = connection.createStatement();
+        statement.executeQuery("select * from emp");
+        statement.executeQuery("select * from emp");
+
+        assertThat(listener.executionInfos.get(0)).isNotSameAs(listener.executionInfos.get(1));
+        assertThat(listener.queryInfoLists.get(0)).isNotSameAs(listener.queryInfoLists.get(1));
+
+        connection.close();
+    }
+
+    @Test
+    public void reentrantExecution() throws Exception {
+        final List<ExecutionInfo> nested = new ArrayList<ExecutionInfo>();
+        final List<ExecutionInfo> outer = new ArrayList<ExecutionInfo>();
+        final Statement[] holder = new Statement[1];
+        CollectingListener listener = new CollectingListener() {
+            @Override
+            public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+                super.afterQuery(execInfo, queryInfoList);
+                if (queryInfoList.get(0).getQuery().startsWith("select")) {
+                    outer.add(execInfo);
+                    try {
+                        holder[0].executeUpdate("update emp set name = 'X' where id = 1");
+                    } catch (Exception e) {
+                        fail(e.getMessage());
+                    }
+                } else {
+                    nested.add(execInfo);
+                }
+            }
+        };
+        Connection connection = getProxyConnection(true, listener);
+
+        holder[0] = connection.createStatement();
+        holder[0].executeQuery("select * from emp");
+
+        assertThat(outer).hasSize(1);
+        assertThat(nested).hasSize(1);
+        assertThat(outer.get(0)).isNotSameAs(nested.get(0));
+
+        connection.close();
+    }
+
+    @Test
+    public void reuseAfterListenerFailure() throws Exception {
+        final boolean[] failBefore = {true};
+        final boolean[] failAfter = {false};
+        CollectingListener listener = new CollectingListener() {
+            @Override
+            public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+                if (failBefore[0]) {
+                    throw new IllegalStateException("before");
+                }
+            }
+
+            @Override
+            public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+                super.afterQuery(execInfo, queryInfoList);
+                if (failAfter[0]) {
+                    throw new IllegalStateException("after");
+                }
+            }
+        };
+        Connection connection = getProxyConnection(true, listener);
+        Statement statement = connection.createStatement();
+
+        try {
+            statement.executeQuery("select * from emp");
+            fail("IllegalStateException is expected");
+        } catch (IllegalStateException ex) {
+            assertThat(ex.getMessage()).isEqualTo("before");
+        }
+
+        failBefore[0] = false;
+        failAfter[0] = true;
+        try {
+            statement.executeQuery("select * from emp");
+            fail("IllegalStateException is expected");
+        } catch (IllegalStateException ex) {
+            assertThat(ex.getMessage()).isEqualTo("after");
+        }
+
+        // reusable objects are still reused after failures in listeners
+        failAfter[0] = false;
+        statement.executeQuery("select * from emp");
+        assertThat(listener.executionInfos).hasSize(2);
+        assertThat(listener.executionInfos.get(0)).isSameAs(listener.executionInfos.get(1));
+
+        connection.close();
+    }
+
+    @Test
+    public void reuseAfterParametersListReplaced() throws Exception {
+        CollectingListener listener = new CollectingListener() {
+            @Override
+            public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+                super.afterQuery(execInfo, queryInfoList);
+                // replace with an unmodifiable list
+                QueryInfo queryInfo = queryInfoList.get(0);
+                queryInfo.setParametersList(Collections.unmodifiableList(queryInfo.getParametersList()));
+            }
+        };
+        Connection connection = getProxyConnection(true, listener);
+
+        PreparedStatement ps = connection.prepareStatement("select * from emp where id = ?");
+        ps.setInt(1, 1);
+        ps.executeQuery();
+        ps.setInt(1, 2);
+        ps.executeQuery();
+
+        assertThat(listener.queryInfoLists.get(0)).isSameAs(listener.queryInfoLists.get(1));
+        assertThat(listener.retainedQueries.get(1).get(0).getParametersList()).hasSize(1);
+        assertThat(listener.retainedQueries.get(1).get(0).getParametersList().get(0).get(0).getArgs()[1]).isEqualTo(2);
+
+        connection.close();
+    }
+
+    private static class CollectingListener extends NoOpQueryExecutionListener {
+        private List<ExecutionInfo> executionInfos = new ArrayList<ExecutionInfo>();
+        private List<List<QueryInfo>> queryInfoLists = new ArrayList<List<QueryInfo>>();
+        private List<ExecutionInfo> retainedExecutionInfos = new ArrayList<ExecutionInfo>();
+        private List<List<QueryInfo>> retainedQueries = new ArrayList<List<QueryInfo>>();
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            this.executionInfos.add(execInfo);
+            this.queryInfoLists.add(queryInfoList);
+            this.retainedExecutionInfos.add(execInfo.retain());
+            this.retainedQueries.add(QueryInfo.retainAll(queryInfoList));
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+package net.ttddyy.dsproxy.listener;
+
+import net.ttddyy.dsproxy.QueryCountScope;
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class NPlusOneQueryListenerTest {
+
+    private static class TestNPlusOneQueryListener extends NPlusOneQueryListener {
+
+        private final List<RepeatedQuery> reported = new ArrayList<RepeatedQuery>();
+
+        @Override
+        protected void onRepeatedQuery(RepeatedQuery repeatedQuery) {
+            this.reported.add(repeatedQuery);
+        }
+    }
+
+    private DataSource jdbcDataSource;
+    private DataSource proxyDataSource;
+    private TestNPlusOneQueryListener listener;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+        this.listener = new TestNPlusOneQueryListener();
+        this.listener.setThreshold(3);
+        this.proxyDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource).name("myDS")
+                .listener(this.listener).build();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        this.listener.resetThreadScope();
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    private void selectById(int times) throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        Statement statement = connection.createStatement();
+        for (int i = 0; i < times; i++) {
+            statement.executeQuery("SELECT name FROM emp WHERE id = " + i);
+        }
+        connection.close();
+    }
+
+    @Test
+    public void threadScope() throws Exception {
+        this.listener.setThreadScope(true);
+
+        selectById(3);
+        assertThat(this.listener.reported).isEmpty();
+
+        selectById(3);
+        assertThat(this.listener.reported).hasSize(1);
+
+        RepeatedQuery repeatedQuery = this.listener.reported.get(0);
+        assertThat(repeatedQuery.getDataSourceName()).isEqualTo("myDS");
+        assertThat(repeatedQuery.getFingerprint()).isEqualTo("SELECT name FROM emp WHERE id = ?");
+        assertThat(repeatedQuery.getCount()).isEqualTo(4);
+        assertThat(repeatedQuery.getTotalElapsedTime()).isGreaterThanOrEqualTo(0);
+        // this test class is in datasource-proxy package, thus the frame is skipped as internal frame
+        assertThat(repeatedQuery.getCallSite()).isNotNull();
+        assertThat(repeatedQuery.getCallSite().getClassName()).doesNotStartWith("net.ttddyy.dsproxy.");
+
+        this.listener.resetThreadScope();
+        selectById(3);
+        assertThat(this.listener.reported).hasSize(1);
+    }
+
+    @Test
+    public void preparedStatement() throws Exception {
+        this.listener.setThreadScope(true);
+
+        Connection connection = this.proxyDataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement("SELECT name FROM emp WHERE id = ?");
+        for (int i = 0; i < 5; i++) {
+            ps.setInt(1, i);
+            ps.executeQuery();
+        }
+        connection.close();
+
+        assertThat(this.listener.reported).hasSize(1);
+        assertThat(this.listener.reported.get(0).getCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void queryCountScope() throws Exception {
+        // queries outside of a scope are not tracked by default
+        assertThat(this.listener.isThreadScope()).isFalse();
+
+        selectById(5);
+        assertThat(this.listener.reported).isEmpty();
+
+        QueryCountScope scope = QueryCountScope.open();
+        try {
+            selectById(5);
+        } finally {
+            scope.close();
+        }
+        assertThat(this.listener.reported).hasSize(1);
+
+        // new scope has fresh state
+        scope = QueryCountScope.open();
+        try {
+            selectById(3);
+        } finally {
+            scope.close();
+        }
+        assertThat(this.listener.reported).hasSize(1);
+    }
+
+    @Test
+    public void listenersInSameScope() throws Exception {
+        TestNPlusOneQueryListener another = new TestNPlusOneQueryListener();
+        another.setThreshold(4);
+        this.proxyDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .listener(this.listener).listener(another).build();
+
+        QueryCountScope scope = QueryCountScope.open();
+        try {
+            selectById(4);
+        } finally {
+            scope.close();
+        }
+        // each listener counts 4 executions
+        assertThat(this.listener.reported).hasSize(1);
+        assertThat(this.listener.reported.get(0).getCount()).isEqualTo(4);
+        assertThat(another.reported).isEmpty();
+    }
+
+    @Test
+    public void maxFingerprints() throws Exception {
+        this.listener.setThreadScope(true);
+        this.listener.setMaxFingerprints(1);
+
+        Connection connection = this.proxyDataSource.getConnection();
+        Statement statement = connection.createStatement();
+        for (int i = 0; i < 5; i++) {
+            statement.executeQuery("SELECT name FROM emp WHERE id = " + i);
+            statement.executeQuery("SELECT id FROM emp WHERE name = 'foo'");  // evicts the other fingerprint
+        }
+        connection.close();
+
+        assertThat(this.listener.reported).hasSize(0);
+    }
+
+    @Test
+    public void sampling() throws Exception {
+        this.listener.setSampleRate(0.5);
+
+        for (int i = 0; i < 4; i++) {
+            QueryCountScope scope = QueryCountScope.open();
+            try {
+                selectById(5);
+            } finally {
+                scope.close();
+            }
+        }
+        assertThat(this.listener.reported).hasSize(2);
+    }
+
+    @Test
+    public void samplingThreadScope() throws Exception {
+        this.listener.setThreadScope(true);
+        this.listener.setSampleRate(0.5);
+
+        // sampling is decided per thread scope, not once per thread
+        for (int i = 0; i < 4; i++) {
+            selectById(5);
+            this.listener.resetThreadScope();
+        }
+        assertThat(this.listener.reported).hasSize(2);
+    }
+
+}
@@ -37,4 +37,17 @@ public class QueryUtilsTest {
         assertThat(QueryUtils.getQueryType("DELETE")).isEqualTo(QueryType.DELETE);
         assertThat(QueryUtils.getQueryType("delete")).isEqualTo(QueryType.DELETE);
     }
+
+    @Test
+    public void fingerprint() {
+        assertThat(QueryUtils.fingerprint(null)).isNull();
+        assertThat(QueryUtils.fingerprint("")).isEqualTo("");
+        assertThat(QueryUtils.fingerprint("SELECT * FROM emp WHERE id = 10")).isEqualTo("SELECT * FROM emp WHERE id = ?");
+        assertThat(QueryUtils.fingerprint("SELECT * FROM emp WHERE id = ?")).isEqualTo("SELECT * FROM emp WHERE id = ?");
+        assertThat(QueryUtils.fingerprint("  SELECT *\n  FROM emp\tWHERE name = 'a''b' ")).isEqualTo("SELECT * FROM emp WHERE name = ?");
+        assertThat(QueryUtils.fingerprint("SELECT col1, t2.x FROM t2 WHERE v > 1.5")).isEqualTo("SELECT col1, t2.x FROM t2 WHERE v > ?");
+        assertThat(QueryUtils.fingerprint("SELECT \"col 1\" FROM emp")).isEqualTo("SELECT \"col 1\" FROM emp");
+        assertThat(QueryUtils.fingerprint("/* app=foo */ SELECT 1 -- comment\nFROM dual")).isEqualTo("SELECT ? FROM dual");
+        assertThat(QueryUtils.fingerprint("SELECT * FROM emp WHERE id IN (1, 2, 3)")).isEqualTo("SELECT * FROM emp WHERE id IN (?, ?, ?)");
+    }
 }
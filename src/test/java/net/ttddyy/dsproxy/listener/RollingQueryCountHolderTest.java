@@ -0,0 +1,84 @@
+package net.ttddyy.dsproxy.listener;
+
+import net.ttddyy.dsproxy.QueryCount;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class RollingQueryCountHolderTest {
+
+    private static class TestRollingQueryCountHolder extends RollingQueryCountHolder {
+
+        private long now;
+
+        TestRollingQueryCountHolder(int bucketCount, long bucketDuration, TimeUnit timeUnit) {
+            super(bucketCount, bucketDuration, timeUnit);
+        }
+
+        @Override
+        protected long currentTimeNanos() {
+            return this.now;
+        }
+
+        void advance(long duration, TimeUnit timeUnit) {
+            this.now += timeUnit.toNanos(duration);
+        }
+    }
+
+    @Test
+    public void rotation() {
+        TestRollingQueryCountHolder holder = new TestRollingQueryCountHolder(3, 1, TimeUnit.SECONDS);
+
+        holder.getOrCreateQueryCount("ds").incrementTotal();
+        holder.getOrCreateQueryCount("ds").incrementTotal();
+        holder.advance(1, TimeUnit.SECONDS);
+        holder.getOrCreateQueryCount("ds").incrementTotal();
+
+        assertThat(holder.getWindowTotal("ds").getTotal()).isEqualTo(3);
+        assertThat(holder.getTotal("ds", 1).getTotal()).isEqualTo(1);
+        assertThat(holder.getRate("ds")).isCloseTo(1.0, within(0.001));
+        assertThat(holder.getRate("ds", 1)).isCloseTo(1.0, within(0.001));
+
+        // first bucket goes out of the window
+        holder.advance(2, TimeUnit.SECONDS);
+        assertThat(holder.getWindowTotal("ds").getTotal()).isEqualTo(1);
+
+        // the ring slot of the first bucket is reused
+        holder.getOrCreateQueryCount("ds").incrementTotal();
+        assertThat(holder.getWindowTotal("ds").getTotal()).isEqualTo(2);
+
+        holder.advance(10, TimeUnit.SECONDS);
+        assertThat(holder.getWindowTotal("ds").getTotal()).isEqualTo(0);
+        assertThat(holder.getDataSourceNames()).containsExactly("ds");
+        assertThat(holder.getWindowTotal("other").getTotal()).isEqualTo(0);
+    }
+
+    @Test
+    public void negativeTime() {
+        TestRollingQueryCountHolder holder = new TestRollingQueryCountHolder(5, 1, TimeUnit.SECONDS);
+        holder.now = -TimeUnit.MILLISECONDS.toNanos(1500);
+
+        holder.getOrCreateQueryCount("ds").incrementSelect();
+        holder.advance(1, TimeUnit.SECONDS);
+        holder.getOrCreateQueryCount("ds").incrementSelect();
+        holder.advance(1, TimeUnit.SECONDS);
+        holder.getOrCreateQueryCount("ds").incrementSelect();
+
+        QueryCount total = holder.getWindowTotal("ds");
+        assertThat(total.getSelect()).isEqualTo(3);
+        assertThat(holder.getTotal("ds", 1).getSelect()).isEqualTo(1);
+    }
+
+    @Test
+    public void windowDuration() {
+        RollingQueryCountHolder holder = new RollingQueryCountHolder(60, 1, TimeUnit.MINUTES);
+        assertThat(holder.getWindowDuration(TimeUnit.HOURS)).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,161 @@
+package net.ttddyy.dsproxy.listener.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class JfrListenerTest {
+
+    private DataSource jdbcDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        jdbcDataSource = TestUtils.getDataSourceWithData();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(jdbcDataSource);
+    }
+
+    @Test
+    public void events() throws Exception {
+        JfrMethodExecutionListener methodListener = new JfrMethodExecutionListener();
+        DataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource).name("myDS")
+                .listener(new JfrQueryExecutionListener())
+                .methodListener(methodListener)
+                .proxyResultSet()
+                .build();
+
+        List<RecordedEvent> events;
+        Recording recording = new Recording();
+        try {
+            recording.enable(QueryExecutionEvent.class);
+            recording.enable(ConnectionAcquireEvent.class);
+            recording.enable(ConnectionCloseEvent.class);
+            recording.enable(ResultSetIterationEvent.class);
+            recording.start();
+
+            Connection conn = ds.getConnection();
+            Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT id FROM emp WHERE id < 100");
+            assertThat(rs.next()).isTrue();
+            assertThat(methodListener.getIterationCount()).isEqualTo(1);
+            while (rs.next()) {
+                // iterate
+            }
+            assertThat(methodListener.getIterationCount()).isEqualTo(0);
+            rs.close();
+            stmt.executeUpdate("UPDATE emp SET name = 'FOO' WHERE id = 1");
+            stmt.close();
+            conn.close();
+
+            recording.stop();
+            File file = File.createTempFile("dsproxy", ".jfr");
+            file.deleteOnExit();
+            recording.dump(file.toPath());
+            events = RecordingFile.readAllEvents(file.toPath());
+        } finally {
+            recording.close();
+        }
+
+        List<RecordedEvent> queryEvents = filter(events, "net.ttddyy.dsproxy.QueryExecution");
+        assertThat(queryEvents).hasSize(2);
+        RecordedEvent select = queryEvents.get(0);
+        assertThat(select.getString("query")).isEqualTo("SELECT id FROM emp WHERE id < ?");
+        assertThat(select.getString("dataSourceName")).isEqualTo("myDS");
+        assertThat(select.getString("connectionId")).isEqualTo("1");
+        assertThat(select.getLong("rows")).isEqualTo(-1);
+        assertThat(select.getBoolean("success")).isTrue();
+        RecordedEvent update = queryEvents.get(1);
+        assertThat(update.getString("query")).isEqualTo("UPDATE emp SET name = ? WHERE id = ?");
+        assertThat(update.getLong("rows")).isEqualTo(1);
+
+        List<RecordedEvent> acquireEvents = filter(events, "net.ttddyy.dsproxy.ConnectionAcquire");
+        assertThat(acquireEvents).hasSize(1);
+        assertThat(acquireEvents.get(0).getString("connectionId")).isEqualTo("1");
+
+        List<RecordedEvent> closeEvents = filter(events, "net.ttddyy.dsproxy.ConnectionClose");
+        assertThat(closeEvents).hasSize(1);
+
+        List<RecordedEvent> iterationEvents = filter(events, "net.ttddyy.dsproxy.ResultSetIteration");
+        assertThat(iterationEvents).hasSize(1);
+        assertThat(iterationEvents.get(0).getLong("rows")).isEqualTo(2);
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        JfrMethodExecutionListener methodListener = new JfrMethodExecutionListener();
+        DataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource)
+                .listener(new JfrQueryExecutionListener())
+                .methodListener(methodListener)
+                .proxyResultSet()
+                .build();
+
+        // no recording
+        Connection conn = ds.getConnection();
+        ResultSet rs = conn.createStatement().executeQuery("SELECT id FROM emp");
+        assertThat(rs.next()).isTrue();
+        assertThat(methodListener.getIterationCount()).isEqualTo(0);
+        conn.close();
+
+        // recording without the events
+        List<RecordedEvent> events;
+        Recording recording = new Recording();
+        try {
+            recording.disable(QueryExecutionEvent.class);
+            recording.disable(ConnectionAcquireEvent.class);
+            recording.disable(ConnectionCloseEvent.class);
+            recording.disable(ResultSetIterationEvent.class);
+            recording.start();
+
+            conn = ds.getConnection();
+            rs = conn.createStatement().executeQuery("SELECT id FROM emp");
+            assertThat(rs.next()).isTrue();
+            assertThat(methodListener.getIterationCount()).isEqualTo(0);
+            rs.close();
+            conn.close();
+
+            recording.stop();
+            File file = File.createTempFile("dsproxy", ".jfr");
+            file.deleteOnExit();
+            recording.dump(file.toPath());
+            events = RecordingFile.readAllEvents(file.toPath());
+        } finally {
+            recording.close();
+        }
+
+        for (RecordedEvent event : events) {
+            assertThat(event.getEventType().getName()).doesNotStartWith("net.ttddyy.dsproxy.");
+        }
+    }
+
+    private static List<RecordedEvent> filter(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> result = new ArrayList<RecordedEvent>();
+        for (RecordedEvent event : events) {
+            if (name.equals(event.getEventType().getName())) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,152 @@
+package net.ttddyy.dsproxy.metrics;
+
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.NoOpMethodExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class ConnectionMetricsTest {
+
+    private DataSource jdbcDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        jdbcDataSource = TestUtils.getDataSourceWithData();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(jdbcDataSource);
+    }
+
+    @Test
+    public void lifecycle() throws Exception {
+        ConnectionMetrics metrics = new ConnectionMetrics();
+        DataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource).connectionMetrics(metrics).build();
+
+        Connection conn = ds.getConnection();
+        assertThat(metrics.getAcquiredCount()).isEqualTo(1);
+        assertThat(metrics.getAcquireTime().getCount()).isEqualTo(1);
+
+        Statement stmt = conn.createStatement();
+        stmt.executeQuery("SELECT id FROM emp").close();
+        stmt.executeQuery("SELECT id FROM emp").close();
+        assertThat(metrics.getIdleTime().getCount()).isEqualTo(1);
+
+        // transaction
+        conn.setAutoCommit(false);
+        stmt.executeUpdate("UPDATE emp SET name = 'FOO' WHERE id = 1");
+        assertThat(metrics.getTransactionTime().getCount()).isEqualTo(0);
+        conn.commit();
+        assertThat(metrics.getTransactionTime().getCount()).isEqualTo(1);
+
+        // enabling auto-commit ends the transaction
+        stmt.executeUpdate("UPDATE emp SET name = 'BAR' WHERE id = 1");
+        conn.setAutoCommit(true);
+        assertThat(metrics.getTransactionTime().getCount()).isEqualTo(2);
+
+        stmt.close();
+        conn.close();
+        conn.close();  // closing twice should not record
+
+        assertThat(metrics.getClosedCount()).isEqualTo(1);
+        assertThat(metrics.getHoldTime().getCount()).isEqualTo(1);
+        assertThat(metrics.getStatementsPerConnection().getCount()).isEqualTo(1);
+        assertThat(metrics.getStatementsPerConnection().getMax()).isEqualTo(4);
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        DataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource).build();
+        Connection conn = ds.getConnection();
+        conn.createStatement().executeQuery("SELECT id FROM emp").close();
+        conn.close();
+    }
+
+    @Test
+    public void autoCommitRetrievedLazily() throws Exception {
+        final AtomicInteger getAutoCommitCount = new AtomicInteger();
+        DataSource physical = ProxyDataSourceBuilder.create(jdbcDataSource)
+                .methodListener(new NoOpMethodExecutionListener() {
+                    @Override
+                    public void beforeMethod(MethodExecutionContext executionContext) {
+                        if ("getAutoCommit".equals(executionContext.getMethod().getName())) {
+                            getAutoCommitCount.incrementAndGet();
+                        }
+                    }
+                })
+                .build();
+        ConnectionMetrics metrics = new ConnectionMetrics();
+        DataSource ds = ProxyDataSourceBuilder.create(physical).connectionMetrics(metrics).build();
+
+        // acquire does not retrieve auto-commit mode
+        ds.getConnection().close();
+        assertThat(getAutoCommitCount.get()).isEqualTo(0);
+
+        // mode set by the application is tracked
+        Connection conn = ds.getConnection();
+        conn.setAutoCommit(false);
+        Statement stmt = conn.createStatement();
+        stmt.executeUpdate("UPDATE emp SET name = 'FOO' WHERE id = 1");
+        conn.commit();
+        conn.close();
+        assertThat(getAutoCommitCount.get()).isEqualTo(0);
+        assertThat(metrics.getTransactionTime().getCount()).isEqualTo(1);
+
+        // otherwise, retrieved once per connection
+        conn = ds.getConnection();
+        stmt = conn.createStatement();
+        stmt.executeQuery("SELECT id FROM emp").close();
+        stmt.executeQuery("SELECT id FROM emp").close();
+        conn.close();
+        assertThat(getAutoCommitCount.get()).isEqualTo(1);
+        assertThat(metrics.getTransactionTime().getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void autoCommitRetrievalFailure() throws Exception {
+        final AtomicInteger getAutoCommitCount = new AtomicInteger();
+        DataSource physical = ProxyDataSourceBuilder.create(jdbcDataSource)
+                .methodListener(new NoOpMethodExecutionListener() {
+                    @Override
+                    public void beforeMethod(MethodExecutionContext executionContext) {
+                        if ("getAutoCommit".equals(executionContext.getMethod().getName())) {
+                            getAutoCommitCount.incrementAndGet();
+                            // make the driver call fail with SQLException
+                            try {
+                                executionContext.setMethod(Connection.class.getMethod("createStruct", String.class, Object[].class));
+                                executionContext.setMethodArgs(new Object[]{"foo", new Object[0]});
+                            } catch (NoSuchMethodException ex) {
+                                throw new IllegalStateException(ex);
+                            }
+                        }
+                    }
+                })
+                .build();
+        ConnectionMetrics metrics = new ConnectionMetrics();
+        DataSource ds = ProxyDataSourceBuilder.create(physical).connectionMetrics(metrics).build();
+
+        // queries do not fail, and the connection is asked only once
+        Connection conn = ds.getConnection();
+        Statement stmt = conn.createStatement();
+        stmt.executeQuery("SELECT id FROM emp").close();
+        stmt.executeQuery("SELECT id FROM emp").close();
+        conn.close();
+        assertThat(getAutoCommitCount.get()).isEqualTo(1);
+        assertThat(metrics.getTransactionTime().getCount()).isEqualTo(0);
+    }
+
+}
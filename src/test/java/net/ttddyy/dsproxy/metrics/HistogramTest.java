@@ -0,0 +1,83 @@
+package net.ttddyy.dsproxy.metrics;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class HistogramTest {
+
+    @Test
+    public void record() {
+        Histogram histogram = new Histogram();
+        histogram.record(1);
+        histogram.record(3);
+        histogram.record(8);
+
+        assertThat(histogram.getCount()).isEqualTo(3);
+        assertThat(histogram.getSum()).isEqualTo(12);
+        assertThat(histogram.getMax()).isEqualTo(8);
+        assertThat(histogram.getMean()).isEqualTo(4.0);
+    }
+
+    @Test
+    public void bucketIndex() {
+        // bucket index is monotonic and the value is within the bucket upper bound
+        int previous = -1;
+        for (long value = 0; value < 100000; value++) {
+            int index = Histogram.getBucketIndex(value);
+            assertThat(index).isGreaterThanOrEqualTo(previous);
+            assertThat(Histogram.getBucketUpperBound(index)).isGreaterThanOrEqualTo(value);
+            if (index > 0) {
+                assertThat(Histogram.getBucketUpperBound(index - 1)).isLessThan(value);
+            }
+            previous = index;
+        }
+        assertThat(Histogram.getBucketIndex(Long.MAX_VALUE)).isLessThan(Histogram.BUCKET_COUNT);
+        assertThat(Histogram.getBucketIndex(-1)).isEqualTo(0);
+    }
+
+    @Test
+    public void percentile() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        // log-linear buckets with 8 sub-buckets keep relative error within 12.5%
+        assertThat(histogram.getValueAtPercentile(50)).isBetween(500L, 563L);
+        assertThat(histogram.getValueAtPercentile(99)).isBetween(990L, 1114L);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(1000L);
+    }
+
+    @Test
+    public void reset() {
+        Histogram histogram = new Histogram();
+        histogram.record(10);
+        histogram.reset();
+
+        assertThat(histogram.getCount()).isEqualTo(0);
+        assertThat(histogram.getSum()).isEqualTo(0);
+        assertThat(histogram.getMax()).isEqualTo(0);
+        assertThat(histogram.getValueAtPercentile(50)).isEqualTo(0);
+    }
+
+    @Test
+    public void snapshot() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        histogram.record(1000);
+
+        assertThat(snapshot.getCount()).isEqualTo(100);
+        assertThat(snapshot.getMax()).isEqualTo(100);
+        assertThat(snapshot.getSum()).isEqualTo(5050);
+        assertThat(snapshot.getValueAtPercentile(50)).isEqualTo(histogram.getValueAtPercentile(50));
+        assertThat(snapshot.getValueAtPercentile(100)).isEqualTo(100);
+    }
+
+}
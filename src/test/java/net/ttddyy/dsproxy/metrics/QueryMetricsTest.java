@@ -0,0 +1,117 @@
+package net.ttddyy.dsproxy.metrics;
+
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.proxy.ResultCache;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class QueryMetricsTest {
+
+    private DataSource jdbcDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        jdbcDataSource = TestUtils.getDataSourceWithData();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(jdbcDataSource);
+    }
+
+    @Test
+    public void metrics() throws Exception {
+        QueryMetrics metrics = new QueryMetrics();
+        DataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource).queryMetrics(metrics).build();
+
+        Connection conn = ds.getConnection();
+        Statement stmt = conn.createStatement();
+        stmt.executeQuery("SELECT id FROM emp WHERE id = 1").close();
+        stmt.executeQuery("SELECT id FROM emp WHERE id = 2").close();
+        stmt.executeUpdate("UPDATE emp SET name = 'FOO' WHERE id = 1");
+        try {
+            stmt.executeQuery("SELECT * FROM not_exist");
+        } catch (Exception ex) {
+            // expected
+        }
+        conn.close();
+
+        assertThat(metrics.getQueryCount().getTotal()).isEqualTo(4);
+        assertThat(metrics.getQueryCount().getSelect()).isEqualTo(3);
+        assertThat(metrics.getQueryCount().getUpdate()).isEqualTo(1);
+        assertThat(metrics.getQueryCount().getFailure()).isEqualTo(1);
+        assertThat(metrics.getLatency().getCount()).isEqualTo(4);
+
+        assertThat(metrics.getStatementCount()).isEqualTo(3);
+        List<StatementStatistics> top = metrics.getTopStatements(10);
+        assertThat(top).hasSize(3);
+        StatementStatistics select = null;
+        for (StatementStatistics statistics : top) {
+            if (statistics.getFingerprint().equals("SELECT id FROM emp WHERE id = ?")) {
+                select = statistics;
+            }
+        }
+        assertThat(select).isNotNull();
+        assertThat(select.getCount()).isEqualTo(2);
+        assertThat(metrics.getTopStatements(1)).hasSize(1);
+
+        metrics.reset();
+        assertThat(metrics.getQueryCount().getTotal()).isEqualTo(0);
+        assertThat(metrics.getLatency().getCount()).isEqualTo(0);
+        assertThat(metrics.getStatementCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void maxStatements() throws Exception {
+        QueryMetrics metrics = new QueryMetrics();
+        metrics.setMaxStatements(1);
+        DataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource).queryMetrics(metrics).build();
+
+        Connection conn = ds.getConnection();
+        Statement stmt = conn.createStatement();
+        stmt.executeQuery("SELECT id FROM emp").close();
+        stmt.executeQuery("SELECT name FROM emp").close();
+        conn.close();
+
+        assertThat(metrics.getStatementCount()).isEqualTo(1);
+        assertThat(metrics.getDroppedStatementCount()).isEqualTo(1);
+        assertThat(metrics.getQueryCount().getTotal()).isEqualTo(2);
+    }
+
+    @Test
+    public void cacheHit() throws Exception {
+        ResultCache resultCache = new ResultCache(10000, 1, TimeUnit.MINUTES);
+        resultCache.cacheQuery("SELECT id FROM emp WHERE id = 1", "emp");
+        QueryMetrics metrics = new QueryMetrics();
+        DataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource).queryMetrics(metrics).resultCache(resultCache).build();
+
+        Connection conn = ds.getConnection();
+        Statement stmt = conn.createStatement();
+        stmt.executeQuery("SELECT id FROM emp WHERE id = 1").close();
+        stmt.executeQuery("SELECT id FROM emp WHERE id = 1").close();
+        stmt.executeQuery("SELECT id FROM emp WHERE id = 1").close();
+        conn.close();
+
+        // only the first query calls the database
+        assertThat(metrics.getQueryCount().getTotal()).isEqualTo(1);
+        assertThat(metrics.getQueryCount().getSelect()).isEqualTo(1);
+        assertThat(metrics.getQueryCount().getCacheHit()).isEqualTo(2);
+        assertThat(metrics.getLatency().getCount()).isEqualTo(1);
+        assertThat(metrics.getTopStatements(1).get(0).getCount()).isEqualTo(1);
+        assertThat(metrics.getInFlightQueryCount()).isEqualTo(0);
+    }
+
+}
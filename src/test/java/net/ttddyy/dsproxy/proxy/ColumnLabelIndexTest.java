@@ -0,0 +1,83 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class ColumnLabelIndexTest {
+
+    @Test
+    public void indexOf() {
+        ColumnLabelIndex index = new ColumnLabelIndex("id", "NAME", "Created_At");
+
+        assertThat(index.getColumnCount()).isEqualTo(3);
+        assertThat(index.indexOf("id")).isEqualTo(1);
+        assertThat(index.indexOf("ID")).isEqualTo(1);
+        assertThat(index.indexOf("name")).isEqualTo(2);
+        assertThat(index.indexOf("created_at")).isEqualTo(3);
+        assertThat(index.indexOf("CREATED_AT")).isEqualTo(3);
+        assertThat(index.indexOf("created")).isEqualTo(-1);
+        assertThat(index.indexOf("")).isEqualTo(-1);
+        assertThat(index.getLabel(2)).isEqualTo("NAME");
+    }
+
+    @Test
+    public void duplicatedLabels() {
+        // last one wins
+        ColumnLabelIndex index = new ColumnLabelIndex("id", "name", "ID", "Id");
+        assertThat(index.indexOf("id")).isEqualTo(4);
+        assertThat(index.indexOf("ID")).isEqualTo(4);
+        assertThat(index.indexOf("name")).isEqualTo(2);
+    }
+
+    @Test
+    public void manyColumns() {
+        String[] labels = new String[100];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = "column" + i;
+        }
+        ColumnLabelIndex index = new ColumnLabelIndex(labels);
+        for (int i = 0; i < labels.length; i++) {
+            assertThat(index.indexOf("COLUMN" + i)).isEqualTo(i + 1);
+        }
+        assertThat(new ColumnLabelIndex().indexOf("foo")).isEqualTo(-1);
+    }
+
+    @Test
+    public void localeIndependent() {
+        ColumnLabelIndex index = new ColumnLabelIndex("title", "straße");
+        assertThat(index.indexOf("TITLE")).isEqualTo(1);
+        assertThat(index.indexOf("STRASSE")).isEqualTo(-1);
+        assertThat(index.indexOf("STRAßE")).isEqualTo(2);
+    }
+
+    @Test
+    public void repeatableReadResultSet() throws Exception {
+        DataSource dataSource = TestUtils.getDataSourceWithData();
+        try {
+            DataSource proxyDataSource = ProxyDataSourceBuilder.create(dataSource).repeatableReadResultSet().build();
+            Connection connection = proxyDataSource.getConnection();
+            for (int i = 0; i < 2; i++) {
+                ResultSet rs = connection.createStatement().executeQuery("SELECT id, name FROM emp ORDER BY id");
+                assertThat(rs.next()).isTrue();
+                assertThat(rs.getString("Name")).isEqualTo("foo");
+                assertThat(rs.getInt("ID")).isEqualTo(1);
+                assertThat(rs.getInt("id")).isEqualTo(1);
+                rs.close();
+            }
+            connection.close();
+        } finally {
+            TestUtils.shutdown(dataSource);
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package net.ttddyy.dsproxy.proxy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class ConcurrentConnectionIdManagerTest {
+
+    @Test
+    public void getId() {
+        ConcurrentConnectionIdManager idManager = new ConcurrentConnectionIdManager();
+
+        assertThat(idManager.getId(null)).isEqualTo("1");
+        assertThat(idManager.getId(null)).isEqualTo("2");
+        assertThat(idManager.nextId()).isEqualTo(3);
+    }
+
+    @Test
+    public void getOpenConnectionIds() {
+        ConcurrentConnectionIdManager idManager = new ConcurrentConnectionIdManager();
+
+        assertThat(idManager.getOpenConnectionIds()).isEmpty();
+
+        String id1 = idManager.getId(null);
+        assertThat(idManager.getOpenConnectionIds()).containsExactly(id1);
+
+        String id2 = idManager.getId(null);
+        assertThat(idManager.getOpenConnectionIds()).containsOnly(id1, id2);
+        assertThat(idManager.getOpenIds()).containsExactly(1L, 2L);
+        assertThat(idManager.isOpen(2)).isTrue();
+
+        idManager.addClosedId(id2);
+        assertThat(idManager.getOpenConnectionIds()).containsExactly(id1);
+        assertThat(idManager.isOpen(2)).isFalse();
+
+        // closing twice or unknown id is no-op
+        idManager.addClosedId(id2);
+        idManager.addClosedId("foo");
+        idManager.addClosedId(100);
+        assertThat(idManager.getOpenConnectionCount()).isEqualTo(1);
+
+        idManager.addClosedId(id1);
+        assertThat(idManager.getOpenConnectionIds()).isEmpty();
+        assertThat(idManager.getOpenConnectionCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void discardPage() {
+        ConcurrentConnectionIdManager idManager = new ConcurrentConnectionIdManager();
+        int size = ConcurrentConnectionIdManager.PAGE_SIZE;
+
+        for (int i = 0; i < size + 1; i++) {
+            idManager.nextId();
+        }
+        assertThat(idManager.getPageCount()).isEqualTo(2);
+
+        for (long id = 1; id <= size; id++) {
+            idManager.addClosedId(id);
+        }
+        // first page is fully issued and closed
+        assertThat(idManager.getPageCount()).isEqualTo(1);
+        assertThat(idManager.getOpenIds()).containsExactly(size + 1L);
+    }
+
+    @Test
+    public void concurrentAccess() throws Exception {
+        final ConcurrentConnectionIdManager idManager = new ConcurrentConnectionIdManager();
+        final int threads = 8;
+        final int iterations = 10000;
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Long> kept = new ArrayList<Long>();
+        for (int i = 0; i < threads; i++) {
+            final boolean keepLast = i == 0;
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    for (int j = 0; j < iterations; j++) {
+                        long id = idManager.nextId();
+                        if (keepLast && j == iterations - 1) {
+                            synchronized (kept) {
+                                kept.add(id);
+                            }
+                        } else {
+                            idManager.addClosedId(id);
+                        }
+                    }
+                }
+            });
+        }
+        latch.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(idManager.getOpenConnectionCount()).isEqualTo(1);
+        assertThat(idManager.getOpenIds()).containsExactly(kept.get(0));
+    }
+
+}
@@ -0,0 +1,191 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ResultSetInfo;
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import net.ttddyy.dsproxy.listener.ResultSetCompletionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class FetchSizeAdvisorTest {
+
+    private static final String QUERY = "SELECT id FROM item WHERE id > ?";
+
+    private DataSource jdbcDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+        Connection connection = this.jdbcDataSource.getConnection();
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE item (id INTEGER PRIMARY KEY)");
+        for (int i = 1; i <= 50; i++) {
+            statement.execute("INSERT INTO item VALUES (" + i + ")");
+        }
+        connection.close();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    private int executeAndConsume(PreparedStatement ps) throws Exception {
+        ps.setInt(1, 0);
+        ResultSet rs = ps.executeQuery();
+        int count = 0;
+        while (rs.next()) {
+            count++;
+        }
+        rs.close();
+        return count;
+    }
+
+    @Test
+    public void apply() throws Exception {
+        FetchSizeAdvisor advisor = new FetchSizeAdvisor();
+        advisor.setMinSamples(2);
+        advisor.setMaxFetchSize(40);
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource).fetchSizeAdvisor(advisor).build();
+
+        Connection connection = dataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement(QUERY);
+        int defaultFetchSize = ps.getFetchSize();
+        assertThat(executeAndConsume(ps)).isEqualTo(50);
+        assertThat(ps.getFetchSize()).isEqualTo(defaultFetchSize);
+        assertThat(advisor.getRecommendedFetchSize(QUERY)).isEqualTo(0);
+
+        assertThat(executeAndConsume(ps)).isEqualTo(50);
+        assertThat(advisor.getRecommendedFetchSize(QUERY)).isEqualTo(40);
+        assertThat(advisor.getRecommendations()).containsEntry(QueryUtils.fingerprint(QUERY), 40);
+
+        executeAndConsume(ps);
+        assertThat(ps.getFetchSize()).isEqualTo(40);
+
+        // statement
+        Statement statement = connection.createStatement();
+        statement.executeQuery("SELECT id FROM item WHERE id > 10").close();
+        assertThat(statement.getFetchSize()).isEqualTo(40);
+
+        // explicitly set by application
+        PreparedStatement explicit = connection.prepareStatement(QUERY);
+        explicit.setFetchSize(7);
+        executeAndConsume(explicit);
+        assertThat(explicit.getFetchSize()).isEqualTo(7);
+        connection.close();
+    }
+
+    @Test
+    public void smallResults() throws Exception {
+        FetchSizeAdvisor advisor = new FetchSizeAdvisor();
+        advisor.setMinSamples(1);
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource).fetchSizeAdvisor(advisor).build();
+
+        Connection connection = dataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement("SELECT id FROM item WHERE id = ?");
+        for (int i = 0; i < 3; i++) {
+            ps.setInt(1, 1);
+            ps.executeQuery().close();
+        }
+        connection.close();
+        assertThat(advisor.getRecommendations()).isEmpty();
+    }
+
+    @Test
+    public void report() throws Exception {
+        FetchSizeAdvisor advisor = new FetchSizeAdvisor(FetchSizeAdvisor.Mode.REPORT);
+        advisor.setMinSamples(1);
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource).fetchSizeAdvisor(advisor).build();
+
+        Connection connection = dataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement(QUERY);
+        int defaultFetchSize = ps.getFetchSize();
+        executeAndConsume(ps);
+        executeAndConsume(ps);
+        assertThat(ps.getFetchSize()).isEqualTo(defaultFetchSize);
+        assertThat(advisor.getRecommendedFetchSize(QUERY)).isEqualTo(50);
+        connection.close();
+    }
+
+    @Test
+    public void withMetricsListener() throws Exception {
+        FetchSizeAdvisor advisor = new FetchSizeAdvisor();
+        advisor.setMinSamples(1);
+        final List<ResultSetInfo> completed = new ArrayList<ResultSetInfo>();
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .proxyResultSetWithMetrics(new ResultSetCompletionListener() {
+                    @Override
+                    public void onComplete(ResultSetInfo resultSetInfo) {
+                        completed.add(resultSetInfo);
+                    }
+                })
+                .fetchSizeAdvisor(advisor)
+                .build();
+
+        Connection connection = dataSource.getConnection();
+        executeAndConsume(connection.prepareStatement(QUERY));
+        connection.close();
+        assertThat(completed).hasSize(1);
+        assertThat(advisor.getRecommendedFetchSize(QUERY)).isEqualTo(50);
+    }
+
+    @Test
+    public void withOtherResultSetProxy() {
+        try {
+            ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                    .repeatableReadResultSet()
+                    .fetchSizeAdvisor(new FetchSizeAdvisor())
+                    .build();
+            fail("IllegalStateException is expected");
+        } catch (IllegalStateException ex) {
+            assertThat(ex.getMessage()).contains("fetchSizeAdvisor");
+        }
+    }
+
+    @Test
+    public void resetOnStatementCacheCheckin() throws Exception {
+        FetchSizeAdvisor advisor = new FetchSizeAdvisor();
+        advisor.setMinSamples(1);
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .fetchSizeAdvisor(advisor)
+                .preparedStatementCache(new PreparedStatementCache())
+                .build();
+
+        Connection connection = dataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement(QUERY);
+        int defaultFetchSize = ps.getFetchSize();
+        executeAndConsume(ps);
+        executeAndConsume(ps);
+        assertThat(ps.getFetchSize()).isEqualTo(50);
+        ps.close();
+
+        // cached physical statement does not carry over the applied fetch size
+        ps = connection.prepareStatement(QUERY);
+        assertThat(ps.getFetchSize()).isEqualTo(defaultFetchSize);
+        ps.close();
+
+        ps = connection.prepareStatement(QUERY);
+        ps.setFetchSize(3);
+        ps.close();
+        ps = connection.prepareStatement(QUERY);
+        assertThat(ps.getFetchSize()).isEqualTo(defaultFetchSize);
+        connection.close();
+    }
+
+}
@@ -0,0 +1,116 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class LeakDetectionConnectionIdManagerTest {
+
+    private DataSource jdbcDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        jdbcDataSource = TestUtils.getDataSourceWithData();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(jdbcDataSource);
+    }
+
+    @Test
+    public void openConnections() throws Exception {
+        LeakDetectionConnectionIdManager idManager = new LeakDetectionConnectionIdManager();
+        idManager.setStackDepth(5);
+        DataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource).leakDetection(idManager).build();
+
+        Connection conn = ds.getConnection();
+
+        List<OpenConnectionInfo> openConnections = idManager.getOpenConnections();
+        assertThat(openConnections).hasSize(1);
+        OpenConnectionInfo info = openConnections.get(0);
+        assertThat(info.getConnectionId()).isEqualTo("1");
+        assertThat(info.getThreadName()).isEqualTo(Thread.currentThread().getName());
+        assertThat(info.getStackTrace()).isNotEmpty().hasSize(5);
+        for (StackTraceElement element : info.getStackTrace()) {
+            assertThat(element.getClassName()).doesNotStartWith("net.ttddyy.dsproxy.");
+        }
+        assertThat(idManager.getOpenConnectionIds()).containsExactly("1");
+
+        conn.close();
+        assertThat(idManager.getOpenConnections()).isEmpty();
+        assertThat(idManager.getOpenConnectionIds()).isEmpty();
+    }
+
+    @Test
+    public void leakSuspected() throws Exception {
+        CollectingLeakListener listener = new CollectingLeakListener();
+        LeakDetectionConnectionIdManager idManager = new LeakDetectionConnectionIdManager();
+        idManager.setLeakThresholdMillis(0);
+        idManager.setLeakListener(listener);
+        DataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource).leakDetection(idManager).build();
+
+        Connection conn = ds.getConnection();
+        assertThat(idManager.getOpenConnections().get(0).getStackTrace()).isEmpty();
+
+        idManager.checkLeaks();
+        assertThat(listener.suspected).hasSize(1);
+        assertThat(listener.suspected.get(0).isLeakReported()).isTrue();
+
+        // reported only once
+        idManager.checkLeaks();
+        assertThat(listener.suspected).hasSize(1);
+
+        conn.close();
+    }
+
+    @Test
+    public void unclosedConnectionCollected() throws Exception {
+        CollectingLeakListener listener = new CollectingLeakListener();
+        LeakDetectionConnectionIdManager idManager = new LeakDetectionConnectionIdManager();
+        idManager.setLeakListener(listener);
+        DataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource).leakDetection(idManager).build();
+
+        ds.getConnection();  // do not close
+        assertThat(idManager.getOpenConnections()).hasSize(1);
+
+        for (int i = 0; i < 50 && listener.collected.isEmpty(); i++) {
+            System.gc();
+            Thread.sleep(10);
+            idManager.checkLeaks();
+        }
+
+        assertThat(listener.collected).hasSize(1);
+        assertThat(listener.collected.get(0).getConnectionId()).isEqualTo("1");
+        assertThat(idManager.getOpenConnections()).isEmpty();
+    }
+
+    private static class CollectingLeakListener implements ConnectionLeakListener {
+
+        private List<OpenConnectionInfo> suspected = new ArrayList<OpenConnectionInfo>();
+        private List<OpenConnectionInfo> collected = new ArrayList<OpenConnectionInfo>();
+
+        @Override
+        public void onLeakSuspected(OpenConnectionInfo openConnectionInfo) {
+            this.suspected.add(openConnectionInfo);
+        }
+
+        @Override
+        public void onUnclosedConnectionCollected(OpenConnectionInfo openConnectionInfo) {
+            this.collected.add(openConnectionInfo);
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ResultSetInfo;
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import net.ttddyy.dsproxy.listener.ResultSetCompletionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class MetricsResultSetProxyLogicTest {
+
+    private DataSource jdbcDataSource;
+    private DataSource proxyDataSource;
+    private List<ResultSetInfo> completed = new ArrayList<ResultSetInfo>();
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+        this.proxyDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .proxyResultSetWithMetrics(new ResultSetCompletionListener() {
+                    @Override
+                    public void onComplete(ResultSetInfo resultSetInfo) {
+                        completed.add(resultSetInfo);
+                    }
+                })
+                .build();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    @Test
+    public void preparedStatement() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement("SELECT id, name FROM emp WHERE id > ? ORDER BY id");
+        ps.setInt(1, 0);
+        ResultSet rs = ps.executeQuery();
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString("name")).isEqualTo("foo");
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.next()).isFalse();
+        assertThat(this.completed).isEmpty();
+
+        rs.close();
+        rs.close();
+        connection.close();
+
+        assertThat(this.completed).hasSize(1);
+        ResultSetInfo info = this.completed.get(0);
+        assertThat(info.getRowCount()).isEqualTo(2);
+        assertThat(info.getQuery()).isEqualTo("SELECT id, name FROM emp WHERE id > ? ORDER BY id");
+        assertThat(info.getFingerprint()).isEqualTo(QueryUtils.fingerprint("SELECT id, name FROM emp WHERE id > ? ORDER BY id"));
+        assertThat(info.getNextTime()).isGreaterThan(0);
+        assertThat(info.getTimeToFirstRow()).isGreaterThan(0);
+        assertThat(info.getOpenDuration()).isGreaterThanOrEqualTo(info.getTimeToFirstRow());
+        assertThat(info.getOpenDuration()).isGreaterThanOrEqualTo(info.getNextTime());
+        assertThat(info.getConnectionInfo()).isNotNull();
+    }
+
+    @Test
+    public void statement() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery("SELECT id FROM emp WHERE id = 100");
+        assertThat(rs.next()).isFalse();
+        rs.close();
+
+        statement.execute("SELECT name FROM emp");
+        rs = statement.getResultSet();
+        assertThat(rs.next()).isTrue();
+        rs.close();
+        connection.close();
+
+        assertThat(this.completed).hasSize(2);
+        assertThat(this.completed.get(0).getRowCount()).isEqualTo(0);
+        assertThat(this.completed.get(0).getTimeToFirstRow()).isEqualTo(-1);
+        assertThat(this.completed.get(0).getQuery()).isEqualTo("SELECT id FROM emp WHERE id = 100");
+        assertThat(this.completed.get(1).getRowCount()).isEqualTo(1);
+        assertThat(this.completed.get(1).getQuery()).isEqualTo("SELECT name FROM emp");
+    }
+
+    @Test
+    public void statementClose() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement("SELECT id FROM emp ORDER BY id");
+        ResultSet rs = ps.executeQuery();
+        assertThat(rs.next()).isTrue();
+
+        // re-execution closes the previous result set
+        rs = ps.executeQuery();
+        assertThat(this.completed).hasSize(1);
+        assertThat(this.completed.get(0).getRowCount()).isEqualTo(1);
+
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.next()).isTrue();
+        ps.close();
+        assertThat(this.completed).hasSize(2);
+        assertThat(this.completed.get(1).getRowCount()).isEqualTo(2);
+
+        rs.close();
+        connection.close();
+        assertThat(this.completed).hasSize(2);
+    }
+
+    @Test
+    public void interleavedStatements() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        Statement first = connection.createStatement();
+        Statement second = connection.createStatement();
+        first.execute("SELECT id FROM emp");
+        second.execute("SELECT name FROM emp");
+
+        // query is captured when the result set is created, not taken from the latest execution on the connection
+        first.getResultSet().close();
+        second.getResultSet().close();
+        connection.close();
+
+        assertThat(this.completed).hasSize(2);
+        assertThat(this.completed.get(0).getQuery()).isEqualTo("SELECT id FROM emp");
+        assertThat(this.completed.get(1).getQuery()).isEqualTo("SELECT name FROM emp");
+    }
+
+}
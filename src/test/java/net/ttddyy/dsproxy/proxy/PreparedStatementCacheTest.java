@@ -0,0 +1,155 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class PreparedStatementCacheTest {
+
+    private static final String SELECT_BY_ID = "SELECT name FROM emp WHERE id = ?";
+
+    private DataSource jdbcDataSource;
+    private DataSource proxyDataSource;
+    private PreparedStatementCache statementCache;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+        this.statementCache = new PreparedStatementCache(2);
+        this.proxyDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .preparedStatementCache(this.statementCache).build();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    private static PreparedStatement getTarget(PreparedStatement ps) {
+        return (PreparedStatement) ((ProxyJdbcObject) ps).getTarget();
+    }
+
+    private static String selectName(PreparedStatement ps, int id) throws SQLException {
+        ps.setInt(1, id);
+        ResultSet rs = ps.executeQuery();
+        rs.next();
+        return rs.getString(1);
+    }
+
+    @Test
+    public void reuse() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+
+        PreparedStatement ps = connection.prepareStatement(SELECT_BY_ID);
+        PreparedStatement physical = getTarget(ps);
+        assertThat(selectName(ps, 1)).isEqualTo("foo");
+        ps.close();
+        assertThat(physical.isClosed()).isFalse();
+
+        PreparedStatement reused = connection.prepareStatement(SELECT_BY_ID);
+        assertThat(getTarget(reused)).isSameAs(physical);
+        assertThat(selectName(reused, 2)).isEqualTo("bar");
+        reused.close();
+
+        assertThat(this.statementCache.getMissCount()).isEqualTo(1);
+        assertThat(this.statementCache.getHitCount()).isEqualTo(1);
+        connection.close();
+        assertThat(physical.isClosed()).isTrue();
+    }
+
+    @Test
+    public void closedProxy() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement(SELECT_BY_ID);
+        ps.close();
+        ps.close();  // no-op
+        assertThat(ps.isClosed()).isTrue();
+        try {
+            ps.setInt(1, 1);
+            fail("SQLException is expected");
+        } catch (SQLException ex) {
+            assertThat(ex.getMessage()).contains("closed");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void key() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        connection.prepareStatement(SELECT_BY_ID).close();
+        connection.prepareStatement(SELECT_BY_ID, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY).close();
+        connection.prepareStatement(SELECT_BY_ID, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY).close();
+        assertThat(this.statementCache.getMissCount()).isEqualTo(2);
+        assertThat(this.statementCache.getHitCount()).isEqualTo(1);
+
+        connection.prepareStatement("INSERT INTO emp_with_auto_id (name) VALUES (?)", Statement.RETURN_GENERATED_KEYS).close();
+        connection.prepareStatement("INSERT INTO emp_with_auto_id (name) VALUES (?)").close();
+        assertThat(this.statementCache.getMissCount()).isEqualTo(4);
+        connection.close();
+    }
+
+    @Test
+    public void eviction() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        PreparedStatement first = connection.prepareStatement("SELECT id FROM emp");
+        PreparedStatement firstPhysical = getTarget(first);
+        first.close();
+        connection.prepareStatement("SELECT name FROM emp").close();
+        connection.prepareStatement(SELECT_BY_ID).close();
+
+        assertThat(this.statementCache.getEvictionCount()).isEqualTo(1);
+        assertThat(firstPhysical.isClosed()).isTrue();
+        connection.close();
+    }
+
+    @Test
+    public void sameQueryInUse() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        PreparedStatement ps1 = connection.prepareStatement(SELECT_BY_ID);
+        PreparedStatement ps2 = connection.prepareStatement(SELECT_BY_ID);
+        assertThat(getTarget(ps1)).isNotSameAs(getTarget(ps2));
+        assertThat(selectName(ps1, 1)).isEqualTo("foo");
+        assertThat(selectName(ps2, 2)).isEqualTo("bar");
+
+        PreparedStatement physical2 = getTarget(ps2);
+        ps1.close();
+        ps2.close();
+        assertThat(physical2.isClosed()).isTrue();  // cache already has one for the query
+        assertThat(this.statementCache.getMissCount()).isEqualTo(2);
+        connection.close();
+    }
+
+    @Test
+    public void batchIsCleared() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement("INSERT INTO emp (id, name) VALUES (?, ?)");
+        ps.setInt(1, 10);
+        ps.setString(2, "baz");
+        ps.addBatch();
+        ps.close();
+
+        ps = connection.prepareStatement("INSERT INTO emp (id, name) VALUES (?, ?)");
+        ps.setInt(1, 11);
+        ps.setString(2, "qux");
+        ps.addBatch();
+        assertThat(ps.executeBatch()).containsExactly(1);
+        ps.close();
+        connection.close();
+    }
+
+}
@@ -0,0 +1,334 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryCount;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.NoOpMethodExecutionListener;
+import net.ttddyy.dsproxy.listener.NoOpQueryExecutionListener;
+import net.ttddyy.dsproxy.listener.SingleQueryCountHolder;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class ResultCacheTest {
+
+    private static final String SELECT_BY_ID = "SELECT id, name FROM emp WHERE id = ?";
+
+    private static class TestResultCache extends ResultCache {
+
+        private long now;
+
+        TestResultCache(long maxBytes, long ttl, TimeUnit timeUnit) {
+            super(maxBytes, ttl, timeUnit);
+        }
+
+        @Override
+        protected long currentTimeNanos() {
+            return this.now;
+        }
+    }
+
+    // count executions that reached the driver
+    private static class DriverCallListener extends NoOpQueryExecutionListener {
+
+        private int driverCalls;
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            if (execInfo.getAttribute(ResultCache.CACHE_HIT) == null) {
+                this.driverCalls++;
+            }
+        }
+    }
+
+    private DataSource jdbcDataSource;
+    private DataSource proxyDataSource;
+    private TestResultCache resultCache;
+    private SingleQueryCountHolder queryCountHolder;
+    private DriverCallListener driverCallListener;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+        this.resultCache = new TestResultCache(10000, 1, TimeUnit.MINUTES);
+        this.resultCache.cacheQuery(SELECT_BY_ID, "emp");
+        this.resultCache.cacheQuery("SELECT name FROM emp ORDER BY id", "emp");
+        this.queryCountHolder = new SingleQueryCountHolder();
+        this.driverCallListener = new DriverCallListener();
+        this.proxyDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource).name("myDS")
+                .resultCache(this.resultCache)
+                .countQuery(this.queryCountHolder)
+                .listener(this.driverCallListener)
+                .build();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    private String selectName(Connection connection, int id) throws Exception {
+        PreparedStatement ps = connection.prepareStatement(SELECT_BY_ID);
+        ps.setInt(1, id);
+        ResultSet rs = ps.executeQuery();
+        String name = rs.next() ? rs.getString("name") : null;
+        rs.close();
+        ps.close();
+        return name;
+    }
+
+    @Test
+    public void preparedStatement() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+
+        assertThat(selectName(connection, 1)).isEqualTo("foo");
+        assertThat(selectName(connection, 1)).isEqualTo("foo");
+        assertThat(selectName(connection, 2)).isEqualTo("bar");
+        assertThat(selectName(connection, 2)).isEqualTo("bar");
+        connection.close();
+
+        assertThat(this.driverCallListener.driverCalls).isEqualTo(2);
+        assertThat(this.resultCache.getHitCount()).isEqualTo(2);
+        assertThat(this.resultCache.getMissCount()).isEqualTo(2);
+        assertThat(this.resultCache.getEntryCount()).isEqualTo(2);
+
+        QueryCount queryCount = this.queryCountHolder.getQueryCountMap().get("myDS");
+        assertThat(queryCount.getCacheHit()).isEqualTo(2);
+        assertThat(queryCount.getSelect()).isEqualTo(2);
+    }
+
+    @Test
+    public void cachedResultSet() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        Statement statement = connection.createStatement();
+        statement.executeQuery("SELECT name FROM emp ORDER BY id").close();
+
+        ResultSet rs = statement.executeQuery("SELECT name FROM emp  ORDER BY id");  // different formatting
+        assertThat(this.resultCache.getHitCount()).isEqualTo(0);  // key is the query string
+        rs.close();
+
+        rs = statement.executeQuery("SELECT name FROM emp ORDER BY id");
+        assertThat(this.resultCache.getHitCount()).isEqualTo(1);
+        assertThat(rs.getMetaData().getColumnCount()).isEqualTo(1);
+        assertThat(rs.getMetaData().getColumnLabel(1)).isEqualToIgnoringCase("name");
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("foo");
+        assertThat(rs.wasNull()).isFalse();
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString("NAME")).isEqualTo("bar");
+        assertThat(rs.next()).isFalse();
+        rs.close();
+        assertThat(rs.isClosed()).isTrue();
+        connection.close();
+    }
+
+    @Test
+    public void invalidateOnWrite() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        assertThat(selectName(connection, 1)).isEqualTo("foo");
+
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("UPDATE emp SET name = 'baz' WHERE id = 1");
+        assertThat(this.resultCache.getEntryCount()).isEqualTo(0);
+
+        assertThat(selectName(connection, 1)).isEqualTo("baz");
+        assertThat(this.resultCache.getHitCount()).isEqualTo(0);
+
+        // write to other table does not invalidate
+        statement.executeUpdate("INSERT INTO emp_with_auto_id (name) VALUES ('qux')");
+        assertThat(selectName(connection, 1)).isEqualTo("baz");
+        assertThat(this.resultCache.getHitCount()).isEqualTo(1);
+        connection.close();
+    }
+
+    @Test
+    public void invalidateOnTransactionEnd() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        connection.setAutoCommit(false);
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("UPDATE emp SET name = 'baz' WHERE id = 1");
+
+        // cached while the write is not committed
+        assertThat(selectName(connection, 1)).isEqualTo("baz");
+        assertThat(this.resultCache.getEntryCount()).isEqualTo(1);
+
+        connection.rollback();
+        assertThat(this.resultCache.getEntryCount()).isEqualTo(0);
+        assertThat(selectName(connection, 1)).isEqualTo("foo");
+
+        // nothing is written in this transaction
+        connection.commit();
+        assertThat(this.resultCache.getEntryCount()).isEqualTo(1);
+        connection.close();
+    }
+
+    @Test
+    public void tableMatchIgnoresDefaultLocale() throws Exception {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            ResultCache cache = new ResultCache(10000, 1, TimeUnit.MINUTES);
+            cache.cacheQuery("SELECT id FROM item WHERE id = ?", "item");
+            cache.onQuery("insert into item (id) values (1)");
+            assertThat(cache.getInvalidationCount()).isEqualTo(1);
+            cache.onQuery("INSERT INTO ITEMS (id) VALUES (1)");
+            assertThat(cache.getInvalidationCount()).isEqualTo(1);
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void removeExpiredOnPut() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        selectName(connection, 1);
+        selectName(connection, 2);
+        assertThat(this.resultCache.getEntryCount()).isEqualTo(2);
+
+        this.resultCache.now += TimeUnit.MINUTES.toNanos(2);
+        selectName(connection, 3);
+        assertThat(this.resultCache.getEntryCount()).isEqualTo(1);
+        connection.close();
+    }
+
+    @Test
+    public void ttl() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        selectName(connection, 1);
+        this.resultCache.now += TimeUnit.MINUTES.toNanos(1);
+        selectName(connection, 1);
+        connection.close();
+
+        assertThat(this.resultCache.getHitCount()).isEqualTo(0);
+        assertThat(this.resultCache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void maxBytes() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        selectName(connection, 1);
+        long entryBytes = this.resultCache.getCurrentBytes();
+        connection.close();
+
+        this.resultCache = new TestResultCache(entryBytes, 1, TimeUnit.MINUTES);
+        this.resultCache.cacheQuery(SELECT_BY_ID, "emp");
+        this.proxyDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource).resultCache(this.resultCache).build();
+
+        connection = this.proxyDataSource.getConnection();
+        selectName(connection, 1);
+        selectName(connection, 2);  // evicts id=1
+        assertThat(this.resultCache.getEntryCount()).isEqualTo(1);
+        assertThat(this.resultCache.getEvictionCount()).isEqualTo(1);
+
+        selectName(connection, 2);
+        assertThat(this.resultCache.getHitCount()).isEqualTo(1);
+        connection.close();
+    }
+
+    @Test
+    public void mutableValues() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE cache_data (id INT, data VARBINARY(4), created TIMESTAMP)");
+        statement.execute("INSERT INTO cache_data VALUES (1, X'0102', TIMESTAMP '2020-01-01 00:00:00')");
+        String query = "SELECT data, created FROM cache_data";
+        this.resultCache.cacheQuery(query, "cache_data");
+
+        for (int i = 0; i < 3; i++) {
+            ResultSet rs = statement.executeQuery(query);
+            assertThat(rs.next()).isTrue();
+            byte[] data = rs.getBytes(1);
+            Timestamp created = rs.getTimestamp(2);
+            assertThat(data).containsExactly(1, 2);
+            assertThat(created).isEqualTo(Timestamp.valueOf("2020-01-01 00:00:00"));
+
+            // modifying returned values does not affect the cache
+            data[0] = 9;
+            created.setTime(0);
+            rs.close();
+        }
+        assertThat(this.resultCache.getHitCount()).isEqualTo(2);
+        connection.close();
+    }
+
+    @Test
+    public void exceedMaxBytes() throws Exception {
+        // count rows read from the driver
+        final AtomicInteger driverNextCalls = new AtomicInteger();
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .proxyResultSet()
+                .methodListener(new NoOpMethodExecutionListener() {
+                    @Override
+                    public void beforeMethod(MethodExecutionContext executionContext) {
+                        if (executionContext.getTarget() instanceof ResultSet
+                                && "next".equals(executionContext.getMethod().getName())) {
+                            driverNextCalls.incrementAndGet();
+                        }
+                    }
+                })
+                .build();
+        ResultCache resultCache = new ResultCache(1, 1, TimeUnit.MINUTES).cacheQuery("SELECT name FROM emp ORDER BY id");
+        dataSource = ProxyDataSourceBuilder.create(dataSource).resultCache(resultCache).build();
+
+        Connection connection = dataSource.getConnection();
+        ResultSet rs = connection.createStatement().executeQuery("SELECT name FROM emp ORDER BY id");
+        assertThat(driverNextCalls.get()).isEqualTo(1);  // stopped at the first row
+
+        assertThat(rs.getMetaData().getColumnCount()).isEqualTo(1);
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString("name")).isEqualTo("foo");
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("bar");
+        assertThat(rs.wasNull()).isFalse();
+        assertThat(rs.next()).isFalse();
+        rs.close();
+        assertThat(rs.isClosed()).isTrue();
+        connection.close();
+
+        assertThat(resultCache.getEntryCount()).isEqualTo(0);
+        assertThat(resultCache.getCurrentBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void invalidateOnProcedureCall() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        selectName(connection, 1);
+        assertThat(this.resultCache.getEntryCount()).isEqualTo(1);
+
+        connection.createStatement().execute("CALL ABS(-1)");
+        assertThat(this.resultCache.getEntryCount()).isEqualTo(0);
+        connection.close();
+    }
+
+    @Test
+    public void notRegistered() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        Statement statement = connection.createStatement();
+        statement.executeQuery("SELECT id FROM emp").close();
+        statement.executeQuery("SELECT id FROM emp").close();
+        connection.close();
+
+        assertThat(this.driverCallListener.driverCalls).isEqualTo(2);
+        assertThat(this.resultCache.getEntryCount()).isEqualTo(0);
+    }
+
+}
@@ -0,0 +1,89 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class ResultSetProxyPolicyTest {
+
+    private DataSource jdbcDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    @Test
+    public void registeredQuery() throws Exception {
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .proxyResultSet()
+                .resultSetProxyPolicy(new QueryResultSetProxyPolicy("SELECT name FROM emp WHERE id = 1"))
+                .build();
+
+        Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement();
+        assertThat(statement.executeQuery("SELECT name FROM emp WHERE id = 2")).isInstanceOf(ProxyJdbcObject.class);
+        assertThat(statement.executeQuery("SELECT id FROM emp")).isNotInstanceOf(ProxyJdbcObject.class);
+
+        statement.execute("SELECT name FROM emp WHERE id = 1");
+        assertThat(statement.getResultSet()).isInstanceOf(ProxyJdbcObject.class);
+
+        PreparedStatement ps = connection.prepareStatement("SELECT name FROM emp WHERE id = ?");
+        ps.setInt(1, 1);
+        ResultSet rs = ps.executeQuery();
+        assertThat(rs).isInstanceOf(ProxyJdbcObject.class);
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("foo");
+        connection.close();
+    }
+
+    @Test
+    public void sampling() throws Exception {
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .proxyResultSet()
+                .resultSetProxyPolicy(new SamplingResultSetProxyPolicy(0.25))
+                .build();
+
+        Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement();
+        int proxied = 0;
+        for (int i = 0; i < 20; i++) {
+            ResultSet rs = statement.executeQuery("SELECT id FROM emp");
+            if (rs instanceof ProxyJdbcObject) {
+                proxied++;
+            }
+            rs.close();
+        }
+        connection.close();
+        assertThat(proxied).isEqualTo(5);
+    }
+
+    @Test
+    public void samplingRate() {
+        SamplingResultSetProxyPolicy none = new SamplingResultSetProxyPolicy(0);
+        SamplingResultSetProxyPolicy all = new SamplingResultSetProxyPolicy(1);
+        for (int i = 0; i < 10; i++) {
+            assertThat(none.shouldProxy("SELECT 1", null)).isFalse();
+            assertThat(all.shouldProxy("SELECT 1", null)).isTrue();
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class ResultSetShapeCacheTest {
+
+    private DataSource jdbcDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    @Test
+    public void repeatableReadResultSet() throws Exception {
+        ResultSetShapeCache shapeCache = new ResultSetShapeCache();
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .repeatableReadResultSet()
+                .resultSetShapeCache(shapeCache)
+                .build();
+
+        Connection connection = dataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement("SELECT id, name FROM emp WHERE id = ?");
+        for (int i = 1; i <= 2; i++) {
+            ps.setInt(1, i);
+            ResultSet rs = ps.executeQuery();
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getInt("ID")).isEqualTo(i);
+            rs.close();
+        }
+
+        // keyed by query string; queries with different literals are cached separately
+        Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery("SELECT id, name FROM emp WHERE id = 1");
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString("Name")).isEqualTo("foo");
+        rs = statement.executeQuery("SELECT id, name FROM emp WHERE id = 2");
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString("Name")).isEqualTo("bar");
+        connection.close();
+
+        assertThat(shapeCache.size()).isEqualTo(3);
+        assertThat(shapeCache.getMissCount()).isEqualTo(3);
+        assertThat(shapeCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void streamingCachedResultSet() throws Exception {
+        ResultSetShapeCache shapeCache = new ResultSetShapeCache();
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .proxyResultSet(new StreamingCachedResultSetProxyLogicFactory())
+                .resultSetShapeCache(shapeCache)
+                .build();
+
+        Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement();
+        ResultSet rs1 = statement.executeQuery("SELECT id, name FROM emp");
+        ResultSet rs2 = connection.createStatement().executeQuery("SELECT id, name FROM emp");
+        assertThat(rs1.getMetaData()).isSameAs(rs2.getMetaData());
+        assertThat(rs2.getMetaData().getColumnLabel(2)).isEqualToIgnoringCase("name");
+        connection.close();
+    }
+
+    @Test
+    public void columnMismatch() throws Exception {
+        ResultSetShapeCache shapeCache = new ResultSetShapeCache();
+        Connection connection = this.jdbcDataSource.getConnection();
+        Statement statement = connection.createStatement();
+
+        ResultSetShape shape = shapeCache.getShape(statement.executeQuery("SELECT id FROM emp"), "query");
+        assertThat(shape.getColumnCount()).isEqualTo(1);
+        assertThat(shapeCache.getShape(statement.executeQuery("SELECT id FROM emp"), "query")).isSameAs(shape);
+
+        ResultSetShape replaced = shapeCache.getShape(statement.executeQuery("SELECT id, name FROM emp"), "query");
+        assertThat(replaced.getColumnCount()).isEqualTo(2);
+        assertThat(replaced.getColumnLabelIndex().indexOf("name")).isEqualTo(2);
+        assertThat(shapeCache.getShape(statement.executeQuery("SELECT id, name FROM emp"), "query")).isSameAs(replaced);
+
+        // same column count: columns are not validated on a hit
+        ResultSetShape names = shapeCache.getShape(statement.executeQuery("SELECT name, id FROM emp"), "query");
+        assertThat(names).isSameAs(replaced);
+
+        // not cached without query
+        assertThat(shapeCache.getShape(statement.executeQuery("SELECT id FROM emp"), (String) null).getColumnCount()).isEqualTo(1);
+        assertThat(shapeCache.size()).isEqualTo(1);
+        assertThat(shapeCache.getHitCount()).isEqualTo(3);
+        assertThat(shapeCache.getMissCount()).isEqualTo(2);
+        connection.close();
+    }
+
+}
@@ -0,0 +1,218 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.listener.NoOpQueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class StatementCoalescingTest {
+
+    private static final String INSERT = "INSERT INTO emp (id, name) VALUES (?, ?)";
+    private static final String INSERT_BY_NAME = "INSERT INTO emp (name, id) VALUES (?, ?)";
+
+    private static class RecordingListener extends NoOpQueryExecutionListener {
+
+        // batch size, or 0 for non batch execution
+        private final List<Integer> executions = new ArrayList<Integer>();
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            this.executions.add(execInfo.isBatch() ? execInfo.getBatchSize() : 0);
+        }
+    }
+
+    private DataSource jdbcDataSource;
+    private DataSource proxyDataSource;
+    private RecordingListener listener;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+        this.listener = new RecordingListener();
+        StatementCoalescing coalescing = new StatementCoalescing(3,
+                Arrays.asList(INSERT, INSERT_BY_NAME));
+        this.proxyDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .statementCoalescing(coalescing).listener(this.listener).build();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    private int countEmp(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM emp");
+        rs.next();
+        int count = rs.getInt(1);
+        statement.close();
+        return count;
+    }
+
+    private void insert(PreparedStatement ps, int from, int to) throws SQLException {
+        for (int id = from; id < to; id++) {
+            ps.setInt(1, id);
+            ps.setString(2, "name" + id);
+            assertThat(ps.executeUpdate()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void flushOnThresholdAndCommit() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        connection.setAutoCommit(false);
+        PreparedStatement ps = connection.prepareStatement(INSERT);
+
+        insert(ps, 10, 12);
+        assertThat(this.listener.executions).isEmpty();
+
+        insert(ps, 12, 15);
+        assertThat(this.listener.executions).containsExactly(3);
+
+        connection.commit();
+        assertThat(this.listener.executions).containsExactly(3, 2);
+        connection.close();
+
+        Connection actual = this.jdbcDataSource.getConnection();
+        assertThat(countEmp(actual)).isEqualTo(7);
+        actual.close();
+    }
+
+    @Test
+    public void flushOnOtherStatement() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        connection.setAutoCommit(false);
+        PreparedStatement ps = connection.prepareStatement(INSERT);
+
+        insert(ps, 10, 12);
+        assertThat(countEmp(connection)).isEqualTo(4);
+        assertThat(this.listener.executions).containsExactly(2, 0);
+
+        connection.rollback();
+        connection.close();
+    }
+
+    @Test
+    public void flushOnClose() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        connection.setAutoCommit(false);
+        PreparedStatement ps = connection.prepareStatement(INSERT);
+        insert(ps, 10, 12);
+        ps.close();
+        assertThat(this.listener.executions).isEmpty();  // deferred executions survive statement close
+        assertThat(ps.isClosed()).isTrue();
+
+        ps = connection.prepareStatement(INSERT_BY_NAME);
+        ps.setString(1, "baz");
+        ps.setInt(2, 20);
+        assertThat(ps.executeUpdate()).isEqualTo(1);
+        assertThat(this.listener.executions).containsExactly(2);
+        connection.close();
+        assertThat(this.listener.executions).containsExactly(2, 1);
+    }
+
+    @Test
+    public void prepareEachTime() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        connection.setAutoCommit(false);
+        for (int id = 10; id < 17; id++) {
+            PreparedStatement ps = connection.prepareStatement(INSERT);
+            insert(ps, id, id + 1);
+            if (id % 2 == 0) {
+                ps.close();  // also without closing
+            }
+        }
+        assertThat(this.listener.executions).containsExactly(3, 3);
+
+        connection.commit();
+        assertThat(this.listener.executions).containsExactly(3, 3, 1);
+        assertThat(countEmp(connection)).isEqualTo(9);
+        connection.close();
+    }
+
+    @Test
+    public void interleavedStatements() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        connection.setAutoCommit(false);
+        PreparedStatement first = connection.prepareStatement(INSERT);
+        PreparedStatement second = connection.prepareStatement(INSERT);
+        first.setInt(1, 10);
+        first.setString(2, "first");
+        second.setInt(1, 11);
+        second.setString(2, "second");
+
+        // parameters of each statement are kept
+        assertThat(first.executeUpdate()).isEqualTo(1);
+        assertThat(second.executeUpdate()).isEqualTo(1);
+        first.setInt(1, 12);
+        assertThat(first.executeUpdate()).isEqualTo(1);
+        assertThat(this.listener.executions).containsExactly(3);
+        connection.commit();
+
+        Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery("SELECT name FROM emp WHERE id >= 10 ORDER BY id");
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("first");
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("second");
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("first");
+        connection.close();
+    }
+
+    @Test
+    public void autoCommit() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement(INSERT);
+        insert(ps, 10, 12);
+        assertThat(this.listener.executions).containsExactly(0, 0);
+        connection.close();
+    }
+
+    @Test
+    public void notTargetQuery() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        connection.setAutoCommit(false);
+        PreparedStatement ps = connection.prepareStatement("DELETE FROM emp WHERE id = ?");
+        ps.setInt(1, 1);
+        assertThat(ps.executeUpdate()).isEqualTo(1);
+        assertThat(this.listener.executions).containsExactly(0);
+        connection.rollback();
+        connection.close();
+    }
+
+    @Test
+    public void onlySingleRowInsert() {
+        String[] queries = {"UPDATE emp SET name = ? WHERE id = ?", "DELETE FROM emp WHERE id = ?",
+                "INSERT INTO emp (id, name) SELECT id + 100, name FROM emp WHERE id = ?"};
+        for (String query : queries) {
+            try {
+                new StatementCoalescing(query);
+                fail("IllegalArgumentException is expected for " + query);
+            } catch (IllegalArgumentException ex) {
+                // update counts of the query may be checked by the application
+            }
+        }
+    }
+
+}
@@ -0,0 +1,243 @@
+package net.ttddyy.dsproxy.proxy;
+
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class StreamingCachedResultSetProxyLogicTest {
+
+    private DataSource jdbcDataSource;
+    private File spillDirectory;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+        this.spillDirectory = Files.createTempDirectory("dsproxy-test").toFile();
+
+        Connection connection = this.jdbcDataSource.getConnection();
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE item (id INTEGER PRIMARY KEY, name VARCHAR(20), score DOUBLE, active BOOLEAN, price DECIMAL(10,2), amount BIGINT)");
+        for (int i = 1; i <= 10; i++) {
+            String amount = i % 3 == 0 ? "NULL" : String.valueOf(i * 1000L);
+            statement.execute("INSERT INTO item VALUES (" + i + ", 'name-" + i + "', " + i + ".5, " + (i % 2 == 0) + ", " + i + ".25, " + amount + ")");
+        }
+        connection.close();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+        File[] files = this.spillDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        this.spillDirectory.delete();
+    }
+
+    private ResultSet query(StreamingCachedResultSetProxyLogicFactory factory) throws Exception {
+        return query(factory, "SELECT id, name, score, active, price, amount FROM item ORDER BY id");
+    }
+
+    private ResultSet query(StreamingCachedResultSetProxyLogicFactory factory, String query) throws Exception {
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource).proxyResultSet(factory).build();
+        Connection connection = dataSource.getConnection();
+        return connection.createStatement().executeQuery(query);
+    }
+
+    @Test
+    public void navigation() throws Exception {
+        ResultSet rs = query(new StreamingCachedResultSetProxyLogicFactory(3, Long.MAX_VALUE));
+
+        assertThat(rs.getType()).isEqualTo(ResultSet.TYPE_SCROLL_INSENSITIVE);
+        assertThat(rs.getConcurrency()).isEqualTo(ResultSet.CONCUR_READ_ONLY);
+        assertThat(rs.isBeforeFirst()).isTrue();
+
+        for (int i = 1; i <= 10; i++) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getRow()).isEqualTo(i);
+            assertThat(rs.getInt("id")).isEqualTo(i);
+        }
+        assertThat(rs.isLast()).isTrue();
+        assertThat(rs.next()).isFalse();
+        assertThat(rs.isAfterLast()).isTrue();
+        assertThat(rs.getRow()).isEqualTo(0);
+
+        for (int i = 10; i >= 1; i--) {
+            assertThat(rs.previous()).isTrue();
+            assertThat(rs.getInt(1)).isEqualTo(i);
+        }
+        assertThat(rs.isFirst()).isTrue();
+        assertThat(rs.previous()).isFalse();
+        assertThat(rs.isBeforeFirst()).isTrue();
+
+        assertThat(rs.absolute(5)).isTrue();
+        assertThat(rs.getInt("ID")).isEqualTo(5);
+        assertThat(rs.absolute(-1)).isTrue();
+        assertThat(rs.getInt(1)).isEqualTo(10);
+        assertThat(rs.relative(-3)).isTrue();
+        assertThat(rs.getInt(1)).isEqualTo(7);
+        assertThat(rs.absolute(11)).isFalse();
+        assertThat(rs.isAfterLast()).isTrue();
+        assertThat(rs.first()).isTrue();
+        assertThat(rs.getInt(1)).isEqualTo(1);
+        assertThat(rs.last()).isTrue();
+        assertThat(rs.getInt(1)).isEqualTo(10);
+
+        rs.beforeFirst();
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getInt(1)).isEqualTo(1);
+
+        rs.close();
+        assertThat(rs.isClosed()).isTrue();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")  // covers the deprecated ResultSet#getBigDecimal(String, int)
+    public void values() throws Exception {
+        ResultSet rs = query(new StreamingCachedResultSetProxyLogicFactory(4, Long.MAX_VALUE));
+
+        Connection connection = this.jdbcDataSource.getConnection();
+        ResultSet expected = connection.createStatement().executeQuery("SELECT id, name, score, active, price, amount FROM item ORDER BY id");
+        while (expected.next()) {
+            assertThat(rs.next()).isTrue();
+            for (int i = 1; i <= 6; i++) {
+                Object value = rs.getObject(i);
+                assertThat(rs.wasNull()).isEqualTo(expected.getObject(i) == null);
+                assertThat(value).isEqualTo(expected.getObject(i));
+            }
+            assertThat(rs.getString("name")).isEqualTo(expected.getString("name"));
+            assertThat(rs.getDouble("score")).isEqualTo(expected.getDouble("score"));
+            assertThat(rs.getBoolean("active")).isEqualTo(expected.getBoolean("active"));
+            assertThat(rs.getBigDecimal("price")).isEqualTo(expected.getBigDecimal("price"));
+            assertThat(rs.getLong("amount")).isEqualTo(expected.getLong("amount"));
+            assertThat(rs.wasNull()).isEqualTo(expected.getObject("amount") == null);
+            assertThat(rs.getString("id")).isEqualTo(expected.getString("id"));
+        }
+        assertThat(rs.next()).isFalse();
+        connection.close();
+
+        assertThat(rs.absolute(3)).isTrue();
+        assertThat(rs.getObject("amount")).isNull();
+        assertThat(rs.getInt("amount")).isEqualTo(0);
+        assertThat(rs.wasNull()).isTrue();
+        assertThat(rs.getBigDecimal("price", 1)).isEqualTo(new BigDecimal("3.3"));
+        assertThat(rs.getObject("id", Long.class)).isEqualTo(3L);
+
+        try {
+            rs.updateString("name", "foo");
+            fail("read-only");
+        } catch (SQLFeatureNotSupportedException e) {
+        }
+        rs.close();
+    }
+
+    @Test
+    public void fetchInBlocks() throws Exception {
+        ResultSet rs = query(new StreamingCachedResultSetProxyLogicFactory(4, Long.MAX_VALUE));
+        ResultSet target = (ResultSet) ((ProxyJdbcObject) rs).getTarget();
+
+        assertThat(rs.next()).isTrue();
+        assertThat(target.getRow()).isEqualTo(4);
+        assertThat(rs.absolute(5)).isTrue();
+        assertThat(target.getRow()).isEqualTo(8);
+        rs.close();
+    }
+
+    @Test
+    public void spillToFile() throws Exception {
+        ResultSet rs = query(new StreamingCachedResultSetProxyLogicFactory(2, 1, this.spillDirectory));
+
+        while (rs.next()) {
+            assertThat(rs.getString("name")).isEqualTo("name-" + rs.getInt("id"));
+        }
+        assertThat(this.spillDirectory.listFiles()).hasSize(1);
+
+        for (int i = 10; i >= 1; i--) {
+            assertThat(rs.previous()).isTrue();
+            assertThat(rs.getInt("id")).isEqualTo(i);
+            assertThat(rs.getString("name")).isEqualTo("name-" + i);
+            assertThat(rs.getBigDecimal("price")).isEqualTo(new BigDecimal(i + ".25"));
+        }
+        assertThat(rs.absolute(7)).isTrue();
+        assertThat(rs.getDouble("score")).isEqualTo(7.5);
+
+        rs.close();
+        assertThat(this.spillDirectory.listFiles()).isEmpty();
+    }
+
+    @Test
+    public void spillFileDeletedOnStatementClose() throws Exception {
+        StreamingCachedResultSetProxyLogicFactory factory = new StreamingCachedResultSetProxyLogicFactory(2, 1, this.spillDirectory);
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource).proxyResultSet(factory).build();
+        Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery("SELECT id, name FROM item ORDER BY id");
+        assertThat(rs.last()).isTrue();
+        assertThat(this.spillDirectory.listFiles()).hasSize(1);
+
+        // close the statement without closing the result set
+        statement.close();
+        assertThat(rs.isClosed()).isTrue();
+        assertThat(this.spillDirectory.listFiles()).isEmpty();
+        connection.close();
+    }
+
+    @Test
+    public void spillValueTypes() throws Exception {
+        ResultSet rs = query(new StreamingCachedResultSetProxyLogicFactory(2, 1, this.spillDirectory),
+                "SELECT id, X'0102' bin, TIMESTAMP '2020-01-01 10:20:30.123456789' ts, "
+                        + "CAST(id AS NUMERIC(30)) big, DATE '2020-01-02' dt, CASE WHEN id > 5 THEN NULL ELSE name END nm "
+                        + "FROM item ORDER BY id");
+        while (rs.next()) {
+            // read all
+        }
+        assertThat(this.spillDirectory.listFiles()).hasSize(1);
+
+        for (int i = 10; i >= 1; i--) {
+            assertThat(rs.previous()).isTrue();
+            assertThat(rs.getInt("id")).isEqualTo(i);
+            assertThat(rs.getBytes("bin")).containsExactly(1, 2);
+            assertThat(rs.getTimestamp("ts")).isEqualTo(Timestamp.valueOf("2020-01-01 10:20:30.123456789"));
+            assertThat(rs.getBigDecimal("big")).isEqualTo(new BigDecimal(i));
+            assertThat(rs.getDate("dt")).isEqualTo(java.sql.Date.valueOf("2020-01-02"));
+            assertThat(rs.getString("nm")).isEqualTo(i > 5 ? null : "name-" + i);
+        }
+        rs.close();
+    }
+
+    @Test
+    public void noSpillForUnsupportedValues() throws Exception {
+        ResultSet rs = query(new StreamingCachedResultSetProxyLogicFactory(2, 1, this.spillDirectory),
+                "SELECT id, ARRAY[id] arr FROM item ORDER BY id");
+        while (rs.next()) {
+            assertThat(rs.getObject("arr")).isInstanceOf(Array.class);
+        }
+        assertThat(this.spillDirectory.listFiles()).isEmpty();  // kept in memory
+
+        assertThat(rs.absolute(3)).isTrue();
+        assertThat(((Object[]) ((Array) rs.getObject("arr")).getArray())[0]).isEqualTo(3);
+        rs.close();
+    }
+
+}
@@ -0,0 +1,133 @@
+package net.ttddyy.dsproxy.support;
+
+import net.ttddyy.dsproxy.QueryCountScope;
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.listener.ScopedQueryCountStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class AbstractQueryCountLoggingHandlerInterceptorTest {
+
+    private DataSource jdbcDataSource;
+    private DataSource proxyDataSource;
+
+    private List<String> messages = new ArrayList<String>();
+
+    private AbstractQueryCountLoggingHandlerInterceptor interceptor = new AbstractQueryCountLoggingHandlerInterceptor() {
+        @Override
+        protected void writeLog(String logEntry) {
+            messages.add(logEntry);
+        }
+    };
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+        this.proxyDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource).name("myDS")
+                .countQuery(new ScopedQueryCountStrategy()).build();
+        this.interceptor.setUseQueryCountScope(true);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    // request that only supports attributes
+    private static HttpServletRequest createRequest() {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        return (HttpServletRequest) Proxy.newProxyInstance(AbstractQueryCountLoggingHandlerInterceptorTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String methodName = method.getName();
+                        if ("getAttribute".equals(methodName)) {
+                            return attributes.get(args[0]);
+                        } else if ("setAttribute".equals(methodName)) {
+                            attributes.put((String) args[0], args[1]);
+                        } else if ("removeAttribute".equals(methodName)) {
+                            attributes.remove(args[0]);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private void select() throws Exception {
+        Connection connection = this.proxyDataSource.getConnection();
+        connection.createStatement().executeQuery("SELECT * FROM emp");
+        connection.close();
+    }
+
+    @Test
+    public void useQueryCountScope() throws Exception {
+        HttpServletRequest request = createRequest();
+
+        this.interceptor.preHandle(request, null, null);
+        QueryCountScope scope = QueryCountScope.current();
+        assertThat(scope).isNotNull();
+        select();
+        this.interceptor.afterCompletion(request, null, null, null);
+
+        assertThat(QueryCountScope.current()).isNull();
+        assertThat(scope.getQueryCount("myDS").getSelect()).isEqualTo(1);
+        assertThat(this.messages).hasSize(1);
+        assertThat(this.messages.get(0)).contains("Name:myDS").contains("Select:1");
+    }
+
+    @Test
+    public void asyncRequest() throws Exception {
+        final HttpServletRequest request = createRequest();
+
+        this.interceptor.preHandle(request, null, null);
+        final QueryCountScope scope = QueryCountScope.current();
+        select();
+        this.interceptor.afterConcurrentHandlingStarted(request, null, null);
+
+        // request thread does not keep the scope
+        assertThat(QueryCountScope.current()).isNull();
+
+        // async dispatch on another thread
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    interceptor.preHandle(request, null, null);
+                    assertThat(QueryCountScope.current()).isSameAs(scope);
+                    select();
+                    interceptor.afterCompletion(request, null, null, null);
+                    assertThat(QueryCountScope.current()).isNull();
+                    return null;
+                }
+            }).get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(scope.getQueryCount("myDS").getSelect()).isEqualTo(2);
+        assertThat(this.messages).hasSize(1);
+        assertThat(this.messages.get(0)).contains("Select:2");
+    }
+
+}
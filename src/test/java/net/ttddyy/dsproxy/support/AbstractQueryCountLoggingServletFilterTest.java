@@ -0,0 +1,106 @@
+package net.ttddyy.dsproxy.support;
+
+import net.ttddyy.dsproxy.QueryCountScope;
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.listener.ScopedQueryCountStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class AbstractQueryCountLoggingServletFilterTest {
+
+    private DataSource jdbcDataSource;
+    private DataSource proxyDataSource;
+
+    private List<String> messages = new ArrayList<String>();
+
+    private AbstractQueryCountLoggingServletFilter filter = new AbstractQueryCountLoggingServletFilter() {
+        @Override
+        protected void initLogLevelFromFilterConfigIfSpecified(String logLevelParam) {
+        }
+
+        @Override
+        protected void writeLog(String message) {
+            messages.add(message);
+        }
+
+        @Override
+        protected void resetLogger(String loggerName) {
+        }
+    };
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+        this.proxyDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource).name("myDS")
+                .countQuery(new ScopedQueryCountStrategy()).build();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    @Test
+    public void useQueryCountScope() throws Exception {
+        this.filter.setUseQueryCountScope(true);
+
+        final QueryCountScope[] requestScope = new QueryCountScope[1];
+        this.filter.doFilter(null, null, new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+                requestScope[0] = QueryCountScope.current();
+                try {
+                    Connection connection = proxyDataSource.getConnection();
+                    connection.createStatement().executeQuery("SELECT * FROM emp");
+                    connection.createStatement().executeQuery("SELECT * FROM emp");
+                    connection.close();
+                } catch (SQLException ex) {
+                    throw new ServletException(ex);
+                }
+            }
+        });
+
+        assertThat(requestScope[0]).isNotNull();
+        assertThat(requestScope[0].getQueryCount("myDS").getSelect()).isEqualTo(2);
+        assertThat(QueryCountScope.current()).isNull();
+        assertThat(this.messages).hasSize(1);
+        assertThat(this.messages.get(0)).contains("Name:myDS").contains("Select:2");
+    }
+
+    @Test
+    public void useQueryCountScopeWithException() throws Exception {
+        this.filter.setUseQueryCountScope(true);
+
+        try {
+            this.filter.doFilter(null, null, new FilterChain() {
+                @Override
+                public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+                    throw new IOException("failed");
+                }
+            });
+            fail("IOException is expected");
+        } catch (IOException ex) {
+            assertThat(ex.getMessage()).isEqualTo("failed");
+        }
+        assertThat(QueryCountScope.current()).isNull();
+    }
+
+}
@@ -0,0 +1,150 @@
+package net.ttddyy.dsproxy.support.jmx;
+
+import net.ttddyy.dsproxy.DataSourceProxyException;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.metrics.QueryMetrics;
+import net.ttddyy.dsproxy.proxy.ProxyConfig;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class DataSourceProxyStatsTest {
+
+    private DataSource jdbcDataSource;
+
+    private MBeanServer mBeanServer;
+
+    @Before
+    public void setup() throws Exception {
+        jdbcDataSource = TestUtils.getDataSourceWithData();
+        mBeanServer = MBeanServerFactory.newMBeanServer();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(jdbcDataSource);
+    }
+
+    @Test
+    public void mbean() throws Exception {
+        DataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource).name("myDS")
+                .connectionMetrics()
+                .registerMBean(mBeanServer)
+                .build();
+
+        ObjectName objectName = DataSourceProxyStats.createObjectName("myDS");
+        assertThat(mBeanServer.isRegistered(objectName)).isTrue();
+
+        Connection conn = ds.getConnection();
+        conn.createStatement().executeQuery("SELECT id FROM emp WHERE id = 1").close();
+
+        assertThat(mBeanServer.getAttribute(objectName, "DataSourceName")).isEqualTo("myDS");
+        assertThat(mBeanServer.getAttribute(objectName, "Total")).isEqualTo(1L);
+        assertThat(mBeanServer.getAttribute(objectName, "Select")).isEqualTo(1L);
+        assertThat(mBeanServer.getAttribute(objectName, "Statement")).isEqualTo(1L);
+        assertThat(mBeanServer.getAttribute(objectName, "OpenConnectionCount")).isEqualTo(1);
+        assertThat(mBeanServer.getAttribute(objectName, "AcquiredConnectionCount")).isEqualTo(1L);
+        assertThat((Long) mBeanServer.getAttribute(objectName, "Latency99thPercentile")).isGreaterThanOrEqualTo(0L);
+
+        String[] statements = (String[]) mBeanServer.invoke(objectName, "dumpTopStatements",
+                new Object[]{10}, new String[]{int.class.getName()});
+        assertThat(statements).hasSize(1);
+        assertThat(statements[0]).contains("SELECT id FROM emp WHERE id = ?");
+
+        conn.close();
+        assertThat(mBeanServer.getAttribute(objectName, "OpenConnectionCount")).isEqualTo(0);
+
+        mBeanServer.invoke(objectName, "reset", new Object[0], new String[0]);
+        assertThat(mBeanServer.getAttribute(objectName, "Total")).isEqualTo(0L);
+        assertThat(mBeanServer.getAttribute(objectName, "AcquiredConnectionCount")).isEqualTo(0L);
+
+        // open connection count is not cleared
+        conn = ds.getConnection();
+        mBeanServer.invoke(objectName, "reset", new Object[0], new String[0]);
+        assertThat(mBeanServer.getAttribute(objectName, "OpenConnectionCount")).isEqualTo(1);
+        conn.close();
+        assertThat(mBeanServer.getAttribute(objectName, "OpenConnectionCount")).isEqualTo(0);
+
+        // building again does not replace the registered MBean
+        try {
+            ProxyDataSourceBuilder.create(jdbcDataSource).name("myDS").registerMBean(mBeanServer).build();
+            fail("DataSourceProxyException is expected");
+        } catch (DataSourceProxyException ex) {
+            assertThat(ex.getMessage()).contains("already registered");
+        }
+    }
+
+    @Test
+    public void unnamed() throws Exception {
+        ProxyDataSourceBuilder.create(jdbcDataSource).registerMBean(mBeanServer).build();
+        ProxyDataSourceBuilder.create(jdbcDataSource).registerMBean(mBeanServer).buildProxy();
+
+        Set<ObjectName> objectNames = mBeanServer.queryNames(new ObjectName(DataSourceProxyStats.DOMAIN + ":*"), null);
+        assertThat(objectNames).hasSize(2);
+
+        // without connection metrics
+        ObjectName objectName = objectNames.iterator().next();
+        assertThat(mBeanServer.getAttribute(objectName, "OpenConnectionCount")).isEqualTo(-1);
+        assertThat(mBeanServer.getAttribute(objectName, "AcquiredConnectionCount")).isEqualTo(-1L);
+    }
+
+    @Test
+    public void unregister() {
+        DataSourceProxyStats stats = new DataSourceProxyStats(ProxyConfig.Builder.create().dataSourceName("myDS").build(), new QueryMetrics());
+        ObjectName objectName = stats.register(mBeanServer);
+        assertThat(stats.getObjectName()).isEqualTo(objectName);
+        assertThat(mBeanServer.isRegistered(objectName)).isTrue();
+
+        stats.unregister(mBeanServer);
+        assertThat(stats.getObjectName()).isNull();
+        assertThat(mBeanServer.isRegistered(objectName)).isFalse();
+    }
+
+    @Test
+    public void inFlightQueryCount() throws Exception {
+        final QueryMetrics queryMetrics = new QueryMetrics();
+        final List<Long> inFlightCounts = new ArrayList<Long>();
+        DataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource).name("myDS")
+                .queryMetrics(queryMetrics)
+                .registerMBean(mBeanServer)
+                .beforeQuery(new ProxyDataSourceBuilder.SingleQueryExecution() {
+                    @Override
+                    public void execute(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+                        inFlightCounts.add(queryMetrics.getInFlightQueryCount());
+                    }
+                })
+                .build();
+
+        Connection conn = ds.getConnection();
+        conn.createStatement().executeQuery("SELECT id FROM emp WHERE id = 1").close();
+        conn.close();
+
+        assertThat(inFlightCounts).containsExactly(1L);
+        assertThat(mBeanServer.getAttribute(DataSourceProxyStats.createObjectName("myDS"), "InFlightQueryCount")).isEqualTo(0L);
+    }
+
+    @Test
+    public void objectName() {
+        assertThat(DataSourceProxyStats.createObjectName("my:DS").getKeyProperty("name")).isEqualTo("\"my:DS\"");
+        assertThat(DataSourceProxyStats.createObjectName(null).getKeyProperty("name")).isEqualTo("\"default\"");
+    }
+
+}
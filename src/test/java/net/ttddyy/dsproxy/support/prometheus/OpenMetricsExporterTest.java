@@ -0,0 +1,263 @@
+package net.ttddyy.dsproxy.support.prometheus;
+
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.listener.SingleQueryCountHolder;
+import net.ttddyy.dsproxy.metrics.ConnectionMetrics;
+import net.ttddyy.dsproxy.metrics.QueryMetrics;
+import net.ttddyy.dsproxy.proxy.ConcurrentConnectionIdManager;
+import net.ttddyy.dsproxy.proxy.NanoTimeStopwatchFactory;
+import net.ttddyy.dsproxy.proxy.ProxyConfig;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.sql.Connection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class OpenMetricsExporterTest {
+
+    private DataSource jdbcDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        jdbcDataSource = TestUtils.getDataSourceWithData();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(jdbcDataSource);
+    }
+
+    private OpenMetricsExporter createExporter() throws Exception {
+        QueryMetrics queryMetrics = new QueryMetrics();
+        ProxyDataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource).name("my\"DS")
+                .queryMetrics(queryMetrics).connectionMetrics().build();
+
+        Connection conn = ds.getConnection();
+        conn.createStatement().executeQuery("SELECT id FROM emp").close();
+        conn.createStatement().executeUpdate("UPDATE emp SET name = 'FOO' WHERE id = 1");
+        conn.close();
+
+        OpenMetricsExporter exporter = new OpenMetricsExporter();
+        exporter.register(ds.getProxyConfig(), queryMetrics);
+        return exporter;
+    }
+
+    @Test
+    public void render() throws Exception {
+        OpenMetricsExporter exporter = createExporter();
+
+        String text = exporter.render();
+        assertThat(text).contains("# TYPE dsproxy_queries counter\n");
+        assertThat(text).contains("dsproxy_queries_total{datasource=\"my\\\"DS\",type=\"select\"} 1\n");
+        assertThat(text).contains("dsproxy_queries_total{datasource=\"my\\\"DS\",type=\"update\"} 1\n");
+        assertThat(text).contains("dsproxy_statements_total{datasource=\"my\\\"DS\",statement_type=\"statement\"} 2\n");
+        assertThat(text).contains("dsproxy_executions_total{datasource=\"my\\\"DS\",result=\"success\"} 2\n");
+        assertThat(text).contains("# TYPE dsproxy_query_latency_seconds histogram\n# UNIT dsproxy_query_latency_seconds seconds\n");
+        assertThat(text).contains("dsproxy_query_latency_seconds_bucket{datasource=\"my\\\"DS\",le=\"+Inf\"} 2\n");
+        assertThat(text).contains("dsproxy_query_latency_seconds_count{datasource=\"my\\\"DS\"} 2\n");
+        assertThat(text).contains("# TYPE dsproxy_execution_time_seconds counter\n# UNIT dsproxy_execution_time_seconds seconds\n");
+        assertThat(text).contains("# TYPE dsproxy_connection_hold_time_seconds histogram\n");
+        assertThat(text).doesNotContain("nanoseconds");
+        assertThat(text).contains("dsproxy_connections_open{datasource=\"my\\\"DS\"} 0\n");
+        assertThat(text).contains("dsproxy_connections_acquired_total{datasource=\"my\\\"DS\"} 1\n");
+        assertThat(text).contains("dsproxy_connection_statements_bucket{datasource=\"my\\\"DS\",le=\"2.0\"} 1\n");
+        assertThat(text).endsWith("# EOF\n");
+
+        // rendering again produces the same output
+        assertThat(exporter.render()).isEqualTo(text);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int size = exporter.writeTo(out);
+        assertThat(size).isEqualTo(out.size());
+        assertThat(out.toString("UTF-8")).isEqualTo(text);
+    }
+
+    @Test
+    public void queryCountHolder() {
+        SingleQueryCountHolder holder = new SingleQueryCountHolder();
+        holder.setPopulateQueryCountHolder(false);
+        holder.getOrCreateQueryCount("ds1").incrementSelect();
+        holder.getOrCreateQueryCount("ds2").incrementInsert();
+
+        OpenMetricsExporter exporter = new OpenMetricsExporter();
+        exporter.setPrefix("app_");
+        exporter.register(holder);
+
+        String text = exporter.render();
+        assertThat(text).contains("app_queries_total{datasource=\"ds1\",type=\"select\"} 1\n");
+        assertThat(text).contains("app_queries_total{datasource=\"ds2\",type=\"insert\"} 1\n");
+        assertThat(text).doesNotContain("app_query_latency_seconds_count");
+    }
+
+    @Test
+    public void durationsInSeconds() {
+        QueryMetrics queryMetrics = new QueryMetrics();
+        queryMetrics.getQueryCount().incrementTime(1500);
+        queryMetrics.getLatency().record(5);
+        ConnectionMetrics connectionMetrics = new ConnectionMetrics();
+        connectionMetrics.getHoldTime().record(3000);
+
+        OpenMetricsExporter exporter = new OpenMetricsExporter();
+        exporter.register("ds", queryMetrics, connectionMetrics);
+
+        String text = exporter.render();
+        // milliseconds by default
+        assertThat(text).contains("dsproxy_execution_time_seconds_total{datasource=\"ds\"} 1.5\n");
+        assertThat(text).contains("dsproxy_query_latency_seconds_bucket{datasource=\"ds\",le=\"0.005\"} 1\n");
+        assertThat(text).contains("dsproxy_query_latency_seconds_sum{datasource=\"ds\"} 0.005\n");
+        // nanoseconds
+        assertThat(text).contains("dsproxy_connection_hold_time_seconds_sum{datasource=\"ds\"} 0.000003\n");
+
+        exporter.setQueryTimeUnit(TimeUnit.MICROSECONDS);
+        assertThat(exporter.render()).contains("dsproxy_execution_time_seconds_total{datasource=\"ds\"} 0.0015\n");
+
+        try {
+            exporter.setQueryTimeUnit(TimeUnit.MINUTES);
+            fail("IllegalArgumentException is expected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void nanoTimeStopwatch() {
+        ProxyConfig proxyConfig = ProxyConfig.Builder.create().dataSourceName("ds")
+                .stopwatchFactory(new NanoTimeStopwatchFactory()).build();
+        QueryMetrics queryMetrics = new QueryMetrics();
+        queryMetrics.getQueryCount().incrementTime(2000000000L);
+
+        OpenMetricsExporter exporter = new OpenMetricsExporter();
+        exporter.register(proxyConfig, queryMetrics);
+
+        assertThat(exporter.render()).contains("dsproxy_execution_time_seconds_total{datasource=\"ds\"} 2.0\n");
+    }
+
+    @Test
+    public void duplicateRegistration() {
+        SingleQueryCountHolder holder = new SingleQueryCountHolder();
+        holder.setPopulateQueryCountHolder(false);
+        holder.getOrCreateQueryCount("ds1").incrementSelect();
+        holder.getOrCreateQueryCount("ds2").incrementSelect();
+
+        QueryMetrics queryMetrics = new QueryMetrics();
+        OpenMetricsExporter exporter = new OpenMetricsExporter();
+        exporter.register("ds1", queryMetrics, null);
+        try {
+            exporter.register("ds1", new QueryMetrics(), null);
+            fail("IllegalArgumentException is expected");
+        } catch (IllegalArgumentException ex) {
+            assertThat(ex.getMessage()).contains("already registered");
+        }
+        exporter.register(holder);
+        exporter.register(holder);
+
+        // "ds1" is rendered from the registered query metrics only, and the holder is rendered once
+        String text = exporter.render();
+        assertThat(text.split("dsproxy_queries_total\\{datasource=\"ds1\",type=\"select\"}", -1)).hasSize(2);
+        assertThat(text).contains("dsproxy_queries_total{datasource=\"ds1\",type=\"select\"} 0\n");
+        assertThat(text.split("dsproxy_queries_total\\{datasource=\"ds2\",type=\"select\"}", -1)).hasSize(2);
+    }
+
+    @Test
+    public void openConnections() throws Exception {
+        ProxyDataSource ds = ProxyDataSourceBuilder.create(jdbcDataSource).name("ds1").build();
+        ProxyDataSource concurrent = ProxyDataSourceBuilder.create(jdbcDataSource).name("ds2")
+                .connectionIdManager(new ConcurrentConnectionIdManager()).build();
+
+        OpenMetricsExporter exporter = new OpenMetricsExporter();
+        exporter.register(ds.getProxyConfig(), null);
+        exporter.register(concurrent.getProxyConfig(), null);
+
+        Connection conn = concurrent.getConnection();
+        String text = exporter.render();
+        conn.close();
+
+        // no atomic counter is available without connection metrics
+        assertThat(text).doesNotContain("dsproxy_connections_open{datasource=\"ds1\"}");
+        assertThat(text).contains("dsproxy_connections_open{datasource=\"ds2\"} 1\n");
+    }
+
+    @Test
+    public void writeToDoesNotBlockRendering() throws Exception {
+        final OpenMetricsExporter exporter = createExporter();
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch rendered = new CountDownLatch(1);
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    exporter.writeTo(new OutputStream() {
+                        @Override
+                        public void write(int b) {
+                        }
+
+                        @Override
+                        public void write(byte[] b, int off, int len) throws IOException {
+                            writing.countDown();
+                            try {
+                                rendered.await(10, TimeUnit.SECONDS);
+                            } catch (InterruptedException ex) {
+                                throw new IOException(ex);
+                            }
+                        }
+                    });
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+        writer.start();
+        assertThat(writing.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // slow writer does not hold the exporter lock
+        assertThat(exporter.render()).endsWith("# EOF\n");
+        rendered.countDown();
+        writer.join();
+    }
+
+    @Test
+    public void httpServer() throws Exception {
+        OpenMetricsExporter exporter = createExporter();
+        OpenMetricsHttpServer server = new OpenMetricsHttpServer(exporter, new InetSocketAddress("127.0.0.1", 0), "/metrics");
+        server.start();
+        try {
+            URL url = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/metrics").toURL();
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertThat(connection.getResponseCode()).isEqualTo(200);
+            assertThat(connection.getContentType()).isEqualTo(OpenMetricsExporter.CONTENT_TYPE);
+
+            InputStream in = connection.getInputStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int read;
+            while ((read = in.read(buf)) != -1) {
+                body.write(buf, 0, read);
+            }
+            in.close();
+            assertThat(body.toString("UTF-8")).isEqualTo(exporter.render());
+        } finally {
+            server.close();
+        }
+    }
+
+}
@@ -0,0 +1,281 @@
+package net.ttddyy.dsproxy.support.replay;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.StatementType;
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.listener.NoOpQueryExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class WorkloadReplayerTest {
+
+    private DataSource jdbcDataSource;
+    private JDBCDataSource targetDataSource;
+    private File file;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+
+        this.targetDataSource = new JDBCDataSource();
+        this.targetDataSource.setDatabase("jdbc:hsqldb:mem:replay");
+        this.targetDataSource.setUser("sa");
+        Connection connection = this.targetDataSource.getConnection();
+        connection.createStatement().execute("CREATE TABLE emp ( id INTEGER PRIMARY KEY, name VARCHAR(10) )");
+        connection.close();
+
+        this.file = File.createTempFile("dsproxy", ".workload");
+        this.file.deleteOnExit();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+        TestUtils.shutdown(this.targetDataSource);
+        this.file.delete();
+    }
+
+    private void record(long pauseMillis) throws Exception {
+        WorkloadRecorder recorder = new WorkloadRecorder(this.file);
+        DataSource proxyDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .listener(recorder).methodListener(recorder).build();
+
+        Connection connection = proxyDataSource.getConnection();
+        connection.setAutoCommit(false);
+        PreparedStatement ps = connection.prepareStatement("INSERT INTO emp (id, name) VALUES (?, ?)");
+        ps.setInt(1, 10);
+        ps.setString(2, "a");
+        ps.addBatch();
+        ps.setInt(1, 11);
+        ps.setString(2, "b");
+        ps.addBatch();
+        ps.executeBatch();
+        ps.setInt(1, 12);
+        ps.setNull(2, Types.VARCHAR);
+        ps.executeUpdate();
+        ps.close();
+        connection.commit();
+        connection.close();
+
+        Thread.sleep(pauseMillis);
+
+        connection = proxyDataSource.getConnection();
+        ps = connection.prepareStatement("SELECT name FROM emp WHERE id > ?");
+        ps.setBigDecimal(1, new BigDecimal("1.5"));
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            rs.getString(1);
+        }
+        ps.close();
+        Statement statement = connection.createStatement();
+        statement.addBatch("INSERT INTO emp (id, name) VALUES (20, 'c')");
+        statement.addBatch("INSERT INTO emp (id, name) VALUES (21, 'd')");
+        statement.executeBatch();
+        statement.executeUpdate("DELETE FROM emp WHERE id = 99");
+        statement.close();
+        connection.close();
+
+        recorder.close();
+        assertThat(recorder.getFailure()).isNull();
+        assertThat(recorder.getEventCount()).isEqualTo(11);
+    }
+
+    @Test
+    public void readEvents() throws Exception {
+        record(0);
+
+        List<WorkloadEvent> events = new ArrayList<WorkloadEvent>();
+        WorkloadReader reader = new WorkloadReader(this.file);
+        WorkloadEvent event;
+        while ((event = reader.read()) != null) {
+            events.add(event);
+        }
+        reader.close();
+
+        assertThat(events).extracting("type").containsExactly(
+                WorkloadEvent.Type.CONNECTION_OPEN, WorkloadEvent.Type.AUTO_COMMIT, WorkloadEvent.Type.QUERY,
+                WorkloadEvent.Type.QUERY, WorkloadEvent.Type.COMMIT, WorkloadEvent.Type.CONNECTION_CLOSE,
+                WorkloadEvent.Type.CONNECTION_OPEN, WorkloadEvent.Type.QUERY, WorkloadEvent.Type.QUERY,
+                WorkloadEvent.Type.QUERY, WorkloadEvent.Type.CONNECTION_CLOSE);
+        assertThat(events.get(0).getConnectionId()).isNotEqualTo(events.get(6).getConnectionId());
+        assertThat(events.get(1).isAutoCommit()).isFalse();
+
+        WorkloadEvent batch = events.get(2);
+        assertThat(batch.getStatementType()).isEqualTo(StatementType.PREPARED);
+        assertThat(batch.isBatch()).isTrue();
+        assertThat(batch.getQueries()).containsExactly("INSERT INTO emp (id, name) VALUES (?, ?)");
+        assertThat(batch.getParametersList()).hasSize(2);
+        assertThat(batch.getParametersList().get(1)).extracting("key").containsExactly(1, 2);
+        assertThat(batch.getParametersList().get(1)).extracting("value").containsExactly(11, "b");
+        assertThat(batch.getElapsedTime()).isGreaterThan(0);
+
+        WorkloadParameter nullParameter = events.get(3).getParametersList().get(0).get(1);
+        assertThat(nullParameter.getKind()).isEqualTo(WorkloadParameter.Kind.NULL);
+        assertThat(nullParameter.getSqlType()).isEqualTo(Types.VARCHAR);
+
+        assertThat(events.get(7).getParametersList().get(0).get(0).getValue()).isEqualTo(new BigDecimal("1.5"));
+        assertThat(events.get(8).getStatementType()).isEqualTo(StatementType.STATEMENT);
+        assertThat(events.get(8).getQueries()).hasSize(2);
+
+        long previous = -1;
+        for (WorkloadEvent workloadEvent : events) {
+            assertThat(workloadEvent.getTimestamp()).isGreaterThanOrEqualTo(previous);
+            previous = workloadEvent.getTimestamp();
+        }
+    }
+
+    @Test
+    public void replay() throws Exception {
+        record(0);
+
+        WorkloadReplayer replayer = new WorkloadReplayer(this.targetDataSource);
+        replayer.setSpeedUp(Double.POSITIVE_INFINITY);
+        ReplayReport report = replayer.replay(this.file);
+
+        assertThat(report.getFirstError()).isNull();
+        assertThat(report.getErrorCount()).isEqualTo(0);
+        assertThat(report.getConnectionCount()).isEqualTo(2);
+        assertThat(report.getQueryCount()).isEqualTo(5);
+        assertThat(report.getLatency().getCount()).isEqualTo(5);
+        assertThat(report.getLatencyByQuery()).containsKey(QueryUtils.fingerprint("SELECT name FROM emp WHERE id > ?"));
+
+        assertThat(TestUtils.countTable(this.targetDataSource, "emp")).isEqualTo(5);
+    }
+
+    @Test
+    public void speedUp() throws Exception {
+        record(200);
+
+        WorkloadReplayer replayer = new WorkloadReplayer(this.targetDataSource);
+        replayer.setSpeedUp(4);
+        ReplayReport report = replayer.replay(this.file);
+
+        assertThat(report.getErrorCount()).isEqualTo(0);
+        assertThat(report.getElapsedTime()).isGreaterThanOrEqualTo(45);
+    }
+
+    @Test
+    public void flush() throws Exception {
+        WorkloadRecorder recorder = new WorkloadRecorder(this.file);
+        DataSource proxyDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .listener(recorder).methodListener(recorder).build();
+
+        Connection connection = proxyDataSource.getConnection();
+        connection.createStatement().execute("SELECT id FROM emp");
+        recorder.flush();
+        assertThat(recorder.getEventCount()).isEqualTo(2);
+
+        WorkloadReader reader = new WorkloadReader(this.file);
+        assertThat(reader.read().getType()).isEqualTo(WorkloadEvent.Type.CONNECTION_OPEN);
+        assertThat(reader.read().getQueries()).containsExactly("SELECT id FROM emp");
+        reader.close();
+
+        connection.close();
+        recorder.close();
+        assertThat(recorder.getEventCount()).isEqualTo(3);
+
+        // not recorded after close
+        proxyDataSource.getConnection().close();
+        recorder.flush();
+        assertThat(recorder.getEventCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void boundedConcurrency() throws Exception {
+        record(0);
+
+        // sessions of the recording are sequential
+        WorkloadReplayer replayer = new WorkloadReplayer(this.targetDataSource);
+        replayer.setSpeedUp(Double.POSITIVE_INFINITY);
+        replayer.setConcurrency(1);
+        replayer.setSessionQueueCapacity(1);
+        ReplayReport report = replayer.replay(this.file);
+
+        assertThat(report.getErrorCount()).isEqualTo(0);
+        assertThat(report.getConnectionCount()).isEqualTo(2);
+        assertThat(report.getQueryCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void concurrencyExceeded() throws Exception {
+        recordConcurrentSessions(3);
+
+        WorkloadReplayer replayer = new WorkloadReplayer(this.targetDataSource);
+        replayer.setSpeedUp(Double.POSITIVE_INFINITY);
+        replayer.setConcurrency(2);
+        try {
+            replayer.replay(this.file);
+            fail("IllegalStateException is expected");
+        } catch (IllegalStateException ex) {
+            assertThat(ex.getMessage()).contains("more than 2");
+        }
+    }
+
+    private void recordConcurrentSessions(int sessionCount) throws Exception {
+        WorkloadRecorder recorder = new WorkloadRecorder(this.file);
+        DataSource proxyDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .listener(recorder).methodListener(recorder).build();
+
+        // all connections are open at the same time
+        List<Connection> connections = new ArrayList<Connection>();
+        for (int i = 0; i < sessionCount; i++) {
+            connections.add(proxyDataSource.getConnection());
+        }
+        for (Connection connection : connections) {
+            connection.createStatement().execute("SELECT id FROM emp");
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        recorder.close();
+    }
+
+    @Test
+    public void sessionPerThread() throws Exception {
+        int sessionCount = 6;
+        recordConcurrentSessions(sessionCount);
+
+        final Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+        DataSource targetDataSource = ProxyDataSourceBuilder.create(this.targetDataSource)
+                .listener(new NoOpQueryExecutionListener() {
+                    @Override
+                    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+                        threadNames.add(Thread.currentThread().getName());
+                    }
+                })
+                .build();
+        WorkloadReplayer replayer = new WorkloadReplayer(targetDataSource);
+        replayer.setSpeedUp(Double.POSITIVE_INFINITY);
+        ReplayReport report = replayer.replay(this.file);
+
+        assertThat(report.getErrorCount()).isEqualTo(0);
+        assertThat(report.getQueryCount()).isEqualTo(sessionCount);
+        assertThat(threadNames).hasSize(sessionCount);
+    }
+
+}
@@ -0,0 +1,147 @@
+package net.ttddyy.dsproxy.transform;
+
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class CachingQueryTransformerTest {
+
+    private DataSource jdbcDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    private static TransformInfo transformInfo(String query) {
+        return new TransformInfo(Statement.class, "myDS", query, false, 0);
+    }
+
+    @Test
+    public void cache() throws Exception {
+        final AtomicInteger invocations = new AtomicInteger();
+        QueryTransformer delegate = new QueryTransformer() {
+            @Override
+            public String transformQuery(TransformInfo transformInfo) {
+                invocations.incrementAndGet();
+                return transformInfo.getQuery().replace("emp_view", "emp");
+            }
+        };
+        CachingQueryTransformer transformer = new CachingQueryTransformer(delegate);
+
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource).queryTransformer(transformer).build();
+        Connection connection = dataSource.getConnection();
+        for (int i = 0; i < 3; i++) {
+            PreparedStatement ps = connection.prepareStatement("SELECT name FROM emp_view WHERE id = ?");
+            ps.setInt(1, 1);
+            ResultSet rs = ps.executeQuery();
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("foo");
+        }
+        Statement statement = connection.createStatement();
+        statement.executeQuery("SELECT name FROM emp_view");
+        connection.close();
+
+        assertThat(invocations.get()).isEqualTo(2);
+        assertThat(transformer.size()).isEqualTo(2);
+        assertThat(transformer.getMissCount()).isEqualTo(2);
+        assertThat(transformer.getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void key() {
+        CachingQueryTransformer transformer = new CachingQueryTransformer(new NoOpQueryTransformer());
+        transformer.transformQuery(new TransformInfo(Statement.class, "myDS", "SELECT 1", false, 0));
+        transformer.transformQuery(new TransformInfo(PreparedStatement.class, "myDS", "SELECT 1", false, 0));
+        transformer.transformQuery(new TransformInfo(Statement.class, "otherDS", "SELECT 1", false, 0));
+        transformer.transformQuery(new TransformInfo(Statement.class, null, "SELECT 1", false, 0));
+        transformer.transformQuery(new TransformInfo(Statement.class, "myDS", "SELECT 1", true, 1));
+        transformer.transformQuery(new TransformInfo(Statement.class, null, "SELECT 1", false, 0));
+
+        assertThat(transformer.size()).isEqualTo(4);
+        assertThat(transformer.getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void maxSize() {
+        CachingQueryTransformer transformer = new CachingQueryTransformer(new NoOpQueryTransformer(), 2);
+        for (int i = 0; i < 5; i++) {
+            assertThat(transformer.transformQuery(transformInfo("SELECT " + i))).isEqualTo("SELECT " + i);
+        }
+        assertThat(transformer.size()).isEqualTo(2);
+
+        transformer.clear();
+        assertThat(transformer.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void rules() {
+        QueryTransformer transformer = RuleQueryTransformer.Builder.create()
+                .literal("emp_view", "emp")
+                .regex("(?i)\\bnow\\(\\)", "CURRENT_TIMESTAMP")
+                .regex("LIMIT (\\d+)", "FETCH FIRST $1 ROWS ONLY")
+                .regex("/\\*(.*?)\\*/", "")
+                .build();
+
+        assertThat(transformer.transformQuery(transformInfo("SELECT /* hint */ id, NOW() FROM emp_view LIMIT 10")))
+                .isEqualTo("SELECT  id, CURRENT_TIMESTAMP FROM emp FETCH FIRST 10 ROWS ONLY");
+        assertThat(transformer.transformQuery(transformInfo("SELECT id FROM emp"))).isEqualTo("SELECT id FROM emp");
+
+        // case-insensitive flag does not leak to other rules
+        assertThat(transformer.transformQuery(transformInfo("select 1 limit 5"))).isEqualTo("select 1 limit 5");
+    }
+
+    @Test
+    public void singlePass() {
+        QueryTransformer transformer = RuleQueryTransformer.Builder.create()
+                .literal("a", "b")
+                .literal("b", "c")
+                .literal("$1", "\\")
+                .regex("x(y)?z", "[$1\\$]")
+                .build();
+
+        // a rule does not see the output of other rules
+        assertThat(transformer.transformQuery(transformInfo("ab"))).isEqualTo("bc");
+        // literal replacement is used as is, unmatched group is empty
+        assertThat(transformer.transformQuery(transformInfo("$1 xz xyz"))).isEqualTo("\\ [$] [y$]");
+    }
+
+    @Test
+    public void withCache() throws Exception {
+        RuleQueryTransformer rules = RuleQueryTransformer.Builder.create().literal("emp_view", "emp").build();
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .queryTransformer(new CachingQueryTransformer(rules))
+                .build();
+
+        Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement();
+        statement.addBatch("UPDATE emp_view SET name = 'FOO' WHERE id = 1");
+        statement.addBatch("UPDATE emp_view SET name = 'BAR' WHERE id = 2");
+        assertThat(statement.executeBatch()).containsExactly(1, 1);
+
+        ResultSet rs = statement.executeQuery("SELECT name FROM emp_view WHERE id = 2");
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("BAR");
+        connection.close();
+    }
+
+}
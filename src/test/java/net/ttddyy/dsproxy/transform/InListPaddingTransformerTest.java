@@ -0,0 +1,212 @@
+package net.ttddyy.dsproxy.transform;
+
+import net.ttddyy.dsproxy.LastQueryListener;
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class InListPaddingTransformerTest {
+
+    private DataSource jdbcDataSource;
+    private InListPaddingTransformer padding;
+    private LastQueryListener listener;
+    private DataSource dataSource;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+        Connection connection = this.jdbcDataSource.getConnection();
+        Statement statement = connection.createStatement();
+        for (int i = 3; i <= 10; i++) {
+            statement.execute("INSERT INTO emp VALUES (" + i + ", 'name-" + i + "')");
+        }
+        connection.close();
+
+        this.padding = new InListPaddingTransformer();
+        this.listener = new LastQueryListener();
+        this.dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .queryTransformer(this.padding)
+                .parameterTransformer(this.padding)
+                .listener(this.listener)
+                .build();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    private static String inList(int size) {
+        StringBuilder sb = new StringBuilder("IN (");
+        for (int i = 0; i < size; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.append(")").toString();
+    }
+
+    private List<Object> lastValues() {
+        List<Object> values = new ArrayList<Object>();
+        for (ParameterSetOperation operation : this.listener.getAfterQueries().get(0).getParametersList().get(0)) {
+            values.add(operation.getArgs()[1]);
+        }
+        return values;
+    }
+
+    @Test
+    public void padding() {
+        assertThat(transform("SELECT * FROM emp WHERE id IN (?)")).isEqualTo("SELECT * FROM emp WHERE id IN (?)");
+        assertThat(transform("SELECT * FROM emp WHERE id IN (?,?)")).isEqualTo("SELECT * FROM emp WHERE id IN (?,?)");
+        assertThat(transform("SELECT * FROM emp WHERE id in(?,?,?)")).isEqualTo("SELECT * FROM emp WHERE id in(?, ?, ?, ?)");
+        assertThat(transform("SELECT * FROM emp WHERE id IN ( ?, ?, ?, ?, ? ) AND name = ?"))
+                .isEqualTo("SELECT * FROM emp WHERE id IN (?, ?, ?, ?, ?, ?, ?, ?) AND name = ?");
+
+        // literals, comments and non placeholder lists are kept
+        assertThat(transform("SELECT 'IN (?, ?, ?)' /* IN (?, ?, ?) */ FROM emp WHERE id IN (1, 2, 3) AND id = ?"))
+                .isEqualTo("SELECT 'IN (?, ?, ?)' /* IN (?, ?, ?) */ FROM emp WHERE id IN (1, 2, 3) AND id = ?");
+        assertThat(transform("SELECT * FROM emp WHERE id = ?")).isEqualTo("SELECT * FROM emp WHERE id = ?");
+
+        InListPaddingTransformer limited = new InListPaddingTransformer(6, 10);
+        assertThat(limited.transformQuery(transformInfo("SELECT * FROM emp WHERE id IN (?, ?, ?, ?, ?)")))
+                .isEqualTo("SELECT * FROM emp WHERE id IN (?, ?, ?, ?, ?, ?)");
+        assertThat(limited.transformQuery(transformInfo("SELECT * FROM emp WHERE id IN (?, ?, ?, ?, ?, ?, ?)")))
+                .isEqualTo("SELECT * FROM emp WHERE id IN (?, ?, ?, ?, ?, ?, ?)");
+    }
+
+    private String transform(String query) {
+        return this.padding.transformQuery(transformInfo(query));
+    }
+
+    private static TransformInfo transformInfo(String query) {
+        return new TransformInfo(PreparedStatement.class, "myDS", query, false, 0);
+    }
+
+    @Test
+    public void execute() throws Exception {
+        Connection connection = this.dataSource.getConnection();
+        for (int size = 1; size <= 7; size++) {
+            PreparedStatement ps = connection.prepareStatement("SELECT id FROM emp WHERE id " + inList(size) + " AND name <> ? ORDER BY id");
+            for (int i = 1; i <= size; i++) {
+                ps.setInt(i, i);
+            }
+            ps.setString(size + 1, "bar");
+
+            ResultSet rs = ps.executeQuery();
+            for (int i = 1; i <= size; i++) {
+                if (i != 2) {
+                    assertThat(rs.next()).isTrue();
+                    assertThat(rs.getInt(1)).isEqualTo(i);
+                }
+            }
+            assertThat(rs.next()).isFalse();
+        }
+
+        assertThat(this.listener.getAfterQueries().get(0).getQuery()).isEqualTo("SELECT id FROM emp WHERE id " + inList(8) + " AND name <> ? ORDER BY id");
+        assertThat(lastValues()).containsExactly(1, 2, 3, 4, 5, 6, 7, 7, "bar");
+
+        assertThat(this.padding.getDistinctQueryCount()).isEqualTo(7);
+        assertThat(this.padding.getDistinctPaddedQueryCount()).isEqualTo(4);
+        assertThat(this.padding.getPaddedExecutionCount()).isEqualTo(4);  // for size 3, 5, 6, 7
+        connection.close();
+    }
+
+    @Test
+    public void reExecute() throws Exception {
+        Connection connection = this.dataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement("SELECT id FROM emp WHERE id " + inList(3) + " AND name <> ? ORDER BY id");
+        ps.setInt(1, 1);
+        ps.setInt(2, 2);
+        ps.setInt(3, 3);
+        ps.setString(4, "foo");
+        ResultSet rs = ps.executeQuery();
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getInt(1)).isEqualTo(2);
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getInt(1)).isEqualTo(3);
+        assertThat(rs.next()).isFalse();
+
+        // without setting parameters
+        rs = ps.executeQuery();
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getInt(1)).isEqualTo(2);
+        assertThat(lastValues()).containsExactly(1, 2, 3, 3, "foo");
+
+        // set parameters by the original index
+        ps.setInt(3, 5);
+        ps.setString(4, "bar");
+        rs = ps.executeQuery();
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getInt(1)).isEqualTo(1);
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getInt(1)).isEqualTo(5);
+        assertThat(rs.next()).isFalse();
+        assertThat(lastValues()).containsExactly(1, 2, 5, 5, "bar");
+        connection.close();
+    }
+
+    @Test
+    public void batch() throws Exception {
+        Connection connection = this.dataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement("UPDATE emp SET name = ? WHERE id " + inList(3));
+        ps.setString(1, "x");
+        ps.setInt(2, 1);
+        ps.setInt(3, 2);
+        ps.setInt(4, 3);
+        ps.addBatch();
+        ps.setString(1, "y");
+        ps.setInt(2, 4);
+        ps.setInt(3, 5);
+        ps.setInt(4, 6);
+        ps.addBatch();
+        assertThat(ps.executeBatch()).containsExactly(3, 3);
+
+        assertThat(this.listener.getAfterQueries().get(0).getQuery()).isEqualTo("UPDATE emp SET name = ? WHERE id " + inList(4));
+        assertThat(this.padding.getPaddedExecutionCount()).isEqualTo(2);
+
+        ResultSet rs = connection.createStatement().executeQuery("SELECT name FROM emp WHERE id IN (3, 4) ORDER BY id");
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("x");
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("y");
+        connection.close();
+    }
+
+    @Test
+    public void ambiguous() throws Exception {
+        // both have 7 parameters and pad to the same query
+        String first = "SELECT id FROM emp WHERE id " + inList(3) + " AND id " + inList(4);
+        String second = "SELECT id FROM emp WHERE id " + inList(4) + " AND id " + inList(3);
+        String padded = "SELECT id FROM emp WHERE id " + inList(4) + " AND id " + inList(4);
+        assertThat(transform(first)).isEqualTo(padded);
+        assertThat(transform(second)).isEqualTo(second);
+        assertThat(transform(padded)).isEqualTo(padded);
+
+        Connection connection = this.dataSource.getConnection();
+        PreparedStatement ps = connection.prepareStatement(padded);
+        for (int i = 1; i <= 8; i++) {
+            ps.setInt(i, i <= 4 ? i : i - 1);  // (1, 2, 3, 4) and (4, 5, 6, 7)
+        }
+        ResultSet rs = ps.executeQuery();
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getInt(1)).isEqualTo(4);
+        assertThat(rs.next()).isFalse();
+        assertThat(this.padding.getPaddedExecutionCount()).isEqualTo(0);
+        connection.close();
+    }
+
+}
@@ -0,0 +1,171 @@
+package net.ttddyy.dsproxy.transform;
+
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.NoOpMethodExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class ParameterBindingTest {
+
+    private DataSource jdbcDataSource;
+
+    // parameter methods called on the physical prepared statement
+    private List<String> physicalCalls = new ArrayList<String>();
+
+    private DataSource physicalDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+        this.physicalDataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .methodListener(new NoOpMethodExecutionListener() {
+                    @Override
+                    public void beforeMethod(MethodExecutionContext executionContext) {
+                        String methodName = executionContext.getMethod().getName();
+                        if (methodName.equals("clearParameters")) {
+                            physicalCalls.add(methodName);
+                        } else if (methodName.startsWith("set")) {
+                            physicalCalls.add(methodName + executionContext.getMethodArgs()[0]);
+                        }
+                    }
+                })
+                .build();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+    }
+
+    private Connection getConnection(ParameterTransformer parameterTransformer) throws SQLException {
+        return ProxyDataSourceBuilder.create(this.physicalDataSource)
+                .parameterTransformer(parameterTransformer)
+                .build().getConnection();
+    }
+
+    // replace the second parameter to 2
+    private static class ReplacingTransformer implements ParameterTransformer {
+        @Override
+        public void transformParameters(ParameterReplacer replacer, TransformInfo transformInfo) {
+            replacer.setInt(2, 2);
+        }
+    }
+
+    @Test
+    public void passThrough() throws Exception {
+        Connection connection = getConnection(new ReplacingTransformer());
+        PreparedStatement ps = connection.prepareStatement("SELECT name FROM emp WHERE id = ? OR id = ?");
+        ps.setInt(1, 1);
+        assertThat(this.physicalCalls).containsExactly("setInt1");
+
+        try {
+            ps.setInt(3, 1);
+            fail("SQLException is expected");
+        } catch (SQLException ex) {
+            // invalid index is reported when set
+        }
+
+        ps.setInt(2, 1);
+        ResultSet rs = ps.executeQuery();
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.next()).isTrue();
+
+        // only the replaced parameter is bound, parameters are not cleared
+        assertThat(this.physicalCalls).containsExactly("setInt1", "setInt3", "setInt2", "setInt2");
+
+        // replaced value is still bound
+        this.physicalCalls.clear();
+        ps.executeQuery();
+        assertThat(this.physicalCalls).isEmpty();
+        connection.close();
+    }
+
+    @Test
+    public void streamIsNotBoundAgain() throws Exception {
+        Connection connection = getConnection(new ReplacingTransformer());
+        PreparedStatement ps = connection.prepareStatement("UPDATE emp SET name = ? WHERE id = ?");
+        ps.setCharacterStream(1, new StringReader("baz"), 3);
+        ps.setInt(2, 1);
+        assertThat(ps.executeUpdate()).isEqualTo(1);
+
+        ps.setInt(2, 1);
+        ps.executeUpdate();
+        assertThat(this.physicalCalls).containsExactly("setCharacterStream1", "setInt2", "setInt2", "setInt2", "setInt2");
+        connection.close();
+    }
+
+    @Test
+    public void deferred() throws Exception {
+        final List<Integer> parameterCounts = new ArrayList<Integer>();
+        Connection connection = getConnection(new IndexChangingParameterTransformer() {
+            @Override
+            public void transformParameters(ParameterReplacer replacer, TransformInfo transformInfo) {
+                parameterCounts.add(replacer.getModifiedParameters().size());
+            }
+        });
+        PreparedStatement ps = connection.prepareStatement("SELECT name FROM emp WHERE id = ? OR id = ?");
+        ps.setInt(1, 1);
+        ps.setInt(2, 2);
+        assertThat(this.physicalCalls).isEmpty();
+
+        ps.executeQuery();
+        assertThat(this.physicalCalls).containsExactly("setInt1", "setInt2");
+
+        // unchanged parameters are not bound again
+        this.physicalCalls.clear();
+        ps.executeQuery();
+        ps.setInt(2, 1);
+        ResultSet rs = ps.executeQuery();
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("foo");
+        assertThat(rs.next()).isFalse();
+        assertThat(this.physicalCalls).containsExactly("setInt2");
+        assertThat(parameterCounts).containsExactly(2, 2, 2);
+        connection.close();
+    }
+
+    @Test
+    public void deferredStreamIsNotBoundAgain() throws Exception {
+        final int[] executions = new int[1];
+        Connection connection = getConnection(new IndexChangingParameterTransformer() {
+            @Override
+            public void transformParameters(ParameterReplacer replacer, TransformInfo transformInfo) {
+                if (executions[0]++ == 0) {
+                    replacer.setInt(3, 1);  // only the first execution has the third parameter
+                }
+            }
+        });
+        PreparedStatement ps = connection.prepareStatement("UPDATE emp SET name = ? WHERE id = ? OR id = ?");
+        ps.setCharacterStream(1, new StringReader("baz"), 3);
+        ps.setInt(2, 1);
+        assertThat(ps.executeUpdate()).isEqualTo(1);
+
+        try {
+            ps.executeUpdate();
+            fail("SQLException is expected");
+        } catch (SQLException ex) {
+            assertThat(ex.getMessage()).contains("already been bound");
+        }
+        assertThat(this.physicalCalls).containsExactly("setCharacterStream1", "setInt2", "setInt3", "clearParameters");
+        connection.close();
+    }
+
+}
@@ -2,9 +2,14 @@ package net.ttddyy.dsproxy.transform;
 
 import net.ttddyy.dsproxy.proxy.ParameterKey;
 import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.proxy.PrimitiveParameterSetOperation;
 import org.junit.Test;
 
 import java.lang.reflect.Method;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -65,4 +70,127 @@ public class ParameterReplacerTest {
         assertThat((String) params.get(new ParameterKey("foo")).getArgs()[1]).isEqualTo("replaced-foo");
     }
 
+    @Test
+    public void overlay() {
+        Map<ParameterKey, ParameterSetOperation> input = new LinkedHashMap<ParameterKey, ParameterSetOperation>();
+        input.put(new ParameterKey(1), new ParameterSetOperation(null, new Object[]{1, "value-1"}));
+        input.put(new ParameterKey(2), new ParameterSetOperation(null, new Object[]{2, "value-2"}));
+
+        ParameterReplacer replacer = new ParameterReplacer(input);
+        assertThat(replacer.isModified()).isFalse();
+        assertThat(replacer.getModifiedParameters()).isEqualTo(input).isNotSameAs(input);
+
+        replacer.setInt(2, 20);
+        replacer.setInt(3, 30);
+        assertThat((Integer) replacer.getValue(2)).isEqualTo(20);
+        assertThat((String) replacer.getValue(1)).isEqualTo("value-1");
+
+        Map<ParameterKey, ParameterSetOperation> params = replacer.getModifiedParameters();
+        assertThat(params).isNotSameAs(input);
+        assertThat(params.keySet()).containsExactly(new ParameterKey(1), new ParameterKey(2), new ParameterKey(3));
+        assertThat(params.get(new ParameterKey(3)).getArgs()).containsExactly(3, 30);
+
+        // input is not modified
+        assertThat(input).hasSize(2);
+        assertThat(input.get(new ParameterKey(2)).getArgs()).containsExactly(2, "value-2");
+
+        // view reflects later modifications
+        replacer.setInt(1, 10);
+        replacer.setInt(4, 40);
+        assertThat(params).hasSize(4);
+        assertThat(params.get(new ParameterKey(1)).getArgs()).containsExactly(1, 10);
+        assertThat(params.containsKey(new ParameterKey(4))).isTrue();
+        assertThat(replacer.getModifiedParameters()).isSameAs(params);
+        replacer.clearParameters();
+        assertThat(replacer.getModifiedParameters()).isEmpty();
+        assertThat(params.containsKey(new ParameterKey(1))).isFalse();
+        replacer.setInt(2, 2);
+        assertThat(params.keySet()).containsExactly(new ParameterKey(2));
+        assertThat(input).hasSize(2);
+    }
+
+    @Test
+    public void modifyView() {
+        Map<ParameterKey, ParameterSetOperation> input = new LinkedHashMap<ParameterKey, ParameterSetOperation>();
+        input.put(new ParameterKey(1), new ParameterSetOperation(null, new Object[]{1, "value-1"}));
+        input.put(new ParameterKey(2), new ParameterSetOperation(null, new Object[]{2, "value-2"}));
+
+        ParameterReplacer replacer = new ParameterReplacer(input);
+        replacer.setInt(3, 30);
+        Map<ParameterKey, ParameterSetOperation> params = replacer.getModifiedParameters();
+        params.remove(new ParameterKey(1));
+        params.put(new ParameterKey(4), new ParameterSetOperation(null, new Object[]{4, "value-4"}));
+        assertThat(params.keySet()).containsExactly(new ParameterKey(2), new ParameterKey(3), new ParameterKey(4));
+
+        // given map is not modified
+        assertThat(input.keySet()).containsExactly(new ParameterKey(1), new ParameterKey(2));
+
+        // setters after the copy
+        replacer.setString(2, "replaced-2");
+        assertThat(params.get(new ParameterKey(2)).getArgs()).containsExactly(2, "replaced-2");
+        assertThat(input.get(new ParameterKey(2)).getArgs()).containsExactly(2, "value-2");
+
+        // unmodified replacer becomes modified by changing the view
+        ParameterReplacer another = new ParameterReplacer(input);
+        Iterator<Map.Entry<ParameterKey, ParameterSetOperation>> iterator = another.getModifiedParameters().entrySet().iterator();
+        iterator.next();
+        iterator.remove();
+        assertThat(another.isModified()).isTrue();
+        assertThat(another.getModifiedParameters().keySet()).containsExactly(new ParameterKey(2));
+        assertThat(input).hasSize(2);
+    }
+
+    @Test
+    public void primitiveParameters() throws Exception {
+        ParameterReplacer replacer = new ParameterReplacer();
+        replacer.setInt(1, 10);
+        replacer.setBoolean("foo", true);
+        replacer.setDouble(2, 1.5);
+
+        Map<ParameterKey, ParameterSetOperation> params = replacer.getModifiedParameters();
+        assertThat(params.get(new ParameterKey(1))).isInstanceOf(PrimitiveParameterSetOperation.class);
+        assertThat(params.get(new ParameterKey(1)).getArgs()).containsExactly(1, 10);
+        assertThat(params.get(new ParameterKey(1)).getMethod()).isEqualTo(PreparedStatement.class.getMethod("setInt", int.class, int.class));
+        assertThat(params.get(new ParameterKey("foo")).getArgs()).containsExactly("foo", true);
+        assertThat(params.get(new ParameterKey("foo")).getMethod()).isEqualTo(CallableStatement.class.getMethod("setBoolean", String.class, boolean.class));
+        assertThat((Double) replacer.getValue(2)).isEqualTo(1.5);
+    }
+
+    @Test
+    public void setParameter() {
+        Map<ParameterKey, ParameterSetOperation> input = new LinkedHashMap<ParameterKey, ParameterSetOperation>();
+        ParameterReplacer replacer = new ParameterReplacer(input);
+        replacer.setString(1, "value-1");
+
+        ParameterSetOperation operation = replacer.getModifiedParameters().get(new ParameterKey(1));
+        replacer.setParameter(2, operation);
+
+        Map<ParameterKey, ParameterSetOperation> params = replacer.getModifiedParameters();
+        assertThat(params.get(new ParameterKey(2)).getMethod()).isEqualTo(operation.getMethod());
+        assertThat(params.get(new ParameterKey(2)).getArgs()).containsExactly(2, "value-1");
+        assertThat(operation.getArgs()).containsExactly(1, "value-1");
+    }
+
+    @Test
+    public void methods() throws Exception {
+        ParameterReplacer replacer = new ParameterReplacer();
+        replacer.setObject(1, "foo", Types.VARCHAR);
+        replacer.registerOutParameter(2, Types.STRUCT, "MY_TYPE");
+        replacer.setBinaryStream("bar", null, 10L);
+        replacer.setLong(4, 100L);
+
+        Map<ParameterKey, ParameterSetOperation> params = replacer.getModifiedParameters();
+        assertThat(params.get(new ParameterKey(1)).getMethod())
+                .isEqualTo(PreparedStatement.class.getMethod("setObject", int.class, Object.class, int.class));
+        assertThat(params.get(new ParameterKey(2)).getMethod())
+                .isEqualTo(CallableStatement.class.getMethod("registerOutParameter", int.class, int.class, String.class));
+        assertThat(params.get(new ParameterKey("bar")).getMethod())
+                .isEqualTo(CallableStatement.class.getMethod("setBinaryStream", String.class, java.io.InputStream.class, long.class));
+
+        // methods are resolved once
+        ParameterReplacer another = new ParameterReplacer();
+        another.setLong(4, 200L);
+        assertThat(another.getModifiedParameters().get(new ParameterKey(4)).getMethod()).isSameAs(params.get(new ParameterKey(4)).getMethod());
+    }
+
 }
@@ -0,0 +1,252 @@
+package net.ttddyy.dsproxy.transform;
+
+import net.ttddyy.dsproxy.LastQueryListener;
+import net.ttddyy.dsproxy.QueryCountScope;
+import net.ttddyy.dsproxy.TestUtils;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * @author Tadaya Tsuyukubo
+ */
+public class SqlCommenterQueryTransformerTest {
+
+    private DataSource jdbcDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        this.jdbcDataSource = TestUtils.getDataSourceWithData();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        TestUtils.shutdown(this.jdbcDataSource);
+        QueryCountScope scope;
+        while ((scope = QueryCountScope.current()) != null) {
+            scope.close();
+        }
+    }
+
+    private static Map<String, String> constantTags() {
+        Map<String, String> tags = new LinkedHashMap<String, String>();
+        tags.put("service", "user-service");
+        tags.put("db driver", "hsqldb");
+        return tags;
+    }
+
+    private static TransformInfo transformInfo(Class<? extends Statement> clazz, String query) {
+        return new TransformInfo(clazz, "myDS", query, false, 0);
+    }
+
+    @Test
+    public void comment() {
+        SqlCommenterQueryTransformer transformer = new SqlCommenterQueryTransformer(constantTags());
+
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT 1")))
+                .isEqualTo("SELECT 1 /*db%20driver='hsqldb',service='user-service'*/");
+
+        QueryCountScope scope = QueryCountScope.open();
+        assertThat(SqlCommentTags.current()).isNull();
+        SqlCommentTags tags = SqlCommentTags.forCurrentScope().put("route", "/users/{id}").put("traceparent", "00-abc-01");
+        assertThat(SqlCommentTags.current()).isSameAs(tags);
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT 1")))
+                .isEqualTo("SELECT 1 /*db%20driver='hsqldb',service='user-service',route='%2Fusers%2F%7Bid%7D',traceparent='00-abc-01'*/");
+
+        // prepared statements only have constant tags by default
+        assertThat(transformer.transformQuery(transformInfo(PreparedStatement.class, "SELECT ?")))
+                .isEqualTo("SELECT ? /*db%20driver='hsqldb',service='user-service'*/");
+        assertThat(transformer.transformQuery(transformInfo(CallableStatement.class, "CALL foo()")))
+                .isEqualTo("CALL foo() /*db%20driver='hsqldb',service='user-service'*/");
+
+        tags.put("traceparent", null).put("action", "it's */");
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT 1")))
+                .isEqualTo("SELECT 1 /*db%20driver='hsqldb',service='user-service',action='it%27s%20*%2F',route='%2Fusers%2F%7Bid%7D'*/");
+
+        // tags belong to the scope
+        QueryCountScope nested = QueryCountScope.open();
+        assertThat(SqlCommentTags.current()).isNull();
+        nested.close();
+        assertThat(SqlCommentTags.current()).isSameAs(tags);
+        scope.close();
+        assertThat(SqlCommentTags.current()).isNull();
+        try {
+            SqlCommentTags.forCurrentScope();
+            fail("IllegalStateException is expected");
+        } catch (IllegalStateException ex) {
+            // tags require a scope or SqlCommentTags#open()
+        }
+    }
+
+    @Test
+    public void commentPosition() {
+        SqlCommenterQueryTransformer transformer = new SqlCommenterQueryTransformer(Collections.singletonMap("app", "foo"));
+
+        // trailing semicolon
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT 1;")))
+                .isEqualTo("SELECT 1 /*app='foo'*/;");
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT 1 ;\n")))
+                .isEqualTo("SELECT 1 /*app='foo'*/ ;\n");
+
+        // already tagged
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT 1 /*app='bar'*/")))
+                .isEqualTo("SELECT 1 /*app='bar'*/");
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT 1 /* app='bar', route='%2F' */;")))
+                .isEqualTo("SELECT 1 /* app='bar', route='%2F' */;");
+
+        // other comments are kept after the tags
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT 1 /* note */")))
+                .isEqualTo("SELECT 1 /*app='foo'*/ /* note */");
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT 1 -- note")))
+                .isEqualTo("SELECT 1 /*app='foo'*/ -- note");
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "-- note\nSELECT 1; -- app='bar'\n")))
+                .isEqualTo("-- note\nSELECT 1 /*app='foo'*/; -- app='bar'\n");
+
+        // comment markers in literals and optimizer hints
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT '--', 'it''s /*' FROM dual")))
+                .isEqualTo("SELECT '--', 'it''s /*' FROM dual /*app='foo'*/");
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT \"a--b\" FROM t;")))
+                .isEqualTo("SELECT \"a--b\" FROM t /*app='foo'*/;");
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT /*+ INDEX(t idx) */ id FROM t")))
+                .isEqualTo("SELECT /*+ INDEX(t idx) */ id FROM t /*app='foo'*/");
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT /*+ FULL(t) */ id FROM t /* note */")))
+                .isEqualTo("SELECT /*+ FULL(t) */ id FROM t /*app='foo'*/ /* note */");
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT 'a' /* note */")))
+                .isEqualTo("SELECT 'a' /*app='foo'*/ /* note */");
+    }
+
+    @Test
+    public void threadBoundTags() {
+        final SqlCommenterQueryTransformer transformer = new SqlCommenterQueryTransformer(Collections.<String, String>emptyMap());
+
+        // without QueryCountScope
+        SqlCommentTags tags = SqlCommentTags.open();
+        assertThat(SqlCommentTags.current()).isSameAs(tags);
+        assertThat(SqlCommentTags.forCurrentScope()).isSameAs(tags);
+        tags.put("route", "users");
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT 1"))).isEqualTo("SELECT 1 /*route='users'*/");
+
+        // thread bound tags take precedence over the scope
+        QueryCountScope scope = QueryCountScope.open();
+        SqlCommentTags.of(scope).put("route", "scope");
+        assertThat(SqlCommentTags.current()).isSameAs(tags);
+
+        // nested, closed out of order
+        SqlCommentTags nested = SqlCommentTags.open();
+        nested.put("route", "nested");
+        assertThat(transformer.transformQuery(transformInfo(Statement.class, "SELECT 1"))).isEqualTo("SELECT 1 /*route='nested'*/");
+        tags.close();
+        assertThat(SqlCommentTags.current()).isSameAs(nested);
+        nested.close();
+        assertThat(SqlCommentTags.current()).isSameAs(SqlCommentTags.of(scope));
+        scope.close();
+        assertThat(SqlCommentTags.current()).isNull();
+
+        final String[] transformed = new String[1];
+        tags.run(new Runnable() {
+            @Override
+            public void run() {
+                transformed[0] = transformer.transformQuery(transformInfo(Statement.class, "SELECT 2"));
+            }
+        });
+        assertThat(transformed[0]).isEqualTo("SELECT 2 /*route='users'*/");
+        assertThat(SqlCommentTags.current()).isNull();
+    }
+
+    @Test
+    public void propagation() throws Exception {
+        final SqlCommenterQueryTransformer transformer = new SqlCommenterQueryTransformer(Collections.<String, String>emptyMap());
+        QueryCountScope scope = new QueryCountScope();
+        SqlCommentTags.of(scope).put("route", "users");
+
+        final String[] transformed = new String[2];
+        scope.run(new Runnable() {
+            @Override
+            public void run() {
+                transformed[0] = transformer.transformQuery(transformInfo(Statement.class, "SELECT 1"));
+            }
+        });
+        assertThat(transformed[0]).isEqualTo("SELECT 1 /*route='users'*/");
+
+        // child task on another thread
+        QueryCountScope.open(scope);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(QueryCountScope.wrap(new Runnable() {
+                @Override
+                public void run() {
+                    transformed[1] = transformer.transformQuery(transformInfo(Statement.class, "SELECT 2"));
+                }
+            })).get();
+        } finally {
+            executor.shutdown();
+            scope.close();
+        }
+        assertThat(transformed[1]).isEqualTo("SELECT 2 /*route='users'*/");
+    }
+
+    @Test
+    public void preparedStatementMode() {
+        Map<String, String> noConstant = Collections.emptyMap();
+        SqlCommenterQueryTransformer all = new SqlCommenterQueryTransformer(noConstant, SqlCommenterQueryTransformer.PreparedStatementMode.ALL_TAGS);
+        SqlCommenterQueryTransformer none = new SqlCommenterQueryTransformer(constantTags(), SqlCommenterQueryTransformer.PreparedStatementMode.NONE);
+
+        assertThat(all.transformQuery(transformInfo(PreparedStatement.class, "SELECT ?"))).isEqualTo("SELECT ?");
+
+        QueryCountScope scope = QueryCountScope.open();
+        SqlCommentTags.forCurrentScope().put("route", "users");
+        assertThat(all.transformQuery(transformInfo(PreparedStatement.class, "SELECT ?"))).isEqualTo("SELECT ? /*route='users'*/");
+        assertThat(none.transformQuery(transformInfo(PreparedStatement.class, "SELECT ?"))).isEqualTo("SELECT ?");
+        assertThat(none.transformQuery(transformInfo(Statement.class, "SELECT 1")))
+                .isEqualTo("SELECT 1 /*db%20driver='hsqldb',service='user-service',route='users'*/");
+        scope.close();
+    }
+
+    @Test
+    public void execute() throws Exception {
+        LastQueryListener listener = new LastQueryListener();
+        DataSource dataSource = ProxyDataSourceBuilder.create(this.jdbcDataSource)
+                .queryTransformer(new SqlCommenterQueryTransformer(constantTags()))
+                .listener(listener)
+                .build();
+
+        QueryCountScope scope = QueryCountScope.open();
+        SqlCommentTags.forCurrentScope().put("route", "/emp");
+        try {
+            Connection connection = dataSource.getConnection();
+            ResultSet rs = connection.createStatement().executeQuery("SELECT name FROM emp WHERE id = 1");
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("foo");
+            assertThat(listener.getAfterQueries().get(0).getQuery())
+                    .isEqualTo("SELECT name FROM emp WHERE id = 1 /*db%20driver='hsqldb',service='user-service',route='%2Femp'*/");
+
+            PreparedStatement ps = connection.prepareStatement("SELECT name FROM emp WHERE id = ?");
+            ps.setInt(1, 2);
+            rs = ps.executeQuery();
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("bar");
+            assertThat(listener.getAfterQueries().get(0).getQuery())
+                    .isEqualTo("SELECT name FROM emp WHERE id = ? /*db%20driver='hsqldb',service='user-service'*/");
+            connection.close();
+        } finally {
+            scope.close();
+        }
+    }
+
+}